@@ -0,0 +1,340 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.api.remoting;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Socket created by the {@link CompressingSocketFactory}. The handshake is performed when the first stream is requested:
+ * the side opening the connection sends its handshake first, the accepting side replies with its own.
+ */
+final class CompressingSocket extends Socket {
+
+    private static final Logger LOG = Logger.getLogger(CompressingSocket.class.getName());
+
+    private static final int HANDSHAKE_MAGIC = 0x524D435A; // RMCZ
+    private static final int FRAME_RAW = 0;
+    private static final int FRAME_COMPRESSED = 1;
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    private final int threshold;
+    private final boolean connecting;
+
+    private final AtomicLong rawBytesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong rawBytesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private boolean handshakeDone;
+    private volatile boolean compressing;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    /**
+     * Connecting socket.
+     */
+    CompressingSocket(String host, int port, int threshold) throws IOException {
+        super(host, port);
+        this.threshold = threshold;
+        this.connecting = true;
+    }
+
+    /**
+     * Accepted socket, to be used with {@link java.net.ServerSocket#implAccept(Socket)}.
+     */
+    CompressingSocket(int threshold) {
+        this.threshold = threshold;
+        this.connecting = false;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        handshake();
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        handshake();
+        return outputStream;
+    }
+
+    private synchronized void handshake() throws IOException {
+        if(handshakeDone) {
+            return;
+        }
+        InputStream in = super.getInputStream();
+        OutputStream out = new BufferedOutputStream(super.getOutputStream(), 64 * 1024);
+        DataInputStream din = new DataInputStream(in);
+        DataOutputStream dout = new DataOutputStream(out);
+        boolean accepted = CompressingSocketFactory.isCompressionAccepted();
+        boolean peerAccepted;
+        if(connecting) {
+            writeHandshake(dout, accepted);
+            peerAccepted = readHandshake(din);
+        } else {
+            peerAccepted = readHandshake(din);
+            writeHandshake(dout, accepted);
+        }
+        if(accepted && peerAccepted) {
+            this.inputStream = new CompressedInputStream(in);
+            this.outputStream = new CompressedOutputStream(out);
+            this.compressing = true;
+            CompressingSocketFactory.opened(this);
+        } else {
+            this.inputStream = in;
+            this.outputStream = out;
+        }
+        handshakeDone = true;
+    }
+
+    private static void writeHandshake(DataOutputStream out, boolean accepted) throws IOException {
+        out.writeInt(HANDSHAKE_MAGIC);
+        out.writeBoolean(accepted);
+        out.flush();
+    }
+
+    private static boolean readHandshake(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        if(magic != HANDSHAKE_MAGIC) {
+            throw new IOException("Unexpected handshake from peer: " + Integer.toHexString(magic));
+        }
+        return in.readBoolean();
+    }
+
+    ConnectionStatistics getStatistics() {
+        return new ConnectionStatistics(getLocalSocketAddress() + " - " + getRemoteSocketAddress(), rawBytesSent.get(), bytesSent.get(), rawBytesReceived.get(), bytesReceived.get());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(compressing && CompressingSocketFactory.closed(this)) {
+            if(LOG.isLoggable(Level.FINE)) {
+                ConnectionStatistics stats = getStatistics();
+                LOG.fine("Compressed connection " + stats.getConnection() + " closed, bytes saved: " + stats.getBytesSaved() + ", " + stats);
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * Output stream collecting the data written between two flushes in a frame, which is compressed if large enough.
+     */
+    private final class CompressedOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] buffer = new byte[8192];
+        private byte[] compressed = new byte[8192];
+        private int count;
+
+        private CompressedOutputStream(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+            if(count >= MAX_FRAME_SIZE) {
+                writeFrame();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while(len > 0) {
+                int chunk = Math.min(len, MAX_FRAME_SIZE - count);
+                ensureCapacity(chunk);
+                System.arraycopy(b, off, buffer, count, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+                if(count >= MAX_FRAME_SIZE) {
+                    writeFrame();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if(count > 0) {
+                writeFrame();
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                deflater.end();
+                out.close();
+            }
+        }
+
+        private void ensureCapacity(int len) {
+            if(count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + len));
+            }
+        }
+
+        private void writeFrame() throws IOException {
+            rawBytesSent.addAndGet(count);
+            if(count >= threshold) {
+                deflater.reset();
+                deflater.setInput(buffer, 0, count);
+                deflater.finish();
+                int compressedLength = 0;
+                while(!deflater.finished() && compressedLength < count) {
+                    if(compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                }
+                if(deflater.finished() && compressedLength < count) {
+                    out.writeByte(FRAME_COMPRESSED);
+                    out.writeInt(count);
+                    out.writeInt(compressedLength);
+                    out.write(compressed, 0, compressedLength);
+                    bytesSent.addAndGet(9 + compressedLength);
+                    count = 0;
+                    return;
+                }
+            }
+            // Not worth compressing
+            out.writeByte(FRAME_RAW);
+            out.writeInt(count);
+            out.write(buffer, 0, count);
+            bytesSent.addAndGet(5 + count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Input stream decoding the frames written by {@link CompressedOutputStream}.
+     */
+    private final class CompressedInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private final Inflater inflater = new Inflater();
+        private byte[] buffer = new byte[8192];
+        private byte[] compressed = new byte[8192];
+        private int position;
+        private int limit;
+
+        private CompressedInputStream(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(position >= limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(len == 0) {
+                return 0;
+            }
+            if(position >= limit && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+
+        private boolean fill() throws IOException {
+            do {
+                int type = in.read();
+                if(type < 0) {
+                    return false;
+                }
+                int length = in.readInt();
+                if(length < 0 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if(buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                if(type == FRAME_RAW) {
+                    in.readFully(buffer, 0, length);
+                    bytesReceived.addAndGet(5 + length);
+                } else if(type == FRAME_COMPRESSED) {
+                    int compressedLength = in.readInt();
+                    if(compressedLength < 0 || compressedLength > MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid compressed frame length " + compressedLength);
+                    }
+                    if(compressed.length < compressedLength) {
+                        compressed = new byte[compressedLength];
+                    }
+                    in.readFully(compressed, 0, compressedLength);
+                    inflater.reset();
+                    inflater.setInput(compressed, 0, compressedLength);
+                    try {
+                        int inflated = 0;
+                        while(inflated < length && !inflater.finished()) {
+                            int n = inflater.inflate(buffer, inflated, length - inflated);
+                            if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                                break;
+                            }
+                            inflated += n;
+                        }
+                        if(inflated != length) {
+                            throw new IOException("Corrupted compressed frame: expected " + length + " bytes, got " + inflated);
+                        }
+                    } catch (DataFormatException e) {
+                        throw new IOException("Corrupted compressed frame: " + e.getMessage(), e);
+                    }
+                    bytesReceived.addAndGet(9 + compressedLength);
+                } else {
+                    throw new IOException("Invalid frame type " + type);
+                }
+                rawBytesReceived.addAndGet(length);
+                position = 0;
+                limit = length;
+            } while(limit == 0);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.api.remoting;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RMI socket factory compressing the data exchanged over the connections, to be used when exporting remote objects.
+ * Since the client socket factory is serialised with the stub of the exported object, both ends of the connection use
+ * this class.
+ *
+ * When a connection is established, the two ends exchange a handshake stating whether they accept compression: a JVM
+ * can refuse it by setting the system property {@link #JVM_PROPERTY_COMPRESSION_ACCEPTED_KEY} to false. If both ends
+ * accept compression, the data written between two flushes is sent as a frame, which is compressed if its size is at
+ * least equal to the threshold of the factory and if compression actually reduces its size. Otherwise, the connection
+ * carries the data unchanged.
+ *
+ * The statistics of the open compressed connections can be retrieved with {@link #getStatistics()}.
+ */
+public final class CompressingSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String JVM_PROPERTY_COMPRESSION_ACCEPTED_KEY = "reatmetric.remoting.compression.accepted";
+
+    private static final Set<CompressingSocket> OPEN_CONNECTIONS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Return the statistics of the open connections using compression.
+     *
+     * @return the statistics of the open connections using compression
+     */
+    public static List<ConnectionStatistics> getStatistics() {
+        List<ConnectionStatistics> toReturn = new ArrayList<>(OPEN_CONNECTIONS.size());
+        for(CompressingSocket s : OPEN_CONNECTIONS) {
+            toReturn.add(s.getStatistics());
+        }
+        return toReturn;
+    }
+
+    static void opened(CompressingSocket socket) {
+        OPEN_CONNECTIONS.add(socket);
+    }
+
+    static boolean closed(CompressingSocket socket) {
+        return OPEN_CONNECTIONS.remove(socket);
+    }
+
+    static boolean isCompressionAccepted() {
+        return !"false".equalsIgnoreCase(System.getProperty(JVM_PROPERTY_COMPRESSION_ACCEPTED_KEY));
+    }
+
+    private final int threshold;
+
+    /**
+     * Create a socket factory.
+     *
+     * @param threshold the minimum size in bytes of the data to be compressed
+     */
+    public CompressingSocketFactory(int threshold) {
+        if(threshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative: " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return new CompressingSocket(host, port, threshold);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return new ServerSocket(port) {
+            @Override
+            public Socket accept() throws IOException {
+                CompressingSocket socket = new CompressingSocket(threshold);
+                implAccept(socket);
+                return socket;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompressingSocketFactory that = (CompressingSocketFactory) o;
+        return threshold == that.threshold;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(threshold);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressingSocketFactory{" +
+                "threshold=" + threshold +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.api.remoting;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the traffic statistics of a connection using compression.
+ */
+public final class ConnectionStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String connection;
+    private final long rawBytesSent;
+    private final long bytesSent;
+    private final long rawBytesReceived;
+    private final long bytesReceived;
+
+    public ConnectionStatistics(String connection, long rawBytesSent, long bytesSent, long rawBytesReceived, long bytesReceived) {
+        this.connection = connection;
+        this.rawBytesSent = rawBytesSent;
+        this.bytesSent = bytesSent;
+        this.rawBytesReceived = rawBytesReceived;
+        this.bytesReceived = bytesReceived;
+    }
+
+    /**
+     * @return the local and remote endpoints of the connection
+     */
+    public String getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return the number of bytes written by the application
+     */
+    public long getRawBytesSent() {
+        return rawBytesSent;
+    }
+
+    /**
+     * @return the number of bytes actually sent over the connection
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return the number of bytes read by the application
+     */
+    public long getRawBytesReceived() {
+        return rawBytesReceived;
+    }
+
+    /**
+     * @return the number of bytes actually received from the connection
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return the number of bytes saved by compression, in both directions
+     */
+    public long getBytesSaved() {
+        return (rawBytesSent - bytesSent) + (rawBytesReceived - bytesReceived);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionStatistics{" +
+                "connection='" + connection + '\'' +
+                ", rawBytesSent=" + rawBytesSent +
+                ", bytesSent=" + bytesSent +
+                ", rawBytesReceived=" + rawBytesReceived +
+                ", bytesReceived=" + bytesReceived +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.api.remoting;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Definition of the streaming protocol, used as alternative to Java RMI to deliver the updates of the data item provision
+ * services to remote subscribers over a single TCP connection per client.
+ *
+ * Each message is a frame composed by:
+ * <ul>
+ *     <li>the length of the rest of the frame (4 bytes, big endian)</li>
+ *     <li>the frame type (1 byte)</li>
+ *     <li>the subscription ID (4 bytes, big endian), 0 if not applicable</li>
+ *     <li>the payload, depending on the frame type</li>
+ * </ul>
+ *
+ * The client opens the connection with a {@link #FRAME_HELLO} frame containing the name of the remote system (UTF-8),
+ * and the server confirms with {@link #FRAME_HELLO_ACK} or rejects with {@link #FRAME_ERROR}. Then the client can open
+ * any number of subscriptions, each identified by a client-assigned subscription ID: the {@link #FRAME_SUBSCRIBE} payload
+ * contains the {@link StreamedService} ordinal (1 byte) followed by the serialized filter; a new {@link #FRAME_SUBSCRIBE}
+ * with the same subscription ID replaces the filter. The server delivers the updates of each subscription as
+ * {@link #FRAME_DATA} frames, each containing a serialized list of data items, i.e. the batch delivered by the service.
+ */
+public final class StreamingProtocol {
+
+    public static final byte FRAME_HELLO = 1;
+    public static final byte FRAME_HELLO_ACK = 2;
+    public static final byte FRAME_SUBSCRIBE = 3;
+    public static final byte FRAME_UNSUBSCRIBE = 4;
+    public static final byte FRAME_DATA = 5;
+    public static final byte FRAME_ERROR = 6;
+
+    /**
+     * Size of the frame header after the length field: frame type and subscription ID.
+     */
+    public static final int HEADER_LENGTH = 5;
+
+    /**
+     * Maximum accepted frame length (length field value).
+     */
+    public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Maximum accepted frame length (length field value) before the {@link #FRAME_HELLO_ACK} is sent.
+     */
+    public static final int MAX_HELLO_FRAME_LENGTH = 4 * 1024;
+
+    /**
+     * Deserialisation filter applied to the received payloads.
+     */
+    private static final ObjectInputFilter PAYLOAD_FILTER = ObjectInputFilter.Config.createFilter("maxdepth=64;eu.dariolucia.reatmetric.**;java.**;!*");
+
+    /**
+     * The services that can be subscribed via the streaming protocol. The ordinal is used as service code.
+     */
+    public enum StreamedService {
+        OPERATIONAL_MESSAGES,
+        ACKNOWLEDGED_MESSAGES,
+        RAW_DATA,
+        PARAMETERS,
+        EVENTS,
+        ALARMS,
+        ACTIVITY_OCCURRENCES,
+        SCHEDULED_ACTIVITIES
+    }
+
+    private StreamingProtocol() {
+        // Private constructor
+    }
+
+    /**
+     * Build a complete frame, ready to be written.
+     *
+     * @param type the frame type
+     * @param subscriptionId the subscription ID
+     * @param payload the payload, can be null
+     * @return the frame, with position 0 and limit set to the frame length
+     */
+    public static ByteBuffer frame(byte type, int subscriptionId, byte[] payload) {
+        int payloadLength = payload == null ? 0 : payload.length;
+        ByteBuffer bb = ByteBuffer.allocate(4 + HEADER_LENGTH + payloadLength);
+        bb.putInt(HEADER_LENGTH + payloadLength);
+        bb.put(type);
+        bb.putInt(subscriptionId);
+        if(payload != null) {
+            bb.put(payload);
+        }
+        bb.flip();
+        return bb;
+    }
+
+    public static ByteBuffer helloFrame(String systemName) {
+        return frame(FRAME_HELLO, 0, systemName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ByteBuffer errorFrame(int subscriptionId, String message) {
+        return frame(FRAME_ERROR, subscriptionId, String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ByteBuffer subscribeFrame(int subscriptionId, StreamedService service, Serializable filter) throws IOException {
+        byte[] serializedFilter = serialize(filter);
+        byte[] payload = new byte[1 + serializedFilter.length];
+        payload[0] = (byte) service.ordinal();
+        System.arraycopy(serializedFilter, 0, payload, 1, serializedFilter.length);
+        return frame(FRAME_SUBSCRIBE, subscriptionId, payload);
+    }
+
+    public static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(o);
+        }
+        return bos.toByteArray();
+    }
+
+    public static Object deserialize(byte[] data, int offset, int length) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            ois.setObjectInputFilter(PAYLOAD_FILTER);
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public static String decodeString(byte[] data, int offset, int length) {
+        return new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+}
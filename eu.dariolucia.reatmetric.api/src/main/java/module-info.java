@@ -14,6 +14,7 @@ open module eu.dariolucia.reatmetric.api {
     exports eu.dariolucia.reatmetric.api.model;
     exports eu.dariolucia.reatmetric.api.parameters;
     exports eu.dariolucia.reatmetric.api.rawdata;
+    exports eu.dariolucia.reatmetric.api.remoting;
     exports eu.dariolucia.reatmetric.api.archive;
     exports eu.dariolucia.reatmetric.api.archive.exceptions;
     exports eu.dariolucia.reatmetric.api.value;
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.api.remoting;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressingSocketTest {
+
+    private static final int HANDSHAKE_MAGIC = 0x524D435A;
+    private static final int THRESHOLD = 1024;
+
+    private final CompressingSocketFactory factory = new CompressingSocketFactory(THRESHOLD);
+    private final Random random = new Random(46);
+
+    private ExecutorService executor;
+    private ServerSocket serverSocket;
+    private Socket client;
+    private Socket server;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        System.clearProperty(CompressingSocketFactory.JVM_PROPERTY_COMPRESSION_ACCEPTED_KEY);
+        if(client != null) {
+            client.close();
+        }
+        if(server != null) {
+            server.close();
+        }
+        if(serverSocket != null) {
+            serverSocket.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCompressedFrames() throws Exception {
+        connect();
+        byte[] payload = compressible(64 * 1024);
+        assertArrayEquals(payload, transfer(client, server, payload));
+        assertArrayEquals(payload, transfer(server, client, payload));
+        // Both ends are compressing and the payload was reduced
+        ConnectionStatistics stats = ((CompressingSocket) client).getStatistics();
+        assertEquals(payload.length, stats.getRawBytesSent());
+        assertEquals(payload.length, stats.getRawBytesReceived());
+        assertTrue(stats.getBytesSent() < payload.length / 4, "Sent " + stats.getBytesSent() + " bytes");
+        assertEquals(stats.getBytesSent(), ((CompressingSocket) server).getStatistics().getBytesReceived());
+        assertTrue(CompressingSocketFactory.getStatistics().stream().anyMatch(o -> o.getConnection().equals(stats.getConnection())));
+        // Closed connections are not reported anymore
+        client.close();
+        assertTrue(CompressingSocketFactory.getStatistics().stream().noneMatch(o -> o.getConnection().equals(stats.getConnection())));
+    }
+
+    @Test
+    void testRawFrames() throws Exception {
+        connect();
+        // Below threshold
+        byte[] small = compressible(THRESHOLD - 1);
+        assertArrayEquals(small, transfer(client, server, small));
+        ConnectionStatistics stats = ((CompressingSocket) client).getStatistics();
+        assertEquals(small.length + 5, stats.getBytesSent());
+        // Above threshold, but not reduced by compression
+        byte[] incompressible = new byte[16 * 1024];
+        random.nextBytes(incompressible);
+        assertArrayEquals(incompressible, transfer(client, server, incompressible));
+        stats = ((CompressingSocket) client).getStatistics();
+        assertEquals(small.length + incompressible.length, stats.getRawBytesSent());
+        assertEquals(small.length + incompressible.length + 10, stats.getBytesSent());
+        // Single byte writes
+        OutputStream out = client.getOutputStream();
+        out.write(42);
+        out.write(43);
+        out.flush();
+        InputStream in = server.getInputStream();
+        assertEquals(42, in.read());
+        assertEquals(43, in.read());
+    }
+
+    @Test
+    void testFramesAboveMaximumSize() throws Exception {
+        connect();
+        // Larger than the maximum frame size (1 MB): split in several frames
+        byte[] compressible = compressible(3 * 1024 * 1024 + 17);
+        assertArrayEquals(compressible, transfer(client, server, compressible));
+        byte[] incompressible = new byte[2 * 1024 * 1024 + 5];
+        random.nextBytes(incompressible);
+        assertArrayEquals(incompressible, transfer(server, client, incompressible));
+        assertEquals(compressible.length, ((CompressingSocket) server).getStatistics().getRawBytesReceived());
+        assertEquals(incompressible.length, ((CompressingSocket) client).getStatistics().getRawBytesReceived());
+    }
+
+    @Test
+    void testCompressionRefusedByPeer() throws Exception {
+        serverSocket = new ServerSocket(0);
+        Future<Socket> accepted = executor.submit(() -> serverSocket.accept());
+        client = factory.createSocket("localhost", serverSocket.getLocalPort());
+        server = accepted.get(5, TimeUnit.SECONDS);
+        // The peer refuses compression
+        DataOutputStream peerOut = new DataOutputStream(server.getOutputStream());
+        peerOut.writeInt(HANDSHAKE_MAGIC);
+        peerOut.writeBoolean(false);
+        peerOut.flush();
+        OutputStream out = client.getOutputStream();
+        DataInputStream peerIn = new DataInputStream(server.getInputStream());
+        assertEquals(HANDSHAKE_MAGIC, peerIn.readInt());
+        assertTrue(peerIn.readBoolean());
+        // Data is sent unchanged
+        byte[] payload = compressible(8 * 1024);
+        out.write(payload);
+        out.flush();
+        byte[] received = new byte[payload.length];
+        peerIn.readFully(received);
+        assertArrayEquals(payload, received);
+        assertTrue(CompressingSocketFactory.getStatistics().isEmpty());
+    }
+
+    @Test
+    void testCompressionRefusedLocally() throws Exception {
+        System.setProperty(CompressingSocketFactory.JVM_PROPERTY_COMPRESSION_ACCEPTED_KEY, "false");
+        serverSocket = factory.createServerSocket(0);
+        Future<Socket> accepted = executor.submit(() -> serverSocket.accept());
+        client = new Socket("localhost", serverSocket.getLocalPort());
+        server = accepted.get(5, TimeUnit.SECONDS);
+        // The peer accepts compression, but the accepting side refuses it
+        DataOutputStream peerOut = new DataOutputStream(client.getOutputStream());
+        peerOut.writeInt(HANDSHAKE_MAGIC);
+        peerOut.writeBoolean(true);
+        peerOut.flush();
+        InputStream in = server.getInputStream();
+        DataInputStream peerIn = new DataInputStream(client.getInputStream());
+        assertEquals(HANDSHAKE_MAGIC, peerIn.readInt());
+        assertFalse(peerIn.readBoolean());
+        // Data is received unchanged
+        byte[] payload = compressible(8 * 1024);
+        peerOut.write(payload);
+        peerOut.flush();
+        byte[] received = new byte[payload.length];
+        new DataInputStream(in).readFully(received);
+        assertArrayEquals(payload, received);
+        assertTrue(CompressingSocketFactory.getStatistics().isEmpty());
+    }
+
+    @Test
+    void testInvalidHandshake() throws Exception {
+        serverSocket = factory.createServerSocket(0);
+        Future<Socket> accepted = executor.submit(() -> serverSocket.accept());
+        client = new Socket("localhost", serverSocket.getLocalPort());
+        server = accepted.get(5, TimeUnit.SECONDS);
+        DataOutputStream peerOut = new DataOutputStream(client.getOutputStream());
+        peerOut.writeInt(0x12345678);
+        peerOut.writeBoolean(true);
+        peerOut.flush();
+        assertThrows(IOException.class, () -> server.getInputStream());
+    }
+
+    private void connect() throws Exception {
+        serverSocket = factory.createServerSocket(0);
+        Future<Socket> accepted = executor.submit(() -> {
+            Socket s = serverSocket.accept();
+            // Triggers the handshake of the accepting side
+            s.getInputStream();
+            return s;
+        });
+        client = factory.createSocket("localhost", serverSocket.getLocalPort());
+        client.getOutputStream();
+        server = accepted.get(5, TimeUnit.SECONDS);
+    }
+
+    private byte[] transfer(Socket from, Socket to, byte[] payload) throws Exception {
+        Future<?> writer = executor.submit(() -> {
+            OutputStream out = from.getOutputStream();
+            out.write(payload);
+            out.flush();
+            return null;
+        });
+        byte[] received = new byte[payload.length];
+        new DataInputStream(to.getInputStream()).readFully(received);
+        writer.get(5, TimeUnit.SECONDS);
+        return received;
+    }
+
+    private byte[] compressible(int length) {
+        byte[] data = new byte[length];
+        byte[] word = "ReatMetric parameter sample ".getBytes();
+        for(int i = 0; i < length; ++i) {
+            data[i] = word[i % word.length];
+        }
+        // Some noise
+        for(int i = 0; i < length / 100; ++i) {
+            data[random.nextInt(length)] = (byte) random.nextInt();
+        }
+        return data;
+    }
+}
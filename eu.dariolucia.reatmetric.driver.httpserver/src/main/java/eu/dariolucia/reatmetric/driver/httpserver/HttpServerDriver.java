@@ -39,6 +39,7 @@ import eu.dariolucia.reatmetric.core.api.exceptions.DriverException;
 import eu.dariolucia.reatmetric.core.configuration.ServiceCoreConfiguration;
 import eu.dariolucia.reatmetric.driver.httpserver.definition.HttpServerConfiguration;
 import eu.dariolucia.reatmetric.driver.httpserver.protocol.handlers.*;
+import eu.dariolucia.reatmetric.driver.httpserver.protocol.subscriptions.HttpPushChannel;
 
 import javax.net.ssl.*;
 import java.io.File;
@@ -50,6 +51,9 @@ import java.security.*;
 import java.security.cert.CertificateException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -78,6 +82,7 @@ public class HttpServerDriver implements IDriver {
     public static final String REGISTRATION_URL = "register";
     public static final String GET_URL = "get";
     public static final String DEREGISTRATION_URL = "deregister";
+    public static final String PUSH_URL = "push";
 
     // Other operations
     public static final String LIST_URL = "list";
@@ -100,6 +105,10 @@ public class HttpServerDriver implements IDriver {
     // Handler cleanup for subscriptions
     private volatile Timer cleanupTimer;
     private volatile TimerTask cleanupJob;
+    // Push channels (Server-Sent Events)
+    private final Set<HttpPushChannel<?>> pushChannels = ConcurrentHashMap.newKeySet();
+    private volatile ExecutorService pushExecutor;
+    private volatile TimerTask heartbeatJob;
     // Model information cache
     private final List<ParameterDescriptor> parameters = new LinkedList<>();
     private final List<EventDescriptor> events = new LinkedList<>();
@@ -128,6 +137,13 @@ public class HttpServerDriver implements IDriver {
             // Create handlers for requests
             createHandlers();
 
+            // Create the executor writing to the push channels: a slow client occupies only its own thread
+            this.pushExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "ReatMetric HTTP Driver - Push channel writer");
+                t.setDaemon(true);
+                return t;
+            });
+
             // Start the HTTP server
             startHttpServer();
 
@@ -159,6 +175,15 @@ public class HttpServerDriver implements IDriver {
             }
         };
         this.cleanupTimer.schedule(this.cleanupJob, AbstractHttpRequestHandler.SUBSCRIPTION_EXPIRATION_TIME, AbstractHttpRequestHandler.SUBSCRIPTION_EXPIRATION_TIME);
+        this.heartbeatJob = new TimerTask() {
+            @Override
+            public void run() {
+                for(HttpPushChannel<?> c : pushChannels) {
+                    c.heartbeat();
+                }
+            }
+        };
+        this.cleanupTimer.schedule(this.heartbeatJob, this.configuration.getPushHeartbeatPeriod(), this.configuration.getPushHeartbeatPeriod());
     }
 
     private void createHandlers() {
@@ -309,10 +334,23 @@ public class HttpServerDriver implements IDriver {
             this.cleanupJob.cancel();
             this.cleanupJob = null;
         }
+        if(this.heartbeatJob != null) {
+            this.heartbeatJob.cancel();
+            this.heartbeatJob = null;
+        }
         if(this.cleanupTimer != null) {
             this.cleanupTimer.cancel();
             this.cleanupTimer = null;
         }
+        // Close the push channels, otherwise the server waits for their completion
+        for(HttpPushChannel<?> c : new ArrayList<>(this.pushChannels)) {
+            c.close();
+        }
+        this.pushChannels.clear();
+        if(this.pushExecutor != null) {
+            this.pushExecutor.shutdownNow();
+            this.pushExecutor = null;
+        }
         // Stop the HTTP server
         this.server.stop(1);
         this.server = null;
@@ -336,6 +374,22 @@ public class HttpServerDriver implements IDriver {
         return server;
     }
 
+    public HttpServerConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public Executor getPushExecutor() {
+        return pushExecutor;
+    }
+
+    public void registerPushChannel(HttpPushChannel<?> channel) {
+        this.pushChannels.add(channel);
+    }
+
+    public void deregisterPushChannel(HttpPushChannel<?> channel) {
+        this.pushChannels.remove(channel);
+    }
+
     public IServiceCoreContext getContext() {
         return context;
     }
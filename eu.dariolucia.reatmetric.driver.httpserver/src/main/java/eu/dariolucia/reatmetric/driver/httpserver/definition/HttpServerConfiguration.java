@@ -70,6 +70,12 @@ public class HttpServerConfiguration {
     @XmlAttribute(name = "ssl-protocol")
     private String sslProtocol = "TLS";
 
+    @XmlAttribute(name = "push-buffer-size")
+    private int pushBufferSize = 1000;
+
+    @XmlAttribute(name = "push-heartbeat-period")
+    private int pushHeartbeatPeriod = 15000;
+
     public String getHost() {
         return host;
     }
@@ -149,4 +155,20 @@ public class HttpServerConfiguration {
     public void setSslProtocol(String sslProtocol) {
         this.sslProtocol = sslProtocol;
     }
+
+    public int getPushBufferSize() {
+        return pushBufferSize;
+    }
+
+    public void setPushBufferSize(int pushBufferSize) {
+        this.pushBufferSize = pushBufferSize;
+    }
+
+    public int getPushHeartbeatPeriod() {
+        return pushHeartbeatPeriod;
+    }
+
+    public void setPushHeartbeatPeriod(int pushHeartbeatPeriod) {
+        this.pushHeartbeatPeriod = pushHeartbeatPeriod;
+    }
 }
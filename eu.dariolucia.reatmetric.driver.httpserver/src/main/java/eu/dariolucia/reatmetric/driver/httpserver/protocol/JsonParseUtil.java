@@ -26,10 +26,11 @@ import eu.dariolucia.reatmetric.api.scheduler.*;
 import eu.dariolucia.reatmetric.api.scheduler.input.SchedulingRequest;
 import eu.dariolucia.reatmetric.api.transport.TransportStatus;
 import eu.dariolucia.reatmetric.api.value.ValueTypeEnum;
-import jakarta.xml.bind.DatatypeConverter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
@@ -406,623 +407,486 @@ public class JsonParseUtil {
         );
     }
 
-    public static byte[] formatParameter(ParameterData update) {
-        StringBuilder sb = new StringBuilder();
-        format(sb, update);
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
-    }
-
-    public static byte[] formatParameters(List<ParameterData> updates) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < updates.size(); ++i) {
-            sb.append("  ");
-            ParameterData pd = updates.get(i);
-            format(sb, pd);
-            if (i < updates.size() - 1) {
-                sb.append(",");
-            }
-            sb.append("\n");
+    public static void formatParameter(ParameterData update, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            format(w, update);
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatEvents(List<EventData> updates) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < updates.size(); ++i) {
-            sb.append("  ");
-            EventData pd = updates.get(i);
-            format(sb, pd);
-            if (i < updates.size() - 1) {
-                sb.append(",");
+    public static void formatParameters(List<ParameterData> updates, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (ParameterData pd : updates) {
+                format(w, pd);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatRawDatas(List<RawData> updates) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < updates.size(); ++i) {
-            sb.append("  ");
-            RawData pd = updates.get(i);
-            format(sb, pd);
-            if (i < updates.size() - 1) {
-                sb.append(",");
+    public static void formatEvents(List<EventData> updates, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (EventData ed : updates) {
+                format(w, ed);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatActivities(List<ActivityOccurrenceData> updates) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < updates.size(); ++i) {
-            sb.append("  ");
-            ActivityOccurrenceData pd = updates.get(i);
-            format(sb, pd);
-            if (i < updates.size() - 1) {
-                sb.append(",");
+    public static void formatRawDatas(List<RawData> updates, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (RawData rd : updates) {
+                format(w, rd);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatMessages(List<OperationalMessage> updates) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < updates.size(); ++i) {
-            sb.append("  ");
-            OperationalMessage pd = updates.get(i);
-            format(sb, pd);
-            if (i < updates.size() - 1) {
-                sb.append(",");
+    public static void formatActivities(List<ActivityOccurrenceData> updates, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (ActivityOccurrenceData aod : updates) {
+                format(w, aod);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatParameterDescriptors(List<ParameterDescriptor> descriptors) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < descriptors.size(); ++i) {
-            sb.append("  ");
-            ParameterDescriptor pd = descriptors.get(i);
-            format(sb, pd);
-            if (i < descriptors.size() - 1) {
-                sb.append(",");
+    public static void formatMessages(List<OperationalMessage> updates, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (OperationalMessage om : updates) {
+                format(w, om);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatEventDescriptors(List<EventDescriptor> descriptors) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < descriptors.size(); ++i) {
-            sb.append("  ");
-            EventDescriptor pd = descriptors.get(i);
-            format(sb, pd);
-            if (i < descriptors.size() - 1) {
-                sb.append(",");
+    public static void formatParameterDescriptors(List<ParameterDescriptor> descriptors, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (ParameterDescriptor pd : descriptors) {
+                format(w, pd);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static byte[] formatActivityDescriptors(List<ActivityDescriptor> descriptors) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < descriptors.size(); ++i) {
-            sb.append("  ");
-            ActivityDescriptor pd = descriptors.get(i);
-            format(sb, pd);
-            if (i < descriptors.size() - 1) {
-                sb.append(",");
+    public static void formatEventDescriptors(List<EventDescriptor> descriptors, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (EventDescriptor ed : descriptors) {
+                format(w, ed);
             }
-            sb.append("\n");
-        }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
-    }
-
-    private static void format(StringBuilder sb, OperationalMessage obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", obj.getInternalId().asLong()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(obj.getGenerationTime())));
-        sb.append(String.format("\"id\" : %s, ", valueToString(obj.getId())));
-        sb.append(String.format("\"message\" : \"%s\", ", escapeMessage(obj.getMessage())));
-        sb.append(String.format("\"source\" : %s, ", valueToString(obj.getSource())));
-        sb.append(String.format("\"severity\" : \"%s\"", obj.getSeverity().name()));
-        sb.append(" }");
-    }
-
-    private static String escapeMessage(String message) {
-        return message.replace("\\", "\\\\");
-    }
-
-    private static void format(StringBuilder sb, EventData obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", obj.getInternalId().asLong()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(obj.getGenerationTime())));
-        sb.append(String.format("\"externalId\" : %d, ", obj.getExternalId()));
-        sb.append(String.format("\"path\" : \"%s\", ", obj.getPath().asString()));
-        sb.append(String.format("\"qualifier\" : %s, ", valueToString(obj.getQualifier())));
-        sb.append(String.format("\"rcptime\" : %s, ", valueToString(obj.getReceptionTime())));
-        sb.append(String.format("\"type\" : %s, ", valueToString(obj.getType())));
-        sb.append(String.format("\"route\" : %s, ", valueToString(obj.getRoute())));
-        sb.append(String.format("\"source\" : %s, ", valueToString(obj.getSource())));
-        sb.append(String.format("\"severity\" : \"%s\"", obj.getSeverity().name()));
-        sb.append(" }");
-    }
-
-    private static void format(StringBuilder sb, RawData obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", obj.getInternalId().asLong()));
-        sb.append(String.format("\"name\" : \"%s\", ", obj.getName()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(obj.getGenerationTime())));
-        sb.append(String.format("\"rcptime\" : %s, ", valueToString(obj.getReceptionTime())));
-        sb.append(String.format("\"type\" : %s, ", valueToString(obj.getType())));
-        sb.append(String.format("\"route\" : %s, ", valueToString(obj.getRoute())));
-        sb.append(String.format("\"source\" : %s, ", valueToString(obj.getSource())));
-        sb.append(String.format("\"quality\" : \"%s\", ", obj.getQuality().name()));
-        if(obj.isContentsSet()) {
-            sb.append(String.format("\"data\" : \"%s\"", DatatypeConverter.printBase64Binary(obj.getContents())));
-        } else {
-            sb.append("\"data\" : null");
+            w.endArray();
         }
-
-        sb.append(" }");
     }
 
-    private static void format(StringBuilder sb, ActivityOccurrenceData obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", obj.getInternalId().asLong()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(obj.getGenerationTime())));
-        sb.append(String.format("\"externalId\" : %d, ", obj.getExternalId()));
-        sb.append(String.format("\"path\" : \"%s\", ", obj.getPath().asString()));
-        sb.append(String.format("\"name\" : %s, ", valueToString(obj.getName())));
-        sb.append(String.format("\"exectime\" : %s, ", valueToString(obj.getExecutionTime())));
-        sb.append(String.format("\"type\" : %s, ", valueToString(obj.getType())));
-        sb.append(String.format("\"route\" : %s, ", valueToString(obj.getRoute())));
-        sb.append(String.format("\"source\" : %s, ", valueToString(obj.getSource())));
-        sb.append(String.format("\"currentState\" : \"%s\", ", obj.getCurrentState().name()));
-        sb.append(String.format("\"result\" : %s, ", valueToString(obj.getResult())));
-        sb.append(String.format("\"arguments\" : %s, ", formatMap(obj.getArguments())));
-        sb.append(String.format("\"properties\" : %s, ", formatMap(obj.getProperties())));
-        sb.append(String.format("\"reports\" : %s ", formatActivityOccurrenceReports(obj.getProgressReports())));
-        sb.append(" }");
-    }
-
-    private static String formatActivityOccurrenceReports(List<ActivityOccurrenceReport> reports) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[ ");
-        int i = 0;
-        for(ActivityOccurrenceReport add : reports) {
-            format(sb, add);
-            if(i < reports.size() - 1) {
-                // Not the last, add comma
-                sb.append(", ");
+    public static void formatActivityDescriptors(List<ActivityDescriptor> descriptors, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (ActivityDescriptor ad : descriptors) {
+                format(w, ad);
             }
-            ++i;
-        }
-        sb.append(" ]");
-        return sb.toString();
-    }
-
-    private static void format(StringBuilder sb, ActivityOccurrenceReport obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", obj.getInternalId().asLong()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(obj.getGenerationTime())));
-        sb.append(String.format("\"name\" : %s, ", valueToString(obj.getName())));
-        sb.append(String.format("\"exectime\" : %s, ", valueToString(obj.getExecutionTime())));
-        sb.append(String.format("\"state\" : \"%s\", ", obj.getState().name()));
-        sb.append(String.format("\"transition\" : \"%s\", ", obj.getStateTransition().name()));
-        sb.append(String.format("\"status\" : \"%s\", ", obj.getStatus().name()));
-        sb.append(String.format("\"result\" : %s ", valueToString(obj.getResult())));
-        sb.append(" }");
-    }
-
-    private static String formatMap(Map<String, ? extends Object> map) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{ ");
-        int i = 0;
+            w.endArray();
+        }
+    }
+
+    private static void format(JsonWriter w, OperationalMessage obj) throws IOException {
+        w.beginObject();
+        w.field("internalId", obj.getInternalId().asLong());
+        w.fieldOf("gentime", obj.getGenerationTime());
+        w.fieldOf("id", obj.getId());
+        w.field("message", obj.getMessage());
+        w.fieldOf("source", obj.getSource());
+        w.field("severity", obj.getSeverity().name());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, EventData obj) throws IOException {
+        w.beginObject();
+        w.field("internalId", obj.getInternalId().asLong());
+        w.fieldOf("gentime", obj.getGenerationTime());
+        w.field("externalId", obj.getExternalId());
+        w.field("path", obj.getPath().asString());
+        w.fieldOf("qualifier", obj.getQualifier());
+        w.fieldOf("rcptime", obj.getReceptionTime());
+        w.fieldOf("type", obj.getType());
+        w.fieldOf("route", obj.getRoute());
+        w.fieldOf("source", obj.getSource());
+        w.field("severity", obj.getSeverity().name());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, RawData obj) throws IOException {
+        w.beginObject();
+        w.field("internalId", obj.getInternalId().asLong());
+        w.field("name", obj.getName());
+        w.fieldOf("gentime", obj.getGenerationTime());
+        w.fieldOf("rcptime", obj.getReceptionTime());
+        w.fieldOf("type", obj.getType());
+        w.fieldOf("route", obj.getRoute());
+        w.fieldOf("source", obj.getSource());
+        w.field("quality", obj.getQuality().name());
+        w.name("data").base64Value(obj.isContentsSet() ? obj.getContents() : null);
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ActivityOccurrenceData obj) throws IOException {
+        w.beginObject();
+        w.field("internalId", obj.getInternalId().asLong());
+        w.fieldOf("gentime", obj.getGenerationTime());
+        w.field("externalId", obj.getExternalId());
+        w.field("path", obj.getPath().asString());
+        w.fieldOf("name", obj.getName());
+        w.fieldOf("exectime", obj.getExecutionTime());
+        w.fieldOf("type", obj.getType());
+        w.fieldOf("route", obj.getRoute());
+        w.fieldOf("source", obj.getSource());
+        w.field("currentState", obj.getCurrentState().name());
+        w.fieldOf("result", obj.getResult());
+        w.name("arguments");
+        formatMap(w, obj.getArguments());
+        w.name("properties");
+        formatMap(w, obj.getProperties());
+        w.name("reports").beginArray();
+        for(ActivityOccurrenceReport report : obj.getProgressReports()) {
+            format(w, report);
+        }
+        w.endArray();
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ActivityOccurrenceReport obj) throws IOException {
+        w.beginObject();
+        w.field("internalId", obj.getInternalId().asLong());
+        w.fieldOf("gentime", obj.getGenerationTime());
+        w.fieldOf("name", obj.getName());
+        w.fieldOf("exectime", obj.getExecutionTime());
+        w.field("state", obj.getState().name());
+        w.field("transition", obj.getStateTransition().name());
+        w.field("status", obj.getStatus().name());
+        w.fieldOf("result", obj.getResult());
+        w.endObject();
+    }
+
+    private static void formatMap(JsonWriter w, Map<String, ? extends Object> map) throws IOException {
+        w.beginObject();
         for(Map.Entry<String, ? extends Object> add : map.entrySet()) {
-            sb.append(String.format("\"%s\" : %s", add.getKey(), valueToString(add.getValue())));
-            if(i < map.size() - 1) {
-                // Not the last, add comma
-                sb.append(", ");
-            }
-            ++i;
-        }
-        sb.append(" }");
-        return sb.toString();
-    }
-
-    public static void format(StringBuilder sb, ParameterData obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", obj.getInternalId().asLong()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(obj.getGenerationTime())));
-        sb.append(String.format("\"externalId\" : %d, ", obj.getExternalId()));
-        sb.append(String.format("\"path\" : \"%s\", ", obj.getPath().asString()));
-        sb.append(String.format("\"eng\" : %s, ", valueToString(obj.getEngValue())));
-        sb.append(String.format("\"raw\" : %s, ", valueToString(obj.getSourceValue())));
-        sb.append(String.format("\"rcptime\" : %s, ", valueToString(obj.getReceptionTime())));
-        sb.append(String.format("\"route\" : %s, ", valueToString(obj.getRoute())));
-        sb.append(String.format("\"validity\" : \"%s\", ", obj.getValidity().name()));
-        sb.append(String.format("\"alarm\" : \"%s\"", obj.getAlarmState().name()));
-        sb.append(" }");
-    }
-
-    public static byte[] format(String key, String value) {
-        return ("{ \"" + key + "\" : \"" + value + "\" }").getBytes(StandardCharsets.UTF_8);
-    }
-
-    private static String valueToString(Object obj) {
-        if (obj == null) {
-            return "null";
-        } else if (obj instanceof Number) {
-            return obj.toString();
-        } else if (obj instanceof Instant) {
-            return "\"" + obj + "\"";
-        } else {
-            return "\"" + obj + "\"";
-        }
-    }
-
-    private static void format(StringBuilder sb, EventDescriptor obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"type\" : \"%s\", ", obj.getType().name()));
-        sb.append(String.format("\"path\" : \"%s\", ", obj.getPath().asString()));
-        sb.append(String.format("\"externalId\" : %d, ", obj.getExternalId()));
-        sb.append(String.format("\"description\" : %s, ", valueToString(obj.getDescription())));
-        sb.append(String.format("\"severity\" : \"%s\", ", obj.getSeverity().name()));
-        sb.append(String.format("\"eventType\" : %s", valueToString(obj.getEventType())));
-        sb.append(" }");
-    }
-
-
-    private static void format(StringBuilder sb, ParameterDescriptor obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"type\" : \"%s\", ", obj.getType().name()));
-        sb.append(String.format("\"path\" : \"%s\", ", obj.getPath().asString()));
-        sb.append(String.format("\"externalId\" : %d, ", obj.getExternalId()));
-        sb.append(String.format("\"description\" : %s, ", valueToString(obj.getDescription())));
-        sb.append(String.format("\"rawDataType\" : \"%s\", ", obj.getRawDataType().name()));
-        sb.append(String.format("\"engDataType\" : \"%s\", ", obj.getEngineeringDataType().name()));
-        sb.append(String.format("\"unit\" : %s, ", valueToString(obj.getUnit())));
-        sb.append(String.format("\"synthetic\" : %s, ", obj.isSynthetic()));
-        sb.append(String.format("\"settable\" : %s, ", obj.isSettable()));
-        sb.append(String.format("\"user\" : %s", obj.isUserParameter()));
-        sb.append(" }");
-    }
-
-    private static void format(StringBuilder sb, ActivityDescriptor obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"type\" : \"%s\", ", obj.getType().name()));
-        sb.append(String.format("\"path\" : \"%s\", ", obj.getPath().asString()));
-        sb.append(String.format("\"externalId\" : %d, ", obj.getExternalId()));
-        sb.append(String.format("\"description\" : %s, ", valueToString(obj.getDescription())));
-        sb.append(String.format("\"activityType\" : \"%s\", ", obj.getActivityType()));
-        sb.append(String.format("\"defaultRoute\" : %s, ", valueToString(obj.getDefaultRoute())));
-        sb.append(String.format("\"arguments\" : %s, ", formatArguments(obj.getArgumentDescriptors())));
-        sb.append(String.format("\"properties\" : %s", formatProperties(obj.getProperties())));
-        sb.append(" }");
-    }
-
-    private static String formatProperties(List<Pair<String, String>> properties) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{ ");
-        int i = 0;
-        for(Pair<String, String> add : properties) {
-            sb.append(String.format("\"%s\" : %s", add.getFirst(), valueToString(add.getSecond())));
-            if(i < properties.size() - 1) {
-                // Not the last, add comma
-                sb.append(", ");
-            }
-            ++i;
-        }
-        sb.append(" }");
-        return sb.toString();
-    }
-
-    private static String formatArguments(List<AbstractActivityArgumentDescriptor> argumentDescriptors) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[ ");
-        int i = 0;
+            w.fieldOf(add.getKey(), add.getValue());
+        }
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ParameterData obj) throws IOException {
+        w.beginObject();
+        w.field("internalId", obj.getInternalId().asLong());
+        w.fieldOf("gentime", obj.getGenerationTime());
+        w.field("externalId", obj.getExternalId());
+        w.field("path", obj.getPath().asString());
+        w.fieldOf("eng", obj.getEngValue());
+        w.fieldOf("raw", obj.getSourceValue());
+        w.fieldOf("rcptime", obj.getReceptionTime());
+        w.fieldOf("route", obj.getRoute());
+        w.field("validity", obj.getValidity().name());
+        w.field("alarm", obj.getAlarmState().name());
+        w.endObject();
+    }
+
+    public static byte[] format(String key, String value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+        try (JsonWriter w = new JsonWriter(bos)) {
+            w.beginObject();
+            w.field(key, value);
+            w.endObject();
+        }
+        return bos.toByteArray();
+    }
+
+    private static void format(JsonWriter w, EventDescriptor obj) throws IOException {
+        w.beginObject();
+        w.field("type", obj.getType().name());
+        w.field("path", obj.getPath().asString());
+        w.field("externalId", obj.getExternalId());
+        w.fieldOf("description", obj.getDescription());
+        w.field("severity", obj.getSeverity().name());
+        w.fieldOf("eventType", obj.getEventType());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ParameterDescriptor obj) throws IOException {
+        w.beginObject();
+        w.field("type", obj.getType().name());
+        w.field("path", obj.getPath().asString());
+        w.field("externalId", obj.getExternalId());
+        w.fieldOf("description", obj.getDescription());
+        w.field("rawDataType", obj.getRawDataType().name());
+        w.field("engDataType", obj.getEngineeringDataType().name());
+        w.fieldOf("unit", obj.getUnit());
+        w.field("synthetic", obj.isSynthetic());
+        w.field("settable", obj.isSettable());
+        w.field("user", obj.isUserParameter());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ActivityDescriptor obj) throws IOException {
+        w.beginObject();
+        w.field("type", obj.getType().name());
+        w.field("path", obj.getPath().asString());
+        w.field("externalId", obj.getExternalId());
+        w.fieldOf("description", obj.getDescription());
+        w.fieldOf("activityType", obj.getActivityType());
+        w.fieldOf("defaultRoute", obj.getDefaultRoute());
+        w.name("arguments");
+        formatArguments(w, obj.getArgumentDescriptors());
+        w.name("properties").beginObject();
+        for(Pair<String, String> add : obj.getProperties()) {
+            w.fieldOf(add.getFirst(), add.getSecond());
+        }
+        w.endObject();
+        w.endObject();
+    }
+
+    private static void formatArguments(JsonWriter w, List<AbstractActivityArgumentDescriptor> argumentDescriptors) throws IOException {
+        w.beginArray();
         for(AbstractActivityArgumentDescriptor add : argumentDescriptors) {
             if(add instanceof ActivityPlainArgumentDescriptor) {
-                ActivityPlainArgumentDescriptor ap = (ActivityPlainArgumentDescriptor) add;
-                format(sb, ap);
+                format(w, (ActivityPlainArgumentDescriptor) add);
             } else if(add instanceof ActivityArrayArgumentDescriptor) {
-                ActivityArrayArgumentDescriptor ap = (ActivityArrayArgumentDescriptor) add;
-                format(sb, ap);
-            }
-            if(i < argumentDescriptors.size() - 1) {
-                // Not the last, add comma
-                sb.append(", ");
+                format(w, (ActivityArrayArgumentDescriptor) add);
             }
-            ++i;
-        }
-        sb.append(" ]");
-        return sb.toString();
-    }
-
-    private static void format(StringBuilder sb, ActivityArrayArgumentDescriptor ap) {
-        sb.append("{ ");
-        sb.append(String.format("\"name\" : \"%s\", ", ap.getName()));
-        sb.append(String.format("\"description\" : %s, ", valueToString(ap.getDescription())));
-        sb.append("\"type\" : \"array\", ");
-        sb.append(String.format("\"expansionArgument\" : %s, ", valueToString(ap.getExpansionArgument())));
-        sb.append(String.format("\"elements\" : %s, ", formatArguments(ap.getElements())));
-        sb.append(" }");
-    }
-
-    private static void format(StringBuilder sb, ActivityPlainArgumentDescriptor ap) {
-        sb.append("{ ");
-        sb.append(String.format("\"name\" : \"%s\", ", ap.getName()));
-        sb.append(String.format("\"description\" : %s, ", valueToString(ap.getDescription())));
-        sb.append("\"type\" : \"plain\", ");
-        sb.append(String.format("\"rawDataType\" : \"%s\", ", ap.getRawDataType().name()));
-        sb.append(String.format("\"engDataType\" : \"%s\", ", ap.getEngineeringDataType().name()));
-        sb.append(String.format("\"unit\" : %s, ", valueToString(ap.getUnit())));
-        sb.append(String.format("\"fixed\" : %s, ", ap.isFixed()));
-        sb.append(String.format("\"decalibrationPresent\" : %s", ap.isDecalibrationSet()));
-        sb.append(" }");
-    }
-
-    private static void format(StringBuilder sb, ContainerDescriptor obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"type\" : \"%s\", ", obj.getType().name()));
-        sb.append(String.format("\"path\" : \"%s\" ", obj.getPath().asString()));
-        sb.append(" }");
-    }
-
-    public static byte[] formatModelElementResponse(AbstractSystemEntityDescriptor descriptor, List<AbstractSystemEntityDescriptor> children) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\n");
-        sb.append("\"element\" : ");
-        if(descriptor != null) {
-            formatDescriptor(sb, descriptor);
-        } else {
-            sb.append("null");
         }
-        sb.append(",\n");
-        sb.append("\"children\" : [\n");
-        for(int i = 0; i < children.size(); ++i) {
-            formatDescriptor(sb, children.get(i));
-            if(i != children.size() - 1) {
-                sb.append(",");
+        w.endArray();
+    }
+
+    private static void format(JsonWriter w, ActivityArrayArgumentDescriptor ap) throws IOException {
+        w.beginObject();
+        w.field("name", ap.getName());
+        w.fieldOf("description", ap.getDescription());
+        w.field("type", "array");
+        w.fieldOf("expansionArgument", ap.getExpansionArgument());
+        w.name("elements");
+        formatArguments(w, ap.getElements());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ActivityPlainArgumentDescriptor ap) throws IOException {
+        w.beginObject();
+        w.field("name", ap.getName());
+        w.fieldOf("description", ap.getDescription());
+        w.field("type", "plain");
+        w.field("rawDataType", ap.getRawDataType().name());
+        w.field("engDataType", ap.getEngineeringDataType().name());
+        w.fieldOf("unit", ap.getUnit());
+        w.field("fixed", ap.isFixed());
+        w.field("decalibrationPresent", ap.isDecalibrationSet());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ContainerDescriptor obj) throws IOException {
+        w.beginObject();
+        w.field("type", obj.getType().name());
+        w.field("path", obj.getPath().asString());
+        w.endObject();
+    }
+
+    public static void formatModelElementResponse(AbstractSystemEntityDescriptor descriptor, List<AbstractSystemEntityDescriptor> children, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginObject();
+            w.name("element");
+            if(descriptor != null) {
+                formatDescriptor(w, descriptor);
+            } else {
+                w.value((String) null);
+            }
+            w.name("children").beginArray();
+            for(AbstractSystemEntityDescriptor child : children) {
+                formatDescriptor(w, child);
             }
-            sb.append("\n");
+            w.endArray();
+            w.endObject();
         }
-        sb.append("]\n");
-        sb.append("}");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    private static void formatDescriptor(StringBuilder sb, AbstractSystemEntityDescriptor descriptor) {
+    private static void formatDescriptor(JsonWriter w, AbstractSystemEntityDescriptor descriptor) throws IOException {
         if(descriptor instanceof ParameterDescriptor) {
-            format(sb, (ParameterDescriptor) descriptor);
+            format(w, (ParameterDescriptor) descriptor);
         } else if(descriptor instanceof EventDescriptor) {
-            format(sb, (EventDescriptor) descriptor);
+            format(w, (EventDescriptor) descriptor);
         } else if(descriptor instanceof ActivityDescriptor) {
-            format(sb, (ActivityDescriptor) descriptor);
+            format(w, (ActivityDescriptor) descriptor);
         } else if(descriptor instanceof ContainerDescriptor) {
-            format(sb, (ContainerDescriptor) descriptor);
+            format(w, (ContainerDescriptor) descriptor);
         } else {
             throw new IllegalArgumentException("Object " + descriptor + " not supported");
         }
     }
 
-    public static byte[] formatConnectorList(List<Pair<TransportStatus, String>> cntList) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < cntList.size(); ++i) {
-            sb.append("  ");
-            format(sb, cntList.get(i));
-            if (i < cntList.size() - 1) {
-                sb.append(",");
+    public static void formatConnectorList(List<Pair<TransportStatus, String>> cntList, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for (Pair<TransportStatus, String> cnt : cntList) {
+                format(w, cnt);
             }
-            sb.append("\n");
+            w.endArray();
         }
-        sb.append("]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
-    }
-
-    private static void format(StringBuilder sb, Pair<TransportStatus, String> obj) {
-        sb.append("{ ");
-        sb.append(String.format("\"name\" : \"%s\", ", obj.getFirst().getName()));
-        sb.append(String.format("\"description\" : \"%s\", ", obj.getSecond()));
-        sb.append(String.format("\"alarmState\" : \"%s\", ", obj.getFirst().getAlarmState().name()));
-        sb.append(String.format("\"status\" : \"%s\", ", obj.getFirst().getStatus().name()));
-        sb.append(String.format("\"rx\" : %d, ", obj.getFirst().getRxRate()));
-        sb.append(String.format("\"tx\" : %d, ", obj.getFirst().getTxRate()));
-        sb.append(String.format("\"autoreconnect\" : %s", obj.getFirst().isAutoReconnect()));
-        sb.append(" }");
     }
 
-    public static byte[] formatConnector(Pair<TransportStatus, String> theConnector) {
-        StringBuilder sb = new StringBuilder();
-        format(sb, theConnector);
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    private static void format(JsonWriter w, Pair<TransportStatus, String> obj) throws IOException {
+        w.beginObject();
+        w.field("name", obj.getFirst().getName());
+        w.field("description", obj.getSecond());
+        w.field("alarmState", obj.getFirst().getAlarmState().name());
+        w.field("status", obj.getFirst().getStatus().name());
+        w.field("rx", obj.getFirst().getRxRate());
+        w.field("tx", obj.getFirst().getTxRate());
+        w.field("autoreconnect", obj.getFirst().isAutoReconnect());
+        w.endObject();
     }
 
-    public static byte[] formatConnectorProperties(Map<String, Object[]> string2descTypeValue) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        boolean atLeastOne = false;
-        for(Map.Entry<String, Object[]> e : string2descTypeValue.entrySet()) {
-            sb.append("\n{ ");
-            sb.append(String.format("\"name\" : \"%s\", ", e.getKey()));
-            sb.append(String.format("\"description\" : \"%s\", ", e.getValue()[0]));
-            sb.append(String.format("\"type\" : \"%s\", ", ((ValueTypeEnum) (e.getValue()[1])).name()));
-            sb.append(String.format("\"value\" : %s ", valueToString(e.getValue()[2])));
-            sb.append(" },");
-            atLeastOne = true;
+    public static void formatConnector(Pair<TransportStatus, String> theConnector, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            format(w, theConnector);
         }
-        if(atLeastOne) {
-            sb.deleteCharAt(sb.length() - 1);
-        }
-        sb.append("\n]");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
-    }
-
-    public static byte[] formatScheduledActivityData(ScheduledActivityData item) {
-        StringBuilder sb = new StringBuilder();
-        format(sb, item);
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
-    }
-
-    private static void format(StringBuilder sb, ScheduledActivityData item) {
-        sb.append("{ ");
-        sb.append(String.format("\"internalId\" : %d, ", item.getInternalId().asLong()));
-        sb.append(String.format("\"gentime\" : %s, ", valueToString(item.getGenerationTime())));
-        sb.append(String.format("\"request\" : "));
-        format(sb, item.getRequest());
-        sb.append(", ");
-        sb.append(String.format("\"activity\" : %s, ", item.getActivityOccurrence() != null ? item.getActivityOccurrence().asLong() : "null" ));
-        sb.append(String.format("\"resources\" : %s, ", listArray(item.getResources())));
-        sb.append(String.format("\"source\" : \"%s\", ", item.getSource()));
-        sb.append(String.format("\"externalId\" : %s, ", valueToString(item.getExternalId())));
-        sb.append(String.format("\"trigger\" : "));
-        format(sb, item.getTrigger());
-        sb.append(", ");
-        sb.append(String.format("\"latest\" : %s, ", valueToString(item.getLatestInvocationTime())));
-        sb.append(String.format("\"startTime\" : %s, ", valueToString(item.getStartTime())));
-        sb.append(String.format("\"duration\" : %d, ", item.getDuration() == null ? -1 : item.getDuration().toMillis()));
-        sb.append(String.format("\"conflict\" : \"%s\", ", item.getConflictStrategy().name()));
-        sb.append(String.format("\"state\" : \"%s\"", item.getState().name()));
-        sb.append(" }");
-    }
-
-    private static void format(StringBuilder sb, ActivityRequest request) {
-        sb.append("{ ");
-        sb.append(String.format("\"id\" : %d, ", request.getId()));
-        sb.append(String.format("\"path\" : \"%s\", ", request.getPath().asString()));
-        sb.append(String.format("\"route\" : %s, ", valueToString(request.getRoute())));
-        sb.append(String.format("\"arguments\" : %s, ", formatActivityArguments(request.getArguments())));
-        sb.append(String.format("\"source\" : %s, ", valueToString(request.getSource())));
-        sb.append(String.format("\"properties\" : %s ", formatMap(request.getProperties())));
-        sb.append(" }");
     }
 
-    private static String formatActivityArguments(List<AbstractActivityArgument> arguments) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[ ");
-        int i = 0;
+    public static void formatConnectorProperties(Map<String, Object[]> string2descTypeValue, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginArray();
+            for(Map.Entry<String, Object[]> e : string2descTypeValue.entrySet()) {
+                w.beginObject();
+                w.field("name", e.getKey());
+                w.field("description", String.valueOf(e.getValue()[0]));
+                w.field("type", ((ValueTypeEnum) (e.getValue()[1])).name());
+                w.fieldOf("value", e.getValue()[2]);
+                w.endObject();
+            }
+            w.endArray();
+        }
+    }
+
+    public static void formatScheduledActivityData(ScheduledActivityData item, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            format(w, item);
+        }
+    }
+
+    private static void format(JsonWriter w, ScheduledActivityData item) throws IOException {
+        w.beginObject();
+        w.field("internalId", item.getInternalId().asLong());
+        w.fieldOf("gentime", item.getGenerationTime());
+        w.name("request");
+        format(w, item.getRequest());
+        w.fieldOf("activity", item.getActivityOccurrence() != null ? item.getActivityOccurrence().asLong() : null);
+        w.name("resources");
+        listArray(w, item.getResources());
+        w.field("source", item.getSource());
+        w.fieldOf("externalId", item.getExternalId());
+        w.name("trigger");
+        format(w, item.getTrigger());
+        w.fieldOf("latest", item.getLatestInvocationTime());
+        w.fieldOf("startTime", item.getStartTime());
+        w.field("duration", item.getDuration() == null ? -1 : item.getDuration().toMillis());
+        w.field("conflict", item.getConflictStrategy().name());
+        w.field("state", item.getState().name());
+        w.endObject();
+    }
+
+    private static void format(JsonWriter w, ActivityRequest request) throws IOException {
+        w.beginObject();
+        w.field("id", request.getId());
+        w.field("path", request.getPath().asString());
+        w.fieldOf("route", request.getRoute());
+        w.name("arguments");
+        formatActivityArguments(w, request.getArguments());
+        w.fieldOf("source", request.getSource());
+        w.name("properties");
+        formatMap(w, request.getProperties());
+        w.endObject();
+    }
+
+    private static void formatActivityArguments(JsonWriter w, List<AbstractActivityArgument> arguments) throws IOException {
+        w.beginArray();
         for(AbstractActivityArgument add : arguments) {
             if(add instanceof PlainActivityArgument) {
-                PlainActivityArgument ap = (PlainActivityArgument) add;
-                format(sb, ap);
+                format(w, (PlainActivityArgument) add);
             } else if(add instanceof ArrayActivityArgument) {
-                ArrayActivityArgument ap = (ArrayActivityArgument) add;
-                format(sb, ap);
-            }
-            if(i < arguments.size() - 1) {
-                // Not the last, add comma
-                sb.append(", ");
+                format(w, (ArrayActivityArgument) add);
             }
-            ++i;
         }
-        sb.append(" ]");
-        return sb.toString();
+        w.endArray();
     }
 
-    private static void format(StringBuilder sb, ArrayActivityArgument ap) {
-        sb.append("{ ");
-        sb.append(String.format("\"name\" : \"%s\", ", ap.getName()));
-        sb.append("\"type\" : \"array\", ");
-        sb.append("\"records\" : ");
-        sb.append("[ ");
-        for(int i = 0; i < ap.getRecords().size(); ++i) {
-            ArrayActivityArgumentRecord record = ap.getRecords().get(i);
-            sb.append("{ ");
-            sb.append(String.format("\"elements\" : %s ", formatActivityArguments(record.getElements())));
-            sb.append(" }");
-            if(i < ap.getRecords().size() - 1) {
-                // Not the last, add comma
-                sb.append(", ");
-            } else {
-                sb.append(" ");
-            }
+    private static void format(JsonWriter w, ArrayActivityArgument ap) throws IOException {
+        w.beginObject();
+        w.field("name", ap.getName());
+        w.field("type", "array");
+        w.name("records").beginArray();
+        for(ArrayActivityArgumentRecord record : ap.getRecords()) {
+            w.beginObject();
+            w.name("elements");
+            formatActivityArguments(w, record.getElements());
+            w.endObject();
         }
-        sb.append("]");
-
-        sb.append(" }");
+        w.endArray();
+        w.endObject();
     }
 
-    private static void format(StringBuilder sb, PlainActivityArgument ap) {
-        sb.append("{ ");
-        sb.append(String.format("\"name\" : \"%s\", ", ap.getName()));
-        sb.append("\"type\" : \"plain\", ");
-        sb.append(String.format("\"value\" : %s, ", valueToString(ap.isEngineering() ? ap.getEngValue() : ap.getRawValue())));
-        sb.append(String.format("\"engineering\" : %s ", ap.isEngineering()));
-        sb.append(" }");
+    private static void format(JsonWriter w, PlainActivityArgument ap) throws IOException {
+        w.beginObject();
+        w.field("name", ap.getName());
+        w.field("type", "plain");
+        w.fieldOf("value", ap.isEngineering() ? ap.getEngValue() : ap.getRawValue());
+        w.field("engineering", ap.isEngineering());
+        w.endObject();
     }
 
-    private static void format(StringBuilder sb, AbstractSchedulingTrigger trigger) {
+    private static void format(JsonWriter w, AbstractSchedulingTrigger trigger) throws IOException {
+        w.beginObject();
         if(trigger instanceof NowSchedulingTrigger) {
-            sb.append("{ \"type\" : \"now\" }");
+            w.field("type", "now");
         } else if(trigger instanceof AbsoluteTimeSchedulingTrigger) {
-            sb.append("{ \"type\" : \"absolute\", ");
-            sb.append(String.format("\"startTime\" : %s }", valueToString(((AbsoluteTimeSchedulingTrigger) trigger).getReleaseTime())));
+            w.field("type", "absolute");
+            w.fieldOf("startTime", ((AbsoluteTimeSchedulingTrigger) trigger).getReleaseTime());
         } else if(trigger instanceof RelativeTimeSchedulingTrigger) {
-            sb.append("{ \"type\" : \"relative\", ");
-            sb.append(String.format("\"predecessors\" : %s, ", listArray(((RelativeTimeSchedulingTrigger) trigger).getPredecessors())));
-            sb.append(String.format("\"delay\" : %s }", valueToString(((RelativeTimeSchedulingTrigger) trigger).getDelayTime())));
+            w.field("type", "relative");
+            w.name("predecessors");
+            listArray(w, ((RelativeTimeSchedulingTrigger) trigger).getPredecessors());
+            w.fieldOf("delay", ((RelativeTimeSchedulingTrigger) trigger).getDelayTime());
         } else if(trigger instanceof EventBasedSchedulingTrigger) {
-            sb.append("{ \"type\" : \"event\", ");
-            sb.append(String.format("\"path\" : %s, ", valueToString(((EventBasedSchedulingTrigger) trigger).getEvent().asString())));
-            sb.append(String.format("\"protection\" : %s, ", valueToString(((EventBasedSchedulingTrigger) trigger).getProtectionTime())));
-            sb.append(String.format("\"enabled\" : %s }", ((EventBasedSchedulingTrigger) trigger).isEnabled() ? "true" : "false"));
+            w.field("type", "event");
+            w.field("path", ((EventBasedSchedulingTrigger) trigger).getEvent().asString());
+            w.fieldOf("protection", ((EventBasedSchedulingTrigger) trigger).getProtectionTime());
+            w.field("enabled", ((EventBasedSchedulingTrigger) trigger).isEnabled());
         } else {
             throw new RuntimeException("Software bug, trigger type not supported: " + trigger);
         }
+        w.endObject();
     }
 
-    private static String listArray(Collection<String> resources) {
+    private static void listArray(JsonWriter w, Collection<String> resources) throws IOException {
         if(resources == null) {
-            return "null";
+            w.value((String) null);
+            return;
         }
-        StringBuilder sb = new StringBuilder();
-        sb.append("[ ");
+        w.beginArray();
         for(String s : resources) {
-            sb.append("\"" + s + "\", ");
-        }
-        if(resources.size() > 0) {
-            sb.delete(sb.length() - 2, sb.length()).append(" ");
+            w.value(s);
         }
-        sb.append("]");
-        return sb.toString();
+        w.endArray();
     }
 
-    public static byte[] formatSchedulerState(boolean schedulerStatus, List<ScheduledActivityData> items) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{ ");
-        sb.append(String.format("\"enabled\" : %s, ", schedulerStatus));
-        sb.append("\"items\" : [ ");
-        for(int i = 0; i < items.size(); ++i) {
-            format(sb, items.get(i));
-            if(i != items.size() - 1) {
-                sb.append(", ");
+    public static void formatSchedulerState(boolean schedulerStatus, List<ScheduledActivityData> items, OutputStream os) throws IOException {
+        try (JsonWriter w = new JsonWriter(os)) {
+            w.beginObject();
+            w.field("enabled", schedulerStatus);
+            w.name("items").beginArray();
+            for(ScheduledActivityData item : items) {
+                format(w, item);
             }
+            w.endArray();
+            w.endObject();
         }
-        sb.append(" ] }");
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
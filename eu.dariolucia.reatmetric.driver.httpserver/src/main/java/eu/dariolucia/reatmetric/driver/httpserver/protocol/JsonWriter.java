@@ -0,0 +1,344 @@
+/*
+ * Copyright (c)  2022 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.driver.httpserver.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON writer, encoding the JSON text in UTF-8 directly to the provided output stream.
+ *
+ * The text is encoded into a buffer, which is written to the stream when full: the buffer is cached per thread and reused
+ * by the next writer created by the same thread, so that the memory needed to produce a response does not depend on its
+ * size. The produced text never contains line terminators, as these are always escaped within strings.
+ *
+ * Closing the writer writes the remaining buffered text, but it does not close (nor flush) the output stream.
+ */
+public final class JsonWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> BUFFER_CACHE = new ThreadLocal<>();
+
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream output;
+    private byte[] buffer;
+    private int position = 0;
+
+    // For each nesting level, true if at least one element was already written
+    private boolean[] elementWritten = new boolean[16];
+    private int depth = 0;
+    private boolean nameWritten = false;
+
+    public JsonWriter(OutputStream output) {
+        this.output = output;
+        this.buffer = BUFFER_CACHE.get();
+        if(this.buffer == null) {
+            this.buffer = new byte[BUFFER_SIZE];
+        } else {
+            // Nested writers on the same thread must not share the buffer
+            BUFFER_CACHE.remove();
+        }
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        writeAscii("{ ");
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        --depth;
+        writeAscii(" }");
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        writeAscii("[ ");
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        --depth;
+        writeAscii(" ]");
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeAscii(" : ");
+        nameWritten = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if(value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write the provided data as Base64 string (RFC 4648, with padding), without intermediate copies.
+     *
+     * @param data the data to encode, can be null
+     * @return this writer
+     * @throws IOException in case of problems writing to the stream
+     */
+    public JsonWriter base64Value(byte[] data) throws IOException {
+        beforeValue();
+        if(data == null) {
+            writeAscii("null");
+            return this;
+        }
+        ensure(1);
+        buffer[position++] = '"';
+        int i = 0;
+        for(; i + 2 < data.length; i += 3) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            ensure(4);
+            buffer[position++] = BASE64[(bits >> 18) & 0x3F];
+            buffer[position++] = BASE64[(bits >> 12) & 0x3F];
+            buffer[position++] = BASE64[(bits >> 6) & 0x3F];
+            buffer[position++] = BASE64[bits & 0x3F];
+        }
+        int remaining = data.length - i;
+        if(remaining > 0) {
+            int bits = (data[i] & 0xFF) << 16 | (remaining == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+            ensure(4);
+            buffer[position++] = BASE64[(bits >> 18) & 0x3F];
+            buffer[position++] = BASE64[(bits >> 12) & 0x3F];
+            buffer[position++] = remaining == 2 ? BASE64[(bits >> 6) & 0x3F] : (byte) '=';
+            buffer[position++] = '=';
+        }
+        ensure(1);
+        buffer[position++] = '"';
+        return this;
+    }
+
+    /**
+     * Write a generic value: null is written as JSON null, numbers as JSON numbers (NaN and infinite values as JSON null),
+     * any other object as JSON string, using its string representation.
+     *
+     * @param value the value to write
+     * @return this writer
+     * @throws IOException in case of problems writing to the stream
+     */
+    public JsonWriter valueOf(Object value) throws IOException {
+        if(value == null) {
+            return value((String) null);
+        } else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        } else if((value instanceof Double && !Double.isFinite((Double) value)) || (value instanceof Float && !Float.isFinite((Float) value))) {
+            // Not representable in JSON
+            return value((String) null);
+        } else if(value instanceof Number) {
+            beforeValue();
+            writeAscii(value.toString());
+            return this;
+        } else {
+            return value(value.toString());
+        }
+    }
+
+    public JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter fieldOf(String name, Object value) throws IOException {
+        return name(name).valueOf(value);
+    }
+
+    /**
+     * Write the buffered text to the output stream and return the buffer to the thread cache. The output stream is not
+     * closed.
+     *
+     * @throws IOException in case of problems writing to the stream
+     */
+    @Override
+    public void close() throws IOException {
+        if(buffer == null) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } finally {
+            BUFFER_CACHE.set(buffer);
+            buffer = null;
+        }
+    }
+
+    private void push() {
+        ++depth;
+        if(depth == elementWritten.length) {
+            elementWritten = Arrays.copyOf(elementWritten, depth * 2);
+        }
+        elementWritten[depth] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if(nameWritten) {
+            nameWritten = false;
+            return;
+        }
+        if(depth > 0) {
+            if(elementWritten[depth]) {
+                writeAscii(", ");
+            } else {
+                elementWritten[depth] = true;
+            }
+        }
+    }
+
+    private void writeAscii(String s) throws IOException {
+        int length = s.length();
+        ensure(length);
+        for(int i = 0; i < length; ++i) {
+            buffer[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if(value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if(value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while(value > 0);
+        // Digits were written in reverse order
+        for(int i = start, j = position - 1; i < j; ++i, --j) {
+            byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        ensure(1);
+        buffer[position++] = '"';
+        int length = s.length();
+        for(int i = 0; i < length; ++i) {
+            char c = s.charAt(i);
+            // Worst case: escaped control character (6 bytes)
+            ensure(6);
+            if(c < 0x80) {
+                if(c == '"' || c == '\\') {
+                    buffer[position++] = '\\';
+                    buffer[position++] = (byte) c;
+                } else if(c < 0x20) {
+                    writeEscapedControl(c);
+                } else {
+                    buffer[position++] = (byte) c;
+                }
+            } else if(c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (cp >> 18));
+                buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else if(Character.isSurrogate(c)) {
+                // Unpaired surrogate: not encodable
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ensure(1);
+        buffer[position++] = '"';
+    }
+
+    private void writeEscapedControl(char c) {
+        buffer[position++] = '\\';
+        switch (c) {
+            case '\n': buffer[position++] = 'n'; break;
+            case '\r': buffer[position++] = 'r'; break;
+            case '\t': buffer[position++] = 't'; break;
+            case '\b': buffer[position++] = 'b'; break;
+            case '\f': buffer[position++] = 'f'; break;
+            default:
+                buffer[position++] = 'u';
+                buffer[position++] = '0';
+                buffer[position++] = '0';
+                buffer[position++] = HEX[c >> 4];
+                buffer[position++] = HEX[c & 0xF];
+                break;
+        }
+    }
+
+    private void ensure(int length) throws IOException {
+        if(position + length > buffer.length) {
+            flushBuffer();
+            if(length > buffer.length) {
+                buffer = new byte[length];
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if(position > 0) {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package eu.dariolucia.reatmetric.driver.httpserver.protocol.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import eu.dariolucia.reatmetric.api.common.AbstractDataItem;
 import eu.dariolucia.reatmetric.api.common.AbstractSystemEntityDescriptor;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
 import eu.dariolucia.reatmetric.api.events.EventData;
@@ -17,11 +18,13 @@ import eu.dariolucia.reatmetric.driver.httpserver.protocol.JsonParseUtil;
 import eu.dariolucia.reatmetric.driver.httpserver.protocol.subscriptions.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.rmi.RemoteException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,9 +35,11 @@ public abstract class AbstractHttpRequestHandler implements HttpHandler {
     private static final Logger LOG = Logger.getLogger(AbstractHttpRequestHandler.class.getName());
 
     public static final String TEXT_PLAIN_CHARSET_UTF_8 = "application/json";
+    public static final String TEXT_EVENT_STREAM = "text/event-stream";
     public static final String SUBSCRIPTION_KEY_PROPERTY = "key";
 
     public static final int HTTP_CODE_OK = 200;
+    public static final int HTTP_CODE_NOT_MODIFIED = 304;
     public static final int HTTP_CODE_NOT_FOUND = 404;
     public static final int HTTP_CODE_BAD_REQUEST = 400;
     public static final int HTTP_CODE_NOT_ACCEPTABLE = 406;
@@ -95,12 +100,136 @@ public abstract class AbstractHttpRequestHandler implements HttpHandler {
         exchange.getResponseBody().close();
     }
 
+    /**
+     * Send a positive response, whose body is written by the provided writer directly to the response stream, using
+     * chunked encoding.
+     *
+     * @param exchange the exchange of the request
+     * @param body the writer of the response body
+     * @throws IOException in case of problems sending the response
+     */
+    protected final void sendPositiveResponse(HttpExchange exchange, IResponseBodyWriter body) throws IOException {
+        addCORSHeaderProperties(exchange, false);
+        exchange.getResponseHeaders().put("Content-Type", List.of(TEXT_PLAIN_CHARSET_UTF_8));
+        // Length 0: chunked encoding
+        exchange.sendResponseHeaders(HTTP_CODE_OK, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            body.write(os);
+        }
+    }
+
+    /**
+     * Send a cached response, supporting conditional requests (If-None-Match header) and gzip compression (Accept-Encoding
+     * header). If the client copy is up to date, the body is not sent.
+     *
+     * @param exchange the exchange of the request
+     * @param response the cached response
+     * @throws IOException in case of problems sending the response
+     */
+    protected final void sendCachedResponse(HttpExchange exchange, CachedResponse response) throws IOException {
+        addCORSHeaderProperties(exchange, false);
+        boolean gzip = response.getGzipBody() != null && isGzipAccepted(exchange.getRequestHeaders().get("Accept-Encoding"));
+        // Each representation has its own entity tag
+        exchange.getResponseHeaders().put("ETag", List.of(gzip ? response.getGzipEntityTag() : response.getEntityTag()));
+        // The client must revalidate its copy at each use
+        exchange.getResponseHeaders().put("Cache-Control", List.of("no-cache"));
+        exchange.getResponseHeaders().put("Vary", List.of("Accept-Encoding"));
+        if(response.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(HTTP_CODE_NOT_MODIFIED, -1);
+            // No body stream is available for a 304 response: close the exchange
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().put("Content-Type", List.of(TEXT_PLAIN_CHARSET_UTF_8));
+        byte[] body = response.getBody();
+        if(gzip) {
+            exchange.getResponseHeaders().put("Content-Encoding", List.of("gzip"));
+            body = response.getGzipBody();
+        }
+        exchange.sendResponseHeaders(HTTP_CODE_OK, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * Check whether the gzip content coding is accepted, according to the provided Accept-Encoding header values.
+     *
+     * @param headers the values of the Accept-Encoding request header, can be null
+     * @return true if a gzip-compressed body can be sent
+     */
+    static boolean isGzipAccepted(List<String> headers) {
+        if(headers == null) {
+            return false;
+        }
+        // An explicit gzip coding takes precedence over the * wildcard
+        Boolean gzipAccepted = null;
+        boolean anyAccepted = false;
+        for(String header : headers) {
+            for(String coding : header.split(",")) {
+                // Each coding can be followed by a quality value, e.g. gzip;q=0.5: q=0 means not acceptable
+                String[] parts = coding.split(";");
+                String name = parts[0].trim();
+                boolean gzip = name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip");
+                if(gzip || name.equals("*")) {
+                    boolean accepted = true;
+                    for(int i = 1; i < parts.length; ++i) {
+                        String param = parts[i].trim();
+                        if(param.startsWith("q=")) {
+                            try {
+                                accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+                            } catch (NumberFormatException e) {
+                                accepted = false;
+                            }
+                        }
+                    }
+                    if(gzip) {
+                        gzipAccepted = (gzipAccepted != null && gzipAccepted) || accepted;
+                    } else {
+                        anyAccepted = accepted;
+                    }
+                }
+            }
+        }
+        return gzipAccepted != null ? gzipAccepted : anyAccepted;
+    }
+
     protected final void sendNegativeResponse(HttpExchange exchange, int errorCode) throws IOException {
         addCORSHeaderProperties(exchange, false);
         exchange.sendResponseHeaders(errorCode, -1);
         exchange.getResponseBody().close();
     }
 
+    /**
+     * Open a Server-Sent Events response and attach it to the provided subscription. The response is left open when
+     * this method returns: the updates are written by the driver push executor, until the client disconnects or the
+     * subscription is removed.
+     *
+     * @param exchange the exchange of the request
+     * @param subscription the subscription
+     * @param eventName the name of the events carrying the updates
+     * @param formatter the function writing a list of updates as JSON array
+     * @param conflationKey the function returning the conflation key of an update, null if updates cannot be conflated
+     * @param <K> the type of updates
+     * @throws IOException in case of problems sending the response headers
+     */
+    protected final <K extends AbstractDataItem> void openPushChannel(HttpExchange exchange, AbstractHttpSubscription<?, K> subscription, String eventName, HttpPushChannel.IFormatter<K> formatter, Function<K, Object> conflationKey) throws IOException {
+        addCORSHeaderProperties(exchange, false);
+        exchange.getResponseHeaders().put("Content-Type", List.of(TEXT_EVENT_STREAM));
+        exchange.getResponseHeaders().put("Cache-Control", List.of("no-cache"));
+        // Length 0: chunked encoding
+        exchange.sendResponseHeaders(HTTP_CODE_OK, 0);
+        HttpPushChannel<K> channel = new HttpPushChannel<>(exchange, eventName, formatter, conflationKey,
+                driver.getConfiguration().getPushBufferSize(), driver.getPushExecutor(), c -> {
+                    subscription.detach(c);
+                    driver.deregisterPushChannel(c);
+                });
+        driver.registerPushChannel(channel);
+        subscription.attach(channel);
+        // Force the transmission of the headers
+        channel.heartbeat();
+    }
+
     protected final void addCORSHeaderProperties(HttpExchange exchange, boolean isOptions) {
         exchange.getResponseHeaders().put("Access-Control-Allow-Origin", List.of("*"));
         exchange.getResponseHeaders().put("Access-Control-Allow-Credentials", List.of("true"));
@@ -110,7 +239,7 @@ public abstract class AbstractHttpRequestHandler implements HttpHandler {
             exchange.getResponseHeaders().put("Allow",
                     List.of(HTTP_METHOD_POST, HTTP_METHOD_GET, HTTP_METHOD_DELETE, HTTP_METHOD_OPTIONS));
         }
-        exchange.getResponseHeaders().put("Access-Control-Allow-Headers", List.of("Origin", "Content-Type"));
+        exchange.getResponseHeaders().put("Access-Control-Allow-Headers", List.of("Origin", "Content-Type", "If-None-Match"));
     }
 
     protected final HttpServerDriver getDriver() {
@@ -119,13 +248,21 @@ public abstract class AbstractHttpRequestHandler implements HttpHandler {
 
     public abstract void dispose();
 
+    /**
+     * Writer of a response body.
+     */
+    @FunctionalInterface
+    protected interface IResponseBodyWriter {
+        void write(OutputStream os) throws IOException;
+    }
+
     protected final void cleanSubscriptions(Map<String, ? extends AbstractHttpSubscription> map) {
         // Iterate on all subscriptions, and check if the last access time is more than SUBSCRIPTION_EXPIRATION_TIME older
         Set<String> keys = new TreeSet<>(map.keySet());
         Instant limit = Instant.now().minus(SUBSCRIPTION_EXPIRATION_TIME, ChronoUnit.MILLIS);
         for(String k : keys) {
             AbstractHttpSubscription<?,?> s = map.get(k);
-            if(s.getLastAccess().isBefore(limit)) {
+            if(!s.isPushing() && s.getLastAccess().isBefore(limit)) {
                 if(LOG.isLoggable(Level.FINE)) {
                     LOG.log(Level.FINE, String.format("%s UUID %s to be cleaned up, timeout expired", s.getClass().getSimpleName(), k));
                 }
@@ -34,6 +34,8 @@ public class ActivityRequestHandler extends AbstractHttpRequestHandler {
 
     private final Map<String, HttpActivitySubscription> id2activitySubscription = new ConcurrentHashMap<>();
 
+    private volatile CachedResponse activityListResponse;
+
     public ActivityRequestHandler(HttpServerDriver driver) {
         super(driver);
     }
@@ -84,10 +86,8 @@ public class ActivityRequestHandler extends AbstractHttpRequestHandler {
             Instant starttime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(START_TIME_ARG)));
             Instant endtime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(END_TIME_ARG)));
             List<ActivityOccurrenceData> data = getDriver().getContext().getServiceFactory().getActivityOccurrenceDataMonitorService().retrieve(starttime, endtime, filter);
-            // Format the updates
-            byte[] body = JsonParseUtil.formatActivities(data);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatActivities(data, os));
             return HTTP_CODE_OK;
         } catch (ReatmetricException | RemoteException e) {
             LOG.log(Level.SEVERE, "Error while processing request handleActivityRetrieveRequest(): " + e.getMessage(), e);
@@ -114,12 +114,12 @@ public class ActivityRequestHandler extends AbstractHttpRequestHandler {
     }
 
     private int handleActivityListGetRequest(HttpExchange exchange) throws IOException {
-        // Fetch the descriptors
-        List<ActivityDescriptor> descriptors = getDriver().getActivityList();
-        // Format the updates
-        byte[] body = JsonParseUtil.formatActivityDescriptors(descriptors);
-        // Send the response
-        sendPositiveResponse(exchange, body);
+        // The descriptors do not change while the driver is running: serialise them once
+        if(this.activityListResponse == null) {
+            List<ActivityDescriptor> descriptors = getDriver().getActivityList();
+            this.activityListResponse = CachedResponse.of(os -> JsonParseUtil.formatActivityDescriptors(descriptors, os));
+        }
+        sendCachedResponse(exchange, this.activityListResponse);
         return HTTP_CODE_OK;
     }
 
@@ -151,10 +151,8 @@ public class ActivityRequestHandler extends AbstractHttpRequestHandler {
         if(s != null) {
             // Fetch the updates since the last time
             List<ActivityOccurrenceData> updates = s.getUpdates();
-            // Format the updates
-            byte[] body = JsonParseUtil.formatActivities(updates);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatActivities(updates, os));
             return HTTP_CODE_OK;
         } else {
             return HTTP_CODE_NOT_FOUND;
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c)  2022 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.driver.httpserver.protocol.handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialised response body, kept in plain and gzip-compressed form, and identified by an entity tag computed from
+ * its content. The two forms are different representations of the same content, hence the gzip-compressed body has its
+ * own entity tag, obtained by adding a suffix to the one of the plain body.
+ *
+ * Since the entity tag depends only on the content, it does not change across restarts of the driver unless the
+ * definitions (and hence the serialised body) change, so that clients can keep using their cached copy.
+ */
+public final class CachedResponse {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static final String GZIP_ENTITY_TAG_SUFFIX = "-gzip";
+
+    private final byte[] body;
+    private final byte[] gzipBody;
+    private final String entityTag;
+    private final String gzipEntityTag;
+
+    private CachedResponse(byte[] body, byte[] gzipBody, String entityTag) {
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.entityTag = entityTag;
+        // Insert the suffix before the closing quote
+        this.gzipEntityTag = entityTag.substring(0, entityTag.length() - 1) + GZIP_ENTITY_TAG_SUFFIX + "\"";
+    }
+
+    /**
+     * Serialise the body produced by the provided writer and compress it.
+     *
+     * @param writer the writer of the response body
+     * @return the cached response
+     * @throws IOException in case of problems serialising the body
+     */
+    static CachedResponse of(AbstractHttpRequestHandler.IResponseBodyWriter writer) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writer.write(bos);
+        byte[] body = bos.toByteArray();
+        bos = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+            gos.write(body);
+        }
+        byte[] gzipBody = bos.toByteArray();
+        // Compression is useless on small bodies
+        return new CachedResponse(body, gzipBody.length < body.length ? gzipBody : null, computeEntityTag(body));
+    }
+
+    private static String computeEntityTag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder(34);
+            sb.append('"');
+            // 128 bits are more than enough to identify a version of the body
+            for (int i = 0; i < 16; ++i) {
+                sb.append(HEX[(digest[i] >> 4) & 0x0F]).append(HEX[digest[i] & 0x0F]);
+            }
+            sb.append('"');
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the gzip-compressed body, or null if compression does not reduce the body size
+     */
+    public byte[] getGzipBody() {
+        return gzipBody;
+    }
+
+    /**
+     * @return the entity tag of the plain body, including the quotes
+     */
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * @return the entity tag of the gzip-compressed body, including the quotes
+     */
+    public String getGzipEntityTag() {
+        return gzipEntityTag;
+    }
+
+    /**
+     * Check whether the value of an If-None-Match request header matches the entity tag of either body of this
+     * response: both carry the same content, so a copy of either of them is up to date. Weak comparison is used, as
+     * mandated for If-None-Match by RFC 7232.
+     *
+     * @param ifNoneMatch the header value, can be null
+     * @return true if the client copy is up to date
+     */
+    public boolean matches(String ifNoneMatch) {
+        if(ifNoneMatch == null) {
+            return false;
+        }
+        for(String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if(tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if(tag.equals("*") || tag.equals(entityTag) || tag.equals(gzipEntityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
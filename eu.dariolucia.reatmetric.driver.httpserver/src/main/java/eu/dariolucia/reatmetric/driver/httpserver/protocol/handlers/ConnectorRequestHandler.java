@@ -132,10 +132,8 @@ public class ConnectorRequestHandler extends AbstractHttpRequestHandler {
                         break;
                     }
                 }
-                // Format the response
-                byte[] body = JsonParseUtil.formatConnectorProperties(string2descTypeValue);
-                // Send the response
-                sendPositiveResponse(exchange, body);
+                // Format and send the response
+                sendPositiveResponse(exchange, os -> JsonParseUtil.formatConnectorProperties(string2descTypeValue, os));
                 return HTTP_CODE_OK;
             } catch (RemoteException | ReatmetricException e) {
                 if (LOG.isLoggable(Level.FINE)) {
@@ -153,10 +151,12 @@ public class ConnectorRequestHandler extends AbstractHttpRequestHandler {
                         break;
                     }
                 }
-                // Format the response
-                byte[] body = JsonParseUtil.formatConnector(theConnector);
-                // Send the response
-                sendPositiveResponse(exchange, body);
+                if(theConnector == null) {
+                    return HTTP_CODE_NOT_FOUND;
+                }
+                // Format and send the response
+                final Pair<TransportStatus, String> response = theConnector;
+                sendPositiveResponse(exchange, os -> JsonParseUtil.formatConnector(response, os));
                 return HTTP_CODE_OK;
             } catch (RemoteException | ReatmetricException e) {
                 if (LOG.isLoggable(Level.FINE)) {
@@ -182,10 +182,8 @@ public class ConnectorRequestHandler extends AbstractHttpRequestHandler {
             for(ITransportConnector c : connectors) {
                 cntList.add(Pair.of(c.getLastTransportStatus(), c.getDescription()));
             }
-            // Format the response
-            byte[] body = JsonParseUtil.formatConnectorList(cntList);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the response
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatConnectorList(cntList, os));
             return HTTP_CODE_OK;
         } catch (RemoteException | ReatmetricException e) {
             if(LOG.isLoggable(Level.FINE)) {
@@ -31,6 +31,8 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
 
     private final Map<String, HttpEventSubscription> id2eventSubscription = new ConcurrentHashMap<>();
 
+    private volatile CachedResponse eventListResponse;
+
     public EventRequestHandler(HttpServerDriver driver) {
         super(driver);
     }
@@ -58,6 +60,8 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
                 handled = handleEventRegistrationRequest(exchange);
             } else if(path.contains(HttpServerDriver.GET_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_GET)) {
                 handled = handleEventGetRequest(exchange);
+            } else if(path.contains(HttpServerDriver.PUSH_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_GET)) {
+                handled = handleEventPushRequest(exchange);
             } else if(path.contains(HttpServerDriver.DEREGISTRATION_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_DELETE)) {
                 handled = handleEventDeregistrationRequest(exchange);
             } else if(path.startsWith(RETRIEVE_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_POST)) {
@@ -78,10 +82,8 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
             Instant starttime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(START_TIME_ARG)));
             Instant endtime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(END_TIME_ARG)));
             List<EventData> data = getDriver().getContext().getServiceFactory().getEventDataMonitorService().retrieve(starttime, endtime, filter);
-            // Format the updates
-            byte[] body = JsonParseUtil.formatEvents(data);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatEvents(data, os));
             return HTTP_CODE_OK;
         } catch (ReatmetricException | RemoteException e) {
             LOG.log(Level.SEVERE, "Error while processing request handleEventRetrieveRequest(): " + e.getMessage(), e);
@@ -90,12 +92,12 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
     }
 
     private int handleEventListGetRequest(HttpExchange exchange) throws IOException {
-        // Fetch the descriptors
-        List<EventDescriptor> descriptors = getDriver().getEventList();
-        // Format the updates
-        byte[] body = JsonParseUtil.formatEventDescriptors(descriptors);
-        // Send the response
-        sendPositiveResponse(exchange, body);
+        // The descriptors do not change while the driver is running: serialise them once
+        if(this.eventListResponse == null) {
+            List<EventDescriptor> descriptors = getDriver().getEventList();
+            this.eventListResponse = CachedResponse.of(os -> JsonParseUtil.formatEventDescriptors(descriptors, os));
+        }
+        sendCachedResponse(exchange, this.eventListResponse);
         return HTTP_CODE_OK;
     }
 
@@ -110,6 +112,7 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
             // Deregister the new key to the server
             getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + EVENTS_PATH + HTTP_PATH_SEPARATOR + GET_URL + HTTP_PATH_SEPARATOR + uuid);
             getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + EVENTS_PATH + HTTP_PATH_SEPARATOR + DEREGISTRATION_URL + HTTP_PATH_SEPARATOR + uuid);
+            getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + EVENTS_PATH + HTTP_PATH_SEPARATOR + PUSH_URL + HTTP_PATH_SEPARATOR + uuid);
 
             // Send the response
             sendPositiveResponse(exchange, new byte[0]);
@@ -127,10 +130,22 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
         if(s != null) {
             // Fetch the updates since the last time
             List<EventData> updates = s.getUpdates();
-            // Format the updates
-            byte[] body = JsonParseUtil.formatEvents(updates);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatEvents(updates, os));
+            return HTTP_CODE_OK;
+        } else {
+            return HTTP_CODE_NOT_FOUND;
+        }
+    }
+
+    private int handleEventPushRequest(HttpExchange exchange) throws IOException {
+        // Retrieve the UUID from the request path and look for the subscription object
+        String path = exchange.getRequestURI().getPath();
+        String uuid = path.substring(path.lastIndexOf('/') + 1);
+        HttpEventSubscription s = this.id2eventSubscription.get(uuid);
+        if(s != null) {
+            // Push the events as they arrive: events are never conflated
+            openPushChannel(exchange, s, EVENTS_PATH, JsonParseUtil::formatEvents, null);
             return HTTP_CODE_OK;
         } else {
             return HTTP_CODE_NOT_FOUND;
@@ -150,6 +165,7 @@ public class EventRequestHandler extends AbstractHttpRequestHandler {
             // Register the new key to the server
             getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + EVENTS_PATH + HTTP_PATH_SEPARATOR + GET_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
             getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + EVENTS_PATH + HTTP_PATH_SEPARATOR + DEREGISTRATION_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
+            getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + EVENTS_PATH + HTTP_PATH_SEPARATOR + PUSH_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
 
             // Return a response with the UUID linked to the manager
             byte[] body = JsonParseUtil.format(SUBSCRIPTION_KEY_PROPERTY, key.toString());
@@ -76,10 +76,8 @@ public class MessageRequestHandler extends AbstractHttpRequestHandler {
             Instant starttime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(START_TIME_ARG)));
             Instant endtime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(END_TIME_ARG)));
             List<OperationalMessage> data = getDriver().getContext().getServiceFactory().getOperationalMessageMonitorService().retrieve(starttime, endtime, filter);
-            // Format the updates
-            byte[] body = JsonParseUtil.formatMessages(data);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatMessages(data, os));
             return HTTP_CODE_OK;
         } catch (ReatmetricException | RemoteException e) {
             LOG.log(Level.SEVERE, "Error while processing request handleMessageRetrieveRequest(): " + e.getMessage(), e);
@@ -114,10 +112,8 @@ public class MessageRequestHandler extends AbstractHttpRequestHandler {
         if(s != null) {
             // Fetch the updates since the last time
             List<OperationalMessage> updates = s.getUpdates();
-            // Format the updates
-            byte[] body = JsonParseUtil.formatMessages(updates);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatMessages(updates, os));
             return HTTP_CODE_OK;
         }
         return HTTP_CODE_NOT_FOUND;
@@ -95,10 +95,8 @@ public class ModelRequestHandler extends AbstractHttpRequestHandler {
         try {
             AbstractSystemEntityDescriptor descriptor = getDescriptorOf(path);
             List<AbstractSystemEntityDescriptor> children = getChildrenDescriptorOf(path);
-            // Format the response
-            byte[] body = JsonParseUtil.formatModelElementResponse(descriptor, children);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the response
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatModelElementResponse(descriptor, children, os));
             return HTTP_CODE_OK;
         } catch (RemoteException | ReatmetricException e) {
             if(LOG.isLoggable(Level.FINE)) {
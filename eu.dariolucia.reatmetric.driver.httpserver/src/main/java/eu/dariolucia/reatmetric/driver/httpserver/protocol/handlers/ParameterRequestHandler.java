@@ -36,6 +36,8 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
     private final Map<String, HttpParameterStateSubscription> id2parameterStateSubscription = new ConcurrentHashMap<>();
     private final Map<String, HttpParameterStreamSubscription> id2parameterStreamSubscription = new ConcurrentHashMap<>();
 
+    private volatile CachedResponse parameterListResponse;
+
     public ParameterRequestHandler(HttpServerDriver driver) {
         super(driver);
     }
@@ -66,6 +68,8 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
                     handled = handleParameterStateRegistrationRequest(exchange);
                 } else if(path.contains(HttpServerDriver.GET_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_GET)) {
                     handled = handleParameterStateGetRequest(exchange);
+                } else if(path.contains(HttpServerDriver.PUSH_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_GET)) {
+                    handled = handleParameterStatePushRequest(exchange);
                 } else if(path.contains(HttpServerDriver.DEREGISTRATION_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_DELETE)) {
                     handled = handleParameterStateDeregistrationRequest(exchange);
                 }
@@ -76,6 +80,8 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
                     handled = handleParameterStreamRegistrationRequest(exchange);
                 } else if(path.contains(HttpServerDriver.GET_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_GET)) {
                     handled = handleParameterStreamGetRequest(exchange);
+                } else if(path.contains(HttpServerDriver.PUSH_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_GET)) {
+                    handled = handleParameterStreamPushRequest(exchange);
                 } else if(path.contains(HttpServerDriver.DEREGISTRATION_URL) && exchange.getRequestMethod().equals(HTTP_METHOD_DELETE)) {
                     handled = handleParameterStreamDeregistrationRequest(exchange);
                 }
@@ -114,10 +120,8 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
             // Filter out data that is not ParameterData and get the first one
             Optional<ParameterData> pd = data.stream().filter(ParameterData.class::isInstance).map(ParameterData.class::cast).findFirst();
             if(pd.isPresent()) {
-                // Format the updates
-                byte[] body = JsonParseUtil.formatParameter(pd.get());
-                // Send the response
-                sendPositiveResponse(exchange, body);
+                // Format and send the updates
+                sendPositiveResponse(exchange, os -> JsonParseUtil.formatParameter(pd.get(), os));
                 return HTTP_CODE_OK;
             } else {
                 return HTTP_CODE_NOT_FOUND;
@@ -138,10 +142,8 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
             Instant starttime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(START_TIME_ARG)));
             Instant endtime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(END_TIME_ARG)));
             List<ParameterData> data = getDriver().getContext().getServiceFactory().getParameterDataMonitorService().retrieve(starttime, endtime, filter);
-            // Format the updates
-            byte[] body = JsonParseUtil.formatParameters(data);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatParameters(data, os));
             return HTTP_CODE_OK;
         } catch (ReatmetricException | RemoteException e) {
             LOG.log(Level.SEVERE, "Error while processing request handleParameterRetrieveRequest(): " + e.getMessage(), e);
@@ -150,12 +152,12 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
     }
 
     private int handleParameterListGetRequest(HttpExchange exchange) throws IOException {
-        // Fetch the descriptors
-        List<ParameterDescriptor> descriptors = getDriver().getParameterList();
-        // Format the updates
-        byte[] body = JsonParseUtil.formatParameterDescriptors(descriptors);
-        // Send the response
-        sendPositiveResponse(exchange, body);
+        // The descriptors do not change while the driver is running: serialise them once
+        if(this.parameterListResponse == null) {
+            List<ParameterDescriptor> descriptors = getDriver().getParameterList();
+            this.parameterListResponse = CachedResponse.of(os -> JsonParseUtil.formatParameterDescriptors(descriptors, os));
+        }
+        sendCachedResponse(exchange, this.parameterListResponse);
         return HTTP_CODE_OK;
     }
 
@@ -170,6 +172,7 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
             // Deregister the new key to the server
             getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_CURRENT_STATE_PATH + HTTP_PATH_SEPARATOR + GET_URL + HTTP_PATH_SEPARATOR + uuid);
             getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_CURRENT_STATE_PATH + HTTP_PATH_SEPARATOR + DEREGISTRATION_URL + HTTP_PATH_SEPARATOR + uuid);
+            getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_CURRENT_STATE_PATH + HTTP_PATH_SEPARATOR + PUSH_URL + HTTP_PATH_SEPARATOR + uuid);
             // Send the response
             sendPositiveResponse(exchange, new byte[0]);
             return HTTP_CODE_OK;
@@ -186,10 +189,22 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
         if(s != null) {
             // Fetch the updates since the last time
             List<ParameterData> updates = s.getUpdates();
-            // Format the updates
-            byte[] body = JsonParseUtil.formatParameters(updates);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatParameters(updates, os));
+            return HTTP_CODE_OK;
+        } else {
+            return HTTP_CODE_NOT_FOUND;
+        }
+    }
+
+    private int handleParameterStatePushRequest(HttpExchange exchange) throws IOException {
+        // Retrieve the UUID from the request path and look for the subscription object
+        String path = exchange.getRequestURI().getPath();
+        String uuid = path.substring(path.lastIndexOf('/') + 1);
+        HttpParameterStateSubscription s = this.id2parameterStateSubscription.get(uuid);
+        if(s != null) {
+            // Push the updates as they arrive
+            openPushChannel(exchange, s, PARAMETERS_PATH, JsonParseUtil::formatParameters, ParameterData::getExternalId);
             return HTTP_CODE_OK;
         } else {
             return HTTP_CODE_NOT_FOUND;
@@ -209,6 +224,7 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
             // Register the new key to the server
             getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_CURRENT_STATE_PATH + HTTP_PATH_SEPARATOR + GET_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
             getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_CURRENT_STATE_PATH + HTTP_PATH_SEPARATOR + DEREGISTRATION_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
+            getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_CURRENT_STATE_PATH + HTTP_PATH_SEPARATOR + PUSH_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
             // Return a response with the UUID linked to the manager
             byte[] body = JsonParseUtil.format(SUBSCRIPTION_KEY_PROPERTY, key.toString());
             sendPositiveResponse(exchange, body);
@@ -230,6 +246,7 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
             // Deregister the new key to the server
             getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_STREAM_PATH + HTTP_PATH_SEPARATOR + GET_URL + HTTP_PATH_SEPARATOR + uuid);
             getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_STREAM_PATH + HTTP_PATH_SEPARATOR + DEREGISTRATION_URL + HTTP_PATH_SEPARATOR + uuid);
+            getDriver().getServer().removeContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_STREAM_PATH + HTTP_PATH_SEPARATOR + PUSH_URL + HTTP_PATH_SEPARATOR + uuid);
             // Send the response
             sendPositiveResponse(exchange, new byte[0]);
             return HTTP_CODE_OK;
@@ -246,10 +263,22 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
         if(s != null) {
             // Fetch the updates since the last time
             List<ParameterData> updates = s.getUpdates();
-            // Format the updates
-            byte[] body = JsonParseUtil.formatParameters(updates);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatParameters(updates, os));
+            return HTTP_CODE_OK;
+        } else {
+            return HTTP_CODE_NOT_FOUND;
+        }
+    }
+
+    private int handleParameterStreamPushRequest(HttpExchange exchange) throws IOException {
+        // Retrieve the UUID from the request path and look for the subscription object
+        String path = exchange.getRequestURI().getPath();
+        String uuid = path.substring(path.lastIndexOf('/') + 1);
+        HttpParameterStreamSubscription s = this.id2parameterStreamSubscription.get(uuid);
+        if(s != null) {
+            // Push the updates as they arrive: stream clients expect every sample, hence no conflation
+            openPushChannel(exchange, s, PARAMETERS_PATH, JsonParseUtil::formatParameters, null);
             return HTTP_CODE_OK;
         } else {
             return HTTP_CODE_NOT_FOUND;
@@ -269,6 +298,7 @@ public class ParameterRequestHandler extends AbstractHttpRequestHandler {
             // Register the new key to the server
             getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_STREAM_PATH + HTTP_PATH_SEPARATOR + GET_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
             getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_STREAM_PATH + HTTP_PATH_SEPARATOR + DEREGISTRATION_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
+            getDriver().getServer().createContext(HTTP_PATH_SEPARATOR + getDriver().getSystemName() + HTTP_PATH_SEPARATOR + PARAMETERS_PATH + HTTP_PATH_SEPARATOR + PARAMETER_STREAM_PATH + HTTP_PATH_SEPARATOR + PUSH_URL + HTTP_PATH_SEPARATOR + key.toString(), this);
             // Return a response with the UUID linked to the manager
             byte[] body = JsonParseUtil.format(SUBSCRIPTION_KEY_PROPERTY, key.toString());
             sendPositiveResponse(exchange, body);
@@ -71,10 +71,8 @@ public class RawDataRequestHandler extends AbstractHttpRequestHandler {
             Instant starttime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(START_TIME_ARG)));
             Instant endtime = Instant.ofEpochMilli(Long.parseLong(requestParams.get(END_TIME_ARG)));
             List<RawData> data = getDriver().getContext().getServiceFactory().getRawDataMonitorService().retrieve(starttime, endtime, filter);
-            // Format the updates
-            byte[] body = JsonParseUtil.formatRawDatas(data);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatRawDatas(data, os));
             return HTTP_CODE_OK;
         } catch (ReatmetricException | RemoteException e) {
             LOG.log(Level.SEVERE, "Error while processing request handleRawDataRetrieveRequest(): " + e.getMessage(), e);
@@ -110,10 +108,8 @@ public class RawDataRequestHandler extends AbstractHttpRequestHandler {
         if(s != null) {
             // Fetch the updates since the last time
             List<RawData> updates = s.getUpdates();
-            // Format the updates
-            byte[] body = JsonParseUtil.formatRawDatas(updates);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the updates
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatRawDatas(updates, os));
             return HTTP_CODE_OK;
         } else {
             return HTTP_CODE_NOT_FOUND;
@@ -192,10 +192,8 @@ public class SchedulerRequestHandler extends AbstractHttpRequestHandler {
             List<ScheduledActivityData> items = getDriver().getContext().getScheduler().getCurrentScheduledActivities();
             Optional<ScheduledActivityData> item = items.stream().filter(o -> o.getInternalId().equals(id)).findFirst();
             if(item.isPresent()) {
-                // Format the response
-                byte[] body = JsonParseUtil.formatScheduledActivityData(item.get());
-                // Send the response
-                sendPositiveResponse(exchange, body);
+                // Format and send the response
+                sendPositiveResponse(exchange, os -> JsonParseUtil.formatScheduledActivityData(item.get(), os));
                 return HTTP_CODE_OK;
             } else {
                 return HTTP_CODE_NOT_FOUND;
@@ -212,10 +210,8 @@ public class SchedulerRequestHandler extends AbstractHttpRequestHandler {
         try {
             boolean schedulerStatus = getDriver().getContext().getScheduler().isEnabled();
             List<ScheduledActivityData> items = getDriver().getContext().getScheduler().getCurrentScheduledActivities();
-            // Format the response
-            byte[] body = JsonParseUtil.formatSchedulerState(schedulerStatus, items);
-            // Send the response
-            sendPositiveResponse(exchange, body);
+            // Format and send the response
+            sendPositiveResponse(exchange, os -> JsonParseUtil.formatSchedulerState(schedulerStatus, items, os));
             return HTTP_CODE_OK;
         } catch (RemoteException | ReatmetricException e) {
             if(LOG.isLoggable(Level.FINE)) {
@@ -26,6 +26,7 @@ import java.rmi.RemoteException;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +42,8 @@ public abstract class AbstractHttpSubscription<T extends AbstractDataItemFilter,
 
     private volatile Instant lastAccess;
 
+    private final AtomicReference<HttpPushChannel<K>> channel = new AtomicReference<>();
+
     public AbstractHttpSubscription(T filter, HttpServerDriver driver) {
         this.filter = filter;
         this.driver = driver;
@@ -52,6 +55,10 @@ public abstract class AbstractHttpSubscription<T extends AbstractDataItemFilter,
         if(!this.initialised) {
             throw new IllegalStateException("Not initialised"); // This is a bug
         }
+        HttpPushChannel<K> c = this.channel.get();
+        if(c != null) {
+            c.close();
+        }
         try {
             doDeregister();
         } catch (RemoteException | ReatmetricException e) {
@@ -64,6 +71,15 @@ public abstract class AbstractHttpSubscription<T extends AbstractDataItemFilter,
 
     public abstract List<K> getUpdates();
 
+    /**
+     * Return the object guarding the updates queued by this subscription. The attachment of a push channel, the delivery
+     * of the updates to the attached channel and their queueing are performed while holding this lock, so that no update
+     * is queued after the queue has been drained into a newly attached channel.
+     *
+     * @return the lock of the queued updates
+     */
+    protected abstract Object getDataLock();
+
     public boolean initialise() {
         if(this.initialised) {
             throw new IllegalStateException("Already initialised"); // This is a bug
@@ -81,6 +97,64 @@ public abstract class AbstractHttpSubscription<T extends AbstractDataItemFilter,
 
     protected abstract void doRegister() throws RemoteException, ReatmetricException;
 
+    /**
+     * Deliver the updates of this subscription to the provided push channel, replacing any previously attached channel.
+     * Updates queued so far are immediately pushed.
+     *
+     * @param channel the channel
+     */
+    public void attach(HttpPushChannel<K> channel) {
+        HttpPushChannel<K> previous;
+        synchronized (getDataLock()) {
+            previous = this.channel.getAndSet(channel);
+            List<K> pending = getUpdates();
+            if(!pending.isEmpty()) {
+                channel.offer(pending);
+            }
+        }
+        // Closed outside the lock: the close handler of the channel detaches it
+        if(previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stop the delivery of the updates to the provided push channel, if attached. Updates are queued again until the
+     * next GET request or the next attached channel.
+     *
+     * @param channel the channel
+     */
+    public void detach(HttpPushChannel<K> channel) {
+        // Not performed under the data lock, as the channel can be closed while holding its own lock: an update arriving
+        // concurrently finds the channel closed and it is queued
+        if(this.channel.compareAndSet(channel, null)) {
+            // The subscription expires if no client shows up
+            access();
+        }
+    }
+
+    /**
+     * A subscription with an attached push channel does not expire.
+     *
+     * @return true if a push channel is attached
+     */
+    public final boolean isPushing() {
+        return channel.get() != null;
+    }
+
+    /**
+     * Deliver the provided updates to the attached push channel, if any. This method must be called while holding the
+     * lock returned by {@link #getDataLock()}, and the updates must be queued under the same lock if this method returns
+     * false.
+     *
+     * @param items the updates
+     * @return true if the updates have been delivered to a push channel, false if they must be queued
+     */
+    protected final boolean push(List<K> items) {
+        HttpPushChannel<K> c = this.channel.get();
+        return c != null && c.offer(items);
+    }
+
     public final UUID getKey() {
         return key;
     }
@@ -60,6 +60,11 @@ public class HttpMessageSubscription extends AbstractHttpSubscription<Operationa
         return toReturn;
     }
 
+    @Override
+    protected Object getDataLock() {
+        return this.data;
+    }
+
     @Override
     protected void doRegister() throws ReatmetricException, RemoteException {
         register(this, getFilter());
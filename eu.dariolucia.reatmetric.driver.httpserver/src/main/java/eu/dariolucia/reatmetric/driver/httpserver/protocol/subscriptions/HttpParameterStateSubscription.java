@@ -56,6 +56,11 @@ public class HttpParameterStateSubscription extends AbstractHttpSubscription<Par
         return toReturn;
     }
 
+    @Override
+    protected Object getDataLock() {
+        return this.data;
+    }
+
     @Override
     protected void doRegister() throws ReatmetricException, RemoteException {
         register(this, getFilter());
@@ -69,6 +74,9 @@ public class HttpParameterStateSubscription extends AbstractHttpSubscription<Par
             return;
         }
         synchronized (this.data) {
+            if(push(dataItems)) {
+                return;
+            }
             // Override/add the data
             dataItems.forEach(o -> this.data.put(o.getPath().toString(), o));
         }
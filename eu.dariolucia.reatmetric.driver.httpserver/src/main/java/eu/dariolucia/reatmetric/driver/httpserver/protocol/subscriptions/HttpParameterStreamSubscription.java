@@ -60,6 +60,11 @@ public class HttpParameterStreamSubscription extends AbstractHttpSubscription<Pa
         return toReturn;
     }
 
+    @Override
+    protected Object getDataLock() {
+        return this.data;
+    }
+
     @Override
     protected void doRegister() throws ReatmetricException, RemoteException {
         register(this, getFilter());
@@ -73,6 +78,9 @@ public class HttpParameterStreamSubscription extends AbstractHttpSubscription<Pa
             return;
         }
         synchronized (this.data) {
+            if(push(dataItems)) {
+                return;
+            }
             // Add the data
             this.data.addAll(dataItems);
             // Remove data if exceeds
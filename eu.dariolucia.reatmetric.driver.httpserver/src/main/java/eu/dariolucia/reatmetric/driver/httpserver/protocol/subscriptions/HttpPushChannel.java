@@ -0,0 +1,241 @@
+/*
+ * Copyright (c)  2022 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.driver.httpserver.protocol.subscriptions;
+
+import com.sun.net.httpserver.HttpExchange;
+import eu.dariolucia.reatmetric.api.common.AbstractDataItem;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server-Sent Events channel pushing the updates of a subscription over an open (chunked) HTTP response.
+ *
+ * Updates are queued in a bounded buffer and written by the provided executor, one write task per channel at a time, so
+ * that a slow client never blocks the delivery of the updates. When the buffer exceeds its capacity, updates are first
+ * conflated (if a conflation key is defined, only the latest update for each key is kept) and then, if still needed, the
+ * oldest updates are discarded: the number of conflated and discarded updates is reported to the client with an
+ * "overflow" event.
+ */
+public class HttpPushChannel<K extends AbstractDataItem> {
+
+    private static final Logger LOG = Logger.getLogger(HttpPushChannel.class.getName());
+
+    public static final String OVERFLOW_EVENT = "overflow";
+
+    private static final byte[] HEARTBEAT = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_PREFIX = "event: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_PREFIX = "data: ".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpExchange exchange;
+    private final OutputStream output;
+    private final String eventName;
+    private final IFormatter<K> formatter;
+    private final Function<K, Object> conflationKey;
+    private final int capacity;
+    private final Executor executor;
+    private final Consumer<HttpPushChannel<K>> closeHandler;
+
+    // Guarded by this
+    private final Deque<K> buffer = new ArrayDeque<>();
+    private long dropped = 0;
+    private boolean heartbeatDue = false;
+    private boolean writeScheduled = false;
+    private boolean closed = false;
+
+    /**
+     * Create the channel. The response headers must have been already sent with chunked encoding.
+     *
+     * @param exchange the exchange of the open response
+     * @param eventName the name of the events carrying the updates
+     * @param formatter the function writing a list of updates as JSON array, without line terminators
+     * @param conflationKey the function returning the conflation key of an update, null if updates cannot be conflated
+     * @param capacity the maximum number of updates kept in the buffer
+     * @param executor the executor performing the writes
+     * @param closeHandler the function invoked once, when the channel is closed
+     */
+    public HttpPushChannel(HttpExchange exchange, String eventName, IFormatter<K> formatter, Function<K, Object> conflationKey, int capacity, Executor executor, Consumer<HttpPushChannel<K>> closeHandler) {
+        this.exchange = exchange;
+        this.output = new BufferedOutputStream(exchange.getResponseBody(), 8192);
+        this.eventName = eventName;
+        this.formatter = formatter;
+        this.conflationKey = conflationKey;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.closeHandler = closeHandler;
+    }
+
+    /**
+     * Queue the provided updates for delivery.
+     *
+     * @param items the updates
+     * @return true if the updates have been queued, false if the channel is closed
+     */
+    public synchronized boolean offer(List<K> items) {
+        if(closed) {
+            return false;
+        }
+        buffer.addAll(items);
+        if(buffer.size() > capacity) {
+            reduce();
+        }
+        scheduleWrite();
+        return true;
+    }
+
+    /**
+     * Request the transmission of a keep-alive comment, if no other update is pending. This allows the detection of
+     * disconnected clients and keeps intermediate proxies from closing the connection.
+     */
+    public synchronized void heartbeat() {
+        if(closed) {
+            return;
+        }
+        heartbeatDue = true;
+        scheduleWrite();
+    }
+
+    public void close() {
+        synchronized (this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+        }
+        exchange.close();
+        closeHandler.accept(this);
+        LOG.log(Level.FINE, "HTTP push channel to " + exchange.getRemoteAddress() + " closed");
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void reduce() {
+        int initialSize = buffer.size();
+        if(conflationKey != null) {
+            // Keep the latest update for each key, in order of last update
+            Map<Object, K> latest = new LinkedHashMap<>();
+            for(K item : buffer) {
+                Object key = conflationKey.apply(item);
+                latest.remove(key);
+                latest.put(key, item);
+            }
+            buffer.clear();
+            buffer.addAll(latest.values());
+            // Superseded updates are lost for the client as well
+            dropped += initialSize - buffer.size();
+        }
+        while(buffer.size() > capacity) {
+            buffer.pollFirst();
+            ++dropped;
+        }
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, String.format("HTTP push channel to %s: buffer reduced from %d to %d updates", exchange.getRemoteAddress(), initialSize, buffer.size()));
+        }
+    }
+
+    private void scheduleWrite() {
+        if(writeScheduled) {
+            return;
+        }
+        writeScheduled = true;
+        try {
+            executor.execute(this::write);
+        } catch (RejectedExecutionException e) {
+            // Driver disposed
+            writeScheduled = false;
+            close();
+        }
+    }
+
+    private void write() {
+        while(true) {
+            List<K> items;
+            long lost;
+            boolean keepAlive;
+            synchronized (this) {
+                if(closed || (buffer.isEmpty() && dropped == 0 && !heartbeatDue)) {
+                    writeScheduled = false;
+                    return;
+                }
+                items = new ArrayList<>(buffer);
+                buffer.clear();
+                lost = dropped;
+                dropped = 0;
+                keepAlive = heartbeatDue;
+                heartbeatDue = false;
+            }
+            try {
+                if(lost > 0) {
+                    beginEvent(OVERFLOW_EVENT);
+                    output.write(("{ \"dropped\" : " + lost + " }").getBytes(StandardCharsets.UTF_8));
+                    endEvent();
+                }
+                if(!items.isEmpty()) {
+                    beginEvent(eventName);
+                    formatter.format(items, output);
+                    endEvent();
+                } else if(keepAlive && lost == 0) {
+                    output.write(HEARTBEAT);
+                }
+                output.flush();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.FINE, "HTTP push channel to " + exchange.getRemoteAddress() + " failed: " + e.getMessage(), e);
+                synchronized (this) {
+                    writeScheduled = false;
+                }
+                close();
+                return;
+            }
+        }
+    }
+
+    private void beginEvent(String name) throws IOException {
+        output.write(EVENT_PREFIX);
+        output.write(name.getBytes(StandardCharsets.UTF_8));
+        output.write('\n');
+        // The data is written on a single line
+        output.write(DATA_PREFIX);
+    }
+
+    private void endEvent() throws IOException {
+        output.write('\n');
+        output.write('\n');
+    }
+
+    /**
+     * Function writing a list of updates to an output stream.
+     *
+     * @param <K> the type of updates
+     */
+    @FunctionalInterface
+    public interface IFormatter<K> {
+        void format(List<K> items, OutputStream os) throws IOException;
+    }
+}
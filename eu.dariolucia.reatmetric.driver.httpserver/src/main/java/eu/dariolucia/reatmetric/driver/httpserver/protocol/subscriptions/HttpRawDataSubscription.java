@@ -63,6 +63,11 @@ public class HttpRawDataSubscription extends AbstractHttpSubscription<RawDataFil
         return toReturn;
     }
 
+    @Override
+    protected Object getDataLock() {
+        return this.data;
+    }
+
     @Override
     protected void doRegister() throws ReatmetricException, RemoteException {
         register(this, getFilter());
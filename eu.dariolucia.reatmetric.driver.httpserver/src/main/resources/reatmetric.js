@@ -12,6 +12,7 @@ const RTMT_SCHEDULER_PATH = "scheduler";
 const RTMT_REGISTRATION_URL = "register";
 const RTMT_GET_URL = "get";
 const RTMT_DEREGISTRATION_URL = "deregister";
+const RTMT_PUSH_URL = "push";
 const RTMT_LIST_URL = "list";
 const RTMT_INVOKE_URL = "invoke";
 const RTMT_RETRIEVE_URL = "retrieve";
@@ -46,6 +47,17 @@ class ReatMetric {
         };
     }
 
+    openPush(url, eventName, callback) {
+        const source = new EventSource(url);
+        source.addEventListener(eventName, function(e) {
+            callback(JSON.parse(e.data));
+        });
+        source.addEventListener("overflow", function(e) {
+            console.warn("Push stream " + url + ": " + JSON.parse(e.data).dropped + " updates discarded");
+        });
+        return source;
+    }
+
     /*********************************************************
      * Constructor
      *********************************************************/
@@ -149,6 +161,11 @@ class ReatMetric {
         }
     }
 
+    pushStateParameters(key, callback) {
+        var toOpen = this.baseUrl + "/" + this.name + "/" + RTMT_PARAMETERS_PATH + "/" + RTMT_PARAMETER_CURRENT_STATE_PATH  + "/" + RTMT_PUSH_URL + "/" + key;
+        return this.openPush(toOpen, RTMT_PARAMETERS_PATH, callback);
+    }
+
     /*********************************************************
      * Parameter Stream
      *********************************************************/
@@ -176,6 +193,11 @@ class ReatMetric {
         }
     }
 
+    pushStreamParameters(key, callback) {
+        var toOpen = this.baseUrl + "/" + this.name + "/" + RTMT_PARAMETERS_PATH + "/" + RTMT_PARAMETER_STREAM_PATH  + "/" + RTMT_PUSH_URL + "/" + key;
+        return this.openPush(toOpen, RTMT_PARAMETERS_PATH, callback);
+    }
+
     /*********************************************************
      * Events
      *********************************************************/
@@ -210,6 +232,11 @@ class ReatMetric {
         }
     }
 
+    pushEvents(key, callback) {
+        var toOpen = this.baseUrl + "/" + this.name + "/" + RTMT_EVENTS_PATH + "/" + RTMT_PUSH_URL + "/" + key;
+        return this.openPush(toOpen, RTMT_EVENTS_PATH, callback);
+    }
+
     async retrieveEvents(startTime, endTime, filter) {
         var toFetch = this.baseUrl + "/" + this.name + "/" + RTMT_EVENTS_PATH + "/" + RTMT_RETRIEVE_URL + "?" +
         RTMT_STARTTIME_ARG + "=" + startTime + "&" +
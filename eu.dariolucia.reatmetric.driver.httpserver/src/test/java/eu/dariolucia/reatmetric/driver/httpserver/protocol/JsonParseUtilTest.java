@@ -1,11 +1,24 @@
 package eu.dariolucia.reatmetric.driver.httpserver.protocol;
 
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.model.AlarmState;
 import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.parameters.ParameterData;
 import eu.dariolucia.reatmetric.api.parameters.ParameterDataFilter;
+import eu.dariolucia.reatmetric.api.parameters.Validity;
+import eu.dariolucia.reatmetric.api.rawdata.Quality;
+import eu.dariolucia.reatmetric.api.rawdata.RawData;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,4 +59,45 @@ class JsonParseUtilTest {
         assertEquals(12.343, result.get("key3"));
         assertEquals(true, result.get("key4"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void formatParameters() throws IOException {
+        Instant now = Instant.now();
+        ParameterData pd1 = new ParameterData(new LongUniqueId(1), now, 10, "PARAM1", SystemEntityPath.fromString("ROOT.PARAM1"),
+                "Line1\nQuoted \"text\" \\ \u00e8\u20ac\ud83d\ude00", 3L, null, Validity.VALID, AlarmState.NOMINAL, null, now, null);
+        ParameterData pd2 = new ParameterData(new LongUniqueId(2), now, 11, "PARAM2", SystemEntityPath.fromString("ROOT.PARAM2"),
+                12.5, Double.NaN, "Route", Validity.INVALID, AlarmState.ALARM, null, now, null);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JsonParseUtil.formatParameters(List.of(pd1, pd2), bos);
+        String json = bos.toString(StandardCharsets.UTF_8);
+        // Line terminators are never written
+        assertFalse(json.contains("\n"));
+
+        DocumentContext parsed = JsonPath.parse(json);
+        assertEquals(2, (int) parsed.read("$.length()"));
+        assertEquals(1, (int) parsed.read("$[0].internalId"));
+        assertEquals("ROOT.PARAM1", parsed.read("$[0].path"));
+        assertEquals(pd1.getEngValue(), parsed.read("$[0].eng"));
+        assertEquals(3, (int) parsed.read("$[0].raw"));
+        assertNull(parsed.read("$[0].route"));
+        assertEquals(now.toString(), parsed.read("$[0].gentime"));
+        assertEquals(12.5, parsed.read("$[1].eng"));
+        assertNull(parsed.read("$[1].raw"));
+        assertEquals("ALARM", parsed.read("$[1].alarm"));
+    }
+
+    @Test
+    void formatRawData() throws IOException {
+        for(int length = 0; length < 5; ++length) {
+            byte[] contents = new byte[length * 10000 + length];
+            for(int i = 0; i < contents.length; ++i) {
+                contents[i] = (byte) i;
+            }
+            RawData rd = new RawData(new LongUniqueId(1), Instant.now(), "NAME", "TYPE", "ROUTE", "SOURCE", Quality.GOOD, null, contents, Instant.now(), null, null);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            JsonParseUtil.formatRawDatas(List.of(rd, rd), bos);
+            DocumentContext parsed = JsonPath.parse(bos.toString(StandardCharsets.UTF_8));
+            assertEquals(Base64.getEncoder().encodeToString(contents), parsed.read("$[1].data"));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c)  2022 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package eu.dariolucia.reatmetric.driver.httpserver.protocol.handlers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbstractHttpRequestHandlerTest {
+
+    @Test
+    void testIsGzipAccepted() {
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("GZIP")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("x-gzip")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("*")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip, deflate, br")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("deflate, br", "gzip")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("deflate;q=1.0, gzip;q=0.5")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip ; q=0.001")));
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("identity, *;q=0.1")));
+        // Either name is enough
+        assertTrue(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip;q=0, x-gzip")));
+
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(null));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of()));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("identity")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("deflate, br")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip;q=0")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip;q=0.0, deflate")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip;q=invalid")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzipped")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("*;q=0")));
+        // An explicit refusal takes precedence over the wildcard, regardless of the order
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("gzip;q=0, *;q=0.1")));
+        assertFalse(AbstractHttpRequestHandler.isGzipAccepted(List.of("*", "gzip;q=0")));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c)  2022 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package eu.dariolucia.reatmetric.driver.httpserver.protocol.handlers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedResponseTest {
+
+    private static final byte[] BODY = "[ { \"name\" : \"PARAM\" } ]".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testEntityTags() throws IOException {
+        CachedResponse response = CachedResponse.of(os -> os.write(BODY));
+        assertArrayEquals(BODY, response.getBody());
+        assertNotNull(response.getGzipBody());
+        try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(response.getGzipBody()))) {
+            assertArrayEquals(BODY, gis.readAllBytes());
+        }
+        String tag = response.getEntityTag();
+        assertTrue(tag.matches("\"[0-9a-f]{32}\""), tag);
+        assertEquals(tag.substring(0, tag.length() - 1) + "-gzip\"", response.getGzipEntityTag());
+        // Same content, same tags
+        CachedResponse other = CachedResponse.of(os -> os.write(BODY));
+        assertEquals(tag, other.getEntityTag());
+        assertEquals(response.getGzipEntityTag(), other.getGzipEntityTag());
+        // Different content, different tags
+        CachedResponse changed = CachedResponse.of(os -> os.write(new byte[] { '[', ']' }));
+        assertNotEquals(tag, changed.getEntityTag());
+        // Compression is not used on small bodies
+        assertNull(changed.getGzipBody());
+    }
+
+    @Test
+    void testMatches() throws IOException {
+        CachedResponse response = CachedResponse.of(os -> os.write(BODY));
+        String tag = response.getEntityTag();
+        String gzipTag = response.getGzipEntityTag();
+        assertTrue(response.matches(tag));
+        assertTrue(response.matches(gzipTag));
+        assertTrue(response.matches("W/" + tag));
+        assertTrue(response.matches("W/" + gzipTag));
+        assertTrue(response.matches("\"other\", " + gzipTag));
+        assertTrue(response.matches(" \"other\" ,W/" + tag + " "));
+        assertTrue(response.matches("*"));
+
+        assertFalse(response.matches(null));
+        assertFalse(response.matches(""));
+        assertFalse(response.matches("\"other\""));
+        // Unquoted tags do not match
+        assertFalse(response.matches(tag.substring(1, tag.length() - 1)));
+        // Tags of a different content do not match
+        CachedResponse changed = CachedResponse.of(os -> os.write(new byte[] { '[', ']' }));
+        assertFalse(response.matches(changed.getEntityTag()));
+        assertFalse(response.matches(changed.getGzipEntityTag()));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c)  2022 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package eu.dariolucia.reatmetric.driver.httpserver.protocol.subscriptions;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import eu.dariolucia.reatmetric.api.common.AbstractDataItem;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpPushChannelTest {
+
+    @Test
+    void testConflatedUpdatesAreReported() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<Runnable> tasks = new ArrayList<>();
+        HttpPushChannel<Item> channel = new HttpPushChannel<>(new FakeExchange(output), "parameters", HttpPushChannelTest::format, Item::getKey, 3, tasks::add, c -> {});
+        // 6 updates of 2 keys: conflation keeps the latest update of each key, 4 updates are lost
+        assertTrue(channel.offer(List.of(new Item("A", 1), new Item("B", 2), new Item("A", 3), new Item("B", 4), new Item("A", 5), new Item("B", 6))));
+        runAll(tasks);
+        String text = output.toString(StandardCharsets.UTF_8);
+        assertEquals("event: overflow\ndata: { \"dropped\" : 4 }\n\nevent: parameters\ndata: [A5,B6]\n\n", text);
+    }
+
+    @Test
+    void testDiscardedUpdatesAreReported() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<Runnable> tasks = new ArrayList<>();
+        HttpPushChannel<Item> channel = new HttpPushChannel<>(new FakeExchange(output), "parameters", HttpPushChannelTest::format, Item::getKey, 2, tasks::add, c -> {});
+        // 4 different keys: conflation removes nothing, the 2 oldest updates are discarded
+        assertTrue(channel.offer(List.of(new Item("A", 1), new Item("B", 2), new Item("C", 3), new Item("D", 4))));
+        // D4 is superseded by D5: conflation brings the buffer back to its capacity
+        assertTrue(channel.offer(List.of(new Item("D", 5))));
+        runAll(tasks);
+        String text = output.toString(StandardCharsets.UTF_8);
+        assertEquals("event: overflow\ndata: { \"dropped\" : 3 }\n\nevent: parameters\ndata: [C3,D5]\n\n", text);
+    }
+
+    @Test
+    void testNoConflationWithoutKey() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<Runnable> tasks = new ArrayList<>();
+        HttpPushChannel<Item> channel = new HttpPushChannel<>(new FakeExchange(output), "parameters", HttpPushChannelTest::format, null, 10, tasks::add, c -> {});
+        assertTrue(channel.offer(List.of(new Item("A", 1), new Item("A", 2), new Item("A", 3))));
+        runAll(tasks);
+        assertEquals("event: parameters\ndata: [A1,A2,A3]\n\n", output.toString(StandardCharsets.UTF_8));
+        channel.close();
+        assertTrue(channel.isClosed());
+        assertFalse(channel.offer(List.of(new Item("A", 4))));
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        while(!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static void format(List<Item> items, OutputStream os) throws java.io.IOException {
+        os.write(items.stream().map(o -> o.getKey() + o.getValue()).collect(Collectors.joining(",", "[", "]")).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Item extends AbstractDataItem {
+
+        private final String key;
+        private final int value;
+
+        public Item(String key, int value) {
+            super(new LongUniqueId(value), Instant.EPOCH, null);
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    private static class FakeExchange extends HttpExchange {
+
+        private final OutputStream output;
+
+        public FakeExchange(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return new Headers();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return new Headers();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return URI.create("/test");
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return "GET";
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to do
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return output;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) {
+            // Nothing to do
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return InetSocketAddress.createUnresolved("localhost", 0);
+        }
+
+        @Override
+        public int getResponseCode() {
+            return 200;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return InetSocketAddress.createUnresolved("localhost", 0);
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            // Nothing to do
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            // Nothing to do
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.driver.remote;
+
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
+import eu.dariolucia.reatmetric.api.parameters.ParameterData;
+import eu.dariolucia.reatmetric.driver.remote.definition.ParameterMirroringConfiguration;
+import eu.dariolucia.reatmetric.driver.remote.definition.RemoteConfiguration;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class applies the mirroring policies to the parameter updates received from the remote system, before they are
+ * mirrored in the local processing model: unchanged updates can be discarded, the update rate of each parameter can be
+ * limited (keeping only the latest update received in the meantime) and the latest update of all parameters can be
+ * periodically mirrored again, to resynchronise the local processing model.
+ *
+ * The updates to mirror are selected under the lock of this object and queued, then delivered to the sink outside the
+ * lock, in the order they were selected, by the thread that finds the delivery idle. The sink is therefore never invoked
+ * while holding the lock, and an update selected later is never mirrored before an update selected earlier.
+ */
+final class ParameterMirror {
+
+    private static final Logger LOG = Logger.getLogger(ParameterMirror.class.getName());
+
+    private final String name;
+    private final String remotePathPrefix;
+    private final Consumer<List<ParameterData>> sink;
+    private final ParameterMirroringConfiguration defaultPolicy;
+    private final List<ParameterMirroringConfiguration> policies;
+    private final boolean enabled;
+    private final ScheduledExecutorService timer;
+
+    // Access protected by this object
+    private final Map<Integer, MirrorState> states = new HashMap<>();
+    private final Queue<List<ParameterData>> toDeliver = new LinkedList<>();
+    private boolean delivering;
+    private long received;
+    private long mirrored;
+    private long unchanged;
+    private long conflated;
+
+    /**
+     * @param name the name of the driver
+     * @param configuration the configuration of the driver
+     * @param sink the consumer of the parameter updates to mirror
+     */
+    ParameterMirror(String name, RemoteConfiguration configuration, Consumer<List<ParameterData>> sink) {
+        this.name = name;
+        this.remotePathPrefix = configuration.getRemotePathPrefix();
+        this.sink = sink;
+        this.defaultPolicy = new ParameterMirroringConfiguration("", configuration.isParameterChangeOnly(), configuration.getParameterMinInterval());
+        this.policies = new ArrayList<>(configuration.getParameterMirroring());
+        // Longest path first
+        this.policies.sort(Comparator.comparingInt((ParameterMirroringConfiguration p) -> p.getPath().length()).reversed());
+        boolean rateLimited = isRateLimited(defaultPolicy) || policies.stream().anyMatch(ParameterMirror::isRateLimited);
+        boolean changeOnly = defaultPolicy.isChangeOnly() || policies.stream().anyMatch(ParameterMirroringConfiguration::isChangeOnly);
+        int resyncPeriod = configuration.getParameterResyncPeriod();
+        this.enabled = rateLimited || changeOnly || resyncPeriod > 0;
+        if(rateLimited || resyncPeriod > 0) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Remote System " + configuration.getRemoteSystemName() + " - Parameter Mirroring Thread");
+                t.setDaemon(true);
+                return t;
+            });
+            if(resyncPeriod > 0) {
+                this.timer.scheduleWithFixedDelay(this::resync, resyncPeriod, resyncPeriod, TimeUnit.SECONDS);
+            }
+        } else {
+            this.timer = null;
+        }
+    }
+
+    private static boolean isRateLimited(ParameterMirroringConfiguration policy) {
+        return policy.getMinInterval() > 0;
+    }
+
+    /**
+     * Process the parameter updates received from the remote system.
+     *
+     * @param items the received updates
+     */
+    void process(List<ParameterData> items) {
+        if(!enabled) {
+            sink.accept(items);
+            return;
+        }
+        synchronized (this) {
+            select(items);
+        }
+        deliver();
+    }
+
+    private void select(List<ParameterData> items) {
+        List<ParameterData> toMirror = new ArrayList<>(items.size());
+        long now = System.nanoTime();
+        for(ParameterData pd : items) {
+            ++received;
+            MirrorState state = states.computeIfAbsent(pd.getExternalId(), id -> new MirrorState(resolvePolicy(pd)));
+            state.latest = pd;
+            if(state.policy.isChangeOnly() && state.lastMirrored != null && !isChanged(state.lastMirrored, pd)) {
+                ++unchanged;
+                if(state.pending != null) {
+                    // The pending update is superseded by an update equal to the mirrored one
+                    state.pending = null;
+                    ++conflated;
+                }
+                continue;
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(now - state.lastMirrorTime);
+            if(isRateLimited(state.policy) && state.lastMirrored != null && elapsed < state.policy.getMinInterval()) {
+                // Conflate
+                if(state.pending != null) {
+                    ++conflated;
+                }
+                state.pending = pd;
+                if(!state.flushScheduled) {
+                    state.flushScheduled = true;
+                    timer.schedule(() -> flush(state), state.policy.getMinInterval() - elapsed, TimeUnit.MILLISECONDS);
+                }
+                continue;
+            }
+            state.mirrored(pd, now);
+            toMirror.add(pd);
+        }
+        mirror(toMirror);
+    }
+
+    private void flush(MirrorState state) {
+        synchronized (this) {
+            state.flushScheduled = false;
+            if (state.pending != null) {
+                ParameterData pd = state.pending;
+                state.mirrored(pd, System.nanoTime());
+                mirror(Collections.singletonList(pd));
+            }
+        }
+        deliver();
+    }
+
+    private void resync() {
+        synchronized (this) {
+            List<ParameterData> toMirror = new ArrayList<>(states.size());
+            long now = System.nanoTime();
+            for (MirrorState state : states.values()) {
+                if (state.latest != null) {
+                    state.mirrored(state.latest, now);
+                    toMirror.add(state.latest);
+                }
+            }
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Resynchronising " + toMirror.size() + " parameters from remote system " + name);
+            }
+            mirror(toMirror);
+        }
+        deliver();
+    }
+
+    /**
+     * To be called while holding the lock: queue the updates for delivery.
+     */
+    private void mirror(List<ParameterData> toMirror) {
+        if(!toMirror.isEmpty()) {
+            mirrored += toMirror.size();
+            toDeliver.add(toMirror);
+        }
+    }
+
+    /**
+     * To be called without holding the lock: deliver the queued updates to the sink, unless another thread is already
+     * delivering them.
+     */
+    private void deliver() {
+        synchronized (this) {
+            if(delivering || toDeliver.isEmpty()) {
+                return;
+            }
+            delivering = true;
+        }
+        while(true) {
+            List<ParameterData> batch;
+            synchronized (this) {
+                batch = toDeliver.poll();
+                if(batch == null) {
+                    delivering = false;
+                    return;
+                }
+            }
+            try {
+                sink.accept(batch);
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, "Cannot mirror " + batch.size() + " parameter updates from remote system " + name + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private ParameterMirroringConfiguration resolvePolicy(ParameterData pd) {
+        if(policies.isEmpty()) {
+            return defaultPolicy;
+        }
+        String localPath = remotePathPrefix + pd.getPath().asString();
+        for(ParameterMirroringConfiguration policy : policies) {
+            if(localPath.equals(policy.getPath()) || localPath.startsWith(policy.getPath() + ".")) {
+                return policy;
+            }
+        }
+        return defaultPolicy;
+    }
+
+    private static boolean isChanged(ParameterData previous, ParameterData current) {
+        return !Objects.equals(previous.getEngValue(), current.getEngValue())
+                || !Objects.equals(previous.getSourceValue(), current.getSourceValue())
+                || previous.getValidity() != current.getValidity()
+                || previous.getAlarmState() != current.getAlarmState()
+                || !Objects.equals(previous.getRoute(), current.getRoute());
+    }
+
+    synchronized List<DebugInformation> currentDebugInfo() {
+        if(!enabled) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(
+                DebugInformation.of(name, "Parameter updates received", received, null, null),
+                DebugInformation.of(name, "Parameter updates mirrored", mirrored, null, null),
+                DebugInformation.of(name, "Unchanged parameter updates discarded", unchanged, null, null),
+                DebugInformation.of(name, "Parameter updates conflated", conflated, null, null)
+        );
+    }
+
+    void dispose() {
+        if(timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private static final class MirrorState {
+        private final ParameterMirroringConfiguration policy;
+        private ParameterData latest;
+        private ParameterData lastMirrored;
+        private long lastMirrorTime;
+        private ParameterData pending;
+        private boolean flushScheduled;
+
+        private MirrorState(ParameterMirroringConfiguration policy) {
+            this.policy = policy;
+        }
+
+        private void mirrored(ParameterData pd, long time) {
+            this.lastMirrored = pd;
+            this.lastMirrorTime = time;
+            this.pending = null;
+        }
+    }
+}
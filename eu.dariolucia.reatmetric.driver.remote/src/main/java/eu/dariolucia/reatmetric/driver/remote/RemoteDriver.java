@@ -24,6 +24,7 @@ import eu.dariolucia.reatmetric.api.messages.OperationalMessage;
 import eu.dariolucia.reatmetric.api.model.SystemEntity;
 import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
 import eu.dariolucia.reatmetric.api.model.SystemEntityType;
+import eu.dariolucia.reatmetric.api.parameters.ParameterData;
 import eu.dariolucia.reatmetric.api.processing.IActivityHandler;
 import eu.dariolucia.reatmetric.api.processing.IProcessingModel;
 import eu.dariolucia.reatmetric.api.processing.IProcessingModelVisitor;
@@ -81,6 +82,9 @@ public class RemoteDriver implements IDriver, IActivityHandler {
     // Remote system
     private RemoteSystemConnector remoteSystemConnector;
 
+    // Parameter mirroring policies
+    private ParameterMirror parameterMirror;
+
     public RemoteDriver() {
         //
     }
@@ -97,6 +101,8 @@ public class RemoteDriver implements IDriver, IActivityHandler {
         try {
             // Read the configuration
             this.configuration = RemoteConfiguration.load(new FileInputStream(driverConfigurationDirectory + File.separator + CONFIGURATION_FILE));
+            // Create the parameter mirroring policy handler
+            this.parameterMirror = new ParameterMirror(this.name, this.configuration, this::ingestProcessingData);
             // Create connector
             this.remoteSystemConnector = new RemoteSystemConnector(this, this.configuration);
             // Start the connector
@@ -141,11 +147,12 @@ public class RemoteDriver implements IDriver, IActivityHandler {
     public void dispose() {
         this.remoteSystemConnector.dispose();
         this.activityExecutor.shutdown();
+        this.parameterMirror.dispose();
     }
 
     @Override
     public List<DebugInformation> currentDebugInfo() {
-        return Collections.emptyList();
+        return this.parameterMirror.currentDebugInfo();
     }
 
     // --------------------------------------------------------------------
@@ -205,6 +212,10 @@ public class RemoteDriver implements IDriver, IActivityHandler {
         }
     }
 
+    public void ingestParameterData(List<ParameterData> parameterData) {
+        this.parameterMirror.process(parameterData);
+    }
+
     public <T extends AbstractDataItem> void ingestProcessingData(List<T> data) {
         try {
             context.getProcessingModel().mirror((List<AbstractDataItem>) data);
@@ -46,7 +46,7 @@ public class RemoteSystemConnector extends AbstractTransportConnector {
     private final IParameterDataSubscriber parameterDataSubscriber = this::remoteParametersReceived;
 
     private void remoteParametersReceived(List<ParameterData> parameterData) {
-        driver.ingestProcessingData(parameterData);
+        driver.ingestParameterData(parameterData);
     }
 
     private final IEventDataSubscriber eventDataSubscriber = this::remoteEventsReceived;
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.driver.remote.definition;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlAttribute;
+
+/**
+ * Mirroring policy applied to the parameters located under the specified path (in the local processing model).
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ParameterMirroringConfiguration {
+
+    /**
+     * Path (in the local processing model) of the system entity, whose parameters are subject to this policy. If more
+     * policies match the path of a parameter, the policy with the longest path is applied.
+     */
+    @XmlAttribute(name = "path", required = true)
+    private String path;
+
+    /**
+     * If true, an update is mirrored only if the value, validity, alarm state or route of the parameter changed with
+     * respect to the last mirrored update.
+     */
+    @XmlAttribute(name = "change-only")
+    private boolean changeOnly = false;
+
+    /**
+     * Minimum time in milliseconds between two mirrored updates of the same parameter. Updates received in the meantime
+     * are conflated: only the latest one is mirrored, when the time elapses. If 0, no rate limitation is applied.
+     */
+    @XmlAttribute(name = "min-interval")
+    private int minInterval = 0;
+
+    public ParameterMirroringConfiguration() {
+    }
+
+    public ParameterMirroringConfiguration(String path, boolean changeOnly, int minInterval) {
+        this.path = path;
+        this.changeOnly = changeOnly;
+        this.minInterval = minInterval;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public boolean isChangeOnly() {
+        return changeOnly;
+    }
+
+    public void setChangeOnly(boolean changeOnly) {
+        this.changeOnly = changeOnly;
+    }
+
+    public int getMinInterval() {
+        return minInterval;
+    }
+
+    public void setMinInterval(int minInterval) {
+        this.minInterval = minInterval;
+    }
+}
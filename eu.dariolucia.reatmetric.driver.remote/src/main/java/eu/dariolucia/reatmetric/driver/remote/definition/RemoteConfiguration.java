@@ -24,6 +24,8 @@ import jakarta.xml.bind.Unmarshaller;
 import jakarta.xml.bind.annotation.*;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.List;
 
 @XmlRootElement(name = "remote", namespace = "http://dariolucia.eu/reatmetric/driver/remote")
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -81,6 +83,34 @@ public class RemoteConfiguration {
     @XmlAttribute(name = "remote-path-selector", required = true)
     private String remotePathSelector;
 
+    /**
+     * Default change-only mirroring of the parameters, applied if no parameter-mirroring element matches the parameter path.
+     *
+     * @see ParameterMirroringConfiguration#isChangeOnly()
+     */
+    @XmlAttribute(name = "parameter-change-only")
+    private boolean parameterChangeOnly = false;
+
+    /**
+     * Default minimum interval in milliseconds between mirrored updates of the same parameter, applied if no
+     * parameter-mirroring element matches the parameter path.
+     *
+     * @see ParameterMirroringConfiguration#getMinInterval()
+     */
+    @XmlAttribute(name = "parameter-min-interval")
+    private int parameterMinInterval = 0;
+
+    /**
+     * Period in seconds of the full resynchronisation of the mirrored parameters: the latest received update of each
+     * parameter is mirrored, regardless of the change-only and rate limitation policies. If 0, no resynchronisation is
+     * performed.
+     */
+    @XmlAttribute(name = "parameter-resync-period")
+    private int parameterResyncPeriod = 0;
+
+    @XmlElement(name = "parameter-mirroring")
+    private List<ParameterMirroringConfiguration> parameterMirroring = new LinkedList<>();
+
     public String getRemoteSystemName() {
         return remoteSystemName;
     }
@@ -105,4 +135,35 @@ public class RemoteConfiguration {
         this.remotePathPrefix = remotePathPrefix;
     }
 
+    public boolean isParameterChangeOnly() {
+        return parameterChangeOnly;
+    }
+
+    public void setParameterChangeOnly(boolean parameterChangeOnly) {
+        this.parameterChangeOnly = parameterChangeOnly;
+    }
+
+    public int getParameterMinInterval() {
+        return parameterMinInterval;
+    }
+
+    public void setParameterMinInterval(int parameterMinInterval) {
+        this.parameterMinInterval = parameterMinInterval;
+    }
+
+    public int getParameterResyncPeriod() {
+        return parameterResyncPeriod;
+    }
+
+    public void setParameterResyncPeriod(int parameterResyncPeriod) {
+        this.parameterResyncPeriod = parameterResyncPeriod;
+    }
+
+    public List<ParameterMirroringConfiguration> getParameterMirroring() {
+        return parameterMirroring;
+    }
+
+    public void setParameterMirroring(List<ParameterMirroringConfiguration> parameterMirroring) {
+        this.parameterMirroring = parameterMirroring;
+    }
 }
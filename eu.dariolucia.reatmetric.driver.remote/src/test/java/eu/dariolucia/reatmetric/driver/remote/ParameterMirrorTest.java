@@ -0,0 +1,191 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.remote;
+
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.model.AlarmState;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.parameters.ParameterData;
+import eu.dariolucia.reatmetric.api.parameters.Validity;
+import eu.dariolucia.reatmetric.driver.remote.definition.ParameterMirroringConfiguration;
+import eu.dariolucia.reatmetric.driver.remote.definition.RemoteConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterMirrorTest {
+
+    private final AtomicLong sequencer = new AtomicLong();
+    private final BlockingQueue<List<ParameterData>> mirrored = new LinkedBlockingQueue<>();
+    private final AtomicBoolean invokedUnderLock = new AtomicBoolean();
+
+    private ParameterMirror mirror;
+
+    @AfterEach
+    void tearDown() {
+        if(mirror != null) {
+            mirror.dispose();
+        }
+        assertFalse(invokedUnderLock.get(), "Sink invoked while holding the mirror lock");
+    }
+
+    @Test
+    void testPassThroughWithoutPolicies() throws Exception {
+        mirror = create(new RemoteConfiguration());
+        List<ParameterData> items = Arrays.asList(parameter(1, "SYS.P1", 1), parameter(1, "SYS.P1", 1));
+        mirror.process(items);
+        assertSame(items, next());
+        assertTrue(mirror.currentDebugInfo().isEmpty());
+    }
+
+    @Test
+    void testChangeOnly() throws Exception {
+        RemoteConfiguration configuration = new RemoteConfiguration();
+        configuration.setParameterChangeOnly(true);
+        mirror = create(configuration);
+        ParameterData first = parameter(1, "SYS.P1", 10);
+        mirror.process(Arrays.asList(first, parameter(2, "SYS.P2", 10), parameter(1, "SYS.P1", 10)));
+        assertEquals(Arrays.asList(first.getInternalId().asLong(), 2L), ids(next()));
+        // Unchanged: discarded
+        mirror.process(Collections.singletonList(parameter(1, "SYS.P1", 10)));
+        assertNull(mirrored.poll(100, TimeUnit.MILLISECONDS));
+        // Changed value and changed validity: mirrored
+        ParameterData changedValue = parameter(1, "SYS.P1", 11);
+        ParameterData changedValidity = parameter(1, "SYS.P1", 11, Validity.INVALID);
+        mirror.process(Arrays.asList(changedValue, changedValidity));
+        assertEquals(Arrays.asList(changedValue.getInternalId().asLong(), changedValidity.getInternalId().asLong()), ids(next()));
+    }
+
+    @Test
+    void testMinIntervalFlush() throws Exception {
+        RemoteConfiguration configuration = new RemoteConfiguration();
+        configuration.setParameterMinInterval(300);
+        mirror = create(configuration);
+        ParameterData first = parameter(1, "SYS.P1", 1);
+        mirror.process(Collections.singletonList(first));
+        assertEquals(Collections.singletonList(first.getInternalId().asLong()), ids(next()));
+        // Within the interval: only the latest update is mirrored, when the interval expires
+        ParameterData second = parameter(1, "SYS.P1", 2);
+        ParameterData third = parameter(1, "SYS.P1", 3);
+        ParameterData other = parameter(2, "SYS.P2", 1);
+        long start = System.nanoTime();
+        mirror.process(Arrays.asList(second, other));
+        mirror.process(Collections.singletonList(third));
+        // Another parameter is not affected
+        assertEquals(Collections.singletonList(other.getInternalId().asLong()), ids(next()));
+        assertEquals(Collections.singletonList(third.getInternalId().asLong()), ids(next()));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertNull(mirrored.poll(400, TimeUnit.MILLISECONDS));
+        assertEquals(1L, debugValue("Parameter updates conflated"));
+        assertEquals(4L, debugValue("Parameter updates received"));
+        assertEquals(3L, debugValue("Parameter updates mirrored"));
+    }
+
+    @Test
+    void testResync() throws Exception {
+        RemoteConfiguration configuration = new RemoteConfiguration();
+        configuration.setParameterChangeOnly(true);
+        configuration.setParameterResyncPeriod(1);
+        mirror = create(configuration);
+        ParameterData first = parameter(1, "SYS.P1", 1);
+        mirror.process(Collections.singletonList(first));
+        assertEquals(Collections.singletonList(first.getInternalId().asLong()), ids(next()));
+        ParameterData unchanged = parameter(1, "SYS.P1", 1);
+        mirror.process(Collections.singletonList(unchanged));
+        // The unchanged update is discarded, but it is mirrored by the resynchronisation
+        List<ParameterData> resync = mirrored.poll(3, TimeUnit.SECONDS);
+        assertNotNull(resync);
+        assertEquals(Collections.singletonList(unchanged.getInternalId().asLong()), ids(resync));
+        assertEquals(1L, debugValue("Unchanged parameter updates discarded"));
+    }
+
+    @Test
+    void testLongestPathMatch() throws Exception {
+        RemoteConfiguration configuration = new RemoteConfiguration();
+        configuration.setRemotePathPrefix("LOCAL.");
+        configuration.setParameterChangeOnly(true);
+        configuration.setParameterMirroring(Arrays.asList(
+                new ParameterMirroringConfiguration("LOCAL.SYS", false, 0),
+                new ParameterMirroringConfiguration("LOCAL.SYS.DEV", true, 0)));
+        mirror = create(configuration);
+        String[] paths = { "SYS.DEV.P1", "SYS.OTHER.P2", "SYS.DEVICE.P3", "ROOT.P4" };
+        for(int i = 0; i < paths.length; ++i) {
+            mirror.process(Collections.singletonList(parameter(i, paths[i], 1)));
+            assertEquals(1, next().size());
+        }
+        // Send the same values again: only the parameters whose policy is not change-only are mirrored
+        for(int i = 0; i < paths.length; ++i) {
+            mirror.process(Collections.singletonList(parameter(i, paths[i], 1)));
+        }
+        assertEquals(Collections.singletonList("SYS.OTHER.P2"), paths(next()));
+        // LOCAL.SYS.DEV does not match LOCAL.SYS.DEVICE
+        assertEquals(Collections.singletonList("SYS.DEVICE.P3"), paths(next()));
+        assertNull(mirrored.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private ParameterMirror create(RemoteConfiguration configuration) {
+        configuration.setRemoteSystemName("REMOTE");
+        ParameterMirror[] created = new ParameterMirror[1];
+        created[0] = new ParameterMirror("Test Driver", configuration, items -> {
+            if(Thread.holdsLock(created[0])) {
+                invokedUnderLock.set(true);
+            }
+            mirrored.add(items);
+        });
+        return created[0];
+    }
+
+    private List<ParameterData> next() throws InterruptedException {
+        List<ParameterData> items = mirrored.poll(5, TimeUnit.SECONDS);
+        assertNotNull(items, "Mirrored updates expected");
+        return items;
+    }
+
+    private long debugValue(String name) {
+        return (Long) mirror.currentDebugInfo().stream().filter(o -> o.getName().equals(name)).findFirst().orElseThrow().getMeasure();
+    }
+
+    private static List<Long> ids(List<ParameterData> items) {
+        return items.stream().map(o -> o.getInternalId().asLong()).collect(Collectors.toList());
+    }
+
+    private static List<String> paths(List<ParameterData> items) {
+        return items.stream().map(o -> o.getPath().asString()).collect(Collectors.toList());
+    }
+
+    private ParameterData parameter(int externalId, String path, long value) {
+        return parameter(externalId, path, value, Validity.VALID);
+    }
+
+    private ParameterData parameter(int externalId, String path, long value, Validity validity) {
+        SystemEntityPath sep = SystemEntityPath.fromString(path);
+        return new ParameterData(new LongUniqueId(sequencer.incrementAndGet()), Instant.now(), externalId, sep.getLastPathElement(), sep,
+                value, value, "Route", validity, AlarmState.NOMINAL, null, Instant.now(), null);
+    }
+}
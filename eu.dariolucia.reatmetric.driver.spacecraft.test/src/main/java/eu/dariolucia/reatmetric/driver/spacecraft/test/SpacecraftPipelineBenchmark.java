@@ -0,0 +1,669 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.test;
+
+import eu.dariolucia.ccsds.encdec.definition.Definition;
+import eu.dariolucia.ccsds.encdec.definition.IdentField;
+import eu.dariolucia.ccsds.encdec.definition.IdentFieldMatcher;
+import eu.dariolucia.ccsds.encdec.definition.PacketDefinition;
+import eu.dariolucia.ccsds.encdec.pus.PusChecksumUtil;
+import eu.dariolucia.ccsds.encdec.pus.TmPusHeader;
+import eu.dariolucia.ccsds.encdec.structure.EncodingException;
+import eu.dariolucia.ccsds.encdec.structure.IPacketEncoder;
+import eu.dariolucia.ccsds.encdec.structure.PacketDefinitionIndexer;
+import eu.dariolucia.ccsds.encdec.structure.impl.DefaultPacketEncoder;
+import eu.dariolucia.ccsds.encdec.structure.resolvers.DefaultNullBasedResolver;
+import eu.dariolucia.ccsds.encdec.structure.resolvers.DefinitionValueBasedResolver;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.mux.TmMasterChannelMuxer;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.builder.SpacePacketBuilder;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import eu.dariolucia.reatmetric.api.IReatmetricRegister;
+import eu.dariolucia.reatmetric.api.IReatmetricSystem;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.parameters.IParameterDataSubscriber;
+import eu.dariolucia.reatmetric.api.parameters.ParameterData;
+import eu.dariolucia.reatmetric.api.rawdata.IRawDataSubscriber;
+import eu.dariolucia.reatmetric.api.rawdata.Quality;
+import eu.dariolucia.reatmetric.api.rawdata.RawData;
+import eu.dariolucia.reatmetric.api.rawdata.RawDataFilter;
+import eu.dariolucia.reatmetric.core.api.IRawDataBroker;
+import eu.dariolucia.reatmetric.core.api.IServiceCoreContext;
+import eu.dariolucia.reatmetric.core.configuration.DriverConfiguration;
+import eu.dariolucia.reatmetric.core.configuration.ServiceCoreConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.SpacecraftDriver;
+import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.*;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.impl.AesEncryptionService;
+import eu.dariolucia.reatmetric.processing.definition.ProcessingDefinition;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This application measures the sustained throughput of the spacecraft driver TM chain, from the reception of the TM
+ * frames to the distribution of the parameter updates by the processing model. It is meant to be used as capacity planning
+ * tool: the result depends only on the provided configuration and on the machine running it.
+ *
+ * The application starts a complete ReatMetric system in-process, using the provided core configuration file, and
+ * injects into its raw data broker a synthetic downlink of TM frames, generated at the requested rate with the same approach
+ * of the {@link SpacecraftModel}: PUS 3,25 packets (and a PUS 5 packet every 100 packets) encoded from the TM/TC packet
+ * definitions of the spacecraft driver, with values derived from the processing model (see {@link TestDefinitionGenerator}).
+ * Packet bodies are encoded once at startup, while packet headers (including the on-board time) and frames are built
+ * at injection time. The frames are distributed exactly as the SLE connectors do, so that no external system is needed.
+ *
+ * Every report period, and at the end of the run (excluding the warm-up period), the application reports:
+ * <ul>
+ *     <li>the achieved frame, packet and parameter rates;</li>
+ *     <li>the latency percentiles from frame injection to TM packet distribution (TM data link stage) and from frame
+ *     injection to parameter update distribution (end-to-end);</li>
+ *     <li>the allocation rate per stage, computed from the allocated bytes of the threads of each stage (TM data link
+ *     processing, TM packet processing, processing model, other).</li>
+ * </ul>
+ * If the pipeline cannot sustain the requested rate, the injection slows down (the raw data broker queues are bounded)
+ * and the achieved frame rate is lower than the requested one.
+ *
+ * Limitations: only TM transfer frames are generated, on the first TM virtual channel configured for packet processing,
+ * and the spacecraft driver must not be configured with the {@link AesEncryptionService}, since the generated frames are
+ * not encrypted. The SLE service instances of the driver are not used.
+ *
+ * The application must be started with the ReatMetric modules and their dependencies in the module path, e.g.:
+ *
+ * java --module-path &lt;ReatMetric modules&gt; --add-modules ALL-MODULE-PATH -cp &lt;this library&gt;
+ * eu.dariolucia.reatmetric.driver.spacecraft.test.SpacecraftPipelineBenchmark ...
+ */
+public class SpacecraftPipelineBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(SpacecraftPipelineBenchmark.class.getName());
+
+    private static final String INIT_FILE_KEY = "reatmetric.core.config";
+    private static final String SPACECRAFT_CONFIGURATION_FILE = "configuration.xml";
+    private static final String ENCODING_DECODING_DEFINITION_FILE = "tmtc.xml";
+    private static final String BENCHMARK_ROUTE_SUFFIX = "BENCHMARK.RAF.raf-benchmark";
+    private static final int EVENT_PACKET_PERIOD = 100;
+    private static final int DEFAULT_WARMUP_SECONDS = 10;
+    private static final int REPORT_PERIOD_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: SpacecraftPipelineBenchmark <path to core configuration file> <spacecraft driver name> <frames per second> <duration in seconds> [warm-up in seconds]");
+            System.exit(1);
+        }
+        String coreConfigurationPath = args[0];
+        String driverName = args[1];
+        int framesPerSecond = Integer.parseInt(args[2]);
+        int durationSeconds = Integer.parseInt(args[3]);
+        int warmupSeconds = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_WARMUP_SECONDS;
+
+        // Locate the spacecraft driver configuration
+        ServiceCoreConfiguration coreConfiguration = ServiceCoreConfiguration.load(new FileInputStream(coreConfigurationPath));
+        DriverConfiguration driverConfiguration = coreConfiguration.getDrivers().stream()
+                .filter(o -> o.getName().equals(driverName) && o.getType().equals(SpacecraftDriver.class.getName()))
+                .findFirst()
+                .orElse(null);
+        if (driverConfiguration == null) {
+            System.err.println("Error: cannot find spacecraft driver " + driverName + " in file " + coreConfigurationPath);
+            System.exit(1);
+        }
+        SpacecraftConfiguration spacecraftConfiguration = SpacecraftConfiguration.load(new FileInputStream(driverConfiguration.getConfiguration() + File.separator + SPACECRAFT_CONFIGURATION_FILE));
+        spacecraftConfiguration.getTmPacketConfiguration().buildLookupMap();
+        Definition encDecDefs = Definition.load(new FileInputStream(driverConfiguration.getConfiguration() + File.separator + ENCODING_DECODING_DEFINITION_FILE));
+        ProcessingDefinition processingDefinition = ProcessingDefinition.loadAll(coreConfiguration.getDefinitionsLocation());
+        if (spacecraftConfiguration.getTmDataLinkConfigurations().getType() != TransferFrameType.TM) {
+            System.err.println("Error: only TM transfer frames are supported");
+            System.exit(1);
+        }
+        if (spacecraftConfiguration.getPacketServiceConfiguration().getServices().stream().anyMatch(o -> o.getType().equals(AesEncryptionService.class.getName()))) {
+            System.err.println("Error: encrypted downlink not supported, remove the " + AesEncryptionService.class.getSimpleName() + " from the driver configuration");
+            System.exit(1);
+        }
+
+        // Prepare the synthetic downlink
+        System.out.println("Encoding packet bodies...");
+        SyntheticDownlink downlink = new SyntheticDownlink(spacecraftConfiguration, encDecDefs, processingDefinition);
+        System.out.println(downlink.getNumberOfTemplates() + " packet templates ready, frames generated on TM VC " + downlink.getVirtualChannelId());
+
+        // Start the system
+        System.setProperty(INIT_FILE_KEY, coreConfigurationPath);
+        IReatmetricSystem system = ServiceLoader.load(IReatmetricRegister.class).findFirst()
+                .orElseThrow(() -> new ReatmetricException("ReatMetric core implementation not found in the module path"))
+                .availableSystems().get(0);
+        System.out.println("Initialising system...");
+        system.initialise(status -> System.out.println("System status: " + status));
+        if (!(system instanceof IServiceCoreContext)) {
+            System.err.println("Error: the system implementation does not provide access to the raw data broker");
+            System.exit(1);
+        }
+        IRawDataBroker broker = ((IServiceCoreContext) system).getRawDataBroker();
+
+        // Subscribe to the TM packets and to the parameter updates
+        PipelineStatistics statistics = new PipelineStatistics();
+        IRawDataSubscriber packetSubscriber = statistics::packetsReceived;
+        IParameterDataSubscriber parameterSubscriber = statistics::parametersReceived;
+        system.getRawDataMonitorService().subscribe(packetSubscriber, new RawDataFilter(false, null, null, Collections.singletonList(Constants.T_TM_PACKET), null, null));
+        system.getParameterDataMonitorService().subscribe(parameterSubscriber, null);
+
+        // Run the benchmark
+        FrameInjector injector = new FrameInjector(downlink, broker, spacecraftConfiguration, framesPerSecond, statistics);
+        injector.start();
+        System.out.println("Warm-up for " + warmupSeconds + " seconds at " + framesPerSecond + " frames/s...");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        statistics.reset();
+        System.out.println("Measurement for " + durationSeconds + " seconds");
+        int elapsed = 0;
+        while (elapsed < durationSeconds) {
+            int period = Math.min(REPORT_PERIOD_SECONDS, durationSeconds - elapsed);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(period));
+            elapsed += period;
+            System.out.println(String.format("[%5d s] %s", elapsed, statistics.sampleInterval()));
+        }
+        injector.stop();
+        System.out.println("Summary (target " + framesPerSecond + " frames/s)");
+        System.out.println(statistics.summary());
+
+        // Cleanup
+        system.getRawDataMonitorService().unsubscribe(packetSubscriber);
+        system.getParameterDataMonitorService().unsubscribe(parameterSubscriber);
+        system.dispose();
+        System.exit(0);
+    }
+
+    /**
+     * Generator of TM frames on a single virtual channel, carrying pre-encoded packets.
+     */
+    private static class SyntheticDownlink {
+
+        private final SpacecraftConfiguration configuration;
+        private final List<PacketTemplate> periodicPackets = new ArrayList<>();
+        private final List<PacketTemplate> eventPackets = new ArrayList<>();
+        private final Map<Integer, AtomicLong> apid2counter = new HashMap<>();
+        private final TmSenderVirtualChannel virtualChannel;
+        private final List<TmTransferFrame> generatedFrames = new ArrayList<>();
+        private final Instant epoch;
+
+        private int periodicCounter = 0;
+        private int eventCounter = 0;
+        private long packetCounter = 0;
+
+        public SyntheticDownlink(SpacecraftConfiguration configuration, Definition encDecDefs, ProcessingDefinition processingDefinition) {
+            this.configuration = configuration;
+            this.epoch = configuration.getEpoch() != null ? configuration.getEpoch().toInstant() : null;
+            IPacketEncoder encoder = new DefaultPacketEncoder(new PacketDefinitionIndexer(encDecDefs), DefaultPacketEncoder.DEFAULT_MAX_PACKET_SIZE, epoch);
+            ProcessingModelBasedResolver resolver = new ProcessingModelBasedResolver(processingDefinition, new DefinitionValueBasedResolver(new DefaultNullBasedResolver(), true),
+                    configuration.getTmPacketConfiguration().getParameterIdOffset(), encDecDefs);
+            for (PacketDefinition pd : encDecDefs.getPacketDefinitions()) {
+                if (!pd.getType().equals(Constants.ENCDEC_TM_PACKET_TYPE)) {
+                    continue;
+                }
+                int apid = matcherValue(pd, SpacecraftModel.APID_FIELD_NAME);
+                int type = matcherValue(pd, SpacecraftModel.PUS_TYPE_FIELD_NAME);
+                int subtype = matcherValue(pd, SpacecraftModel.PUS_SUBTYPE_FIELD_NAME);
+                if ((type == 3 && subtype == 25) || type == 5) {
+                    PacketTemplate template = new PacketTemplate(pd, apid, type, subtype, configuration.getTmPacketConfiguration().getPusConfigurationFor((short) apid));
+                    if (template.encodeBody(encoder, resolver)) {
+                        (type == 5 ? eventPackets : periodicPackets).add(template);
+                    }
+                }
+            }
+            if (periodicPackets.isEmpty()) {
+                throw new IllegalStateException("No PUS 3,25 packet definition could be encoded");
+            }
+            int vcId = 0;
+            if (configuration.getTmDataLinkConfigurations().getTmVcConfigurations() != null) {
+                vcId = configuration.getTmDataLinkConfigurations().getTmVcConfigurations().stream()
+                        .filter(o -> o.getProcessType() == VirtualChannelType.PACKET)
+                        .map(TmVcConfiguration::getId)
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalStateException("No TM VC configured for packet processing"));
+            }
+            TmMasterChannelMuxer muxer = new TmMasterChannelMuxer(generatedFrames::add);
+            this.virtualChannel = new TmSenderVirtualChannel(configuration.getId(), vcId, VirtualChannelAccessMode.PACKET,
+                    configuration.getTmDataLinkConfigurations().isFecfPresent(), configuration.getTmDataLinkConfigurations().getFrameLength(),
+                    muxer::getNextCounter, null);
+            this.virtualChannel.register(muxer);
+        }
+
+        private static int matcherValue(PacketDefinition pd, String fieldName) {
+            for (IdentFieldMatcher md : pd.getMatchers()) {
+                if (md.getField().getId().equals(fieldName)) {
+                    return md.getValue();
+                }
+            }
+            return 0;
+        }
+
+        public int getNumberOfTemplates() {
+            return periodicPackets.size() + eventPackets.size();
+        }
+
+        public int getVirtualChannelId() {
+            return virtualChannel.getVirtualChannelId();
+        }
+
+        /**
+         * Dispatch the next packet to the virtual channel and return the generated frames, if any.
+         *
+         * @return the list of completed frames, to be used before the next invocation
+         */
+        public List<TmTransferFrame> next() {
+            generatedFrames.clear();
+            PacketTemplate template;
+            if (!eventPackets.isEmpty() && ++packetCounter % EVENT_PACKET_PERIOD == 0) {
+                template = eventPackets.get(eventCounter++ % eventPackets.size());
+            } else {
+                template = periodicPackets.get(periodicCounter++ % periodicPackets.size());
+            }
+            virtualChannel.dispatch(template.generate());
+            return generatedFrames;
+        }
+
+        private int nextCounter(int apid) {
+            return (int) (apid2counter.computeIfAbsent(apid, k -> new AtomicLong(0)).getAndIncrement() & 0x3FFF);
+        }
+
+        private class PacketTemplate {
+            private final PacketDefinition definition;
+            private final int apid;
+            private final int type;
+            private final int subtype;
+            private final TmPusConfiguration pusConfiguration;
+            private byte[] body;
+
+            public PacketTemplate(PacketDefinition definition, int apid, int type, int subtype, TmPusConfiguration pusConfiguration) {
+                this.definition = definition;
+                this.apid = apid;
+                this.type = type;
+                this.subtype = subtype;
+                this.pusConfiguration = pusConfiguration;
+            }
+
+            private boolean encodeBody(IPacketEncoder encoder, ProcessingModelBasedResolver resolver) {
+                try {
+                    // The encoded packet includes the space for the primary and secondary headers
+                    byte[] encoded = encoder.encode(definition.getId(), resolver);
+                    int headersLength = SpacePacket.SP_PRIMARY_HEADER_LENGTH + encodePusHeader(new byte[64]);
+                    this.body = Arrays.copyOfRange(encoded, headersLength, encoded.length);
+                    return true;
+                } catch (EncodingException | RuntimeException e) {
+                    LOG.log(Level.WARNING, "Packet " + definition.getId() + " cannot be encoded, skipped: " + e.getMessage());
+                    return false;
+                }
+            }
+
+            private int encodePusHeader(byte[] buffer) {
+                int destIdLen = pusConfiguration.getDestinationLength();
+                TmPusHeader pusHeader = new TmPusHeader((byte) 1, (short) type, (short) subtype, null, destIdLen == 0 ? null : 0, Instant.now(), null);
+                return pusHeader.encodeTo(buffer, 0, destIdLen, pusConfiguration.getObtConfiguration().isExplicitPField(), epoch, pusConfiguration.getTimeDescriptor(), pusConfiguration.getTmSpareLength());
+            }
+
+            private SpacePacket generate() {
+                byte[] encodedPusHeader = new byte[64];
+                int secHeaderLen = encodePusHeader(encodedPusHeader);
+                SpacePacketBuilder builder = SpacePacketBuilder.create().setTelemetryPacket().setApid(apid).setPacketSequenceCount(nextCounter(apid))
+                        .setSecondaryHeaderFlag(true).setSequenceFlag(SpacePacket.SequenceFlagType.UNSEGMENTED).setQualityIndicator(true);
+                builder.addData(encodedPusHeader, 0, secHeaderLen);
+                builder.addData(body);
+                boolean pec = pusConfiguration.getTmPecPresent() == PacketErrorControlType.ISO || pusConfiguration.getTmPecPresent() == PacketErrorControlType.CRC;
+                if (pec) {
+                    builder.addData(new byte[2]);
+                }
+                SpacePacket sp = builder.build();
+                forceIdentificationFields(sp.getPacket());
+                if (pusConfiguration.getTmPecPresent() == PacketErrorControlType.ISO) {
+                    ByteBuffer.wrap(sp.getPacket(), sp.getLength() - 2, 2).putShort(PusChecksumUtil.isoChecksum(sp.getPacket(), 0, sp.getLength() - 2));
+                } else if (pusConfiguration.getTmPecPresent() == PacketErrorControlType.CRC) {
+                    ByteBuffer.wrap(sp.getPacket(), sp.getLength() - 2, 2).putShort(PusChecksumUtil.crcChecksum(sp.getPacket(), 0, sp.getLength() - 2));
+                }
+                return sp;
+            }
+
+            private void forceIdentificationFields(byte[] data) {
+                for (IdentFieldMatcher matcher : definition.getMatchers()) {
+                    IdentField field = matcher.getField();
+                    if (field.getByteOffset() == 0) { // APID not needed
+                        continue;
+                    }
+                    ByteBuffer bb = ByteBuffer.wrap(data, field.getByteOffset(), field.getByteLength());
+                    switch (field.getByteLength()) {
+                        case 1:
+                            bb.put((byte) matcher.getValue());
+                            break;
+                        case 2:
+                            bb.putShort((short) matcher.getValue());
+                            break;
+                        case 4:
+                            bb.putInt(matcher.getValue());
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread injecting the generated frames into the raw data broker at the requested rate.
+     */
+    private static class FrameInjector {
+
+        private final SyntheticDownlink downlink;
+        private final IRawDataBroker broker;
+        private final SpacecraftConfiguration configuration;
+        private final long framePeriodNanos;
+        private final PipelineStatistics statistics;
+        private final String route;
+        private final Thread thread;
+        private volatile boolean running;
+
+        public FrameInjector(SyntheticDownlink downlink, IRawDataBroker broker, SpacecraftConfiguration configuration, int framesPerSecond, PipelineStatistics statistics) {
+            this.downlink = downlink;
+            this.broker = broker;
+            this.configuration = configuration;
+            this.framePeriodNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, framesPerSecond);
+            this.statistics = statistics;
+            this.route = configuration.getId() + "." + downlink.getVirtualChannelId() + "." + BENCHMARK_ROUTE_SUFFIX;
+            this.thread = new Thread(this::run, "Benchmark Frame Injector");
+            this.thread.setDaemon(true);
+        }
+
+        public void start() {
+            running = true;
+            thread.start();
+        }
+
+        public void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        private void run() {
+            long nextFrameTime = System.nanoTime();
+            while (running) {
+                for (TmTransferFrame frame : downlink.next()) {
+                    long waitTime = nextFrameTime - System.nanoTime();
+                    if (waitTime > 0) {
+                        LockSupport.parkNanos(waitTime);
+                    }
+                    nextFrameTime += framePeriodNanos;
+                    inject(frame);
+                }
+            }
+        }
+
+        private void inject(TmTransferFrame frame) {
+            // Same information provided by the SLE connectors
+            Instant now = Instant.now();
+            RawData rd = new RawData(broker.nextRawDataId(), now, Constants.N_TM_TRANSFER_FRAME, Constants.T_TM_FRAME, route, String.valueOf(frame.getSpacecraftId()),
+                    Quality.GOOD, null, frame.getFrame(), now, SpacecraftPipelineBenchmark.class.getSimpleName(), null);
+            frame.setAnnotationValue(Constants.ANNOTATION_ROUTE, rd.getRoute());
+            frame.setAnnotationValue(Constants.ANNOTATION_SOURCE, rd.getSource());
+            frame.setAnnotationValue(Constants.ANNOTATION_GEN_TIME, rd.getGenerationTime());
+            frame.setAnnotationValue(Constants.ANNOTATION_RCP_TIME, rd.getReceptionTime());
+            frame.setAnnotationValue(Constants.ANNOTATION_UNIQUE_ID, rd.getInternalId());
+            rd.setData(frame);
+            try {
+                broker.distribute(Collections.singletonList(rd));
+                statistics.frameInjected();
+            } catch (ReatmetricException e) {
+                LOG.log(Level.SEVERE, "Cannot distribute TM frame: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Counters, latency histograms and per-stage allocation measurements.
+     */
+    private static class PipelineStatistics {
+
+        private static final String[] STAGES = new String[] {"TM data link", "TM packet", "Processing model", "Other"};
+
+        private final AtomicLong frames = new AtomicLong();
+        private final AtomicLong packets = new AtomicLong();
+        private final AtomicLong parameters = new AtomicLong();
+        private final LatencyHistogram packetLatency = new LatencyHistogram();
+        private final LatencyHistogram parameterLatency = new LatencyHistogram();
+        private final LatencyHistogram intervalPacketLatency = new LatencyHistogram();
+        private final LatencyHistogram intervalParameterLatency = new LatencyHistogram();
+        private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final Map<Long, Long> lastAllocatedBytes = new HashMap<>();
+        private final long[] stageAllocatedBytes = new long[STAGES.length];
+
+        private long startTime;
+        private long intervalTime;
+        private long intervalFrames;
+        private long intervalPackets;
+        private long intervalParameters;
+        private final long[] intervalStageAllocatedBytes = new long[STAGES.length];
+
+        public PipelineStatistics() {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+            reset();
+        }
+
+        public synchronized void reset() {
+            frames.set(0);
+            packets.set(0);
+            parameters.set(0);
+            packetLatency.reset();
+            parameterLatency.reset();
+            intervalPacketLatency.reset();
+            intervalParameterLatency.reset();
+            Arrays.fill(stageAllocatedBytes, 0);
+            Arrays.fill(intervalStageAllocatedBytes, 0);
+            intervalFrames = 0;
+            intervalPackets = 0;
+            intervalParameters = 0;
+            sampleAllocations();
+            Arrays.fill(stageAllocatedBytes, 0);
+            startTime = System.nanoTime();
+            intervalTime = startTime;
+        }
+
+        public void frameInjected() {
+            frames.incrementAndGet();
+        }
+
+        public void packetsReceived(List<RawData> items) {
+            long now = nowMicros();
+            for (RawData rd : items) {
+                long latency = now - toMicros(rd.getReceptionTime());
+                packetLatency.record(latency);
+                intervalPacketLatency.record(latency);
+            }
+            packets.addAndGet(items.size());
+        }
+
+        public void parametersReceived(List<ParameterData> items) {
+            long now = nowMicros();
+            for (ParameterData pd : items) {
+                if (pd.getReceptionTime() == null) {
+                    continue;
+                }
+                long latency = now - toMicros(pd.getReceptionTime());
+                parameterLatency.record(latency);
+                intervalParameterLatency.record(latency);
+            }
+            parameters.addAndGet(items.size());
+        }
+
+        private static long nowMicros() {
+            return toMicros(Instant.now());
+        }
+
+        private static long toMicros(Instant t) {
+            return TimeUnit.SECONDS.toMicros(t.getEpochSecond()) + t.getNano() / 1000;
+        }
+
+        private void sampleAllocations() {
+            long[] ids = threadBean.getAllThreadIds();
+            long[] allocated = threadBean.getThreadAllocatedBytes(ids);
+            java.lang.management.ThreadInfo[] infos = threadBean.getThreadInfo(ids);
+            for (int i = 0; i < ids.length; ++i) {
+                if (infos[i] == null || allocated[i] < 0) {
+                    continue;
+                }
+                Long previous = lastAllocatedBytes.put(ids[i], allocated[i]);
+                long delta = allocated[i] - (previous != null ? previous : 0);
+                int stage = stageOf(infos[i].getThreadName());
+                if (stage >= 0) {
+                    stageAllocatedBytes[stage] += delta;
+                }
+            }
+        }
+
+        private static int stageOf(String threadName) {
+            if (threadName.equals("Benchmark Frame Injector")) {
+                // The generation of the downlink is not part of the measurement
+                return -1;
+            } else if (threadName.contains("TM Data Link Processor")) {
+                // Raw data dispatcher of the TM data link processor and VC lanes
+                return 0;
+            } else if (threadName.contains("TM Packet Processor") || threadName.startsWith("TM Packet Processing") || threadName.startsWith("Service Broker")) {
+                // Raw data dispatcher of the TM packet processor, decoder lanes and packet services
+                return 1;
+            } else if (threadName.startsWith("Reatmetric Processing")) {
+                return 2;
+            } else {
+                return 3;
+            }
+        }
+
+        public synchronized String sampleInterval() {
+            long now = System.nanoTime();
+            double seconds = (now - intervalTime) / 1e9;
+            intervalTime = now;
+            long f = frames.get();
+            long p = packets.get();
+            long pr = parameters.get();
+            sampleAllocations();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("frames/s: %.0f, packets/s: %.0f, parameters/s: %.0f",
+                    (f - intervalFrames) / seconds, (p - intervalPackets) / seconds, (pr - intervalParameters) / seconds));
+            intervalFrames = f;
+            intervalPackets = p;
+            intervalParameters = pr;
+            sb.append(", frame->packet ").append(intervalPacketLatency.render());
+            sb.append(", frame->parameter ").append(intervalParameterLatency.render());
+            intervalPacketLatency.reset();
+            intervalParameterLatency.reset();
+            sb.append(", allocation MB/s");
+            for (int i = 0; i < STAGES.length; ++i) {
+                sb.append(String.format(" %s: %.1f", STAGES[i], (stageAllocatedBytes[i] - intervalStageAllocatedBytes[i]) / seconds / (1024 * 1024)));
+                intervalStageAllocatedBytes[i] = stageAllocatedBytes[i];
+            }
+            return sb.toString();
+        }
+
+        public synchronized String summary() {
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            sampleAllocations();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("  Duration: %.1f s%n", seconds));
+            sb.append(String.format("  Frames: %d (%.1f frames/s)%n", frames.get(), frames.get() / seconds));
+            sb.append(String.format("  TM packets: %d (%.1f packets/s)%n", packets.get(), packets.get() / seconds));
+            sb.append(String.format("  Parameter updates: %d (%.1f updates/s)%n", parameters.get(), parameters.get() / seconds));
+            sb.append("  Latency frame->packet: ").append(packetLatency.render()).append(System.lineSeparator());
+            sb.append("  Latency frame->parameter: ").append(parameterLatency.render()).append(System.lineSeparator());
+            for (int i = 0; i < STAGES.length; ++i) {
+                sb.append(String.format("  Allocation rate %s: %.1f MB/s", STAGES[i], stageAllocatedBytes[i] / seconds / (1024 * 1024)));
+                if (frames.get() > 0) {
+                    sb.append(String.format(" (%d bytes/frame)", stageAllocatedBytes[i] / frames.get()));
+                }
+                sb.append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Log-linear histogram of latencies in microseconds, with 32 sub-buckets per power of two (max error ca 3%).
+     */
+    private static class LatencyHistogram {
+
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            buckets.incrementAndGet(indexOf(v));
+            count.incrementAndGet();
+            max.accumulateAndGet(v, Math::max);
+        }
+
+        public void reset() {
+            for (int i = 0; i < buckets.length(); ++i) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            max.set(0);
+        }
+
+        private static int indexOf(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(v);
+            int subBucket = (int) (v >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long valueOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int subBucket = index % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+        }
+
+        public long percentile(double p) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * p / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); ++i) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return valueOf(i);
+                }
+            }
+            return max.get();
+        }
+
+        public String render() {
+            return String.format("p50/p90/p99/max: %.2f/%.2f/%.2f/%.2f ms", percentile(50) / 1000.0, percentile(90) / 1000.0,
+                    percentile(99) / 1000.0, max.get() / 1000.0);
+        }
+    }
+}
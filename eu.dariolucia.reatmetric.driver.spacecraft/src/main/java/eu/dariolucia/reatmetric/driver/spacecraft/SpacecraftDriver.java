@@ -31,6 +31,7 @@ import eu.dariolucia.ccsds.sle.utl.config.cltu.CltuServiceInstanceConfiguration;
 import eu.dariolucia.ccsds.sle.utl.config.raf.RafServiceInstanceConfiguration;
 import eu.dariolucia.ccsds.sle.utl.config.rcf.RcfServiceInstanceConfiguration;
 import eu.dariolucia.reatmetric.api.common.DebugInformation;
+import eu.dariolucia.reatmetric.api.common.IDebugInfoProvider;
 import eu.dariolucia.reatmetric.api.common.IUniqueId;
 import eu.dariolucia.reatmetric.api.common.SystemStatus;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
@@ -59,6 +60,7 @@ import eu.dariolucia.reatmetric.driver.spacecraft.definition.ServiceConfiguratio
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.packet.ITcPacketInjector;
 import eu.dariolucia.reatmetric.driver.spacecraft.packet.TcPacketProcessor;
+import eu.dariolucia.reatmetric.driver.spacecraft.packet.PrecompiledPacketDecoder;
 import eu.dariolucia.reatmetric.driver.spacecraft.packet.TmPacketProcessor;
 import eu.dariolucia.reatmetric.driver.spacecraft.security.DataLinkSecurityManager;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IService;
@@ -121,7 +123,7 @@ public class SpacecraftDriver implements IDriver, IRawDataRenderer, IActivityHan
 
     private Definition encodingDecodingDefinitions;
     private IPacketIdentifier packetIdentifier;
-    private DefaultPacketDecoder packetDecoder;
+    private IPacketDecoder packetDecoder;
     private DefaultPacketEncoder packetEncoder;
 
     private volatile SystemStatus status = SystemStatus.UNKNOWN;
@@ -314,7 +316,7 @@ public class SpacecraftDriver implements IDriver, IRawDataRenderer, IActivityHan
     private void loadPacketServices() throws ReatmetricException {
         for (ServiceConfiguration sc : configuration.getPacketServiceConfiguration().getServices()) {
             IService theService = loadService(sc);
-            serviceBroker.registerService(theService);
+            serviceBroker.registerService(theService, sc.isDedicatedThread(), sc.getDedicatedThreadQueueSize());
             LOG.info(theService.getName() + " registered");
         }
     }
@@ -350,7 +352,11 @@ public class SpacecraftDriver implements IDriver, IRawDataRenderer, IActivityHan
         LOG.info("Loading TM/TC packet configuration at " + filePath);
         this.encodingDecodingDefinitions = Definition.load(new FileInputStream(filePath));
         this.packetIdentifier = new FieldGroupBasedPacketIdentifier(this.encodingDecodingDefinitions, true, Collections.singletonList(Constants.ENCDEC_TM_PACKET_TYPE));
-        this.packetDecoder = new DefaultPacketDecoder(new PacketDefinitionIndexer(encodingDecodingDefinitions), epoch);
+        if(this.configuration.getTmPacketConfiguration().isPrecompiledDecoding()) {
+            this.packetDecoder = new PrecompiledPacketDecoder(new PacketDefinitionIndexer(encodingDecodingDefinitions), epoch);
+        } else {
+            this.packetDecoder = new DefaultPacketDecoder(new PacketDefinitionIndexer(encodingDecodingDefinitions), epoch);
+        }
         this.packetEncoder = new DefaultPacketEncoder(new PacketDefinitionIndexer(encodingDecodingDefinitions), MAX_TC_PACKET_SIZE, epoch);
     }
 
@@ -610,6 +616,14 @@ public class SpacecraftDriver implements IDriver, IRawDataRenderer, IActivityHan
         List<DebugInformation> toReturn = new ArrayList<>();
         toReturn.addAll(this.tmPacketProcessor.currentDebugInfo()); // # of extracted parameter samples per second
         toReturn.addAll(this.tmDataLinkProcessor.currentDebugInfo()); // # of frames and extracted packets per second
+        for(SleServiceInstanceManager<?, ?> manager : this.sleManagers) {
+            toReturn.addAll(manager.currentDebugInfo()); // frame/CLTU rates, latency, discarded and late data units
+        }
+        for(IReceptionOnlyConnector connector : this.receptionOnlyConnectors) {
+            if(connector instanceof IDebugInfoProvider) {
+                toReturn.addAll(((IDebugInfoProvider) connector).currentDebugInfo()); // e.g. replay progress
+            }
+        }
         return toReturn;
     }
 }
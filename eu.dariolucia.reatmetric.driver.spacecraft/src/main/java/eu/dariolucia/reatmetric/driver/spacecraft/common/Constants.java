@@ -39,6 +39,7 @@ public class Constants {
     public static final String T_TIME_COEFFICIENTS = "TIME COEFF";
     public static final String T_TC_VERIFICATION_MAP = "TC VERIFICATION MAP";
     public static final String T_SCHEDULE_MODEL_STATE = "ONBOARD SCHEDULE";
+    public static final String T_SCHEDULE_MODEL_DELTA = "ONBOARD SCHEDULE DELTA";
 
     // Annotations at AbstractTransferFrame/SpacePacket level
     public static final String ANNOTATION_ROUTE = "##ROUTE";
@@ -21,6 +21,8 @@ import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
 import eu.dariolucia.reatmetric.api.archive.IArchive;
 import eu.dariolucia.reatmetric.api.archive.IArchiveFactory;
 import eu.dariolucia.reatmetric.api.archive.exceptions.ArchiveException;
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
+import eu.dariolucia.reatmetric.api.common.IDebugInfoProvider;
 import eu.dariolucia.reatmetric.api.common.Pair;
 import eu.dariolucia.reatmetric.api.common.RetrievalDirection;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
@@ -39,18 +41,27 @@ import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
 import eu.dariolucia.reatmetric.driver.spacecraft.common.IReceptionOnlyConnector;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
+import eu.dariolucia.reatmetric.driver.spacecraft.tmtc.TmFrameDescriptor;
 
 import java.rmi.RemoteException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This connector allow to re-inject all TM packets of good quality (no time packets) from the provided archive location
  * and between the two provided times.
+ *
+ * In accelerated mode, the archive is read in batches by a dedicated prefetch thread, so that the retrieval of the data
+ * overlaps with its distribution and processing. The connector reports the replay progress and throughput as debug
+ * information.
  */
-public class TmPacketReplayConnector extends AbstractTransportConnector implements IReceptionOnlyConnector {
+public class TmPacketReplayConnector extends AbstractTransportConnector implements IReceptionOnlyConnector, IDebugInfoProvider {
 
     private static final Logger LOG = Logger.getLogger(TmPacketReplayConnector.class.getName());
 
@@ -58,6 +69,12 @@ public class TmPacketReplayConnector extends AbstractTransportConnector implemen
     public static final String SPACECRAFT_ID_KEY = "spacecraft.id";
     public static final String START_TIME_KEY = "start.time";
     public static final String END_TIME_KEY = "end.time";
+    public static final String ACCELERATED_KEY = "accelerated";
+    public static final String BATCH_SIZE_KEY = "batch.size";
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int PREFETCH_QUEUE_SIZE = 4;
+    private static final int PREFETCH_POLL_TIMEOUT = 500;
 
     private SpacecraftConfiguration spacecraftConfiguration;
     private IRawDataBroker broker;
@@ -70,6 +87,12 @@ public class TmPacketReplayConnector extends AbstractTransportConnector implemen
     private volatile Thread extractionThread;
     private volatile boolean extracting;
 
+    private volatile Instant replayStartTime;
+    private volatile Instant replayEndTime;
+    private volatile Instant lastReplayedTime;
+    private volatile long replayedPackets;
+    private volatile long replayStartNanos;
+
     public TmPacketReplayConnector() {
         super("Replay Connector", "Replay connector based on raw data re-ingestion");
     }
@@ -80,8 +103,12 @@ public class TmPacketReplayConnector extends AbstractTransportConnector implemen
         initialisationDescriptionMap.put(START_TIME_KEY, Pair.of("Start time", ValueTypeEnum.ABSOLUTE_TIME));
         initialisationDescriptionMap.put(END_TIME_KEY, Pair.of("End time", ValueTypeEnum.ABSOLUTE_TIME));
         initialisationDescriptionMap.put(SPACECRAFT_ID_KEY, Pair.of("Spacecraft ID", ValueTypeEnum.UNSIGNED_INTEGER));
+        initialisationDescriptionMap.put(ACCELERATED_KEY, Pair.of("Accelerated replay", ValueTypeEnum.BOOLEAN));
+        initialisationDescriptionMap.put(BATCH_SIZE_KEY, Pair.of("Archive retrieval batch size", ValueTypeEnum.UNSIGNED_INTEGER));
 
         initialisationMap.put(SPACECRAFT_ID_KEY, (long) spacecraftConfiguration.getId());
+        initialisationMap.put(ACCELERATED_KEY, false);
+        initialisationMap.put(BATCH_SIZE_KEY, (long) DEFAULT_BATCH_SIZE);
     }
 
     @Override
@@ -112,6 +139,8 @@ public class TmPacketReplayConnector extends AbstractTransportConnector implemen
         final Instant startTime = (Instant) getInitialisationMap().get(START_TIME_KEY);
         final Instant endTime = (Instant) getInitialisationMap().get(END_TIME_KEY);
         final String spacecraftId = String.valueOf(getInitialisationMap().getOrDefault(SPACECRAFT_ID_KEY, spacecraftConfiguration.getId()));
+        final boolean accelerated = Boolean.TRUE.equals(getInitialisationMap().get(ACCELERATED_KEY));
+        final int batchSize = (int) Math.max(1, ((Number) getInitialisationMap().getOrDefault(BATCH_SIZE_KEY, (long) DEFAULT_BATCH_SIZE)).longValue());
         if(archiveLocation == null || startTime == null || endTime == null) {
             updateAlarmState(AlarmState.ALARM);
             updateConnectionStatus(TransportConnectionStatus.ERROR);
@@ -137,82 +166,241 @@ public class TmPacketReplayConnector extends AbstractTransportConnector implemen
         updateConnectionStatus(TransportConnectionStatus.OPEN);
         extracting = true;
         extractionThread = new Thread(() -> {
-            extract(startTime, endTime, spacecraftId);
+            extract(startTime, endTime, spacecraftId, accelerated, batchSize);
         });
         extractionThread.setDaemon(true);
         extractionThread.setName("TM Packet Replay Extraction Thread");
         extractionThread.start();
     }
 
-    private void extract(Instant startTime, Instant endTime, String spacecraftId) {
+    private void extract(Instant startTime, Instant endTime, String spacecraftId, boolean accelerated, int batchSize) {
         IArchive arc = externalArchive;
         IRawDataArchive rawDataArch = arc.getArchive(IRawDataArchive.class);
         RawDataFilter rdf = new RawDataFilter(true, null, null, Collections.singletonList(Constants.T_TM_PACKET), Collections.singletonList(spacecraftId), Collections.singletonList(Quality.GOOD));
-        RawData lastExtracted = null;
-        boolean errorDetected = false;
+        ReplayReader reader = new ReplayReader(rawDataArch, rdf, startTime, endTime, batchSize);
+        replayStartTime = startTime;
+        replayEndTime = endTime;
+        replayedPackets = 0;
+        replayStartNanos = System.nanoTime();
+        boolean errorDetected;
+        if(accelerated) {
+            errorDetected = extractAccelerated(reader);
+        } else {
+            errorDetected = extractSequential(reader);
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - replayStartNanos) / 1000000);
+        LOG.log(Level.INFO, String.format("Replay of %d packets (%s - %s) completed in %d ms: %.1f packets/second", replayedPackets, startTime, endTime, elapsedMillis, replayedPackets * 1000.0 / elapsedMillis));
+        updateConnectionStatus(TransportConnectionStatus.DISCONNECTING);
+        // Stop archive
+        try {
+            arc.dispose();
+        } catch (ArchiveException e) {
+            LOG.log(Level.SEVERE, "Archive error when disposing: " + e.getMessage(), e);
+            errorDetected = true;
+        }
+        updateConnectionStatus(errorDetected ? TransportConnectionStatus.ERROR : TransportConnectionStatus.IDLE);
+        if(!errorDetected) {
+            updateAlarmState(AlarmState.NOT_APPLICABLE);
+        }
+    }
+
+    /**
+     * Read and distribute the batches in sequence, from the extraction thread.
+     *
+     * @param reader the batch reader
+     * @return true if an error was detected, otherwise false
+     */
+    private boolean extractSequential(ReplayReader reader) {
         while(extracting) {
             try {
-                List<RawData> extractedPackets = null;
-                if (lastExtracted == null) {
-                    extractedPackets = rawDataArch.retrieve(startTime, 1000, RetrievalDirection.TO_FUTURE, rdf);
+                List<RawData> mappedPackets = reader.next();
+                if(mappedPackets == null) {
+                    extracting = false;
                 } else {
-                    extractedPackets = rawDataArch.retrieve(lastExtracted, 1000, RetrievalDirection.TO_FUTURE, rdf);
-                }
-                // Iterate and map packets
-                List<RawData> mappedPackets = new ArrayList<>(extractedPackets.size());
-                for (RawData pkt : extractedPackets) {
-                    if (!extracting) {
-                        break;
-                    }
-                    if (pkt.getGenerationTime().isAfter(endTime)) {
-                        // Need to stop
-                        extracting = false;
-                        break; // break the for loop
-                    } else {
-                        // Map packet
-                        mappedPackets.add(mapPacket(pkt));
-                        rxBytes += pkt.getContents().length;
-                    }
-                    lastExtracted = pkt;
-                }
-                // Distribute and eventually stop
-                if(!mappedPackets.isEmpty()) {
-                    broker.distribute(mappedPackets);
+                    distribute(mappedPackets);
                 }
             } catch (ArchiveException e) {
                 LOG.log(Level.SEVERE, "Archive error when retrieving data for replay: " + e.getMessage(), e);
                 updateAlarmState(AlarmState.ALARM);
-                errorDetected = true;
                 extracting = false;
+                return true;
             } catch (ReatmetricException e) {
                 LOG.log(Level.SEVERE, "Raw data broker error when distributing data for replay: " + e.getMessage(), e);
                 updateAlarmState(AlarmState.ALARM);
-                errorDetected = true;
                 extracting = false;
+                return true;
             }
         }
-        updateConnectionStatus(TransportConnectionStatus.DISCONNECTING);
-        // Stop archive
+        return false;
+    }
+
+    /**
+     * Read the batches from a dedicated prefetch thread, so that the retrieval of the next batches from the archive
+     * overlaps with the distribution (and therefore with the decoding and processing) of the current one.
+     *
+     * @param reader the batch reader
+     * @return true if an error was detected, otherwise false
+     */
+    private boolean extractAccelerated(ReplayReader reader) {
+        BlockingQueue<List<RawData>> prefetchQueue = new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE);
+        AtomicBoolean readError = new AtomicBoolean(false);
+        Thread prefetchThread = new Thread(() -> {
+            try {
+                List<RawData> batch;
+                while(extracting && (batch = reader.next()) != null) {
+                    prefetchQueue.put(batch);
+                }
+            } catch (ArchiveException e) {
+                LOG.log(Level.SEVERE, "Archive error when retrieving data for replay: " + e.getMessage(), e);
+                updateAlarmState(AlarmState.ALARM);
+                readError.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // End of stream marker
+                prefetchQueue.offer(Collections.emptyList());
+            }
+        });
+        prefetchThread.setDaemon(true);
+        prefetchThread.setName("TM Packet Replay Prefetch Thread");
+        prefetchThread.start();
+        boolean errorDetected = false;
         try {
-            arc.dispose();
-        } catch (ArchiveException e) {
-            LOG.log(Level.SEVERE, "Archive error when disposing: " + e.getMessage(), e);
+            while(extracting) {
+                List<RawData> mappedPackets = prefetchQueue.poll(PREFETCH_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if(mappedPackets == null) {
+                    if(!prefetchThread.isAlive() && prefetchQueue.isEmpty()) {
+                        // Prefetch thread terminated without being able to queue the end of stream marker
+                        break;
+                    }
+                    // Nothing yet, check again the extraction flag
+                    continue;
+                }
+                if(mappedPackets.isEmpty()) {
+                    // End of stream
+                    break;
+                }
+                distribute(mappedPackets);
+            }
+        } catch (ReatmetricException e) {
+            LOG.log(Level.SEVERE, "Raw data broker error when distributing data for replay: " + e.getMessage(), e);
+            updateAlarmState(AlarmState.ALARM);
             errorDetected = true;
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING, "Replay extraction thread interrupted");
+            Thread.currentThread().interrupt();
         }
-        updateConnectionStatus(errorDetected ? TransportConnectionStatus.ERROR : TransportConnectionStatus.IDLE);
-        if(!errorDetected) {
-            updateAlarmState(AlarmState.NOT_APPLICABLE);
+        extracting = false;
+        // Unblock the prefetch thread, if waiting on a full queue
+        prefetchThread.interrupt();
+        return errorDetected || readError.get();
+    }
+
+    private void distribute(List<RawData> mappedPackets) throws ReatmetricException {
+        broker.distribute(mappedPackets);
+        // Update progress
+        RawData last = mappedPackets.get(mappedPackets.size() - 1);
+        long bytes = 0;
+        for(RawData rd : mappedPackets) {
+            bytes += rd.getContents().length;
         }
+        rxBytes += bytes;
+        replayedPackets += mappedPackets.size();
+        lastReplayedTime = last.getGenerationTime();
     }
 
     private RawData mapPacket(RawData pkt) {
         RawData toReturn = new RawData(broker.nextRawDataId(), pkt.getGenerationTime(), pkt.getName(), pkt.getType(), pkt.getRoute(), pkt.getSource(), pkt.getQuality(), pkt.getRelatedItem(), pkt.getContents(), pkt.getReceptionTime(), driverName, pkt.getExtension());
         // Create also the packet object
         SpacePacket sp = new SpacePacket(toReturn.getContents(), pkt.getQuality() == Quality.GOOD);
+        // Annotate with reception time and VC ID, as done by the TM data link processor
+        sp.setAnnotationValue(Constants.ANNOTATION_RCP_TIME, pkt.getReceptionTime());
+        if(pkt.getExtension() instanceof TmFrameDescriptor) {
+            sp.setAnnotationValue(Constants.ANNOTATION_VCID, ((TmFrameDescriptor) pkt.getExtension()).getVirtualChannelId());
+        }
         toReturn.setData(sp);
         return toReturn;
     }
 
+    @Override
+    public List<DebugInformation> currentDebugInfo() {
+        Instant start = replayStartTime;
+        Instant end = replayEndTime;
+        Instant last = lastReplayedTime;
+        int progress = 0;
+        if(start != null && end != null && last != null) {
+            long total = Math.max(1, end.toEpochMilli() - start.toEpochMilli());
+            progress = (int) Math.min(100, Math.max(0, (last.toEpochMilli() - start.toEpochMilli()) * 100 / total));
+        }
+        long elapsedMillis = replayStartNanos == 0 ? 0 : (System.nanoTime() - replayStartNanos) / 1000000;
+        int throughput = elapsedMillis == 0 ? 0 : (int) (replayedPackets * 1000 / elapsedMillis);
+        return Arrays.asList(
+                DebugInformation.of(getName(), "Replay progress", progress, 100, "%"),
+                DebugInformation.of(getName(), "Replayed packets", (int) replayedPackets, null, "packets"),
+                DebugInformation.of(getName(), "Replay throughput", throughput, null, "packets/second")
+        );
+    }
+
+    /**
+     * Reader of the archived packets, in batches of the configured size, mapped for re-injection.
+     */
+    private class ReplayReader {
+
+        private final IRawDataArchive rawDataArch;
+        private final RawDataFilter filter;
+        private final Instant startTime;
+        private final Instant endTime;
+        private final int batchSize;
+        private RawData lastExtracted;
+        private boolean completed;
+
+        public ReplayReader(IRawDataArchive rawDataArch, RawDataFilter filter, Instant startTime, Instant endTime, int batchSize) {
+            this.rawDataArch = rawDataArch;
+            this.filter = filter;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Retrieve and map the next batch.
+         *
+         * @return the next (non-empty) batch, or null if no more packets are available
+         * @throws ArchiveException in case of archive error
+         */
+        public List<RawData> next() throws ArchiveException {
+            while(!completed) {
+                List<RawData> extractedPackets;
+                if (lastExtracted == null) {
+                    extractedPackets = rawDataArch.retrieve(startTime, batchSize, RetrievalDirection.TO_FUTURE, filter);
+                } else {
+                    extractedPackets = rawDataArch.retrieve(lastExtracted, batchSize, RetrievalDirection.TO_FUTURE, filter);
+                }
+                if(extractedPackets.isEmpty()) {
+                    completed = true;
+                    break;
+                }
+                // Iterate and map packets
+                List<RawData> mappedPackets = new ArrayList<>(extractedPackets.size());
+                for (RawData pkt : extractedPackets) {
+                    if (pkt.getGenerationTime().isAfter(endTime)) {
+                        // Need to stop
+                        completed = true;
+                        break; // break the for loop
+                    } else {
+                        // Map packet
+                        mappedPackets.add(mapPacket(pkt));
+                    }
+                    lastExtracted = pkt;
+                }
+                if(!mappedPackets.isEmpty()) {
+                    return mappedPackets;
+                }
+            }
+            return null;
+        }
+    }
+
     @Override
     protected synchronized void doDisconnect() {
         if(extracting) {
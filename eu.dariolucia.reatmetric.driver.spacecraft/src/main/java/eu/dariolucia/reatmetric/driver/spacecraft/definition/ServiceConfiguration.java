@@ -29,6 +29,12 @@ public class ServiceConfiguration {
     @XmlAttribute(name = "configuration", required = true)
     private String configuration = "";
 
+    @XmlAttribute(name = "dedicated-thread")
+    private boolean dedicatedThread = false;
+
+    @XmlAttribute(name = "dedicated-thread-queue-size")
+    private int dedicatedThreadQueueSize = 1000;
+
     public String getType() {
         return type;
     }
@@ -46,4 +52,22 @@ public class ServiceConfiguration {
         this.configuration = configuration;
         return this;
     }
+
+    public boolean isDedicatedThread() {
+        return dedicatedThread;
+    }
+
+    public ServiceConfiguration setDedicatedThread(boolean dedicatedThread) {
+        this.dedicatedThread = dedicatedThread;
+        return this;
+    }
+
+    public int getDedicatedThreadQueueSize() {
+        return dedicatedThreadQueueSize;
+    }
+
+    public ServiceConfiguration setDedicatedThreadQueueSize(int dedicatedThreadQueueSize) {
+        this.dedicatedThreadQueueSize = dedicatedThreadQueueSize;
+        return this;
+    }
 }
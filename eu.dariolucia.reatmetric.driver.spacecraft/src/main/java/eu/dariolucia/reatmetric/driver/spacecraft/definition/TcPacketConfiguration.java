@@ -43,6 +43,9 @@ public class TcPacketConfiguration {
     @XmlAttribute(name = "tc-pec-present")
     private PacketErrorControlType tcPecPresent = PacketErrorControlType.CRC;
 
+    @XmlAttribute(name = "encoded-tc-cache-size")
+    private int encodedTcCacheSize = 0;
+
     public int getSpareLength() {
         return spareLength;
     }
@@ -90,4 +93,12 @@ public class TcPacketConfiguration {
     public void setTelecommandIdOffset(int telecommandIdOffset) {
         this.telecommandIdOffset = telecommandIdOffset;
     }
+
+    public int getEncodedTcCacheSize() {
+        return encodedTcCacheSize;
+    }
+
+    public void setEncodedTcCacheSize(int encodedTcCacheSize) {
+        this.encodedTcCacheSize = encodedTcCacheSize;
+    }
 }
@@ -46,6 +46,9 @@ public class TmDataLinkConfiguration {
     @XmlAttribute(name = "frame-length")
     private int frameLength = -1;
 
+    @XmlAttribute(name = "parallel-vc-processing")
+    private boolean parallelVcProcessing = false;
+
     public List<TmVcConfiguration> getTmVcConfigurations() {
         return tmVcConfigurations;
     }
@@ -109,4 +112,12 @@ public class TmDataLinkConfiguration {
     public int getFrameLength() {
         return frameLength;
     }
+
+    public boolean isParallelVcProcessing() {
+        return parallelVcProcessing;
+    }
+
+    public void setParallelVcProcessing(boolean parallelVcProcessing) {
+        this.parallelVcProcessing = parallelVcProcessing;
+    }
 }
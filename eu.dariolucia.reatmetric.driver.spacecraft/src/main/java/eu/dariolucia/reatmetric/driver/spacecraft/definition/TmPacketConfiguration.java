@@ -28,6 +28,18 @@ public class TmPacketConfiguration {
     @XmlAttribute(name = "parameter-id-offset")
     private int parameterIdOffset = 0;
 
+    @XmlAttribute(name = "decoder-threads")
+    private int decoderThreads = 2;
+
+    @XmlAttribute(name = "decoder-partitioning")
+    private DecoderPartitioningType decoderPartitioning = DecoderPartitioningType.APID;
+
+    @XmlAttribute(name = "injection-coalescing")
+    private boolean injectionCoalescing = false;
+
+    @XmlAttribute(name = "precompiled-decoding")
+    private boolean precompiledDecoding = true;
+
     @XmlElement(name = "default-pus-configuration")
     private TmPusConfiguration defaultTmPusConfiguration;
 
@@ -46,6 +58,38 @@ public class TmPacketConfiguration {
         this.parameterIdOffset = parameterIdOffset;
     }
 
+    public int getDecoderThreads() {
+        return decoderThreads;
+    }
+
+    public void setDecoderThreads(int decoderThreads) {
+        this.decoderThreads = decoderThreads;
+    }
+
+    public DecoderPartitioningType getDecoderPartitioning() {
+        return decoderPartitioning;
+    }
+
+    public void setDecoderPartitioning(DecoderPartitioningType decoderPartitioning) {
+        this.decoderPartitioning = decoderPartitioning;
+    }
+
+    public boolean isInjectionCoalescing() {
+        return injectionCoalescing;
+    }
+
+    public void setInjectionCoalescing(boolean injectionCoalescing) {
+        this.injectionCoalescing = injectionCoalescing;
+    }
+
+    public boolean isPrecompiledDecoding() {
+        return precompiledDecoding;
+    }
+
+    public void setPrecompiledDecoding(boolean precompiledDecoding) {
+        this.precompiledDecoding = precompiledDecoding;
+    }
+
     public TmPusConfiguration getDefaultTmPusConfiguration() {
         return defaultTmPusConfiguration;
     }
@@ -52,6 +52,9 @@ public class OnboardOperationsSchedulingServiceConfiguration {
     @XmlAttribute(name = "array-used")
     private boolean arrayUsed = false;
 
+    @XmlAttribute(name = "snapshot-period")
+    private int snapshotPeriod = 100;
+
     public String getActivityPath() {
         return activityPath;
     }
@@ -83,4 +86,12 @@ public class OnboardOperationsSchedulingServiceConfiguration {
     public void setNumCommandsName(String numCommandsName) {
         this.numCommandsName = numCommandsName;
     }
+
+    public int getSnapshotPeriod() {
+        return snapshotPeriod;
+    }
+
+    public void setSnapshotPeriod(int snapshotPeriod) {
+        this.snapshotPeriod = snapshotPeriod;
+    }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.packet;
+
+import eu.dariolucia.ccsds.encdec.bit.BitEncoderDecoder;
+import eu.dariolucia.ccsds.encdec.definition.*;
+import eu.dariolucia.ccsds.encdec.structure.*;
+import eu.dariolucia.ccsds.encdec.structure.impl.DefaultPacketDecoder;
+import eu.dariolucia.ccsds.encdec.time.IGenerationTimeProcessor;
+import eu.dariolucia.ccsds.encdec.value.BitString;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Packet decoder that compiles, once per packet definition, a flat decoding plan made of bit offsets, widths and types.
+ * The plan is used to decode packets with a fixed layout, i.e. packets whose structure is a flat list of encoded
+ * parameters with fixed type and statically computable location. For all other packet definitions (variable layout,
+ * arrays, structures, extension types, references to decoded values), the decoding is delegated to the
+ * {@link DefaultPacketDecoder}.
+ *
+ * The result of the decoding is equivalent to the one produced by the {@link DefaultPacketDecoder}.
+ */
+public class PrecompiledPacketDecoder implements IPacketDecoder {
+
+    private static final Logger LOG = Logger.getLogger(PrecompiledPacketDecoder.class.getName());
+
+    /**
+     * Marker for packet definitions that cannot be compiled into a plan, so that compilation is not attempted again.
+     */
+    private static final DecodingPlan NOT_COMPILABLE = new DecodingPlan(null, Collections.emptyList(), 0);
+
+    private final PacketDefinitionIndexer definitions;
+    private final IPacketDecoder fallbackDecoder;
+    private final Map<String, DecodingPlan> plans = new ConcurrentHashMap<>();
+
+    public PrecompiledPacketDecoder(PacketDefinitionIndexer definitions, Instant agencyEpoch) {
+        this.definitions = definitions;
+        this.fallbackDecoder = new DefaultPacketDecoder(definitions, agencyEpoch);
+    }
+
+    @Override
+    public DecodingResult decode(String packetDefinitionId, byte[] data, int offset, int length, IGenerationTimeProcessor timeProcessor) throws DecodingException {
+        DecodingPlan plan = packetDefinitionId == null ? NOT_COMPILABLE : plans.computeIfAbsent(packetDefinitionId, this::compile);
+        if(plan == NOT_COMPILABLE || plan.getRequiredBits() > length * 8L) {
+            // Variable layout or packet shorter than expected: let the generic decoder handle the packet
+            return fallbackDecoder.decode(packetDefinitionId, data, offset, length, timeProcessor);
+        } else {
+            return plan.decode(data, offset, length, timeProcessor);
+        }
+    }
+
+    /**
+     * Return true if a decoding plan was compiled for the provided packet definition. The check does not trigger the
+     * compilation.
+     *
+     * @param packetDefinitionId the packet definition ID
+     * @return true if a decoding plan is available, otherwise false
+     */
+    public boolean isPlanAvailable(String packetDefinitionId) {
+        DecodingPlan plan = plans.get(packetDefinitionId);
+        return plan != null && plan != NOT_COMPILABLE;
+    }
+
+    private DecodingPlan compile(String packetDefinitionId) {
+        PacketDefinition definition = definitions.retrieveDefinition(packetDefinitionId);
+        if(definition == null || definition.getStructure() == null) {
+            return NOT_COMPILABLE;
+        }
+        List<PlanItem> items = new ArrayList<>(definition.getStructure().getEncodedItems().size());
+        Map<String, Integer> endPositions = new HashMap<>();
+        int currentBit = 0;
+        int requiredBits = 0;
+        for(AbstractEncodedItem ei : definition.getStructure().getEncodedItems()) {
+            if(!(ei instanceof EncodedParameter)) {
+                // Structures and arrays: not supported
+                return NOT_COMPILABLE;
+            }
+            EncodedParameter ep = (EncodedParameter) ei;
+            if(!(ep.getType() instanceof FixedType) || ep.getLength() != null) {
+                // Extension, reference and deduced types, or lengths not derived by the type: not supported
+                return NOT_COMPILABLE;
+            }
+            FixedType type = (FixedType) ep.getType();
+            int width = computeBitWidth(type);
+            if(width < 0) {
+                return NOT_COMPILABLE;
+            }
+            // Compute the location
+            AbstractEncodedLocation location = ep.getLocation();
+            if(location instanceof FixedAbsoluteLocation) {
+                currentBit = ((FixedAbsoluteLocation) location).getAbsoluteLocation();
+            } else if(location instanceof EncodedItemRelativeLocation) {
+                EncodedItemRelativeLocation relativeLocation = (EncodedItemRelativeLocation) location;
+                Integer referenceEnd = endPositions.get(relativeLocation.getReference());
+                if(referenceEnd == null) {
+                    return NOT_COMPILABLE;
+                }
+                currentBit = align(referenceEnd + relativeLocation.getBitOffset(), relativeLocation.getBitAlignment());
+            } else if(location instanceof LastRelativeLocation) {
+                LastRelativeLocation relativeLocation = (LastRelativeLocation) location;
+                currentBit = align(currentBit + relativeLocation.getBitOffset(), relativeLocation.getBitAlignment());
+            } else if(location != null) {
+                return NOT_COMPILABLE;
+            }
+            // Linked parameter: only fixed links are supported
+            ParameterDefinition linkedParameter = null;
+            if(ep.getLinkedParameter() instanceof FixedLinkedParameter) {
+                linkedParameter = ((FixedLinkedParameter) ep.getLinkedParameter()).getParameter();
+            } else if(ep.getLinkedParameter() != null) {
+                return NOT_COMPILABLE;
+            }
+            // Generation time: only fixed offsets are supported
+            Integer timeOffset = null;
+            if(ep.getTime() != null) {
+                if(isSet(ep.getTime().getAbsoluteTimeReference()) || isSet(ep.getTime().getRelativeTimeReference())) {
+                    return NOT_COMPILABLE;
+                }
+                timeOffset = ep.getTime().getOffset();
+            }
+            items.add(new PlanItem(ep, type.getType(), type.getLength(), currentBit, PathLocation.of(definition.getId(), ep.getId()), linkedParameter, timeOffset));
+            requiredBits = Math.max(requiredBits, currentBit + width);
+            int startBit = currentBit;
+            currentBit += width;
+            if(ep.getPaddedWidth() != null && width < ep.getPaddedWidth()) {
+                currentBit = startBit + ep.getPaddedWidth();
+            }
+            endPositions.put(ep.getId(), currentBit);
+        }
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Decoding plan for packet " + packetDefinitionId + " compiled: " + items.size() + " parameters, " + requiredBits + " bits");
+        }
+        return new DecodingPlan(definition, items, requiredBits);
+    }
+
+    private static boolean isSet(String reference) {
+        return reference != null && !reference.isEmpty();
+    }
+
+    private static int align(int bitPosition, int bitAlignment) {
+        if(bitAlignment > 1) {
+            int remainder = bitPosition % bitAlignment;
+            if(remainder != 0) {
+                return bitPosition + bitAlignment - remainder;
+            }
+        }
+        return bitPosition;
+    }
+
+    private static int computeBitWidth(FixedType type) {
+        switch (type.getType()) {
+            case BOOLEAN:
+                return 1;
+            case ENUMERATED:
+            case UNSIGNED_INTEGER:
+            case SIGNED_INTEGER:
+                return type.getLength();
+            case REAL:
+                switch (type.getLength()) {
+                    case 1: // IEEE float
+                    case 3: // MIL 32
+                        return 32;
+                    case 2: // IEEE double
+                        return 64;
+                    case 4: // MIL 48
+                        return 48;
+                    default:
+                        return -1;
+                }
+            case BIT_STRING:
+                return type.getLength();
+            case OCTET_STRING:
+            case CHARACTER_STRING:
+                return type.getLength() * 8;
+            default:
+                // Time types and deduced types are not supported by the plan
+                return -1;
+        }
+    }
+
+    private static class DecodingPlan {
+
+        private final PacketDefinition definition;
+        private final List<PlanItem> items;
+        private final int requiredBits;
+
+        public DecodingPlan(PacketDefinition definition, List<PlanItem> items, int requiredBits) {
+            this.definition = definition;
+            this.items = items;
+            this.requiredBits = requiredBits;
+        }
+
+        public int getRequiredBits() {
+            return requiredBits;
+        }
+
+        public DecodingResult decode(byte[] data, int offset, int length, IGenerationTimeProcessor timeProcessor) throws DecodingException {
+            BitEncoderDecoder reader = new BitEncoderDecoder(data, offset, length);
+            List<DecodingResult.Item> decodedItems = new ArrayList<>(items.size());
+            List<ParameterValue> decodedParameters = new ArrayList<>(items.size());
+            for(PlanItem item : items) {
+                reader.setCurrentBitIndex(item.startBit);
+                Object value = item.read(reader);
+                Instant generationTime = timeProcessor == null ? null : timeProcessor.computeGenerationTime(item.parameter, value, null, null, item.timeOffset);
+                decodedItems.add(new DecodingResult.Parameter(item.location, item.parameter.getId(), item.parameter, item.type, value, generationTime));
+                if(item.linkedParameter != null) {
+                    decodedParameters.add(new ParameterValue(item.linkedParameter.getId(), item.linkedParameter.getExternalId(), value, generationTime));
+                }
+            }
+            return new DecodingResult(definition, decodedItems, decodedParameters);
+        }
+    }
+
+    private static class PlanItem {
+
+        private final EncodedParameter parameter;
+        private final DataTypeEnum type;
+        private final int typeLength;
+        private final int startBit;
+        private final PathLocation location;
+        private final ParameterDefinition linkedParameter;
+        private final Integer timeOffset;
+
+        public PlanItem(EncodedParameter parameter, DataTypeEnum type, int typeLength, int startBit, PathLocation location, ParameterDefinition linkedParameter, Integer timeOffset) {
+            this.parameter = parameter;
+            this.type = type;
+            this.typeLength = typeLength;
+            this.startBit = startBit;
+            this.location = location;
+            this.linkedParameter = linkedParameter;
+            this.timeOffset = timeOffset;
+        }
+
+        public Object read(BitEncoderDecoder reader) throws DecodingException {
+            switch (type) {
+                case BOOLEAN:
+                    return reader.getNextBoolean();
+                case ENUMERATED:
+                    return reader.getNextIntegerUnsigned(typeLength);
+                case UNSIGNED_INTEGER:
+                    return reader.getNextLongUnsigned(typeLength);
+                case SIGNED_INTEGER:
+                    return reader.getNextLongSigned(typeLength);
+                case REAL:
+                    switch (typeLength) {
+                        case 1:
+                            return (double) reader.getNextFloat();
+                        case 2:
+                            return reader.getNextDouble();
+                        case 3:
+                            return reader.getNextMil32Real();
+                        case 4:
+                            return reader.getNextMil48Real();
+                        default:
+                            break;
+                    }
+                    break;
+                case BIT_STRING:
+                    return new BitString(reader.getNextByte(typeLength), typeLength);
+                case OCTET_STRING:
+                    return reader.getNextByte(typeLength * 8);
+                case CHARACTER_STRING:
+                    return reader.getNextString(typeLength * 8);
+                default:
+                    break;
+            }
+            throw new DecodingException("Type " + type + " with length " + typeLength + " for encoded parameter " + parameter.getId() + " not supported by decoding plan");
+        }
+    }
+}
@@ -50,8 +50,10 @@ import eu.dariolucia.reatmetric.driver.spacecraft.definition.VirtualChannelType;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
 import eu.dariolucia.reatmetric.driver.spacecraft.tmtc.TcDataLinkProcessor;
+import eu.dariolucia.reatmetric.driver.spacecraft.util.BoundedExecutorService;
 
 import java.rmi.RemoteException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
@@ -67,6 +69,8 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
 
     private static final Logger LOG = Logger.getLogger(TcPacketProcessor.class.getName());
 
+    private static final int DISPATCH_QUEUE_SIZE = 1000;
+
     private final String driverName;
     private final SpacecraftConfiguration configuration;
     private final IServiceCoreContext context;
@@ -82,6 +86,17 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
         t.setDaemon(true);
         return t;
     });
+    // Encoded TCs are released to the lower layers by this executor, so that the encoding of the next TC can proceed
+    // while the previous one is being processed by the TC data link layer. Being single-threaded, the release order is
+    // the encoding order. When the queue is full, the encoding thread is blocked.
+    private final ExecutorService tcDispatcher = new BoundedExecutorService(1, DISPATCH_QUEUE_SIZE, r -> {
+        Thread t = new Thread(r, "TC Packet Processor Dispatch Thread");
+        t.setDaemon(true);
+        return t;
+    });
+    // Cache of the encoded user data fields, keyed by packet definition ID and converted arguments. Accessed only by
+    // the tcExecutor thread. Null if disabled.
+    private final Map<Pair<String, Map<String, Object>>, byte[]> encodedTcCache;
 
     public TcPacketProcessor(String driverName, Instant epoch, SpacecraftConfiguration configuration, IServiceCoreContext context,
                              IServiceBroker serviceBroker, Definition encodingDecodingDefinitions, TcDataLinkProcessor tcDataLinkProcessor,
@@ -93,6 +108,18 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
         this.packetEncoder = serviceBroker.locate(IPacketEncoder.class);
         this.packetDecoder = serviceBroker.locate(IPacketDecoder.class);
         this.tcDataLinkProcessor = tcDataLinkProcessor;
+        // Create the encoded TC cache, if enabled
+        int cacheSize = configuration.getTcPacketConfiguration().getEncodedTcCacheSize();
+        if(cacheSize > 0) {
+            this.encodedTcCache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Pair<String, Map<String, Object>>, byte[]> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        } else {
+            this.encodedTcCache = null;
+        }
 
         // Create a map based on the external ID
         this.externalId2packet = new HashMap<>();
@@ -162,13 +189,7 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
                 }
             }
             // Encode the body of the packet/VC unit (no PUS header)
-            byte[] packetUserDataField;
-            try {
-                packetUserDataField = packetEncoder.encode(defToEncode.getId(), new DefaultValueFallbackResolver(new PathLocationBasedResolver(convertedArgumentMap)));
-            } catch (EncodingException e) {
-                throw new ActivityHandlingException("Cannot encode activity occurrence " + activityInvocation.getActivityOccurrenceId()
-                        + " of external ID " + activityInvocation.getActivityId() + ": " + e.getMessage(), e);
-            }
+            byte[] packetUserDataField = encodeUserDataField(activityInvocation, defToEncode, convertedArgumentMap);
             // Retrieve the packet header information
             String packetInfoStr = defToEncode.getExtension();
             // PUS acks overridden?
@@ -201,12 +222,12 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
                 // Construct the space packet using the information in the encoding definition and the configuration (override by activity properties)
                 SpacePacket sp = buildPacket(packetInfo, packetUserDataField);
                 // Send it off
-                injectTcPacket(activityInvocation, defToEncode.getId(), packetInfo, sp);
+                dispatchTc(activityInvocation, defToEncode, () -> injectTcPacket(activityInvocation, defToEncode.getId(), packetInfo, sp));
             } else if(packetInfo.getTcUnitType() == VirtualChannelType.VCA) {
-                // Construct the VC unit (simple)
-                VirtualChannelUnit vcUnit = new VirtualChannelUnit(packetUserDataField);
+                // Construct the VC unit (simple): the cached array cannot be shared, as it ends up in the raw data contents
+                VirtualChannelUnit vcUnit = new VirtualChannelUnit(encodedTcCache != null ? packetUserDataField.clone() : packetUserDataField);
                 // Send it off
-                injectVcUnit(activityInvocation, defToEncode.getId(), packetInfo, vcUnit);
+                dispatchTc(activityInvocation, defToEncode, () -> injectVcUnit(activityInvocation, defToEncode.getId(), packetInfo, vcUnit));
             } else {
                 throw new ActivityHandlingException("TC type " + packetInfo.getTcUnitType() + " not supported for activity " +
                         activityInvocation.getActivityOccurrenceId() +
@@ -221,6 +242,59 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
         }
     }
 
+    private byte[] encodeUserDataField(IActivityHandler.ActivityInvocation activityInvocation, PacketDefinition defToEncode, Map<String, Object> convertedArgumentMap) throws ActivityHandlingException {
+        Pair<String, Map<String, Object>> cacheKey = null;
+        if(encodedTcCache != null && isCacheable(convertedArgumentMap)) {
+            cacheKey = Pair.of(defToEncode.getId(), convertedArgumentMap);
+            byte[] cached = encodedTcCache.get(cacheKey);
+            if(cached != null) {
+                if(LOG.isLoggable(Level.FINER)) {
+                    LOG.log(Level.FINER, "Encoded user data field of TC packet " + defToEncode.getId() + " retrieved from cache");
+                }
+                return cached;
+            }
+        }
+        byte[] packetUserDataField;
+        try {
+            packetUserDataField = packetEncoder.encode(defToEncode.getId(), new DefaultValueFallbackResolver(new PathLocationBasedResolver(convertedArgumentMap)));
+        } catch (EncodingException e) {
+            throw new ActivityHandlingException("Cannot encode activity occurrence " + activityInvocation.getActivityOccurrenceId()
+                    + " of external ID " + activityInvocation.getActivityId() + ": " + e.getMessage(), e);
+        }
+        if(cacheKey != null) {
+            encodedTcCache.put(cacheKey, packetUserDataField);
+        }
+        return packetUserDataField;
+    }
+
+    /**
+     * The encoded user data field can be cached only if all argument values are immutable, so that the map can be safely
+     * used as cache key.
+     */
+    private static boolean isCacheable(Map<String, Object> convertedArgumentMap) {
+        for(Object value : convertedArgumentMap.values()) {
+            if(value != null && !(value instanceof Number || value instanceof String || value instanceof Boolean
+                    || value instanceof Character || value instanceof Instant || value instanceof Duration || value instanceof Enum)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void dispatchTc(IActivityHandler.ActivityInvocation activityInvocation, PacketDefinition defToEncode, ITcDispatchAction action) {
+        tcDispatcher.execute(() -> {
+            try {
+                action.dispatch();
+            } catch(ActivityHandlingException e) {
+                LOG.log(Level.SEVERE, "Cannot send TC packet " + defToEncode.getId() + ": " + e.getMessage(), e);
+                reportReleaseProgress(context.getProcessingModel(), activityInvocation, ActivityReportState.FATAL);
+            } catch(Exception e) {
+                LOG.log(Level.SEVERE, "Unexpected error when sending TC packet " + defToEncode.getId() + ": " + e.getMessage(), e);
+                reportReleaseProgress(context.getProcessingModel(), activityInvocation, ActivityReportState.FATAL);
+            }
+        });
+    }
+
     /**
      * This method is used to inject a complete space packet (mapped to an activity occurrence) into the lower processing layers.
      *
@@ -371,6 +445,7 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
 
     public void dispose() {
         this.tcExecutor.shutdownNow();
+        this.tcDispatcher.shutdownNow();
     }
 
     public LinkedHashMap<String, String> renderTcPacket(RawData rawData) {
@@ -421,4 +496,9 @@ public class TcPacketProcessor implements IActivityExecutor, ITcPacketInjector {
         }
         return toReturn;
     }
+
+    @FunctionalInterface
+    private interface ITcDispatchAction {
+        void dispatch() throws ActivityHandlingException;
+    }
 }
@@ -49,6 +49,7 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -69,6 +70,8 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
         }
     };
     private static final int MAX_INPUT_QUEUE_SIZE = 5000;
+    private static final int DECODER_LANE_QUEUE_SIZE = 1000;
+    private static final int MAX_COALESCED_SAMPLES = 5000;
 
     private final String spacecraft;
     private final Instant epoch;
@@ -81,11 +84,7 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
     private final boolean[] processedVCs;
 
     private final Timer performanceSampler = new Timer("TM Packet Processor - Sampler", true);
-    private final AtomicReference<List<DebugInformation>> lastStats = new AtomicReference<>(Arrays.asList(
-            DebugInformation.of("TM Packet Processor", "Input queue", 0, MAX_INPUT_QUEUE_SIZE, ""),
-            DebugInformation.of("TM Packet Processor", "Input packets", 0, null, "packets/second"),
-            DebugInformation.of("TM Packet Processor", "Output parameters", 0, null, "parameters/second")
-    ));
+    private final AtomicReference<List<DebugInformation>> lastStats = new AtomicReference<>();
     private Instant lastSampleGenerationTime;
     private long packetInput = 0;
     private long parameterOutput = 0;
@@ -97,16 +96,27 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
         t.setDaemon(true);
         return t;
     });
-    private final ExecutorService decoderService = new BoundedExecutorService(2, 1000, (r) -> {
-        Thread t = new Thread(r, "TM Packet Processing - Decoder");
-        t.setDaemon(true);
-        return t;
-    });
-    private final ExecutorService notifierService = new BoundedExecutorService(1, 1000, (r) -> {
-        Thread t = new Thread(r, "TM Packet Processing - Notifier");
-        t.setDaemon(true);
-        return t;
-    });
+    /**
+     * Decoding lanes: each lane is served by a single thread, and all the packets belonging to the same partition (as
+     * defined by the configured {@link DecoderPartitioningType}) are always decoded and forwarded by the same lane, so
+     * that the processing order within a partition is preserved. With a single lane, all the items are processed in
+     * reception order.
+     */
+    private final BoundedExecutorService[] decoderLanes;
+    private final DecoderPartitioningType decoderPartitioning;
+    private final boolean injectionCoalescing;
+    /**
+     * Parameter samples decoded by each lane and not yet injected, if injection coalescing is enabled. When a lane has a
+     * backlog (e.g. during a burst or an accelerated replay), the samples of consecutive packets are accumulated and
+     * injected into the processing model with a single call, once the lane queue is empty or
+     * {@link #MAX_COALESCED_SAMPLES} is reached. Each list is accessed only by the thread of the related lane.
+     */
+    private final List<List<ParameterSample>> pendingSamples;
+    /**
+     * Decoded items of each lane, whose notification to the extension services is deferred until their parameter
+     * samples are injected. Each list is accessed only by the thread of the related lane.
+     */
+    private final List<List<ItemDecodingResult>> pendingResults;
 
     public TmPacketProcessor(SpacecraftConfiguration configuration, IServiceCoreContext context, IServiceBroker serviceBroker) {
         this.spacecraft = String.valueOf(configuration.getId());
@@ -118,6 +128,22 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
         ITimeCorrelation timeCorrelationService = serviceBroker.locate(eu.dariolucia.reatmetric.driver.spacecraft.services.ITimeCorrelation.class);
         this.timeCorrelation = Objects.requireNonNullElse(timeCorrelationService, IDENTITY_TIME_CORRELATION);
         this.serviceBroker = serviceBroker;
+        this.decoderPartitioning = this.configuration.getDecoderPartitioning();
+        this.injectionCoalescing = this.configuration.isInjectionCoalescing();
+        this.decoderLanes = new BoundedExecutorService[Math.max(1, this.configuration.getDecoderThreads())];
+        this.pendingSamples = new ArrayList<>(this.decoderLanes.length);
+        this.pendingResults = new ArrayList<>(this.decoderLanes.length);
+        for(int i = 0; i < this.decoderLanes.length; ++i) {
+            final int laneId = i;
+            this.decoderLanes[i] = new BoundedExecutorService(1, DECODER_LANE_QUEUE_SIZE, (r) -> {
+                Thread t = new Thread(r, "TM Packet Processing - Decoder " + laneId);
+                t.setDaemon(true);
+                return t;
+            });
+            this.pendingSamples.add(new ArrayList<>());
+            this.pendingResults.add(new ArrayList<>());
+        }
+        this.lastStats.set(buildStatistics(0, 0));
         this.processedVCs = new boolean[64];
         if(this.configuration.getProcessVcs() == null) {
             // No limits, process all
@@ -154,16 +180,23 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
                 double pktPerSecond = (packetInputCurr / (millis/1000.0));
                 double paramsPerSecond = (paramOutputCurr / (millis/1000.0));
 
-                List<DebugInformation> toSet = Arrays.asList(
-                        DebugInformation.of("TM Packet Processor", "Input queue", incomingPacketsQueue.size(), MAX_INPUT_QUEUE_SIZE, ""),
-                        DebugInformation.of("TM Packet Processor", "Input packets", (int) pktPerSecond, null, "packets/second"),
-                        DebugInformation.of("TM Packet Processor", "Output parameters", (int) paramsPerSecond, null, "parameters/second")
-                );
+                List<DebugInformation> toSet = buildStatistics(pktPerSecond, paramsPerSecond);
                 lastStats.set(toSet);
             }
         }
     }
 
+    private List<DebugInformation> buildStatistics(double pktPerSecond, double paramsPerSecond) {
+        List<DebugInformation> toSet = new ArrayList<>(3 + decoderLanes.length);
+        toSet.add(DebugInformation.of("TM Packet Processor", "Input queue", incomingPacketsQueue.size(), MAX_INPUT_QUEUE_SIZE, ""));
+        toSet.add(DebugInformation.of("TM Packet Processor", "Input packets", (int) pktPerSecond, null, "packets/second"));
+        toSet.add(DebugInformation.of("TM Packet Processor", "Output parameters", (int) paramsPerSecond, null, "parameters/second"));
+        for(int i = 0; i < decoderLanes.length; ++i) {
+            toSet.add(DebugInformation.of("TM Packet Processor", "Decoder " + i + " queue", decoderLanes[i].getQueueSize(), DECODER_LANE_QUEUE_SIZE, ""));
+        }
+        return toSet;
+    }
+
     public void initialise() {
         subscribeToBroker();
         dispatcherService.execute(this::dispatcherThreadMain);
@@ -246,27 +279,95 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
     }
 
     private void processItems(List<RawData> itemsToProcess) {
-        List<Future<ItemDecodingResult>> results = new ArrayList<>(itemsToProcess.size());
         for(RawData rd : itemsToProcess) {
-            if(rd.getType().equals(Constants.T_TM_PACKET)) {
-                results.add(decoderService.submit(() -> processSpacePacket(rd)));
-            } else if(rd.getType().equals(Constants.T_TM_VCA)) {
-                results.add(decoderService.submit(() -> processVca(rd)));
-            }
-        }
-        for(Future<ItemDecodingResult> fpdt : results) {
-            ItemDecodingResult pdt = null;
+            final int laneId = computePartition(rd) % decoderLanes.length;
+            BoundedExecutorService lane = decoderLanes[laneId];
             try {
-                pdt = fpdt.get();
-            } catch (InterruptedException e) {
-                LOG.log(Level.WARNING, "TM Packet Processor dispatcher service interrupted while waiting for result");
+                if (rd.getType().equals(Constants.T_TM_PACKET)) {
+                    lane.execute(() -> processItem(laneId, rd, this::processSpacePacket));
+                } else if (rd.getType().equals(Constants.T_TM_VCA)) {
+                    lane.execute(() -> processItem(laneId, rd, this::processVca));
+                }
+            } catch (IllegalStateException e) {
+                // Lane shut down: disposal in progress
+                LOG.log(Level.FINE, "TM Packet Processor decoder lane not available: " + e.getMessage());
                 return;
-            } catch (ExecutionException e) {
-                LOG.log(Level.SEVERE, "TM Packet Processor dispatcher service exception while decoding packet", e);
+            } catch (RuntimeException e) {
+                // Only this item is lost: go ahead with the rest of the batch
+                LOG.log(Level.SEVERE, "TM Packet Processor cannot dispatch " + rd.getName() + " from route " + rd.getRoute() + " to decoder lane " + laneId + ": " + e.getMessage(), e);
             }
+        }
+    }
+
+    /**
+     * Decode the provided item and notify the results. Any exception is logged here: the lane executor wraps the task
+     * in a future that nobody inspects, so the exception would be otherwise lost.
+     *
+     * @param laneId the decoder lane running the task
+     * @param rd the item to process
+     * @param decoder the decoding function
+     */
+    private void processItem(int laneId, RawData rd, Function<RawData, ItemDecodingResult> decoder) {
+        try {
+            notifyResults(laneId, decoder.apply(rd));
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "TM Packet Processor exception while processing " + rd.getName() + " from route " + rd.getRoute() + " on decoder lane " + laneId + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compute the (non-negative) partition key of the provided item. Items with the same partition key are processed
+     * in order by the same decoder lane.
+     *
+     * @param rd the raw data to process
+     * @return the partition key
+     */
+    private int computePartition(RawData rd) {
+        if(decoderPartitioning == DecoderPartitioningType.PACKET_ID) {
+            return rd.getName().hashCode() & 0x7FFFFFFF;
+        }
+        // Partition by APID (packets) or by VC ID (VC units)
+        Object o = rd.getData();
+        if(o instanceof SpacePacket) {
+            return ((SpacePacket) o).getApid();
+        } else if(o instanceof VirtualChannelUnit) {
+            Integer vcId = (Integer) ((VirtualChannelUnit) o).getAnnotationValue(Constants.ANNOTATION_VCID);
+            return vcId != null ? vcId : 0;
+        } else if(rd.getType().equals(Constants.T_TM_PACKET) && rd.getContents() != null && rd.getContents().length >= 2) {
+            // No space packet object available (e.g. playback): read the APID from the primary header
+            byte[] contents = rd.getContents();
+            return ((contents[0] & 0x07) << 8) | (contents[1] & 0xFF);
+        } else {
+            return 0;
+        }
+    }
+
+    private void notifyResults(int laneId, ItemDecodingResult pdt) {
+        if(!injectionCoalescing) {
             if(pdt != null) {
-                notifySpacePacketResults(pdt.getRawData(), pdt.getItem(), pdt.getPusHeader(), pdt.getResult());
+                notifySpacePacketResults(laneId, pdt.getRawData(), pdt.getItem(), pdt.getPusHeader(), pdt.getResult());
             }
+            return;
+        }
+        List<ParameterSample> samples = pendingSamples.get(laneId);
+        List<ItemDecodingResult> results = pendingResults.get(laneId);
+        if(pdt != null) {
+            if(pdt.getResult() != null) {
+                forwardParameterResult(laneId, pdt.getRawData(), pdt.getResult().getDecodedParameters());
+            }
+            results.add(pdt);
+        }
+        // Inject the accumulated samples and notify the related items if there is nothing else to decode on this lane,
+        // or if too many samples are pending
+        if(!results.isEmpty() && (decoderLanes[laneId].getQueueSize() == 0 || samples.size() >= MAX_COALESCED_SAMPLES)) {
+            if(!samples.isEmpty()) {
+                processingModel.injectParameters(new ArrayList<>(samples));
+                samples.clear();
+            }
+            for(ItemDecodingResult r : results) {
+                notifyExtensionServices(r.getRawData(), r.getItem(), r.getPusHeader(), r.getResult());
+            }
+            results.clear();
         }
     }
 
@@ -333,17 +434,19 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
         }
     }
 
-    private void notifySpacePacketResults(RawData rd, AnnotatedObject item, TmPusHeader pusHeader, DecodingResult result) {
-        if(!notifierService.isShutdown()) {
-            notifierService.execute(() -> {
-                // Forward to processing model and ...
-                if (result != null) {
-                    forwardParameterResult(rd, result.getDecodedParameters());
-                }
-                // ... notify all services about the new TM packet/VC unit
-                notifyExtensionServices(rd, item, pusHeader, result);
-            });
+    private void notifySpacePacketResults(int laneId, RawData rd, AnnotatedObject item, TmPusHeader pusHeader, DecodingResult result) {
+        // Forward to processing model and ...
+        if (result != null) {
+            forwardParameterResult(laneId, rd, result.getDecodedParameters());
+            List<ParameterSample> samples = pendingSamples.get(laneId);
+            if(!samples.isEmpty()) {
+                // Inject
+                processingModel.injectParameters(new ArrayList<>(samples));
+                samples.clear();
+            }
         }
+        // ... notify all services about the new TM packet/VC unit
+        notifyExtensionServices(rd, item, pusHeader, result);
     }
 
     private void notifyExtensionServices(RawData rd, AnnotatedObject unit, TmPusHeader pusHeader, DecodingResult result) {
@@ -354,17 +457,16 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
         }
     }
 
-    private void forwardParameterResult(RawData packet, List<ParameterValue> decodedParameters) {
+    private void forwardParameterResult(int laneId, RawData packet, List<ParameterValue> decodedParameters) {
         // Add performance indicator
         synchronized (performanceSampler) {
             parameterOutput += decodedParameters.size();
         }
-        List<ParameterSample> samples = new ArrayList<>(decodedParameters.size());
+        // Accumulate: injection is performed by the caller
+        List<ParameterSample> samples = pendingSamples.get(laneId);
         for(ParameterValue pv : decodedParameters) {
             samples.add(mapSample(packet, pv));
         }
-        // Inject
-        processingModel.injectParameters(samples);
     }
 
     private ParameterSample mapSample(RawData packet, ParameterValue pv) {
@@ -432,8 +534,9 @@ public class TmPacketProcessor implements IRawDataSubscriber, IDebugInfoProvider
         this.broker.unsubscribe(this);
         this.performanceSampler.cancel();
         this.dispatcherService.shutdownNow();
-        this.decoderService.shutdownNow();
-        this.notifierService.shutdownNow();
+        for(BoundedExecutorService lane : this.decoderLanes) {
+            lane.shutdownNow();
+        }
     }
 
     public LinkedHashMap<String, String> renderTmPacket(RawData rawData) {
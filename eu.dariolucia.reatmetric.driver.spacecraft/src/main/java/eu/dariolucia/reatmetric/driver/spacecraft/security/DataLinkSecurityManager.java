@@ -24,6 +24,9 @@ import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfigura
 import eu.dariolucia.reatmetric.driver.spacecraft.services.ISecurityHandler;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -64,6 +67,28 @@ public class DataLinkSecurityManager {
         return securityHandler == null ? frame : withAnnotations(frame, securityHandler.decrypt(frame));
     }
 
+    /**
+     * Decrypt the provided frames. Frames that cannot be decrypted are reported to the error handler and are not part of
+     * the returned list.
+     *
+     * @param frames the frames to decrypt
+     * @param errorHandler the handler of decryption errors
+     * @return the decrypted frames
+     */
+    public List<AbstractTransferFrame> decrypt(List<AbstractTransferFrame> frames, BiConsumer<AbstractTransferFrame, ReatmetricException> errorHandler) {
+        if(securityHandler == null) {
+            return frames;
+        }
+        List<AbstractTransferFrame> decrypted = securityHandler.decrypt(frames, errorHandler);
+        List<AbstractTransferFrame> result = new ArrayList<>(decrypted.size());
+        for(int i = 0; i < decrypted.size(); ++i) {
+            if(decrypted.get(i) != null) {
+                result.add(withAnnotations(frames.get(i), decrypted.get(i)));
+            }
+        }
+        return result;
+    }
+
     private AbstractTransferFrame withAnnotations(AbstractTransferFrame originalFrame, AbstractTransferFrame newFrame) {
         if (originalFrame != newFrame) {
             for (Object annotationKey : originalFrame.getAnnotationKeys()) {
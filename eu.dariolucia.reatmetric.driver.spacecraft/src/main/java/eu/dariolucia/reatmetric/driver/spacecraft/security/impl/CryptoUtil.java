@@ -25,6 +25,7 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.spec.KeySpec;
 
 public class CryptoUtil {
@@ -34,16 +35,51 @@ public class CryptoUtil {
     private static final String AES_ALGORITHM = "AES";
     private static final String AES_CHIPER = "AES/CTR/NoPadding"; // CTR avoid the use of padding
 
-    public static byte[] aesEncrypt(byte[] data, int offset, int length, String key, byte[] iv, byte[] salt) throws ReatmetricException {
+    // Cipher objects are not thread-safe and expensive to look up: one per thread is kept and re-initialised for each operation
+    private static final ThreadLocal<Cipher> AES_CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(AES_CHIPER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cipher " + AES_CHIPER + " not available", e);
+        }
+    });
+
+    /**
+     * Derive the AES-256 key from the provided password and salt. The derivation is computationally expensive by design,
+     * therefore the returned key should be computed once and cached by the caller.
+     *
+     * @param key the password
+     * @param salt the salt
+     * @return the AES key
+     * @throws ReatmetricException in case of issues during the key derivation
+     */
+    public static SecretKeySpec deriveAesKey(String key, byte[] salt) throws ReatmetricException {
         try {
-            IvParameterSpec ivspec = new IvParameterSpec(iv);
             SecretKeyFactory factory = SecretKeyFactory.getInstance(AES_SECRET_KEY_FACTORY);
             KeySpec spec = new PBEKeySpec(key.toCharArray(), salt, AES_ITERATION_COUNT, AES_KEY_LENGTH);
             SecretKey tmp = factory.generateSecret(spec);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(tmp.getEncoded(), AES_ALGORITHM);
+            return new SecretKeySpec(tmp.getEncoded(), AES_ALGORITHM);
+        } catch (Exception e) {
+            throw new ReatmetricException(e);
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(AES_CHIPER);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, ivspec);
+    /**
+     * Return the AES cipher associated to the calling thread.
+     *
+     * @return the AES cipher of the calling thread
+     */
+    public static Cipher aesCipher() {
+        return AES_CIPHERS.get();
+    }
+
+    public static byte[] aesEncrypt(byte[] data, int offset, int length, String key, byte[] iv, byte[] salt) throws ReatmetricException {
+        return aesEncrypt(aesCipher(), data, offset, length, deriveAesKey(key, salt), iv);
+    }
+
+    public static byte[] aesEncrypt(Cipher cipher, byte[] data, int offset, int length, SecretKeySpec key, byte[] iv) throws ReatmetricException {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
             return cipher.doFinal(data, offset, length);
         } catch (Exception e) {
             throw new ReatmetricException(e);
@@ -51,16 +87,30 @@ public class CryptoUtil {
     }
 
     public static byte[] aesDecrypt(byte[] data, int offset, int length, String key, byte[] iv, byte[] salt) throws ReatmetricException {
-        try {
-            IvParameterSpec ivspec = new IvParameterSpec(iv);
-            SecretKeyFactory factory = SecretKeyFactory.getInstance(AES_SECRET_KEY_FACTORY);
-            KeySpec spec = new PBEKeySpec(key.toCharArray(), salt, AES_ITERATION_COUNT, AES_KEY_LENGTH);
-            SecretKey tmp = factory.generateSecret(spec);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(tmp.getEncoded(), AES_ALGORITHM);
+        byte[] output = new byte[length];
+        aesDecrypt(aesCipher(), data, offset, length, deriveAesKey(key, salt), iv, output, 0);
+        return output;
+    }
 
-            Cipher cipher = Cipher.getInstance(AES_CHIPER);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivspec);
-            return cipher.doFinal(data, offset, length);
+    /**
+     * Decrypt the provided data directly into the output array, using the provided cipher (usually the one returned by
+     * {@link #aesCipher()}).
+     *
+     * @param cipher the cipher to use
+     * @param data the array containing the encrypted data
+     * @param offset the offset of the encrypted data
+     * @param length the length of the encrypted data
+     * @param key the AES key
+     * @param iv the initialisation vector
+     * @param output the array where the decrypted data is written
+     * @param outputOffset the offset in the output array
+     * @return the number of bytes written in the output array
+     * @throws ReatmetricException in case of issues during the decryption
+     */
+    public static int aesDecrypt(Cipher cipher, byte[] data, int offset, int length, SecretKeySpec key, byte[] iv, byte[] output, int outputOffset) throws ReatmetricException {
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+            return cipher.doFinal(data, offset, length, output, outputOffset);
         } catch (Exception e) {
             throw new ReatmetricException(e);
         }
@@ -20,6 +20,10 @@ package eu.dariolucia.reatmetric.driver.spacecraft.services;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
 /**
  * This interface specifies the methods that an external class must implement, to provide encryption/decryption capabilities
  * to ReatMetric's spacecraft driver.
@@ -64,4 +68,44 @@ public interface ISecurityHandler extends IService {
      */
     AbstractTransferFrame decrypt(AbstractTransferFrame frame) throws ReatmetricException;
 
+    /**
+     * This method is called to request the encryption of a batch of frames. The default implementation invokes
+     * {@link #encrypt(AbstractTransferFrame)} for each frame: implementations can override it, to set up the security
+     * context once per batch.
+     *
+     * @param frames the original, unencrypted frames
+     * @return the encrypted frames, in the same order of the provided frames
+     * @throws ReatmetricException in case of issues during the encryption process of any frame
+     */
+    default List<AbstractTransferFrame> encrypt(List<AbstractTransferFrame> frames) throws ReatmetricException {
+        List<AbstractTransferFrame> result = new ArrayList<>(frames.size());
+        for(AbstractTransferFrame frame : frames) {
+            result.add(encrypt(frame));
+        }
+        return result;
+    }
+
+    /**
+     * This method is called to request the decryption of a batch of frames. A frame that cannot be decrypted does not
+     * affect the decryption of the other frames: it is reported to the provided error handler, and its position in the
+     * returned list is set to null. The default implementation invokes {@link #decrypt(AbstractTransferFrame)} for each
+     * frame: implementations can override it, to set up the security context once per batch.
+     *
+     * @param frames the original, encrypted frames
+     * @param errorHandler the handler of decryption errors
+     * @return the decrypted frames (or null), in the same order of the provided frames
+     */
+    default List<AbstractTransferFrame> decrypt(List<AbstractTransferFrame> frames, BiConsumer<AbstractTransferFrame, ReatmetricException> errorHandler) {
+        List<AbstractTransferFrame> result = new ArrayList<>(frames.size());
+        for(AbstractTransferFrame frame : frames) {
+            try {
+                result.add(decrypt(frame));
+            } catch (ReatmetricException e) {
+                errorHandler.accept(frame, e);
+                result.add(null);
+            }
+        }
+        return result;
+    }
+
 }
@@ -28,6 +28,20 @@ import java.time.Instant;
 public interface IServiceBroker {
     void register(IServicePacketSubscriber subscriber, IServicePacketFilter predicateFilter);
 
+    /**
+     * Register the subscriber with the provided filter. If the filter is a {@link ServicePacketFilter}, the subscriber is
+     * indexed by the declared TM packet keys. If dedicatedLane is true, the notifications to the subscriber are delivered
+     * by a dedicated thread, so that a slow subscriber does not delay the notification of the other subscribers. The
+     * queue of the dedicated thread is bounded to laneQueueSize notifications: when it is full, the distribution blocks
+     * until the subscriber catches up.
+     *
+     * @param subscriber the subscriber
+     * @param predicateFilter the filter
+     * @param dedicatedLane true if the subscriber must be notified by a dedicated thread
+     * @param laneQueueSize the maximum number of pending notifications of the dedicated thread, ignored if dedicatedLane is false
+     */
+    void register(IServicePacketSubscriber subscriber, IServicePacketFilter predicateFilter, boolean dedicatedLane, int laneQueueSize);
+
     void deregister(IServicePacketSubscriber subscriber);
 
     void distributeTmPacket(RawData rawData, SpacePacket spacePacket, TmPusHeader tmPusHeader, DecodingResult decoded);
@@ -19,16 +19,13 @@ package eu.dariolucia.reatmetric.driver.spacecraft.services;
 import eu.dariolucia.ccsds.encdec.pus.TmPusHeader;
 import eu.dariolucia.ccsds.encdec.structure.DecodingResult;
 import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
-import eu.dariolucia.reatmetric.api.common.Pair;
 import eu.dariolucia.reatmetric.api.rawdata.RawData;
 import eu.dariolucia.reatmetric.driver.spacecraft.activity.AbstractTcTracker;
 import eu.dariolucia.reatmetric.driver.spacecraft.common.VirtualChannelUnit;
+import eu.dariolucia.reatmetric.driver.spacecraft.util.BoundedExecutorService;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -41,27 +38,47 @@ public class ServiceBroker implements IServiceBroker {
 
     private static final Logger LOG = Logger.getLogger(ServiceBroker.class.getName());
 
+    public static final int DEFAULT_LANE_QUEUE_SIZE = 1000;
+
     private final ExecutorService itemDistributor = Executors.newSingleThreadExecutor(r -> {
        Thread t = new Thread(r, "Service Broker Distributor");
        t.setDaemon(true);
        return t;
     });
 
-    private final List<Pair<IServicePacketSubscriber, IServicePacketFilter>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+    private volatile TmPacketIndex tmPacketIndex = new TmPacketIndex(Collections.emptyList());
+    private int registrationCounter = 0;
     private final Map<Integer, IService> serviceMap = new HashMap<>();
     private final Map<Class<?>, Object> serviceLocator = new HashMap<>();
 
     @Override
     public void register(IServicePacketSubscriber subscriber, IServicePacketFilter predicateFilter) {
+        register(subscriber, predicateFilter, false, DEFAULT_LANE_QUEUE_SIZE);
+    }
+
+    @Override
+    public synchronized void register(IServicePacketSubscriber subscriber, IServicePacketFilter predicateFilter, boolean dedicatedLane, int laneQueueSize) {
         if(predicateFilter != null) {
-            this.subscribers.add(Pair.of(subscriber, predicateFilter));
+            ExecutorService lane = null;
+            if(dedicatedLane) {
+                lane = new BoundedExecutorService(1, laneQueueSize, r -> {
+                    Thread t = new Thread(r, "Service Broker Lane - " + subscriber.getClass().getSimpleName());
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            this.subscribers.add(new Subscription(registrationCounter++, subscriber, predicateFilter, lane));
+            this.tmPacketIndex = new TmPacketIndex(this.subscribers);
         }
     }
 
     @Override
-    public void deregister(IServicePacketSubscriber subscriber) {
-        List<Pair<IServicePacketSubscriber, IServicePacketFilter>> itemsToRemove = subscribers.stream().filter(o -> o.getFirst() == subscriber).collect(Collectors.toList());
+    public synchronized void deregister(IServicePacketSubscriber subscriber) {
+        List<Subscription> itemsToRemove = subscribers.stream().filter(o -> o.subscriber == subscriber).collect(Collectors.toList());
         subscribers.removeAll(itemsToRemove);
+        itemsToRemove.forEach(Subscription::dispose);
+        this.tmPacketIndex = new TmPacketIndex(this.subscribers);
     }
 
     @Override
@@ -72,13 +89,15 @@ public class ServiceBroker implements IServiceBroker {
         final Integer sourceId = null;
 
         itemDistributor.execute(() -> {
-            for(Pair<IServicePacketSubscriber, IServicePacketFilter> s : subscribers) {
+            // Only the subscribers interested in the packet are evaluated
+            List<Subscription> candidates = spacePacket.isTelemetryPacket() ? tmPacketIndex.candidates(spacePacket.getApid(), pusType, pusSubType) : subscribers;
+            for(Subscription s : candidates) {
                 try {
-                    if(s.getSecond().filter(packetRawData, spacePacket, pusType, pusSubType, destinationId, sourceId)) {
-                        s.getFirst().onTmPacket(packetRawData, spacePacket, tmPusHeader, decoded);
+                    if(s.filter.filter(packetRawData, spacePacket, pusType, pusSubType, destinationId, sourceId)) {
+                        s.deliver(() -> s.subscriber.onTmPacket(packetRawData, spacePacket, tmPusHeader, decoded));
                     }
                 } catch (Exception e) {
-                    LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + subscribers + ": " + e.getMessage(), e);
+                    LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + s.subscriber + ": " + e.getMessage(), e);
                 }
             }
         });
@@ -87,13 +106,13 @@ public class ServiceBroker implements IServiceBroker {
     @Override
     public void distributeTmVcUnit(RawData rawData, VirtualChannelUnit vcUnit, DecodingResult decoded) {
         itemDistributor.execute(() -> {
-            for(Pair<IServicePacketSubscriber, IServicePacketFilter> s : subscribers) {
+            for(Subscription s : subscribers) {
                 try {
-                    if(s.getSecond().filter(rawData, vcUnit, null, null, null, null)) {
-                        s.getFirst().onTmVcUnit(rawData, vcUnit, decoded);
+                    if(s.filter.filter(rawData, vcUnit, null, null, null, null)) {
+                        s.deliver(() -> s.subscriber.onTmVcUnit(rawData, vcUnit, decoded));
                     }
                 } catch (Exception e) {
-                    LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + subscribers + ": " + e.getMessage(), e);
+                    LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + s.subscriber + ": " + e.getMessage(), e);
                 }
             }
         });
@@ -101,7 +120,9 @@ public class ServiceBroker implements IServiceBroker {
 
     public void dispose() {
         itemDistributor.shutdownNow();
+        subscribers.forEach(Subscription::dispose);
         subscribers.clear();
+        tmPacketIndex = new TmPacketIndex(Collections.emptyList());
         serviceMap.values().forEach(IService::dispose);
         serviceMap.clear();
     }
@@ -109,13 +130,13 @@ public class ServiceBroker implements IServiceBroker {
     @Override
     public void informTc(TcPhase phase, Instant phaseTime, AbstractTcTracker trackerBean) {
         itemDistributor.execute(() -> {
-            for(Pair<IServicePacketSubscriber, IServicePacketFilter> s : subscribers) {
+            for(Subscription s : subscribers) {
                 try {
-                    if(s.getSecond().filter(trackerBean.getRawData(), trackerBean.getObject(), trackerBean.getInfo().getPusHeader() != null ? Integer.valueOf(trackerBean.getInfo().getPusHeader().getServiceType()) : null,  trackerBean.getInfo().getPusHeader() != null ? Integer.valueOf(trackerBean.getInfo().getPusHeader().getServiceSubType()) : null, null, trackerBean.getInfo().getPusHeader() != null ? trackerBean.getInfo().getPusHeader().getSourceId() : null)) {
-                        s.getFirst().onTcUpdate(phase, phaseTime, trackerBean);
+                    if(s.filter.filter(trackerBean.getRawData(), trackerBean.getObject(), trackerBean.getInfo().getPusHeader() != null ? Integer.valueOf(trackerBean.getInfo().getPusHeader().getServiceType()) : null,  trackerBean.getInfo().getPusHeader() != null ? Integer.valueOf(trackerBean.getInfo().getPusHeader().getServiceSubType()) : null, null, trackerBean.getInfo().getPusHeader() != null ? trackerBean.getInfo().getPusHeader().getSourceId() : null)) {
+                        s.deliver(() -> s.subscriber.onTcUpdate(phase, phaseTime, trackerBean));
                     }
                 } catch (Exception e) {
-                    LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + s + ": " + e.getMessage(), e);
+                    LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + s.subscriber + ": " + e.getMessage(), e);
                 }
             }
         });
@@ -146,7 +167,11 @@ public class ServiceBroker implements IServiceBroker {
     }
 
     public void registerService(IService theService) {
-        register(theService, theService.getSubscriptionFilter());
+        registerService(theService, false, DEFAULT_LANE_QUEUE_SIZE);
+    }
+
+    public void registerService(IService theService, boolean dedicatedLane, int laneQueueSize) {
+        register(theService, theService.getSubscriptionFilter(), dedicatedLane, laneQueueSize);
         serviceMap.put(theService.getServiceType(), theService);
     }
 
@@ -161,4 +186,106 @@ public class ServiceBroker implements IServiceBroker {
     public void finaliseServiceLoading() {
         serviceMap.values().forEach(IService::finaliseServiceLoading);
     }
+
+    /**
+     * A registered subscriber, with its filter and its optional dedicated notification lane.
+     */
+    private static class Subscription {
+
+        private final int order;
+        private final IServicePacketSubscriber subscriber;
+        private final IServicePacketFilter filter;
+        private final ExecutorService lane;
+
+        public Subscription(int order, IServicePacketSubscriber subscriber, IServicePacketFilter filter, ExecutorService lane) {
+            this.order = order;
+            this.subscriber = subscriber;
+            this.filter = filter;
+            this.lane = lane;
+        }
+
+        /**
+         * Run the notification on the dedicated lane if present, otherwise on the calling (distributor) thread.
+         *
+         * @param notification the notification to run
+         */
+        public void deliver(Runnable notification) {
+            if(lane == null) {
+                notification.run();
+            } else {
+                lane.execute(() -> {
+                    try {
+                        notification.run();
+                    } catch (Exception e) {
+                        LOG.log(Level.SEVERE, "Cannot notify packet service subscriber " + subscriber + ": " + e.getMessage(), e);
+                    }
+                });
+            }
+        }
+
+        public void dispose() {
+            if(lane != null) {
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Immutable index of the subscribers by the TM packet keys declared with a {@link ServicePacketFilter}. Subscribers
+     * using other filter implementations are evaluated for all TM packets.
+     */
+    private static class TmPacketIndex {
+
+        private final List<Subscription> unindexed = new ArrayList<>();
+        private final Map<Integer, List<Subscription>> byPusType = new HashMap<>();
+        private final Map<Integer, List<Subscription>> byPusTypeSubtype = new HashMap<>();
+        private final Map<Integer, List<Subscription>> byApid = new HashMap<>();
+
+        public TmPacketIndex(List<Subscription> subscriptions) {
+            for(Subscription s : subscriptions) {
+                if(s.filter instanceof ServicePacketFilter) {
+                    ServicePacketFilter spf = (ServicePacketFilter) s.filter;
+                    spf.getTmPusTypes().forEach(k -> byPusType.computeIfAbsent(k, o -> new ArrayList<>()).add(s));
+                    spf.getTmPusTypeSubtypes().forEach(k -> byPusTypeSubtype.computeIfAbsent(k, o -> new ArrayList<>()).add(s));
+                    spf.getTmApids().forEach(k -> byApid.computeIfAbsent(k, o -> new ArrayList<>()).add(s));
+                } else {
+                    unindexed.add(s);
+                }
+            }
+        }
+
+        /**
+         * Return the subscribers that can be interested in the TM packet with the provided keys, in registration order
+         * and without duplicates.
+         */
+        public List<Subscription> candidates(int apid, Integer pusType, Integer pusSubtype) {
+            List<Subscription> result = new ArrayList<>(unindexed);
+            int sources = unindexed.isEmpty() ? 0 : 1;
+            sources += add(result, byApid.get(apid));
+            if(pusType != null) {
+                sources += add(result, byPusType.get(pusType));
+                if(pusSubtype != null) {
+                    sources += add(result, byPusTypeSubtype.get(ServicePacketFilter.typeSubtypeKey(pusType, pusSubtype)));
+                }
+            }
+            if(sources > 1) {
+                // Restore registration order and remove subscribers matched by more than one key
+                result.sort(Comparator.comparingInt(o -> o.order));
+                for(int i = result.size() - 1; i > 0; --i) {
+                    if(result.get(i) == result.get(i - 1)) {
+                        result.remove(i);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static int add(List<Subscription> result, List<Subscription> toAdd) {
+            if(toAdd == null) {
+                return 0;
+            }
+            result.addAll(toAdd);
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.services;
+
+import eu.dariolucia.ccsds.tmtc.util.AnnotatedObject;
+import eu.dariolucia.reatmetric.api.rawdata.RawData;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link IServicePacketFilter} that declares, in addition to the filtering predicate, the TM packets the subscriber is
+ * interested in, in terms of PUS service type, PUS service type/subtype and APID. The {@link ServiceBroker} uses such
+ * declaration to index the subscriber, so that the filter predicate is evaluated only for the TM packets matching at least
+ * one of the declared keys. If no key is declared, the subscriber does not receive any TM packet.
+ *
+ * TC updates, TM VC units and TM packets without telemetry flag are not subject to the index: for them, the predicate is
+ * always evaluated.
+ */
+public class ServicePacketFilter implements IServicePacketFilter {
+
+    private final IServicePacketFilter predicate;
+    private final Set<Integer> tmPusTypes = new HashSet<>();
+    private final Set<Integer> tmPusTypeSubtypes = new HashSet<>();
+    private final Set<Integer> tmApids = new HashSet<>();
+
+    public ServicePacketFilter(IServicePacketFilter predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * Declare interest in the TM packets having one of the provided PUS service types.
+     *
+     * @param pusTypes the PUS service types
+     * @return this object
+     */
+    public ServicePacketFilter withTmPusTypes(int... pusTypes) {
+        for(int t : pusTypes) {
+            this.tmPusTypes.add(t);
+        }
+        return this;
+    }
+
+    /**
+     * Declare interest in the TM packets having the provided PUS service type and subtype.
+     *
+     * @param pusType the PUS service type
+     * @param pusSubtype the PUS service subtype
+     * @return this object
+     */
+    public ServicePacketFilter withTmPusTypeSubtype(int pusType, int pusSubtype) {
+        this.tmPusTypeSubtypes.add(typeSubtypeKey(pusType, pusSubtype));
+        return this;
+    }
+
+    /**
+     * Declare interest in the TM packets having one of the provided APIDs.
+     *
+     * @param apids the APIDs
+     * @return this object
+     */
+    public ServicePacketFilter withTmApids(int... apids) {
+        for(int a : apids) {
+            this.tmApids.add(a);
+        }
+        return this;
+    }
+
+    public Set<Integer> getTmPusTypes() {
+        return Collections.unmodifiableSet(tmPusTypes);
+    }
+
+    /**
+     * Return the declared PUS service type/subtype keys, as computed by {@link #typeSubtypeKey(int, int)}.
+     *
+     * @return the declared type/subtype keys
+     */
+    public Set<Integer> getTmPusTypeSubtypes() {
+        return Collections.unmodifiableSet(tmPusTypeSubtypes);
+    }
+
+    public Set<Integer> getTmApids() {
+        return Collections.unmodifiableSet(tmApids);
+    }
+
+    @Override
+    public boolean filter(RawData rd, AnnotatedObject sp, Integer pusType, Integer pusSubtype, Integer destination, Integer source) {
+        return predicate.filter(rd, sp, pusType, pusSubtype, destination, source);
+    }
+
+    public static int typeSubtypeKey(int pusType, int pusSubtype) {
+        return (pusType << 8) | (pusSubtype & 0xFF);
+    }
+}
@@ -41,6 +41,8 @@ import eu.dariolucia.reatmetric.driver.spacecraft.services.ISecurityHandler;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServicePacketFilter;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -50,6 +52,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,9 +77,19 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
     public static final int IV_LENGTH = 16;
     public static final int HEADER_LENGTH = 2 + IV_LENGTH; // No need for padding to be computed, use CTR AES mode
 
+    // MessageDigest objects are not thread-safe: one per thread is kept and reset for each computation
+    private static final ThreadLocal<MessageDigest> SHA256_DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Hash function not defined: SHA-256", e);
+        }
+    });
+
     private IServiceCoreContext context;
-    private final Map<Integer, String> tmspi2key = new HashMap<>();
-    private final Map<Integer, String> tcspi2key = new HashMap<>();
+    // Keys are derived from the configured passwords at initialisation time, as the derivation is expensive by design
+    private final Map<Integer, SecretKeySpec> tmspi2key = new HashMap<>();
+    private final Map<Integer, SecretKeySpec> tcspi2key = new HashMap<>();
     private final SecureRandom randomizer = new SecureRandom();
     private byte[] salt;
 
@@ -107,13 +120,13 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
         this.salt = aesConfiguration.getSaltAsByteArray();
         // Set default TC SPI to use
         this.tcSpiToUse.set(aesConfiguration.getDefaultTcSpi());
-        // Init TM passwords
+        // Init TM keys
         for(SpiPassword spiPassword : aesConfiguration.getTmSpis()) {
-            this.tmspi2key.put(spiPassword.getId(), spiPassword.getPassword());
+            this.tmspi2key.put(spiPassword.getId(), CryptoUtil.deriveAesKey(spiPassword.getPassword(), this.salt));
         }
-        // Init TC passwords
+        // Init TC keys
         for(SpiPassword spiPassword : aesConfiguration.getTcSpis()) {
-            this.tcspi2key.put(spiPassword.getId(), spiPassword.getPassword());
+            this.tcspi2key.put(spiPassword.getId(), CryptoUtil.deriveAesKey(spiPassword.getPassword(), this.salt));
         }
         // If TC SPI parameter is declared, register to processing model
         if(aesConfiguration.getTcSpiParameterPath() != null) {
@@ -158,21 +171,36 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
 
     @Override
     public AbstractTransferFrame encrypt(AbstractTransferFrame frame) throws ReatmetricException {
+        return encrypt(frame, CryptoUtil.aesCipher(), SHA256_DIGESTS.get());
+    }
+
+    @Override
+    public List<AbstractTransferFrame> encrypt(List<AbstractTransferFrame> frames) throws ReatmetricException {
+        Cipher cipher = CryptoUtil.aesCipher();
+        MessageDigest digest = SHA256_DIGESTS.get();
+        List<AbstractTransferFrame> result = new ArrayList<>(frames.size());
+        for(AbstractTransferFrame frame : frames) {
+            result.add(encrypt(frame, cipher, digest));
+        }
+        return result;
+    }
+
+    private AbstractTransferFrame encrypt(AbstractTransferFrame frame, Cipher cipher, MessageDigest digest) throws ReatmetricException {
         // Only TcTransferFrame are supported: encryption is performed by reading the value of the indicated parameter
         // in the configuration.
         int tcSpi = this.tcSpiToUse.get();
-        String password = this.tcspi2key.get(tcSpi);
-        if(password == null) {
+        SecretKeySpec key = this.tcspi2key.get(tcSpi);
+        if(key == null) {
             throw new ReatmetricException("SPI to use for TC frame encryption not found: " + tcSpi);
         }
         if(frame instanceof TcTransferFrame && ((TcTransferFrame) frame).getFrameType() != TcTransferFrame.FrameType.BC && ((TcTransferFrame) frame).isSecurityUsed()) {
-            return encryptTcAes((TcTransferFrame) frame, password, tcSpi);
+            return encryptTcAes((TcTransferFrame) frame, key, tcSpi, cipher, digest);
         } else {
             return frame;
         }
     }
 
-    private TcTransferFrame encryptTcAes(TcTransferFrame frameObj, String key, int keyId) throws ReatmetricException {
+    private TcTransferFrame encryptTcAes(TcTransferFrame frameObj, SecretKeySpec key, int keyId, Cipher cipher, MessageDigest digest) throws ReatmetricException {
         // Compute the initialisation vector
         byte[] ivArray = new byte[IV_LENGTH];
         this.randomizer.nextBytes(ivArray);
@@ -185,9 +213,9 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
                     " but generated with length " + header.length);
         }
         // Run AES on data field
-        byte[] encryptedDataField = CryptoUtil.aesEncrypt(frameObj.getFrame(), frameObj.getDataFieldStart(), frameObj.getDataFieldLength(), key, ivArray, this.salt);
-        // Compute the trailer
-        byte[] trailer = computeTrailer(frameObj);
+        byte[] encryptedDataField = CryptoUtil.aesEncrypt(cipher, frameObj.getFrame(), frameObj.getDataFieldStart(), frameObj.getDataFieldLength(), key, ivArray);
+        // Compute the trailer: use primary header, segment header if present, and data field (without security header and trailer)
+        byte[] trailer = computeTrailer(digest, frameObj.getFrame(), TcTransferFrame.TC_PRIMARY_HEADER_LENGTH + (frameObj.isSegmented() ? 1 : 0), frameObj.getDataFieldStart(), frameObj.getDataFieldLength());
         if(trailer.length != frameObj.getSecurityTrailerLength()) {
             throw new ReatmetricException("Security error: security trailer on TC frame on SC: " + frameObj.getSpacecraftId() +
                     " VC: " + frameObj.getVirtualChannelId()
@@ -222,69 +250,69 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
         return new TcTransferFrame(newFrame, vc -> frameObj.isSegmented(), frameObj.isFecfPresent(), header.length, trailer.length);
     }
 
-    private byte[] computeTrailer(TcTransferFrame frameObj) throws ReatmetricException {
-        // Use primary header, if present, segment header and data field (without security header and trailer)
-        int scopeLength = TcTransferFrame.TC_PRIMARY_HEADER_LENGTH + (frameObj.isSegmented() ? 1 : 0) + frameObj.getDataFieldLength();
-        byte[] scope = new byte[scopeLength];
-        int offset = 0;
-        System.arraycopy(frameObj.getFrame(), 0, scope, offset, TcTransferFrame.TC_PRIMARY_HEADER_LENGTH);
-        offset += TcTransferFrame.TC_PRIMARY_HEADER_LENGTH;
-        if(frameObj.isSegmented()) {
-            scope[offset] = frameObj.getFrame()[TcTransferFrame.TC_PRIMARY_HEADER_LENGTH];
-            offset += 1;
-        }
-        System.arraycopy(frameObj.getFrame(), frameObj.getDataFieldStart(), scope, offset, frameObj.getDataFieldLength());
-        // Done, now compute SHA-256
-        return computeSHA256(scope);
+    @Override
+    public AbstractTransferFrame decrypt(AbstractTransferFrame frame) throws ReatmetricException {
+        return decrypt(frame, CryptoUtil.aesCipher(), SHA256_DIGESTS.get());
     }
 
     @Override
-    public AbstractTransferFrame decrypt(AbstractTransferFrame frame) throws ReatmetricException {
+    public List<AbstractTransferFrame> decrypt(List<AbstractTransferFrame> frames, BiConsumer<AbstractTransferFrame, ReatmetricException> errorHandler) {
+        Cipher cipher = CryptoUtil.aesCipher();
+        MessageDigest digest = SHA256_DIGESTS.get();
+        List<AbstractTransferFrame> result = new ArrayList<>(frames.size());
+        for(AbstractTransferFrame frame : frames) {
+            try {
+                result.add(decrypt(frame, cipher, digest));
+            } catch (ReatmetricException e) {
+                errorHandler.accept(frame, e);
+                result.add(null);
+            }
+        }
+        return result;
+    }
+
+    private AbstractTransferFrame decrypt(AbstractTransferFrame frame, Cipher cipher, MessageDigest digest) throws ReatmetricException {
         // Only TmTransferFrame and AosTransferFrame are supported
         if(frame instanceof TmTransferFrame) {
-            return decryptTmAes((TmTransferFrame) frame);
+            return decryptTmAes((TmTransferFrame) frame, cipher, digest);
         } else if(frame instanceof AosTransferFrame) {
-            return decryptAosAes((AosTransferFrame) frame);
+            return decryptAosAes((AosTransferFrame) frame, cipher, digest);
         } else {
             return frame;
         }
     }
 
-    private AbstractTransferFrame decryptAosAes(AosTransferFrame frame) throws ReatmetricException {
-        // Get the security header: after primary and secondary header (if present)
-        int secHeaderOffset = AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH + (frame.isFrameHeaderErrorControlPresent() ? AosTransferFrame.AOS_PRIMARY_HEADER_FHEC_LENGTH : 0) +
-                frame.getInsertZoneLength();
-        ByteBuffer secHeaderWrap = ByteBuffer.wrap(frame.getFrame(), secHeaderOffset, HEADER_LENGTH);
-        short spi = secHeaderWrap.getShort();
-        String password = tmspi2key.get((int) spi);
-        if(password == null) {
-            LOG.log(Level.SEVERE, "Cannot find password for spi {0}", spi);
+    private SecretKeySpec getTmKey(AbstractTransferFrame frame, int secHeaderOffset) throws ReatmetricException {
+        short spi = ByteBuffer.wrap(frame.getFrame(), secHeaderOffset, HEADER_LENGTH).getShort();
+        SecretKeySpec key = tmspi2key.get((int) spi);
+        if(key == null) {
+            throw new ReatmetricException("Cannot find key for SPI " + spi + ", frame on SC: " + frame.getSpacecraftId() +
+                    " VC: " + frame.getVirtualChannelId());
         }
+        return key;
+    }
+
+    private AbstractTransferFrame decryptAosAes(AosTransferFrame frame, Cipher cipher, MessageDigest digest) throws ReatmetricException {
+        // Get the security header: after primary and secondary header (if present)
+        int headerLength = AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH + (frame.isFrameHeaderErrorControlPresent() ? AosTransferFrame.AOS_PRIMARY_HEADER_FHEC_LENGTH : 0);
+        int secHeaderOffset = headerLength + frame.getInsertZoneLength();
+        SecretKeySpec key = getTmKey(frame, secHeaderOffset);
         byte[] iv = Arrays.copyOfRange(frame.getFrame(), secHeaderOffset + 2, secHeaderOffset + HEADER_LENGTH);
-        // Now decrypt the body
+        int dataFieldStart = secHeaderOffset + HEADER_LENGTH;
         int dataFieldLength = frame.getLength() - secHeaderOffset - HEADER_LENGTH - TRAILER_LENGTH - (frame.isOcfPresent() ? 4 : 0) - (frame.isFecfPresent() ? 2 : 0);
-        byte[] decryptedDataField = CryptoUtil.aesDecrypt(frame.getFrame(), secHeaderOffset + HEADER_LENGTH, dataFieldLength, password, iv, salt);
+        // Now compose the decrypted frame: primary header, FHEC if present, insert zone and security header
+        byte[] newFrame = new byte[frame.getLength()];
+        System.arraycopy(frame.getFrame(), 0, newFrame, 0, dataFieldStart);
+        // Decrypt the body directly into the new frame
+        CryptoUtil.aesDecrypt(cipher, frame.getFrame(), dataFieldStart, dataFieldLength, key, iv, newFrame, dataFieldStart);
         // Now verify that the trailer matches with the data
         // Use primary header, if present, FHEC and data field (without security header and trailer, without insert zone)
-        byte[] trailer = computeTrailer(frame.getFrame(),
-                AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH + (frame.isFrameHeaderErrorControlPresent() ? AosTransferFrame.AOS_PRIMARY_HEADER_FHEC_LENGTH : 0),
-                decryptedDataField);
-        if(!Arrays.equals(frame.getFrame(), secHeaderOffset + HEADER_LENGTH + decryptedDataField.length, secHeaderOffset + HEADER_LENGTH + decryptedDataField.length + TRAILER_LENGTH,
-                trailer, 0, trailer.length)) {
+        byte[] trailer = computeTrailer(digest, newFrame, headerLength, dataFieldStart, dataFieldLength);
+        int currentOffset = dataFieldStart + dataFieldLength;
+        if(!Arrays.equals(frame.getFrame(), currentOffset, currentOffset + TRAILER_LENGTH, trailer, 0, trailer.length)) {
             throw new ReatmetricException("Trailer mismatch, AOS frame corrupted on SC: " + frame.getSpacecraftId() +
                     "VC:" + frame.getVirtualChannelId());
         }
-        // Now compose the decrypted frame
-        byte[] newFrame = new byte[frame.getLength()];
-        int currentOffset = 0;
-        System.arraycopy(frame.getFrame(), 0, newFrame, currentOffset, secHeaderOffset); // Primary header, FHEC if present, insert zone
-        currentOffset += secHeaderOffset;
-        // Security header
-        System.arraycopy(frame.getFrame(), secHeaderOffset, newFrame, currentOffset, HEADER_LENGTH); // security header
-        currentOffset += HEADER_LENGTH;
-        // Data
-        System.arraycopy(decryptedDataField, 0, newFrame, currentOffset, decryptedDataField.length);
-        currentOffset += decryptedDataField.length;
         // Trailer
         System.arraycopy(trailer, 0, newFrame, currentOffset, trailer.length);
         currentOffset += trailer.length;
@@ -302,38 +330,26 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
         return new AosTransferFrame(newFrame, frame.isFrameHeaderErrorControlPresent(), frame.getInsertZoneLength(), frame.getUserDataType(), frame.isOcfPresent(), frame.isFecfPresent(), HEADER_LENGTH, trailer.length);
     }
 
-    private AbstractTransferFrame decryptTmAes(TmTransferFrame frame) throws ReatmetricException {
+    private AbstractTransferFrame decryptTmAes(TmTransferFrame frame, Cipher cipher, MessageDigest digest) throws ReatmetricException {
         // Get the security header: after primary and secondary header (if present)
         int secHeaderOffset = TmTransferFrame.TM_PRIMARY_HEADER_LENGTH + (frame.isSecondaryHeaderPresent() ? frame.getSecondaryHeaderLength() : 0);
-        ByteBuffer secHeaderWrap = ByteBuffer.wrap(frame.getFrame(), secHeaderOffset, getSecurityHeaderLength(frame.getSpacecraftId(), frame.getVirtualChannelId(), TmTransferFrame.class));
-        short spi = secHeaderWrap.getShort();
-        String password = tmspi2key.get((int) spi);
-        if(password == null) {
-
-        }
+        SecretKeySpec key = getTmKey(frame, secHeaderOffset);
         byte[] iv = Arrays.copyOfRange(frame.getFrame(), secHeaderOffset + 2, secHeaderOffset + HEADER_LENGTH);
-        // Now decrypt the body
+        int dataFieldStart = secHeaderOffset + HEADER_LENGTH;
         int dataFieldLength = frame.getLength() - secHeaderOffset - HEADER_LENGTH - TRAILER_LENGTH - (frame.isOcfPresent() ? 4 : 0) - (frame.isFecfPresent() ? 2 : 0);
-        byte[] decryptedDataField = CryptoUtil.aesDecrypt(frame.getFrame(), secHeaderOffset + HEADER_LENGTH, dataFieldLength, password, iv, this.salt);
+        // Now compose the decrypted frame: primary header, secondary header if present and security header
+        byte[] newFrame = new byte[frame.getLength()];
+        System.arraycopy(frame.getFrame(), 0, newFrame, 0, dataFieldStart);
+        // Decrypt the body directly into the new frame
+        CryptoUtil.aesDecrypt(cipher, frame.getFrame(), dataFieldStart, dataFieldLength, key, iv, newFrame, dataFieldStart);
         // Now verify that the trailer matches with the data
         // Use primary header, if present, secondary header and data field (without security header and trailer)
-        byte[] trailer = computeTrailer(frame.getFrame(), secHeaderOffset, decryptedDataField);
-        if(!Arrays.equals(frame.getFrame(), secHeaderOffset + HEADER_LENGTH + decryptedDataField.length, secHeaderOffset + HEADER_LENGTH + decryptedDataField.length + TRAILER_LENGTH,
-                trailer, 0, trailer.length)) {
+        byte[] trailer = computeTrailer(digest, newFrame, secHeaderOffset, dataFieldStart, dataFieldLength);
+        int currentOffset = dataFieldStart + dataFieldLength;
+        if(!Arrays.equals(frame.getFrame(), currentOffset, currentOffset + TRAILER_LENGTH, trailer, 0, trailer.length)) {
             throw new ReatmetricException("Trailer mismatch, TM frame corrupted on SC: " + frame.getSpacecraftId() +
                     "VC:" + frame.getVirtualChannelId());
         }
-        // Now compose the decrypted frame
-        byte[] newFrame = new byte[frame.getLength()];
-        int currentOffset = 0;
-        System.arraycopy(frame.getFrame(), 0, newFrame, currentOffset, secHeaderOffset); // Primary header and secondary header if present
-        currentOffset += secHeaderOffset;
-        // Security header
-        System.arraycopy(frame.getFrame(), secHeaderOffset, newFrame, currentOffset, HEADER_LENGTH); // security header
-        currentOffset += HEADER_LENGTH;
-        // Data
-        System.arraycopy(decryptedDataField, 0, newFrame, currentOffset, decryptedDataField.length);
-        currentOffset += decryptedDataField.length;
         // Trailer
         System.arraycopy(trailer, 0, newFrame, currentOffset, trailer.length);
         currentOffset += trailer.length;
@@ -351,26 +367,28 @@ public class AesEncryptionService implements ISecurityHandler, IParameterDataSub
         return new TmTransferFrame(newFrame, frame.isFecfPresent(), HEADER_LENGTH, trailer.length);
     }
 
-    private byte[] computeTrailer(byte[] frame, int headerLength, byte[] decryptedDataField) throws ReatmetricException {
-        int scopeLength = headerLength + decryptedDataField.length;
-        byte[] scope = new byte[scopeLength];
-        int offset = 0;
-        System.arraycopy(frame, 0, scope, offset, headerLength);
-        offset += headerLength;
-        System.arraycopy(decryptedDataField, 0, scope, offset, decryptedDataField.length);
-        // Done, now compute SHA-256 (least 8 bytes out of 32)
-        return computeSHA256(scope);
+    /**
+     * Compute the trailer over the concatenation of the frame headers (from the start of the frame) and of the unencrypted
+     * data field, without copying them.
+     */
+    private static byte[] computeTrailer(MessageDigest digest, byte[] frame, int headerLength, int dataFieldStart, int dataFieldLength) {
+        digest.reset();
+        digest.update(frame, 0, headerLength);
+        digest.update(frame, dataFieldStart, dataFieldLength);
+        // Least 8 bytes out of 32
+        byte[] hashSignature = digest.digest();
+        return Arrays.copyOfRange(hashSignature, hashSignature.length - TRAILER_LENGTH, hashSignature.length);
     }
 
     public static byte[] computeSHA256(byte[] scope) throws ReatmetricException {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            MessageDigest md = SHA256_DIGESTS.get();
             md.reset();
             md.update(scope);
             byte[] hashSignature = md.digest();
             return Arrays.copyOfRange(hashSignature, hashSignature.length - TRAILER_LENGTH, hashSignature.length);
-        } catch (NoSuchAlgorithmException e) {
-            throw new ReatmetricException("Hash function not defined: SHA-256", e);
+        } catch (IllegalStateException e) {
+            throw new ReatmetricException(e.getMessage(), e.getCause());
         }
     }
 
@@ -41,6 +41,7 @@ import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketInfo;
 import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketTracker;
 import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServicePacketFilter;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.ServicePacketFilter;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
 
 import java.nio.ByteBuffer;
@@ -51,11 +52,25 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This class implements the ECSS PUS 1 command verification service.
+ *
+ * The service is notified by the {@link eu.dariolucia.reatmetric.driver.spacecraft.services.ServiceBroker} from a single
+ * thread (the broker distribution thread, or the dedicated thread of the service if configured): reports, phase updates
+ * and registrations are therefore processed in order by a single writer, and the verification state is not locked.
+ *
+ * The map of the open verifications is stored as raw data, so that it can be restored at start-up. Serialising and
+ * distributing the map costs time proportional to the number of open verifications: this work is done by a dedicated
+ * thread and requests arriving while a store is pending are coalesced, so that the processing of a report or of a
+ * registration does not depend on the number of commands under verification. The last stored map always reflects
+ * the latest change.
  */
 public class CommandVerificationService extends AbstractPacketService<Object> {
 
@@ -65,6 +80,13 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
     private final Map<Integer, Pair<TcPacketTracker, String>> openCommandVerifications = new ConcurrentHashMap<>(); // ID -> TcTracker and stage last name
     private final Map<Integer, List<QueuedReport>> queuedReportMap = new ConcurrentHashMap<>(); // This content is transient and should not be restored
 
+    private final AtomicBoolean storeRequested = new AtomicBoolean(false);
+    private final ExecutorService verificationMapStorer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Command Verification Service - Verification Map Storer");
+        t.setDaemon(true);
+        return t;
+    });
+
     @Override
     protected void initialiseModelFrom(IArchive archiveToUse, Instant latestGenerationTime) throws ReatmetricException {
         IRawDataArchive rawDataArchive = archiveToUse.getArchive(IRawDataArchive.class);
@@ -95,7 +117,7 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
     }
 
     @Override
-    public synchronized void onTmPacket(RawData packetRawData, SpacePacket spacePacket, TmPusHeader tmPusHeader, DecodingResult decoded) {
+    public void onTmPacket(RawData packetRawData, SpacePacket spacePacket, TmPusHeader tmPusHeader, DecodingResult decoded) {
         // Create the event
         EventOccurrence eo = EventOccurrence.of((int) decoded.getDefinition().getExternalId(),
                 packetRawData.getGenerationTime(),
@@ -191,7 +213,7 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
     }
 
     @Override
-    public synchronized void onTcUpdate(TcPhase phase, Instant phaseTime, AbstractTcTracker tracker) {
+    public void onTcUpdate(TcPhase phase, Instant phaseTime, AbstractTcTracker tracker) {
         // If a TC (whatever it is) is RECEIVED_ONBOARD, and it is NOT scheduled, then announce an AVAILABLE_ONBOARD phase
         if(phase == TcPhase.RECEIVED_ONBOARD && !tracker.getInvocation().getProperties().containsKey(Constants.ACTIVITY_PROPERTY_SCHEDULED_TIME)) {
             serviceBroker().informTc(TcPhase.AVAILABLE_ONBOARD, phaseTime, tracker);
@@ -235,7 +257,7 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
         }
     }
 
-    public synchronized void registerTcVerificationStages(AbstractTcTracker tracker) {
+    public void registerTcVerificationStages(AbstractTcTracker tracker) {
         // Register now
         AckField ackFields;
         TcPacketTracker tcPacketTracker = null;
@@ -294,6 +316,15 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
     }
 
     private void storeVerificationMap() {
+        // If a store is already pending, it will pick up this change as well
+        if(!verificationMapStorer.isShutdown() && storeRequested.compareAndSet(false, true)) {
+            verificationMapStorer.execute(this::doStoreVerificationMap);
+        }
+    }
+
+    private void doStoreVerificationMap() {
+        // Reset the flag before reading the map: changes done from now on request a new store
+        storeRequested.set(false);
         Instant now = Instant.now();
         String serializedMap = serializeOpenVerificationMap();
         RawData rd = new RawData(context().getRawDataBroker().nextRawDataId(), now, Constants.N_TC_VERIFICATION_MAP, Constants.T_TC_VERIFICATION_MAP, "", String.valueOf(spacecraftConfiguration().getId()), Quality.GOOD, null, serializedMap.getBytes(StandardCharsets.US_ASCII), now, driverName(), null);
@@ -340,11 +371,11 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
 
     @Override
     public IServicePacketFilter getSubscriptionFilter() {
-        return (rd, item, pusType, pusSubtype, destination, source) -> (rd.getType().equals(Constants.T_TC_VCA)) ||
+        return new ServicePacketFilter((rd, item, pusType, pusSubtype, destination, source) -> (rd.getType().equals(Constants.T_TC_VCA)) ||
             (item instanceof SpacePacket) && (
                 (((SpacePacket) item).isTelemetryPacket() && pusType != null && pusType == 1) || // For TM 1,x reports
                         !((SpacePacket) item).isTelemetryPacket()
-            ); // All TCs
+            )).withTmPusTypes(1); // All TCs
     }
 
     @Override
@@ -359,6 +390,14 @@ public class CommandVerificationService extends AbstractPacketService<Object> {
 
     @Override
     public void dispose() {
+        verificationMapStorer.shutdown();
+        try {
+            if(!verificationMapStorer.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOG.log(Level.WARNING, "Open verification map for spacecraft " + spacecraftConfiguration().getId() + " not stored within the disposal timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         openCommandVerifications.clear();
     }
 
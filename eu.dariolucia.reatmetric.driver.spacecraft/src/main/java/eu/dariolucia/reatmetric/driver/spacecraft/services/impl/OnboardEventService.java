@@ -26,6 +26,7 @@ import eu.dariolucia.reatmetric.driver.spacecraft.activity.AbstractTcTracker;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.services.OnboardEventServiceConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.services.TimeCorrelationServiceConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServicePacketFilter;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.ServicePacketFilter;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
 
 import java.io.FileInputStream;
@@ -76,7 +77,7 @@ public class OnboardEventService extends AbstractPacketService<OnboardEventServi
 
     @Override
     public IServicePacketFilter getSubscriptionFilter() {
-        return (rd, sp, pusType, pusSubtype, destination, source) -> pusType != null && pusType == 5;
+        return new ServicePacketFilter((rd, sp, pusType, pusSubtype, destination, source) -> pusType != null && pusType == 5).withTmPusTypes(5);
     }
 
     @Override
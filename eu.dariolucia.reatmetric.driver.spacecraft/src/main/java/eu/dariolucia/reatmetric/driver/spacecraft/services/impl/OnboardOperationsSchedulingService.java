@@ -24,6 +24,7 @@ import eu.dariolucia.reatmetric.api.common.LongUniqueId;
 import eu.dariolucia.reatmetric.api.common.RetrievalDirection;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
 import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.processing.IActivityHandler;
 import eu.dariolucia.reatmetric.api.processing.input.*;
 import eu.dariolucia.reatmetric.api.rawdata.IRawDataArchive;
 import eu.dariolucia.reatmetric.api.rawdata.Quality;
@@ -32,14 +33,17 @@ import eu.dariolucia.reatmetric.api.rawdata.RawDataFilter;
 import eu.dariolucia.reatmetric.api.value.ValueTypeEnum;
 import eu.dariolucia.reatmetric.api.value.ValueUtil;
 import eu.dariolucia.reatmetric.driver.spacecraft.activity.AbstractTcTracker;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketInfo;
 import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketTracker;
 import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.services.OnboardOperationsSchedulingServiceConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServicePacketFilter;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.ServicePacketFilter;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.ITimeCorrelation;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.rmi.RemoteException;
 import java.time.Instant;
 import java.util.*;
@@ -55,9 +59,20 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
 
     public static final int VERIFICATION_AHEAD_MILLIS = 1000;
 
+    // State records: first line is the header, each further line is an operation on the model
+    private static final int STATE_FORMAT_VERSION = 1;
+    private static final char SNAPSHOT_RECORD = 'S';
+    private static final char DELTA_RECORD = 'D';
+    private static final char OPERATION_UPDATE = 'U';
+    private static final char OPERATION_REMOVE = 'R';
+
     private final Timer scheduler = new Timer();
     // This map contains the time-tagged TCs
     private final Map<IUniqueId, LinkedTcTracker> linkedActivityOccurrence2tcTracker = new HashMap<>();
+    // Journal state: ID of the snapshot the stored deltas are based on, null if no snapshot was stored by this object
+    private Long currentSnapshotId;
+    private long deltaSequenceNumber;
+    private int deltasSinceSnapshot;
 
     @Override
     public void postInitialisation() {
@@ -69,26 +84,127 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
     @Override
     protected void initialiseModelFrom(IArchive archiveToUse, Instant time) throws ReatmetricException {
         IRawDataArchive archive = archiveToUse.getArchive(IRawDataArchive.class);
-        List<RawData> data = archive.retrieve(time, 1, RetrievalDirection.TO_PAST, new RawDataFilter(true, Constants.N_SCHEDULE_MODEL_STATE, null, Collections.singletonList(Constants.T_SCHEDULE_MODEL_STATE), Collections.singletonList(String.valueOf(spacecraftConfiguration().getId())), Collections.singletonList(Quality.GOOD)));
+        List<RawData> data = archive.retrieve(time, 1, RetrievalDirection.TO_PAST, buildStateFilter(Constants.T_SCHEDULE_MODEL_STATE));
         if(!data.isEmpty()) {
-            try {
-                Map<IUniqueId, LinkedTcTracker> theMap = (Map<IUniqueId, LinkedTcTracker>) new ObjectInputStream(new ByteArrayInputStream(data.get(0).getContents())).readObject();
-                for(Map.Entry<IUniqueId, LinkedTcTracker> entry : theMap.entrySet()) {
-                    entry.getValue().setService(this);
-                    this.linkedActivityOccurrence2tcTracker.put(entry.getKey(), entry.getValue());
-                    // If the linked task is completed - 11,4 fully executed - then start with the timer again
-                    if(entry.getValue().isCompleted()) {
-                        entry.getValue().registerScheduledTc();
+            RawData snapshot = data.get(0);
+            Map<IUniqueId, LinkedTcTracker> theMap;
+            if(isLegacyState(snapshot.getContents())) {
+                theMap = readLegacyState(snapshot.getContents());
+            } else {
+                // Apply the deltas based on the snapshot to the snapshot entries, and rebuild the trackers only at the end
+                Map<Long, String> entries = new LinkedHashMap<>();
+                applyStateRecord(snapshot, entries);
+                List<RawData> deltas = new ArrayList<>();
+                for(RawData rd : archive.retrieve(snapshot.getGenerationTime(), time, buildStateFilter(Constants.T_SCHEDULE_MODEL_DELTA))) {
+                    if(readBaseSnapshotId(rd) == snapshot.getInternalId().asLong()) {
+                        deltas.add(rd);
                     }
                 }
-            } catch (IOException | ClassNotFoundException e) {
-                throw new ReatmetricException(e);
+                deltas.sort(Comparator.comparingLong(this::readSequenceNumber));
+                for(RawData delta : deltas) {
+                    applyStateRecord(delta, entries);
+                }
+                theMap = rebuildTrackers(entries.values(), archive, archiveToUse.getArchive(IActivityOccurrenceDataArchive.class));
+            }
+            for(Map.Entry<IUniqueId, LinkedTcTracker> entry : theMap.entrySet()) {
+                entry.getValue().setService(this);
+                this.linkedActivityOccurrence2tcTracker.put(entry.getKey(), entry.getValue());
+                // If the linked task is completed - 11,4 fully executed - then start with the timer again
+                if(entry.getValue().isCompleted()) {
+                    entry.getValue().registerScheduledTc();
+                }
             }
         } else {
             if(LOG.isLoggable(Level.INFO)) {
                 LOG.log(Level.INFO, "Onboard schedule model for spacecraft " + spacecraftConfiguration().getId() + " at time " + time + " not found");
             }
         }
+        // Deltas are never appended to a snapshot created by a previous run: the first change triggers a new snapshot
+        this.currentSnapshotId = null;
+    }
+
+    private RawDataFilter buildStateFilter(String type) {
+        return new RawDataFilter(true, Constants.N_SCHEDULE_MODEL_STATE, null, Collections.singletonList(type), Collections.singletonList(String.valueOf(spacecraftConfiguration().getId())), Collections.singletonList(Quality.GOOD));
+    }
+
+    private static boolean isLegacyState(byte[] contents) {
+        // Java serialization stream magic number, used by the previous versions of the service
+        return contents.length >= 2 && contents[0] == (byte) 0xAC && contents[1] == (byte) 0xED;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<IUniqueId, LinkedTcTracker> readLegacyState(byte[] contents) throws ReatmetricException {
+        try {
+            return (Map<IUniqueId, LinkedTcTracker>) new ObjectInputStream(new ByteArrayInputStream(contents)).readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new ReatmetricException(e);
+        }
+    }
+
+    private static String[] readHeader(RawData rd) throws ReatmetricException {
+        String contents = new String(rd.getContents(), StandardCharsets.US_ASCII);
+        int endOfHeader = contents.indexOf('\n');
+        String[] header = (endOfHeader == -1 ? contents : contents.substring(0, endOfHeader)).split(";", -1);
+        if(!header[0].equals(String.valueOf(STATE_FORMAT_VERSION))) {
+            throw new ReatmetricException("Onboard schedule model record " + rd.getInternalId() + " has unsupported format version " + header[0]);
+        }
+        return header;
+    }
+
+    private long readBaseSnapshotId(RawData delta) {
+        try {
+            return Long.parseLong(readHeader(delta)[2]);
+        } catch (ReatmetricException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot read onboard schedule model delta " + delta.getInternalId() + ", ignored: " + e.getMessage(), e);
+            return -1;
+        }
+    }
+
+    private long readSequenceNumber(RawData delta) {
+        try {
+            return Long.parseLong(readHeader(delta)[3]);
+        } catch (ReatmetricException | RuntimeException e) {
+            // Not possible: only deltas with valid header are sorted
+            return -1;
+        }
+    }
+
+    /**
+     * Apply the operations contained in a state record (snapshot or delta) to the provided entry map.
+     *
+     * @param rd the record
+     * @param entries the map of serialized {@link LinkedTcTracker}, by activity occurrence ID
+     * @throws ReatmetricException if the record format is not supported
+     */
+    private static void applyStateRecord(RawData rd, Map<Long, String> entries) throws ReatmetricException {
+        readHeader(rd);
+        String[] lines = new String(rd.getContents(), StandardCharsets.US_ASCII).split("\n");
+        for(int i = 1; i < lines.length; ++i) {
+            String line = lines[i];
+            int firstSeparator = line.indexOf('|');
+            int secondSeparator = line.indexOf('|', firstSeparator + 1);
+            long occId = Long.parseLong(secondSeparator == -1 ? line.substring(firstSeparator + 1) : line.substring(firstSeparator + 1, secondSeparator));
+            if(line.charAt(0) == OPERATION_UPDATE) {
+                entries.put(occId, line.substring(firstSeparator + 1));
+            } else if(line.charAt(0) == OPERATION_REMOVE) {
+                entries.remove(occId);
+            } else {
+                throw new ReatmetricException("Onboard schedule model record " + rd.getInternalId() + " has unsupported operation " + line.charAt(0));
+            }
+        }
+    }
+
+    private Map<IUniqueId, LinkedTcTracker> rebuildTrackers(Collection<String> entries, IRawDataArchive rawDataArchive, IActivityOccurrenceDataArchive actOccArchive) {
+        Map<IUniqueId, LinkedTcTracker> theMap = new LinkedHashMap<>();
+        for(String entry : entries) {
+            try {
+                LinkedTcTracker tracker = LinkedTcTracker.fromRecord(entry, rawDataArchive, actOccArchive);
+                theMap.put(tracker.tcPacketTracker.getInvocation().getActivityOccurrenceId(), tracker);
+            } catch (ReatmetricException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Cannot restore onboard schedule model entry " + entry + " for spacecraft " + spacecraftConfiguration().getId() + ", entry ignored: " + e.getMessage(), e);
+            }
+        }
+        return theMap;
     }
 
     @Override
@@ -125,7 +241,7 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
                     linkedTracker.terminate(TcPhase.FAILED, phaseTime, false);
                 }
                 // Save state
-                storeState();
+                storeChange(tcPacketTracker.getInvocation().getActivityOccurrenceId());
                 // Stop here
                 return;
             }
@@ -136,22 +252,23 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
             // It could be more than one activity linked to the PUS 11,4 TC, so use a concatenation of IDs, separated by |. The approach is identical though (use a for loop).
             // But in this implementation we support a single TC per PUS 11,4, so the above is not needed.
             String occIdStr = tcPacketTracker.getInvocation().getProperties().get(Constants.ACTIVITY_PROPERTY_SUBSCHEDULE_TRACKING_ID);
-            LinkedTcTracker linkedTcTracker = linkedActivityOccurrence2tcTracker.get(new LongUniqueId(Long.parseLong(occIdStr)));
+            IUniqueId linkedOccId = new LongUniqueId(Long.parseLong(occIdStr));
+            LinkedTcTracker linkedTcTracker = linkedActivityOccurrence2tcTracker.get(linkedOccId);
             // Update the tracking information
             linkedTcTracker.informTcTransition(phase, phaseTime);
             // Save state
-            storeState();
+            storeChange(linkedOccId);
         }
         // If it is a 11,3 in status COMPLETED, the schedule is reset
         if(tcPacketTracker.getInfo().getPusHeader().getServiceType() == 11 && tcPacketTracker.getInfo().getPusHeader().getServiceSubType() == 3 && phase == TcPhase.COMPLETED) {
             // Get the original tracker
-            Set<IUniqueId> keys = linkedActivityOccurrence2tcTracker.keySet();
+            Set<IUniqueId> keys = new HashSet<>(linkedActivityOccurrence2tcTracker.keySet()); // Avoid concurrent modification exception
             for(IUniqueId id : keys) {
                 LinkedTcTracker linkedTcTracker = linkedActivityOccurrence2tcTracker.remove(id);
                 linkedTcTracker.terminate(TcPhase.FAILED, phaseTime, false);
             }
-            // Save state
-            storeState();
+            // Save state: the model is empty, so a snapshot is cheaper than one delta per removed entry
+            storeSnapshot();
         }
         // In any case, if the tcTracker is present in the linkedActivityOccurrence2tcTracker and results as STARTED or COMPLETED or FAILED, it should be removed silently
         if(phase == TcPhase.STARTED || phase == TcPhase.COMPLETED || phase == TcPhase.FAILED) {
@@ -160,28 +277,75 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
             if(track != null) {
                 track.terminate(phase, phaseTime, true);
                 // Save state
-                storeState();
+                storeChange(occId);
             }
         }
     }
 
     /**
-     * Store the state of the model, so that it is possible to restore it from the archive.
+     * Store the change related to the provided activity occurrence, so that it is possible to restore the model from the
+     * archive. If the tracker of the activity occurrence is in the model, its state is stored, otherwise its removal is
+     * stored. A full snapshot of the model is stored instead of the change, if no snapshot was stored yet by this object
+     * or if the configured number of changes was stored since the last snapshot.
+     *
+     * @param activityOccurrenceId the activity occurrence ID
+     */
+    private synchronized void storeChange(IUniqueId activityOccurrenceId) {
+        if(currentSnapshotId == null || deltasSinceSnapshot >= configuration().getSnapshotPeriod()) {
+            storeSnapshot();
+            return;
+        }
+        LinkedTcTracker tracker = this.linkedActivityOccurrence2tcTracker.get(activityOccurrenceId);
+        StringBuilder sb = new StringBuilder();
+        sb.append(STATE_FORMAT_VERSION).append(';').append(DELTA_RECORD).append(';').append(currentSnapshotId).append(';').append(++deltaSequenceNumber).append('\n');
+        if(tracker != null) {
+            sb.append(OPERATION_UPDATE).append('|').append(tracker.toRecord());
+        } else {
+            sb.append(OPERATION_REMOVE).append('|').append(activityOccurrenceId.asLong());
+        }
+        if(storeRecord(Constants.T_SCHEDULE_MODEL_DELTA, sb.toString()) != null) {
+            ++deltasSinceSnapshot;
+        }
+    }
+
+    /**
+     * Store the full state of the model. Subsequent changes are stored as deltas based on this snapshot.
      */
-    private synchronized void storeState() {
+    private synchronized void storeSnapshot() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(STATE_FORMAT_VERSION).append(';').append(SNAPSHOT_RECORD);
+        for(LinkedTcTracker tracker : this.linkedActivityOccurrence2tcTracker.values()) {
+            sb.append('\n').append(OPERATION_UPDATE).append('|').append(tracker.toRecord());
+        }
+        IUniqueId snapshotId = storeRecord(Constants.T_SCHEDULE_MODEL_STATE, sb.toString());
+        if(snapshotId != null) {
+            currentSnapshotId = snapshotId.asLong();
+            deltaSequenceNumber = 0;
+            deltasSinceSnapshot = 0;
+        } else {
+            // Force a new snapshot at the next change
+            currentSnapshotId = null;
+        }
+    }
+
+    private IUniqueId storeRecord(String type, String contents) {
         try {
-            // Serialize map
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(bos);
-            oos.writeObject(this.linkedActivityOccurrence2tcTracker);
-            oos.flush();
-            RawData rd = new RawData(context().getRawDataBroker().nextRawDataId(), Instant.now(), Constants.N_SCHEDULE_MODEL_STATE, Constants.T_SCHEDULE_MODEL_STATE, "", String.valueOf(spacecraftConfiguration().getId()), Quality.GOOD, null, bos.toByteArray(), Instant.now(), driverName(), null);
+            Instant now = Instant.now();
+            RawData rd = new RawData(context().getRawDataBroker().nextRawDataId(), now, Constants.N_SCHEDULE_MODEL_STATE, type, "", String.valueOf(spacecraftConfiguration().getId()), Quality.GOOD, null, contents.getBytes(StandardCharsets.US_ASCII), now, driverName(), null);
             context().getRawDataBroker().distribute(Collections.singletonList(rd));
-        } catch (ReatmetricException | IOException e) {
+            return rd.getInternalId();
+        } catch (ReatmetricException e) {
             LOG.log(Level.SEVERE, "Cannot store on-board schedule model for spacecraft " + spacecraftConfiguration().getId() + ": " + e.getMessage(), e);
+            return null;
         }
     }
 
+    private synchronized void scheduledTcAvailable(IUniqueId activityOccurrenceId) {
+        this.linkedActivityOccurrence2tcTracker.remove(activityOccurrenceId);
+        this.scheduler.purge();
+        storeChange(activityOccurrenceId);
+    }
+
     private void dispatch(Instant targetTime, LinkedTcTracker originalCommand) throws ReatmetricException, RemoteException {
         SystemEntityPath activity = SystemEntityPath.fromString(configuration().getActivityPath());
         ActivityDescriptor descriptor = context().getServiceFactory().getActivityOccurrenceDataMonitorService().getDescriptor(activity);
@@ -298,7 +462,7 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
 
     @Override
     public IServicePacketFilter getSubscriptionFilter() {
-        return (rd, sp, pusType, pusSubtype, destination, source) -> sp instanceof SpacePacket && (!((SpacePacket) sp).isTelemetryPacket() || (pusType != null && pusType == 11));
+        return new ServicePacketFilter((rd, sp, pusType, pusSubtype, destination, source) -> sp instanceof SpacePacket && (!((SpacePacket) sp).isTelemetryPacket() || (pusType != null && pusType == 11))).withTmPusTypes(11);
     }
 
     @Override
@@ -410,11 +574,8 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
             service.reportActivityState(tcPacketTracker, currentExecutionTime, ActivityOccurrenceState.EXECUTION, Constants.STAGE_ONBOARD_AVAILABILITY, ActivityReportState.EXPECTED, ActivityOccurrenceState.EXECUTION, currentExecutionTime);
             lastAnnouncedStage = Constants.STAGE_SPACECRAFT_SCHEDULED;
             lastAnnouncedState = ActivityOccurrenceState.SCHEDULING;
-            // Remove tracker from map
-            service.linkedActivityOccurrence2tcTracker.remove(tcPacketTracker.getInvocation().getActivityOccurrenceId());
-            service.scheduler.purge();
-            // Save state to be done here, as this method is run by a different thread
-            service.storeState();
+            // Remove tracker from map and save state: to be done here, as this method is run by a different thread
+            service.scheduledTcAvailable(tcPacketTracker.getInvocation().getActivityOccurrenceId());
         }
 
         public void terminate(TcPhase phase, Instant phaseTime, boolean silently) {
@@ -435,6 +596,55 @@ public class OnboardOperationsSchedulingService extends AbstractPacketService<On
             subscheduleId = value;
         }
 
+        /**
+         * Serialize the tracker state. The TC is stored by reference: its activity occurrence and raw data are retrieved
+         * from the archive at restore time.
+         *
+         * This method does not lock the tracker: it is called while holding the service lock, and the tracker calls the
+         * service while holding its own lock. The fields are volatile, and each state transition is followed by the
+         * storage of its own change.
+         *
+         * @return the tracker state as string
+         */
+        public String toRecord() {
+            return String.valueOf(tcPacketTracker.getInvocation().getActivityOccurrenceId().asLong()) + '|' +
+                    tcPacketTracker.getRawData().getInternalId().asLong() + '|' +
+                    currentExecutionTime + '|' +
+                    (subscheduleId == null ? "" : subscheduleId.toString()) + '|' +
+                    lastAnnouncedStage + '|' +
+                    lastAnnouncedState.name() + '|' +
+                    completed;
+        }
+
+        public static LinkedTcTracker fromRecord(String record, IRawDataArchive rawDataArchive, IActivityOccurrenceDataArchive actOccArchive) throws ReatmetricException {
+            String[] fields = record.split("\\|", -1);
+            long actOccId = Long.parseLong(fields[0]);
+            RawData tc = rawDataArchive.retrieve(new LongUniqueId(Long.parseLong(fields[1])));
+            ActivityOccurrenceData accOccData = actOccArchive.retrieve(new LongUniqueId(actOccId));
+            if(tc == null || accOccData == null) {
+                throw new ReatmetricException("TC raw data or activity occurrence not found in the archive");
+            }
+            IActivityHandler.ActivityInvocation rebuiltInvocation = new IActivityHandler.ActivityInvocation(new LongUniqueId(actOccId),
+                    accOccData.getExternalId(), accOccData.getGenerationTime(), accOccData.getPath(), accOccData.getType(), accOccData.getArguments(), accOccData.getProperties(), accOccData.getRoute(), accOccData.getSource());
+            SpacePacket sp = new SpacePacket(tc.getContents(), tc.getQuality() == Quality.GOOD);
+            LinkedTcTracker tracker = new LinkedTcTracker(new TcPacketTracker(rebuiltInvocation, (TcPacketInfo) tc.getExtension(), tc, sp), Instant.parse(fields[2]));
+            if(!fields[3].isEmpty()) {
+                tracker.subscheduleId = parseNumber(fields[3]);
+            }
+            tracker.lastAnnouncedStage = fields[4];
+            tracker.lastAnnouncedState = ActivityOccurrenceState.valueOf(fields[5]);
+            tracker.completed = Boolean.parseBoolean(fields[6]);
+            return tracker;
+        }
+
+        private static Number parseNumber(String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return Double.parseDouble(value);
+            }
+        }
+
         public boolean isCompleted() {
             return completed;
         }
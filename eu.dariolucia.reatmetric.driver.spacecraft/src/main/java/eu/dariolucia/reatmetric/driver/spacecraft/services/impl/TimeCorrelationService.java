@@ -33,6 +33,7 @@ import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.PacketErrorControlType;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.services.TimeCorrelationServiceConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.IServicePacketFilter;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.ServicePacketFilter;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.ITimeCorrelation;
 import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
 import eu.dariolucia.reatmetric.driver.spacecraft.tmtc.TmFrameDescriptor;
@@ -51,7 +52,6 @@ import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * This class implements the ECSS PUS 9 time reporting service.
@@ -70,9 +70,14 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
 
     private final List<RawData> matchingFrames = new LinkedList<>(); // The users of this list assume that the frames are ERT ordered (0: more recent, size()-1: oldest)
     private final List<Pair<Instant, Instant>> timeCouples = new LinkedList<>();
+    // Maximum number of time couples kept, also used as window of the regression
+    private int numTimeCouples;
+    // Same window of the time couples, used when more than two time couples are available
+    private WindowedLinearRegression regression;
     // Why BigDecimal? If you want to keep nanosecond precision, double resolution can keep up to microsecond and
-    // CUC 4,3 has a resolution of 59.6 nsec, CUC 4,4 is at picosecond level
-    private volatile Pair<BigDecimal, BigDecimal> obt2gtCoefficients;
+    // CUC 4,3 has a resolution of 59.6 nsec, CUC 4,4 is at picosecond level.
+    // The coefficients are immutable and replaced as a whole, so that the conversion path does not need any lock.
+    private volatile TimeCoefficients obt2gtCoefficients;
 
     @Override
     public void postInitialisation() {
@@ -85,7 +90,9 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
             t.setDaemon(true);
             return t;
         });
-        this.obt2gtCoefficients = Pair.of(BigDecimal.valueOf(configuration().getInitialCoefficientM()), BigDecimal.valueOf(configuration().getInitialCoefficientQ()));
+        this.numTimeCouples = Math.max(2, configuration().getNumTimeCouples());
+        this.regression = new WindowedLinearRegression(this.numTimeCouples);
+        this.obt2gtCoefficients = new TimeCoefficients(BigDecimal.valueOf(configuration().getInitialCoefficientM()), BigDecimal.valueOf(configuration().getInitialCoefficientQ()), Instant.now());
         subscribeToRawDataBroker();
     }
 
@@ -102,7 +109,7 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
             String coeffs = new String(data.get(0).getContents(), StandardCharsets.US_ASCII);
             BigDecimal first = new BigDecimal(coeffs.substring(0, coeffs.indexOf('|')));
             BigDecimal second = new BigDecimal(coeffs.substring(coeffs.indexOf('|') + 1));
-            this.obt2gtCoefficients = Pair.of(first, second);
+            this.obt2gtCoefficients = new TimeCoefficients(first, second, data.get(0).getGenerationTime());
         } else {
             if(LOG.isLoggable(Level.INFO)) {
                 LOG.log(Level.INFO, "Time coefficients for spacecraft " + spacecraftId + " at time " + latestGenerationTime + " not found");
@@ -137,13 +144,11 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
      */
     @Override
     public Instant toUtc(Instant obt, AbstractTransferFrame frame, SpacePacket spacePacket) {
-        Pair<BigDecimal, BigDecimal> coeffs = this.obt2gtCoefficients;
+        TimeCoefficients coeffs = this.obt2gtCoefficients;
         if(coeffs == null) {
             return obt;
         }
-        BigDecimal obtBd = convertToBigDecimal(obt);
-        BigDecimal converted = obtBd.multiply(coeffs.getFirst()).add(coeffs.getSecond());
-        return convertToInstant(converted);
+        return coeffs.toUtc(obt);
     }
 
     /**
@@ -156,12 +161,12 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
      */
     @Override
     public Instant toObt(Instant utc) {
-        Pair<BigDecimal, BigDecimal> coeffs = this.obt2gtCoefficients;
+        TimeCoefficients coeffs = this.obt2gtCoefficients;
         if(coeffs == null) {
             return utc;
         }
         BigDecimal utcBd = convertToBigDecimal(utc);
-        BigDecimal converted = utcBd.subtract(coeffs.getSecond()).divide(coeffs.getFirst(), 9, RoundingMode.HALF_UP); // 9 digits after dot
+        BigDecimal converted = utcBd.subtract(coeffs.getQ()).divide(coeffs.getM(), 9, RoundingMode.HALF_UP); // 9 digits after dot
         Instant toReturn = convertToInstant(converted);
         if(LOG.isLoggable(Level.INFO)) {
             LOG.log(Level.INFO, String.format("UTC time %s converted to OBT time %s", utc, toReturn));
@@ -169,7 +174,7 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
         return toReturn;
     }
 
-    private Instant convertToInstant(BigDecimal converted) {
+    private static Instant convertToInstant(BigDecimal converted) {
         // Integral part: seconds. Decimal part: nanos. Ugly. Ugly ugly ugly. But there is no precision loss.
         BigInteger epochSeconds = converted.toBigInteger();
         BigInteger nanoSeconds = converted.subtract(new BigDecimal(epochSeconds.longValue())).multiply(new BigDecimal(1000000000)).toBigInteger();
@@ -249,11 +254,15 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
             }
         }
         // Check is OK, add time couple
-        this.timeCouples.add(Pair.of(onboardTime, utcTime));
-        if(this.timeCouples.size() > configuration().getNumTimeCouples()) {
+        Pair<Instant, Instant> timeCouple = Pair.of(onboardTime, utcTime);
+        this.timeCouples.add(timeCouple);
+        if(this.timeCouples.size() > this.numTimeCouples) {
             // while loop not needed, time couples are added once per time
             this.timeCouples.remove(0);
         }
+        // The regression keeps the same window, updating its sums in constant time
+        Pair<BigDecimal, BigDecimal> converted = convert(timeCouple);
+        this.regression.add(converted.getFirst(), converted.getSecond());
         updateCoefficients();
     }
 
@@ -266,18 +275,21 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
     }
 
     private void linearRegression() {
-        Instant mostRecentTimeCouple = timeCouples.get(timeCouples.size() - 1).getSecond();
-        // Convert data set
-        List<Pair<BigDecimal, BigDecimal>> converted = timeCouples.stream().map(this::convert).collect(Collectors.toList());
+        Pair<Instant, Instant> mostRecentTimeCouple = timeCouples.get(timeCouples.size() - 1);
         // Get the coefficients
-        this.obt2gtCoefficients = LinearRegression.calculate(converted);
+        Pair<BigDecimal, BigDecimal> coefficients = regression.calculate();
+        if(coefficients == null) {
+            // All time couples with the same OBT
+            return;
+        }
+        this.obt2gtCoefficients = new TimeCoefficients(coefficients.getFirst(), coefficients.getSecond(), mostRecentTimeCouple.getFirst());
         if(LOG.isLoggable(Level.FINE)) {
             LOG.log(Level.FINE, String.format("Time coefficient generated (LR): m=%s, q=%s",
-                    obt2gtCoefficients.getFirst().toPlainString(),
-                    obt2gtCoefficients.getFirst().toPlainString()));
+                    coefficients.getFirst().toPlainString(),
+                    coefficients.getSecond().toPlainString()));
         }
         // Distribute the coefficients: generation time is the UTC generation time of the most recent time couple
-        distributeCoefficients(this.obt2gtCoefficients, mostRecentTimeCouple);
+        distributeCoefficients(this.obt2gtCoefficients, mostRecentTimeCouple.getSecond());
     }
 
     private void directInterpolation() {
@@ -325,17 +337,17 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
             if(LOG.isLoggable(Level.FINE)) {
                 LOG.log(Level.FINE, String.format("Time coefficient generated (DI): m=%s, q=%s", m.toPlainString(), q.toPlainString()));
             }
-            this.obt2gtCoefficients = Pair.of(m, q);
+            this.obt2gtCoefficients = new TimeCoefficients(m, q, secondTimeCouple.getFirst());
             // Distribute the coefficients: generation time is the UTC generation time of the most recent time couple
             distributeCoefficients(this.obt2gtCoefficients, secondTimeCouple.getSecond());
         }
     }
 
-    private void distributeCoefficients(Pair<BigDecimal, BigDecimal> obt2gtCoefficients, Instant generationTime) {
+    private void distributeCoefficients(TimeCoefficients obt2gtCoefficients, Instant generationTime) {
         if(obt2gtCoefficients != null) {
             // Serialize coefficients as String
-            String mCoeff = obt2gtCoefficients.getFirst().toPlainString();
-            String qCoeff = obt2gtCoefficients.getSecond().toPlainString();
+            String mCoeff = obt2gtCoefficients.getM().toPlainString();
+            String qCoeff = obt2gtCoefficients.getQ().toPlainString();
             String derivedString = mCoeff + "|" + qCoeff;
             RawData rd = new RawData(context().getRawDataBroker().nextRawDataId(), generationTime, Constants.N_TIME_COEFFICIENTS, Constants.T_TIME_COEFFICIENTS, "", String.valueOf(spacecraftId), Quality.GOOD, null, derivedString.getBytes(StandardCharsets.US_ASCII), Instant.now(), driverName(), null);
             try {
@@ -352,7 +364,7 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
         return Pair.of(first, second);
     }
 
-    private BigDecimal convertToBigDecimal(Instant instant) {
+    private static BigDecimal convertToBigDecimal(Instant instant) {
         // Thanks to xpromache for the optimized implementation: issue #4
         return BigDecimal.valueOf(instant.getEpochSecond()).add(BigDecimal.valueOf(instant.getNano(), 9));
     }
@@ -440,7 +452,7 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
 
     @Override
     public IServicePacketFilter getSubscriptionFilter() {
-        return (rd, sp, pusType, pusSubtype, destination, source) -> sp instanceof SpacePacket && (((SpacePacket) sp).getApid() == 0 || (pusType != null && pusType == 9));
+        return new ServicePacketFilter((rd, sp, pusType, pusSubtype, destination, source) -> sp instanceof SpacePacket && (((SpacePacket) sp).getApid() == 0 || (pusType != null && pusType == 9))).withTmApids(0).withTmPusTypes(9);
     }
 
     @Override
@@ -474,4 +486,51 @@ public class TimeCorrelationService extends AbstractPacketService<TimeCorrelatio
         toReturn.put("Q", second);
         return toReturn;
     }
+
+    /**
+     * Immutable OBT to UTC coefficients (UTC = m * OBT + q). Besides the exact coefficients, objects of this class keep
+     * a reference OBT and the corresponding UTC time, so that the conversion can be computed as
+     * UTC = UTC_ref + (OBT - OBT_ref) + (m - 1) * (OBT - OBT_ref), using long arithmetic on nanoseconds for the first two
+     * terms. The last term is the drift correction and it is small, so it can be computed in double precision without
+     * losing the nanosecond resolution. If the OBT is too far from the reference to fit a long in nanoseconds, the exact
+     * BigDecimal computation is used.
+     */
+    private static final class TimeCoefficients {
+
+        private final BigDecimal m;
+        private final BigDecimal q;
+        private final Instant referenceObt;
+        private final Instant referenceUtc;
+        private final double drift;
+
+        /**
+         * @param m the slope
+         * @param q the intercept
+         * @param referenceObt the reference OBT: any value works, a value close to the OBT to convert keeps the offsets small
+         */
+        public TimeCoefficients(BigDecimal m, BigDecimal q, Instant referenceObt) {
+            this.m = m;
+            this.q = q;
+            this.referenceObt = referenceObt;
+            this.referenceUtc = convertToInstant(convertToBigDecimal(referenceObt).multiply(m).add(q));
+            this.drift = m.subtract(BigDecimal.ONE).doubleValue();
+        }
+
+        public BigDecimal getM() {
+            return m;
+        }
+
+        public BigDecimal getQ() {
+            return q;
+        }
+
+        public Instant toUtc(Instant obt) {
+            try {
+                long delta = Math.addExact(Math.multiplyExact(obt.getEpochSecond() - referenceObt.getEpochSecond(), 1000000000L), obt.getNano() - referenceObt.getNano());
+                return referenceUtc.plusNanos(Math.addExact(delta, Math.round(drift * delta)));
+            } catch (ArithmeticException e) {
+                return convertToInstant(convertToBigDecimal(obt).multiply(m).add(q));
+            }
+        }
+    }
 }
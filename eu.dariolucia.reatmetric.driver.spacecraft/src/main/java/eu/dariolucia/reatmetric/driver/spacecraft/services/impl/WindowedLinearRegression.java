@@ -0,0 +1,121 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.services.impl;
+
+import eu.dariolucia.reatmetric.api.common.Pair;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Linear regression calculator over a sliding window of data points, computing the ordinary least squares fit of the
+ * points in the window. The fit is updated incrementally: the sums needed by the fit are updated when a point enters or
+ * leaves the window, so that adding a point and computing the coefficients does not require a scan of the window.
+ *
+ * Since BigDecimal addition, subtraction and multiplication are exact, the running sums do not accumulate rounding errors
+ * when points leave the window. To keep the size of the sums small, the points are stored relative to the first point
+ * ever added.
+ *
+ * This class is not thread-safe.
+ */
+public class WindowedLinearRegression {
+
+    private static final int SCALE = 9;
+
+    private final int windowSize;
+    private final Deque<Pair<BigDecimal, BigDecimal>> window = new ArrayDeque<>();
+
+    private BigDecimal referenceX;
+    private BigDecimal referenceY;
+
+    private BigDecimal sumx = BigDecimal.ZERO;
+    private BigDecimal sumy = BigDecimal.ZERO;
+    private BigDecimal sumx2 = BigDecimal.ZERO;
+    private BigDecimal sumxy = BigDecimal.ZERO;
+
+    /**
+     * Create a regression calculator over the last windowSize points.
+     *
+     * @param windowSize the maximum number of points taken into account, must be at least 2
+     */
+    public WindowedLinearRegression(int windowSize) {
+        if(windowSize < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2, got " + windowSize);
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Add a data point to the window. If the window is full, the oldest data point is removed.
+     *
+     * @param x the x value
+     * @param y the y value
+     */
+    public void add(BigDecimal x, BigDecimal y) {
+        if(referenceX == null) {
+            referenceX = x;
+            referenceY = y;
+        }
+        Pair<BigDecimal, BigDecimal> point = Pair.of(x.subtract(referenceX), y.subtract(referenceY));
+        window.addLast(point);
+        sumx = sumx.add(point.getFirst());
+        sumy = sumy.add(point.getSecond());
+        sumx2 = sumx2.add(point.getFirst().multiply(point.getFirst()));
+        sumxy = sumxy.add(point.getFirst().multiply(point.getSecond()));
+        if(window.size() > windowSize) {
+            Pair<BigDecimal, BigDecimal> removed = window.removeFirst();
+            sumx = sumx.subtract(removed.getFirst());
+            sumy = sumy.subtract(removed.getSecond());
+            sumx2 = sumx2.subtract(removed.getFirst().multiply(removed.getFirst()));
+            sumxy = sumxy.subtract(removed.getFirst().multiply(removed.getSecond()));
+        }
+    }
+
+    /**
+     * Return the number of data points currently in the window.
+     *
+     * @return the number of data points
+     */
+    public int size() {
+        return window.size();
+    }
+
+    /**
+     * Compute the coefficients of the regression on the data points in the window.
+     *
+     * @return the slope (first) and intercept (second) pair, or null if less than 2 points are available or if all
+     * the points have the same x value
+     */
+    public Pair<BigDecimal, BigDecimal> calculate() {
+        if(window.size() < 2) {
+            return null;
+        }
+        BigDecimal n = BigDecimal.valueOf(window.size());
+        // slope = (n * sum(xy) - sum(x) * sum(y)) / (n * sum(x^2) - sum(x)^2)
+        BigDecimal divisor = n.multiply(sumx2).subtract(sumx.multiply(sumx));
+        if(divisor.signum() == 0) {
+            return null;
+        }
+        BigDecimal slope = n.multiply(sumxy).subtract(sumx.multiply(sumy)).divide(divisor, SCALE, RoundingMode.HALF_UP);
+        // intercept in the relative coordinates: (sum(y) - slope * sum(x)) / n, then moved back to absolute coordinates
+        BigDecimal relativeIntercept = sumy.subtract(slope.multiply(sumx)).divide(n, SCALE, RoundingMode.HALF_UP);
+        BigDecimal intercept = relativeIntercept.add(referenceY).subtract(slope.multiply(referenceX));
+        return Pair.of(slope, intercept);
+    }
+}
@@ -33,6 +33,7 @@ import eu.dariolucia.ccsds.sle.utl.si.cltu.CltuUplinkStatusEnum;
 import eu.dariolucia.reatmetric.api.activity.ActivityOccurrenceReport;
 import eu.dariolucia.reatmetric.api.activity.ActivityOccurrenceState;
 import eu.dariolucia.reatmetric.api.activity.ActivityReportState;
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
 import eu.dariolucia.reatmetric.api.common.IUniqueId;
 import eu.dariolucia.reatmetric.api.common.Pair;
 import eu.dariolucia.reatmetric.api.model.AlarmState;
@@ -271,6 +272,7 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
         } else {
             LOG.severe(serviceInstance.getServiceInstanceIdentifier() + ": negative CLTU TRANSFER DATA return for CLTU ID " + tracker.getExternalId() + ": " + CltuDiagnosticsStrings.getTransferDataDiagnostic(operation.getResult().getNegativeResult()));
             informSubscribers(tracker.getExternalId(), ForwardDataUnitProcessingStatus.REJECTED, Constants.STAGE_GROUND_STATION_RECEPTION, null);
+            statistics.dataUnitDiscarded();
             this.cltuId2tracker.remove(cltuId);
             increaseEstimatedFreeBuffer(tracker.getCltu().length);
             refreshExpectedCltuId();
@@ -365,6 +367,7 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
         CltuTracker tracker = this.cltuId2tracker.remove(cltuId);
         if (tracker != null) {
             informSubscribers(tracker.getExternalId(), ForwardDataUnitProcessingStatus.UPLINKED, radiationTime, Constants.STAGE_GROUND_STATION_UPLINK, null);
+            statistics.dataUnitTransferred(tracker.getCltu().length, Math.max(0, radiationTime.toEpochMilli() - tracker.getReleaseTime().toEpochMilli()));
             increaseEstimatedFreeBuffer(tracker.getCltu().length);
         } else {
             LOG.log(Level.WARNING, serviceInstance.getServiceInstanceIdentifier() + ": received notification of radiation for CLTU " + cltuId + " not present in the system");
@@ -397,6 +400,7 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
         CltuTracker tracker = this.cltuId2tracker.remove(cltuId);
         if (tracker != null) {
             informSubscribers(tracker.getExternalId(), ForwardDataUnitProcessingStatus.UPLINK_FAILED, Constants.STAGE_GROUND_STATION_UPLINK, null);
+            statistics.dataUnitDiscarded();
             increaseEstimatedFreeBuffer(tracker.getCltu().length);
         } else {
             LOG.log(Level.WARNING, serviceInstance.getServiceInstanceIdentifier() + ": received radiation problem for CLTU " + cltuId + " not present in the system");
@@ -445,16 +449,18 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
         if (this.serviceInstance.getCurrentBindingState() != ServiceInstanceBindingStateEnum.ACTIVE) {
             LOG.severe(serviceInstance.getServiceInstanceIdentifier() + ": transmission of CLTU with external ID " + externalId + " failed: service instance state is " + this.serviceInstance.getCurrentBindingState());
             informSubscribers(externalId, ForwardDataUnitProcessingStatus.RELEASE_FAILED, null, null);
+            statistics.dataUnitDiscarded();
             return;
         }
         boolean goAhead = decreaseEstimatedFreeBuffer(encodedCltu.length);
         if (!goAhead) {
             LOG.severe(serviceInstance.getServiceInstanceIdentifier() + ": transmission of CLTU with external ID " + externalId + " failed: remote CLTU buffer availability failed");
             informSubscribers(externalId, ForwardDataUnitProcessingStatus.RELEASE_FAILED, null, null);
+            statistics.dataUnitDiscarded();
             return;
         }
         long thisCounter = this.cltuCounter.getAndIncrement();
-        this.cltuId2tracker.put(thisCounter, new CltuTracker(externalId, encodedCltu));
+        this.cltuId2tracker.put(thisCounter, new CltuTracker(externalId, encodedCltu, Instant.now()));
         informSubscribers(externalId, ForwardDataUnitProcessingStatus.RELEASED, null, Constants.STAGE_GROUND_STATION_RECEPTION);
         LOG.log(Level.INFO, "Sending CLTU with ID " + externalId + ": " + StringUtil.toHexDump(encodedCltu));
         this.serviceInstance.transferData(thisCounter, null, null, 20000000, true, encodedCltu);
@@ -514,6 +520,7 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
             if (tracker != null) {
                 increaseEstimatedFreeBuffer(tracker.getCltu().length);
                 informSubscribers(tracker.getExternalId(), ForwardDataUnitProcessingStatus.RELEASE_FAILED, null, null);
+                statistics.dataUnitDiscarded();
             }
         }
         // handle error on throw event transmission
@@ -537,6 +544,16 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
         }
     }
 
+    @Override
+    protected void addDebugInfo(List<DebugInformation> toFill) {
+        toFill.add(DebugInformation.of(getName(), "Outstanding CLTUs", cltuId2tracker.size(), null, "CLTUs"));
+        int capacity = bufferCapacity;
+        if(capacity > 0) {
+            toFill.add(DebugInformation.of(getName(), "CLTU buffer usage", capacity - estimatedFreeBuffer.get(), capacity, "bytes"));
+        }
+        toFill.add(DebugInformation.of(getName(), "Uplink status", uplinkStatus, null, ""));
+    }
+
     private void informSubscribers(long externalId, ForwardDataUnitProcessingStatus status, String currentState, String nextState) {
         informSubscribers(externalId, status, Instant.now(), currentState, nextState);
     }
@@ -548,10 +565,12 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
     private static class CltuTracker {
         private final long externalId;
         private final byte[] cltu;
+        private final Instant releaseTime;
 
-        public CltuTracker(long externalId, byte[] cltu) {
+        public CltuTracker(long externalId, byte[] cltu, Instant releaseTime) {
             this.cltu = cltu;
             this.externalId = externalId;
+            this.releaseTime = releaseTime;
         }
 
         public long getExternalId() {
@@ -561,5 +580,9 @@ public class CltuServiceInstanceManager extends SleServiceInstanceManager<CltuSe
         public byte[] getCltu() {
             return cltu;
         }
+
+        public Instant getReleaseTime() {
+            return releaseTime;
+        }
     }
 }
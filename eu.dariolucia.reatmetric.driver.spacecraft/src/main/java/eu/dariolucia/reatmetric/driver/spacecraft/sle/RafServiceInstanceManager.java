@@ -21,11 +21,13 @@ import eu.dariolucia.ccsds.sle.generated.ccsds.sle.transfer.service.raf.outgoing
 import eu.dariolucia.ccsds.sle.generated.ccsds.sle.transfer.service.raf.structures.AntennaId;
 import eu.dariolucia.ccsds.sle.utl.config.PeerConfiguration;
 import eu.dariolucia.ccsds.sle.utl.config.raf.RafServiceInstanceConfiguration;
+import eu.dariolucia.ccsds.sle.utl.si.DeliveryModeEnum;
 import eu.dariolucia.ccsds.sle.utl.si.LockStatusEnum;
 import eu.dariolucia.ccsds.sle.utl.si.ProductionStatusEnum;
 import eu.dariolucia.ccsds.sle.utl.si.ServiceInstanceBindingStateEnum;
 import eu.dariolucia.ccsds.sle.utl.si.raf.RafDiagnosticsStrings;
 import eu.dariolucia.ccsds.sle.utl.si.raf.RafServiceInstance;
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
 import eu.dariolucia.reatmetric.api.model.AlarmState;
 import eu.dariolucia.reatmetric.api.rawdata.Quality;
 import eu.dariolucia.reatmetric.core.api.IServiceCoreContext;
@@ -34,6 +36,8 @@ import eu.dariolucia.reatmetric.driver.spacecraft.definition.TransferFrameType;
 
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,8 +45,15 @@ public class RafServiceInstanceManager extends SleServiceInstanceManager<RafServ
 
     private static final Logger LOG = Logger.getLogger(RafServiceInstanceManager.class.getName());
 
+    private final AtomicLong excessiveBacklogNotifications = new AtomicLong();
+    private final AtomicLong frameSyncLossNotifications = new AtomicLong();
+
     public RafServiceInstanceManager(String driverName, PeerConfiguration peerConfiguration, RafServiceInstanceConfiguration siConfiguration, SpacecraftConfiguration spacecraftConfiguration, IServiceCoreContext context) {
         super(driverName, peerConfiguration, siConfiguration, spacecraftConfiguration, context);
+        // Frames delivered after the latency limit (timely and complete online delivery modes) are counted as late
+        if(siConfiguration.getDeliveryMode() != DeliveryModeEnum.OFFLINE && siConfiguration.getLatencyLimit() != null) {
+            this.statistics.setLateThreshold(siConfiguration.getLatencyLimit() * 1000L);
+        }
     }
 
     @Override
@@ -133,8 +144,10 @@ public class RafServiceInstanceManager extends SleServiceInstanceManager<RafServ
             LOG.warning(serviceInstance.getServiceInstanceIdentifier() + ": End of data received");
         } else if(operation.getNotification().getExcessiveDataBacklog() != null) {
             LOG.warning(serviceInstance.getServiceInstanceIdentifier() + ": Data discarded due to excessive backlog");
+            excessiveBacklogNotifications.incrementAndGet();
         } else if(operation.getNotification().getLossFrameSync() != null) {
             LOG.warning(serviceInstance.getServiceInstanceIdentifier() + ": Frame synchronisation lost");
+            frameSyncLossNotifications.incrementAndGet();
         } else if(operation.getNotification().getProductionStatusChange() != null) {
             ProductionStatusEnum prodStatus = ProductionStatusEnum.fromCode(operation.getNotification().getProductionStatusChange().intValue());
             updateProductionStatus(prodStatus);
@@ -155,6 +168,12 @@ public class RafServiceInstanceManager extends SleServiceInstanceManager<RafServ
         }
     }
 
+    @Override
+    protected void addDebugInfo(List<DebugInformation> toFill) {
+        toFill.add(DebugInformation.of(getName(), "Excessive backlog notifications", excessiveBacklogNotifications.get(), null, ""));
+        toFill.add(DebugInformation.of(getName(), "Frame sync loss notifications", frameSyncLossNotifications.get(), null, ""));
+    }
+
     @Override
     protected void finalizeConnection() {
         if(serviceInstance.getCurrentBindingState() == ServiceInstanceBindingStateEnum.ACTIVE || serviceInstance.getCurrentBindingState() == ServiceInstanceBindingStateEnum.READY) {
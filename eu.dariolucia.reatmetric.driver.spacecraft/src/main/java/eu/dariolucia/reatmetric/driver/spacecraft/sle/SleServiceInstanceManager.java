@@ -26,6 +26,8 @@ import eu.dariolucia.ccsds.sle.utl.pdu.PduFactoryUtil;
 import eu.dariolucia.ccsds.sle.utl.si.*;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
+import eu.dariolucia.reatmetric.api.common.IDebugInfoProvider;
 import eu.dariolucia.reatmetric.api.common.Pair;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
 import eu.dariolucia.reatmetric.api.model.AlarmState;
@@ -43,13 +45,14 @@ import eu.dariolucia.reatmetric.driver.spacecraft.definition.VirtualChannelType;
 
 import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-abstract public class SleServiceInstanceManager<T extends ServiceInstance, K extends ServiceInstanceConfiguration> extends AbstractTransportConnector implements ITransportConnector, IServiceInstanceListener {
+abstract public class SleServiceInstanceManager<T extends ServiceInstance, K extends ServiceInstanceConfiguration> extends AbstractTransportConnector implements ITransportConnector, IServiceInstanceListener, IDebugInfoProvider {
 
     private static final Logger LOG = Logger.getLogger(SleServiceInstanceManager.class.getName());
 
@@ -62,6 +65,7 @@ abstract public class SleServiceInstanceManager<T extends ServiceInstance, K ext
 
     protected final SpacecraftConfiguration spacecraftConfiguration;
     protected final IServiceCoreContext context;
+    protected final SleServiceInstanceStatistics statistics;
 
     private final Semaphore bindSemaphore = new Semaphore(0);
     private final Semaphore unbindSemaphore = new Semaphore(0);
@@ -78,6 +82,7 @@ abstract public class SleServiceInstanceManager<T extends ServiceInstance, K ext
         this.serviceInstanceLastPart = siConfiguration.getServiceInstanceIdentifier().substring(siConfiguration.getServiceInstanceIdentifier().lastIndexOf('=') + 1);
         this.context = context;
         this.spacecraftConfiguration = spacecraftConfiguration;
+        this.statistics = new SleServiceInstanceStatistics(getName(), siConfiguration.getType() == ApplicationIdentifierEnum.CLTU ? "CLTUs" : "Frames");
 
         this.serviceInstance = createServiceInstance(peerConfiguration, siConfiguration);
         this.serviceInstance.configure();
@@ -106,6 +111,31 @@ abstract public class SleServiceInstanceManager<T extends ServiceInstance, K ext
         }
     }
 
+    /**
+     * Record the reception of a good quality return frame in the service instance statistics.
+     *
+     * @param frameContents the frame
+     * @param earthReceiveTime the earth receive time of the frame
+     */
+    protected void frameReceived(byte[] frameContents, Instant earthReceiveTime) {
+        statistics.dataUnitTransferred(frameContents.length, Math.max(0, System.currentTimeMillis() - earthReceiveTime.toEpochMilli()));
+    }
+
+    @Override
+    public List<DebugInformation> currentDebugInfo() {
+        return statistics.currentDebugInfo(this::addDebugInfo);
+    }
+
+    /**
+     * Subclasses can override this method to add service type specific debug information to the one collected by the
+     * {@link SleServiceInstanceStatistics}.
+     *
+     * @param toFill the list to add the debug information to
+     */
+    protected void addDebugInfo(List<DebugInformation> toFill) {
+        // Nothing by default
+    }
+
     protected void distribute(RawData rd) {
         try {
             context.getRawDataBroker().distribute(Collections.singletonList(rd));
@@ -217,6 +247,8 @@ abstract public class SleServiceInstanceManager<T extends ServiceInstance, K ext
     protected void distributeTmFrame(byte[] frameContents, Quality quality, Instant genTimeInstant, Instant receivedTime, String antennaId) {
         // add source and route in the frame annotated map, route is SCID.VCID.ANTENNA.SERVICE_TYPE.SERVICE_ID, e.g. 123.7.ANT01.RAF.raf001
         if(quality == Quality.GOOD) { // GOOD
+            // Bad frames are counted as discarded by distributeBadFrame
+            frameReceived(frameContents, receivedTime);
             TmTransferFrame frame = new TmTransferFrame(frameContents, spacecraftConfiguration.getTmDataLinkConfigurations().isFecfPresent());
             if(isVcToBeProcessed(frame.getVirtualChannelId())) {
                 StringBuilder route = new StringBuilder().append(frame.getSpacecraftId()).append('.').append(frame.getVirtualChannelId()).append('.').append(antennaId).append('.').append(serviceInstance.getApplicationIdentifier().name()).append('.').append(this.serviceInstanceLastPart);
@@ -237,6 +269,8 @@ abstract public class SleServiceInstanceManager<T extends ServiceInstance, K ext
     protected void distributeAosFrame(byte[] frameContents, Quality quality, Instant genTimeInstant, Instant receivedTime, String antennaId) {
         // add source and route in the frame annotated map, route is ANTENNA.SERVICE_TYPE.SERVICE_ID.SCID.VCID
         if(quality == Quality.GOOD) { // GOOD
+            // Bad frames are counted as discarded by distributeBadFrame
+            frameReceived(frameContents, receivedTime);
             AosTransferFrame frame = new AosTransferFrame(frameContents, spacecraftConfiguration.getTmDataLinkConfigurations().isAosFrameHeaderErrorControlPresent(),
                     spacecraftConfiguration.getTmDataLinkConfigurations().getAosTransferFrameInsertZoneLength(), AosTransferFrame.UserDataType.M_PDU,
                     spacecraftConfiguration.getTmDataLinkConfigurations().isOcfPresent(), spacecraftConfiguration.getTmDataLinkConfigurations().isFecfPresent());
@@ -264,6 +298,7 @@ abstract public class SleServiceInstanceManager<T extends ServiceInstance, K ext
 
     private void distributeBadFrame(byte[] frameContents, Quality quality, Instant genTimeInstant, Instant receivedTime, String antennaId) {
         LOG.warning(serviceInstance.getServiceInstanceIdentifier() + ": Bad frame received");
+        statistics.dataUnitDiscarded();
         StringBuilder route = new StringBuilder().append(antennaId).append('.').append(serviceInstance.getApplicationIdentifier().name()).append('.').append(this.serviceInstanceLastPart);
         RawData rd = new RawData(context.getRawDataBroker().nextRawDataId(), genTimeInstant, Constants.N_TM_TRANSFER_FRAME, Constants.T_BAD_TM, route.toString(), "", quality, null, frameContents, receivedTime, driverName, null);
         distribute(rd);
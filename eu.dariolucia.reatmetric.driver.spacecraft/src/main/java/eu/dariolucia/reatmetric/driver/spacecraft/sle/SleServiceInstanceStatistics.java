@@ -0,0 +1,167 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.sle;
+
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Throughput and latency statistics of a SLE service instance, reported as {@link DebugInformation}.
+ *
+ * The service instance manager records each transferred data unit (frame or CLTU) with its size and latency: for return
+ * services, the latency is the time between the earth receive time and the reception of the frame by the service instance
+ * manager; for the forward CLTU service, it is the time between the transmission of the CLTU and the start of its radiation.
+ * Latencies are collected in a histogram with power of two millisecond buckets, which is reset at every sample.
+ *
+ * Rates and latency percentiles are computed when the debug information is requested, at most once per second: requests
+ * arriving in between receive the last computed values.
+ */
+final class SleServiceInstanceStatistics {
+
+    private static final long MIN_SAMPLE_PERIOD_MS = 1000;
+    // Bucket 0: latency below 1 ms, bucket i: latency in [2^(i-1), 2^i) ms, last bucket: everything above
+    private static final int LATENCY_BUCKETS = 32;
+
+    private final String element;
+    private final String dataUnitName;
+
+    private final AtomicLong dataUnits = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong discardedDataUnits = new AtomicLong();
+    private final AtomicLong lateDataUnits = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS);
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private volatile long lateThreshold = -1;
+
+    // Access protected by this object
+    private long lastSampleTime = 0;
+    private long lastDataUnits = 0;
+    private long lastBytes = 0;
+    private List<DebugInformation> lastStats = null;
+
+    SleServiceInstanceStatistics(String element, String dataUnitName) {
+        this.element = element;
+        this.dataUnitName = dataUnitName;
+    }
+
+    /**
+     * Set the latency above which a data unit is considered late. If not set, data units are never considered late.
+     *
+     * @param lateThresholdMillis the threshold in milliseconds, or a negative value to disable the check
+     */
+    void setLateThreshold(long lateThresholdMillis) {
+        this.lateThreshold = lateThresholdMillis;
+    }
+
+    /**
+     * Record a transferred data unit.
+     *
+     * @param length the length of the data unit in bytes
+     * @param latencyMillis the latency of the data unit in milliseconds, or a negative value if not known
+     */
+    void dataUnitTransferred(int length, long latencyMillis) {
+        dataUnits.incrementAndGet();
+        bytes.addAndGet(length);
+        if(latencyMillis >= 0) {
+            latencyBuckets.incrementAndGet(bucketOf(latencyMillis));
+            maxLatency.accumulateAndGet(latencyMillis, Math::max);
+            long threshold = lateThreshold;
+            if(threshold >= 0 && latencyMillis > threshold) {
+                lateDataUnits.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Record a data unit that was discarded (e.g. bad frame, rejected or not radiated CLTU).
+     */
+    void dataUnitDiscarded() {
+        discardedDataUnits.incrementAndGet();
+    }
+
+    /**
+     * Return the current statistics.
+     *
+     * @param extraInfoProvider the provider of additional debug information, specific to the service instance type
+     * @return the statistics as list of {@link DebugInformation}
+     */
+    synchronized List<DebugInformation> currentDebugInfo(Consumer<List<DebugInformation>> extraInfoProvider) {
+        long now = System.currentTimeMillis();
+        if(lastStats != null && now - lastSampleTime < MIN_SAMPLE_PERIOD_MS) {
+            return lastStats;
+        }
+        long currDataUnits = dataUnits.get();
+        long currBytes = bytes.get();
+        long[] histogram = new long[LATENCY_BUCKETS];
+        long samples = 0;
+        for(int i = 0; i < LATENCY_BUCKETS; ++i) {
+            histogram[i] = latencyBuckets.getAndSet(i, 0);
+            samples += histogram[i];
+        }
+        long max = maxLatency.getAndSet(0);
+        double seconds = lastSampleTime == 0 ? 0 : (now - lastSampleTime) / 1000.0;
+        int dataUnitRate = seconds == 0 ? 0 : (int) ((currDataUnits - lastDataUnits) / seconds);
+        int byteRate = seconds == 0 ? 0 : (int) ((currBytes - lastBytes) / seconds);
+        lastSampleTime = now;
+        lastDataUnits = currDataUnits;
+        lastBytes = currBytes;
+
+        List<DebugInformation> toSet = new ArrayList<>(12);
+        toSet.add(DebugInformation.of(element, dataUnitName, dataUnitRate, null, dataUnitName.toLowerCase() + "/second"));
+        toSet.add(DebugInformation.of(element, "Data rate", byteRate, null, "bytes/second"));
+        toSet.add(DebugInformation.of(element, "Latency p50", percentile(histogram, samples, 0.50, max), null, "ms"));
+        toSet.add(DebugInformation.of(element, "Latency p99", percentile(histogram, samples, 0.99, max), null, "ms"));
+        toSet.add(DebugInformation.of(element, "Latency max", max, null, "ms"));
+        toSet.add(DebugInformation.of(element, "Total " + dataUnitName.toLowerCase(), currDataUnits, null, dataUnitName.toLowerCase()));
+        toSet.add(DebugInformation.of(element, "Discarded " + dataUnitName.toLowerCase(), discardedDataUnits.get(), null, dataUnitName.toLowerCase()));
+        if(lateThreshold >= 0) {
+            toSet.add(DebugInformation.of(element, "Late " + dataUnitName.toLowerCase(), lateDataUnits.get(), null, dataUnitName.toLowerCase()));
+        }
+        extraInfoProvider.accept(toSet);
+        lastStats = toSet;
+        return toSet;
+    }
+
+    private static int bucketOf(long latencyMillis) {
+        if(latencyMillis <= 0) {
+            return 0;
+        }
+        return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latencyMillis));
+    }
+
+    private static long percentile(long[] histogram, long samples, double fraction, long max) {
+        if(samples == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(samples * fraction);
+        long count = 0;
+        for(int i = 0; i < histogram.length; ++i) {
+            count += histogram[i];
+            if(count >= target) {
+                // Upper bound of the bucket, but never above the observed maximum
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max);
+            }
+        }
+        return max;
+    }
+}
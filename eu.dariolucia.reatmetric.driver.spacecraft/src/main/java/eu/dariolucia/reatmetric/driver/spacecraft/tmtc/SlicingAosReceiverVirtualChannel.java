@@ -0,0 +1,41 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.dariolucia.reatmetric.driver.spacecraft.tmtc;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AosReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
+
+/**
+ * AOS receiver virtual channel, which extracts space packets by means of a {@link SpacePacketSlicer}.
+ */
+class SlicingAosReceiverVirtualChannel extends AosReceiverVirtualChannel {
+
+    private final SpacePacketSlicer<AosTransferFrame> slicer = new SpacePacketSlicer<>(this::notifySpacePacketExtracted);
+
+    SlicingAosReceiverVirtualChannel(int virtualChannelId, VirtualChannelAccessMode mode, boolean exceptionIfVcViolated) {
+        super(virtualChannelId, mode, exceptionIfVcViolated);
+    }
+
+    @Override
+    protected void extractPacket(AosTransferFrame frame, boolean gapDetected, int missingBytes) {
+        if(frame.getUserDataType() != AosTransferFrame.UserDataType.M_PDU) {
+            throw new IllegalArgumentException("The provided frame is not marked as M-PDU, space packets cannot be extracted");
+        }
+        slicer.extract(frame, gapDetected, missingBytes, frame.getPacketZoneStart(), frame.getPacketZoneLength(),
+                frame.isNoStartPacket() ? SpacePacketSlicer.NO_PACKET_START : frame.getFirstHeaderPointer());
+    }
+}
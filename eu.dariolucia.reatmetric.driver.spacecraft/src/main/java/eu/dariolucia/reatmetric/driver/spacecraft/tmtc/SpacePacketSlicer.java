@@ -0,0 +1,205 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.tmtc;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.PacketGap;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class reconstructs space packets from the packet zone of transfer frames, reading directly from the frame buffer.
+ * The packet reconstruction provided by the CCSDS library goes through a per-VC staging buffer, and each packet is then
+ * copied out of it: this class allocates one array per packet, sized to the packet length, and copies the bytes straight
+ * from the frame into it. Packets fully contained in a frame are therefore copied exactly once, which is also the only
+ * copy performed in the TM chain, since the resulting array is the one retained by the {@link SpacePacket} and by the
+ * RawData contents.
+ *
+ * The reconstruction semantic (gap handling, quality indicator, handling of inconsistent first header pointers) is the
+ * same one of the CCSDS library receiver virtual channels.
+ *
+ * This class is not thread-safe: each instance is owned by a single virtual channel.
+ */
+class SpacePacketSlicer<T extends AbstractTransferFrame> {
+
+    /**
+     * Value of the first header pointer to be provided if the frame does not contain the start of any packet.
+     */
+    static final int NO_PACKET_START = -1;
+
+    private final IPacketOutput<T> output;
+
+    private final byte[] header = new byte[SpacePacket.SP_PRIMARY_HEADER_LENGTH];
+    private final List<PacketGap> currentGaps = new ArrayList<>();
+    // Set only when the packet length is known, i.e. after the primary header has been fully received
+    private byte[] currentPacket;
+    private int currentOffset = -1;
+    private int currentPacketLength = -1;
+    private T currentFirstFrame;
+
+    SpacePacketSlicer(IPacketOutput<T> output) {
+        this.output = output;
+    }
+
+    /**
+     * Extract the space packets contained in the provided frame.
+     *
+     * @param frame the frame
+     * @param gap true if a gap was detected before this frame
+     * @param missingBytes the estimated number of bytes lost in the gap
+     * @param dataFieldStart the start of the packet zone in the frame buffer
+     * @param dataFieldLength the length of the packet zone
+     * @param firstHeaderPointer the first header pointer, or {@link #NO_PACKET_START} if no packet starts in the frame
+     */
+    void extract(T frame, boolean gap, int missingBytes, int dataFieldStart, int dataFieldLength, int firstHeaderPointer) {
+        if(frame.isIdleFrame()) {
+            return;
+        }
+        if(gap && isReconstructionPending()) {
+            if(currentPacketLength > -1) {
+                if(currentOffset + missingBytes >= currentPacketLength) {
+                    currentGaps.add(new PacketGap(currentOffset, currentPacketLength - currentOffset));
+                    closeCurrentPacket();
+                } else {
+                    // The missing part is left to zero
+                    currentGaps.add(new PacketGap(currentOffset, missingBytes));
+                    currentOffset += missingBytes;
+                }
+            } else {
+                // Header not complete, nothing can be recovered
+                closeCurrentPacket();
+            }
+        }
+        byte[] data = frame.getFrame();
+        int offset = 0;
+        if(isReconstructionPending()) {
+            if(currentPacketLength == -1) {
+                // Complete the primary header
+                int missingHeader = SpacePacket.SP_PRIMARY_HEADER_LENGTH - currentOffset;
+                if(firstHeaderPointer != NO_PACKET_START && missingHeader > firstHeaderPointer) {
+                    // Inconsistent: drop the partial header
+                    clearCurrentPacketFields();
+                } else {
+                    System.arraycopy(data, dataFieldStart, header, currentOffset, missingHeader);
+                    startPacket(header, 0, SpacePacket.SP_PRIMARY_HEADER_LENGTH);
+                    offset = missingHeader;
+                }
+            }
+            if(currentOffset != -1) {
+                int remaining = currentPacketLength - currentOffset;
+                if(firstHeaderPointer == NO_PACKET_START) {
+                    int toCopy = Math.min(remaining, dataFieldLength - offset);
+                    System.arraycopy(data, dataFieldStart + offset, currentPacket, currentOffset, toCopy);
+                    currentOffset += toCopy;
+                } else if(remaining > firstHeaderPointer - offset) {
+                    // A new packet starts before the end of the current one: the current one is truncated
+                    System.arraycopy(data, dataFieldStart + offset, currentPacket, currentOffset, firstHeaderPointer - offset);
+                    output.spacePacketExtracted(currentFirstFrame, currentPacket, false, buildGapList());
+                    clearCurrentPacketFields();
+                } else {
+                    System.arraycopy(data, dataFieldStart + offset, currentPacket, currentOffset, remaining);
+                    currentOffset += remaining;
+                }
+                if(currentPacketLength != -1 && currentOffset == currentPacketLength) {
+                    output.spacePacketExtracted(currentFirstFrame, currentPacket, currentGaps.isEmpty(), buildGapList());
+                    clearCurrentPacketFields();
+                }
+            }
+        }
+        if(firstHeaderPointer != NO_PACKET_START) {
+            int position = firstHeaderPointer;
+            while(position < dataFieldLength) {
+                position = nextPacket(frame, data, dataFieldStart, dataFieldLength, position);
+            }
+        }
+    }
+
+    private int nextPacket(T frame, byte[] data, int dataFieldStart, int dataFieldLength, int position) {
+        currentOffset = 0;
+        currentFirstFrame = frame;
+        int start = dataFieldStart + position;
+        if(position + SpacePacket.SP_PRIMARY_HEADER_LENGTH < dataFieldLength) {
+            int packetLength = readPacketLength(data, start);
+            int available = dataFieldLength - position;
+            if(packetLength <= available) {
+                // Fully contained: single copy from the frame buffer
+                byte[] packet = Arrays.copyOfRange(data, start, start + packetLength);
+                output.spacePacketExtracted(frame, packet, true, Collections.emptyList());
+                clearCurrentPacketFields();
+                return position + packetLength;
+            } else {
+                currentPacketLength = packetLength;
+                currentPacket = new byte[packetLength];
+                System.arraycopy(data, start, currentPacket, 0, available);
+                currentOffset = available;
+                return position + available;
+            }
+        } else {
+            // Not enough bytes to know the packet length: keep the header part
+            int available = dataFieldLength - position;
+            System.arraycopy(data, start, header, 0, available);
+            currentOffset = available;
+            return position + available;
+        }
+    }
+
+    private void startPacket(byte[] src, int srcOffset, int headerBytes) {
+        currentPacketLength = readPacketLength(src, srcOffset);
+        currentPacket = new byte[currentPacketLength];
+        System.arraycopy(src, srcOffset, currentPacket, 0, headerBytes);
+        currentOffset = headerBytes;
+    }
+
+    private static int readPacketLength(byte[] data, int offset) {
+        return (((data[offset + 4] & 0xFF) << 8) | (data[offset + 5] & 0xFF)) + 1 + SpacePacket.SP_PRIMARY_HEADER_LENGTH;
+    }
+
+    private boolean isReconstructionPending() {
+        return currentOffset != -1;
+    }
+
+    private void closeCurrentPacket() {
+        if(currentPacketLength > -1) {
+            output.spacePacketExtracted(currentFirstFrame, currentPacket, false, buildGapList());
+        }
+        clearCurrentPacketFields();
+    }
+
+    private void clearCurrentPacketFields() {
+        currentOffset = -1;
+        currentPacketLength = -1;
+        currentPacket = null;
+        currentFirstFrame = null;
+        currentGaps.clear();
+    }
+
+    private List<PacketGap> buildGapList() {
+        return currentGaps.isEmpty() ? Collections.emptyList() : List.copyOf(currentGaps);
+    }
+
+    /**
+     * Receiver of the reconstructed space packets.
+     */
+    @FunctionalInterface
+    interface IPacketOutput<T extends AbstractTransferFrame> {
+        void spacePacketExtracted(T firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps);
+    }
+}
@@ -44,11 +44,14 @@ import eu.dariolucia.reatmetric.driver.spacecraft.definition.TmDataLinkConfigura
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.TmVcConfiguration;
 import eu.dariolucia.reatmetric.driver.spacecraft.definition.TransferFrameType;
 import eu.dariolucia.reatmetric.driver.spacecraft.security.DataLinkSecurityManager;
+import eu.dariolucia.reatmetric.driver.spacecraft.util.BoundedExecutorService;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
 import java.util.logging.Level;
@@ -60,6 +63,9 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
 
     private static final Logger LOG = Logger.getLogger(TmDataLinkProcessor.class.getName());
 
+    private static final int MAX_VIRTUAL_CHANNELS = 64;
+    private static final int VC_LANE_QUEUE_SIZE = 1000;
+
     private final int spacecraftId;
     private final boolean[] processedVCs;
     private final IPacketIdentifier packetIdentifier;
@@ -71,6 +77,18 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
     private final DataLinkSecurityManager securityManager;
     private final long propagationDelay;
     private VirtualChannelReceiverDemux demultiplexer;
+    /**
+     * Virtual channel lanes, used if parallel VC processing is enabled: each lane is served by a single thread and
+     * processes all the frames of one virtual channel, so that the order of the frames, and therefore of the extracted
+     * packets, is kept within each VC. Lanes are created upon reception of the first frame of the related VC.
+     *
+     * The lanes check and decrypt the frames concurrently. The demultiplexing and everything it triggers (packet
+     * extraction, identification, generation time resolution and distribution) are serialised by the
+     * {@link #demultiplexerLock}, since the demultiplexer, the packet identifier and the time correlation are not
+     * designed for concurrent use.
+     */
+    private final AtomicReferenceArray<BoundedExecutorService> vcLanes = new AtomicReferenceArray<>(MAX_VIRTUAL_CHANNELS);
+    private final Object demultiplexerLock = new Object();
 
     private final Timer performanceSampler = new Timer("TM Data Link Processor - Sampler", true);
     private final AtomicReference<List<DebugInformation>> lastStats = new AtomicReference<>(Arrays.asList(
@@ -78,8 +96,9 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
             DebugInformation.of("TM Data Link Processor", "Space packets/VCA units", 0, null, "packets/second")
     ));
     private Instant lastSampleGenerationTime;
-    private long frameInput = 0;
-    private long packetOutput = 0;
+    private final AtomicLongArray vcFrameInput = new AtomicLongArray(MAX_VIRTUAL_CHANNELS);
+    private final AtomicLongArray vcPacketOutput = new AtomicLongArray(MAX_VIRTUAL_CHANNELS);
+    private final boolean[] receivedVCs = new boolean[MAX_VIRTUAL_CHANNELS];
 
     public TmDataLinkProcessor(String driverName, SpacecraftConfiguration configuration, IServiceCoreContext context, IPacketIdentifier packetIdentifier, BiFunction<AbstractTransferFrame, SpacePacket, Instant> generationTimeResolver, BiFunction<AbstractTransferFrame, SpacePacket, Quality> packetQualityChecker,
                                DataLinkSecurityManager securityManager) {
@@ -89,7 +108,7 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
         this.packetIdentifier = packetIdentifier;
         this.broker = context.getRawDataBroker();
         this.configuration = configuration.getTmDataLinkConfigurations();
-        this.processedVCs = new boolean[64];
+        this.processedVCs = new boolean[MAX_VIRTUAL_CHANNELS];
         this.generationTimeResolver = generationTimeResolver;
         this.packetQualityChecker = packetQualityChecker;
         this.securityManager = securityManager;
@@ -105,23 +124,42 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
     private void sample() {
         synchronized (performanceSampler) {
             Instant genTime = Instant.now();
+            long[] framesCurr = new long[MAX_VIRTUAL_CHANNELS];
+            long[] packetsCurr = new long[MAX_VIRTUAL_CHANNELS];
+            for(int i = 0; i < MAX_VIRTUAL_CHANNELS; ++i) {
+                framesCurr[i] = vcFrameInput.getAndSet(i, 0);
+                packetsCurr[i] = vcPacketOutput.getAndSet(i, 0);
+            }
             if (lastSampleGenerationTime == null) {
                 lastSampleGenerationTime = genTime;
-                frameInput = 0;
-                packetOutput = 0;
             } else {
-                long frameInputCurr = frameInput;
-                frameInput = 0;
-                long packetOutputCurr = packetOutput;
-                packetOutput = 0;
                 int millis = (int) (genTime.toEpochMilli() - lastSampleGenerationTime.toEpochMilli());
                 lastSampleGenerationTime = genTime;
+                long frameInputCurr = 0;
+                long packetOutputCurr = 0;
+                List<DebugInformation> vcStats = new ArrayList<>();
+                for(int i = 0; i < MAX_VIRTUAL_CHANNELS; ++i) {
+                    frameInputCurr += framesCurr[i];
+                    packetOutputCurr += packetsCurr[i];
+                    if(framesCurr[i] > 0) {
+                        receivedVCs[i] = true;
+                    }
+                    // Report only the VCs that have been received at least once
+                    if(receivedVCs[i]) {
+                        vcStats.add(DebugInformation.of("TM Data Link Processor", "VC " + i + " transfer frames", (int) (framesCurr[i] / (millis / 1000.0)), null, "frames/second"));
+                        vcStats.add(DebugInformation.of("TM Data Link Processor", "VC " + i + " space packets", (int) (packetsCurr[i] / (millis / 1000.0)), null, "packets/second"));
+                        BoundedExecutorService lane = vcLanes.get(i);
+                        if(lane != null) {
+                            vcStats.add(DebugInformation.of("TM Data Link Processor", "VC " + i + " backlog", lane.getQueueSize(), VC_LANE_QUEUE_SIZE, "frames"));
+                        }
+                    }
+                }
                 double framesPerSecond = (frameInputCurr / (millis/1000.0));
                 double packetsPerSecond = (packetOutputCurr / (millis/1000.0));
-                List<DebugInformation> toSet = Arrays.asList(
-                        DebugInformation.of("TM Data Link Processor", "Transfer frames", (int) framesPerSecond, null, "frames/second"),
-                        DebugInformation.of("TM Data Link Processor", "Space packets", (int) packetsPerSecond, null, "packets/second")
-                );
+                List<DebugInformation> toSet = new ArrayList<>(2 + vcStats.size());
+                toSet.add(DebugInformation.of("TM Data Link Processor", "Transfer frames", (int) framesPerSecond, null, "frames/second"));
+                toSet.add(DebugInformation.of("TM Data Link Processor", "Space packets", (int) packetsPerSecond, null, "packets/second"));
+                toSet.addAll(vcStats);
                 lastStats.set(toSet);
             }
         }
@@ -134,13 +172,13 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
         if(configuration.getType() == TransferFrameType.TM) {
             if(configuration.getTmVcConfigurations() == null) {
                 vcToBuild.addAll(IntStream.rangeClosed(0, 8).boxed().collect(Collectors.toList()));
-                vcToBuild.stream().map(i -> new TmReceiverVirtualChannel(i, VirtualChannelAccessMode.PACKET, false)).forEach(virtualChannels::add);
+                vcToBuild.stream().map(i -> new SlicingTmReceiverVirtualChannel(i, VirtualChannelAccessMode.PACKET, false)).forEach(virtualChannels::add);
             } else {
                 for(TmVcConfiguration vcConf : configuration.getTmVcConfigurations()) {
                     switch (vcConf.getProcessType()) {
                         case PACKET: {
                             vcToBuild.add(vcConf.getId());
-                            TmReceiverVirtualChannel vc = new TmReceiverVirtualChannel(vcConf.getId(), VirtualChannelAccessMode.PACKET, false);
+                            TmReceiverVirtualChannel vc = new SlicingTmReceiverVirtualChannel(vcConf.getId(), VirtualChannelAccessMode.PACKET, false);
                             virtualChannels.add(vc);
                         }
                         break;
@@ -155,14 +193,14 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
             }
         } else if(configuration.getType() == TransferFrameType.AOS) {
             if(configuration.getTmVcConfigurations() == null) {
-                vcToBuild.addAll(IntStream.rangeClosed(0, 64).boxed().collect(Collectors.toList()));
-                vcToBuild.stream().map(i -> new AosReceiverVirtualChannel(i, VirtualChannelAccessMode.PACKET, false)).forEach(virtualChannels::add);
+                vcToBuild.addAll(IntStream.range(0, MAX_VIRTUAL_CHANNELS).boxed().collect(Collectors.toList()));
+                vcToBuild.stream().map(i -> new SlicingAosReceiverVirtualChannel(i, VirtualChannelAccessMode.PACKET, false)).forEach(virtualChannels::add);
             } else {
                 for(TmVcConfiguration vcConf : configuration.getTmVcConfigurations()) {
                     switch (vcConf.getProcessType()) {
                         case PACKET: {
                             vcToBuild.add(vcConf.getId());
-                            AosReceiverVirtualChannel vc = new AosReceiverVirtualChannel(vcConf.getId(), VirtualChannelAccessMode.PACKET, false);
+                            AosReceiverVirtualChannel vc = new SlicingAosReceiverVirtualChannel(vcConf.getId(), VirtualChannelAccessMode.PACKET, false);
                             virtualChannels.add(vc);
                         }
                         break;
@@ -214,9 +252,7 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
     @Override
     public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
         // Add performance indicator
-        synchronized (performanceSampler) {
-            ++packetOutput;
-        }
+        vcPacketOutput.incrementAndGet(vc.getVirtualChannelId());
         Instant genTime = (Instant) firstFrame.getAnnotationValue(Constants.ANNOTATION_GEN_TIME);
         if(genTime == null) {
             genTime = Instant.now();
@@ -287,9 +323,7 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
     @Override
     public void dataExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame frame, byte[] data, int missingBytes) {
         // Add performance indicator
-        synchronized (performanceSampler) {
-            ++packetOutput;
-        }
+        vcPacketOutput.incrementAndGet(vc.getVirtualChannelId());
         // Read route from the frame annotated map
         Instant receptionTime = (Instant) frame.getAnnotationValue(Constants.ANNOTATION_RCP_TIME);
         if(receptionTime == null) {
@@ -343,33 +377,107 @@ public class TmDataLinkProcessor implements IVirtualChannelReceiverOutput, IRawD
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void dataItemsReceived(List<RawData> messages) {
-        // Add performance indicator
-        synchronized (performanceSampler) {
-            frameInput += messages.size();
+        if(configuration.isParallelVcProcessing()) {
+            // Split the frames by VC, keeping the reception order, and hand each group to the related lane
+            List<AbstractTransferFrame>[] framesByVc = new List[MAX_VIRTUAL_CHANNELS];
+            for(RawData rd : messages) {
+                AbstractTransferFrame atf = (AbstractTransferFrame) rd.getData();
+                // Add performance indicator
+                vcFrameInput.incrementAndGet(atf.getVirtualChannelId());
+                if(framesByVc[atf.getVirtualChannelId()] == null) {
+                    framesByVc[atf.getVirtualChannelId()] = new ArrayList<>(messages.size());
+                }
+                framesByVc[atf.getVirtualChannelId()].add(atf);
+            }
+            for(int vcId = 0; vcId < MAX_VIRTUAL_CHANNELS; ++vcId) {
+                List<AbstractTransferFrame> frames = framesByVc[vcId];
+                if(frames != null) {
+                    try {
+                        getVcLane(vcId).execute(() -> processVcFrames(frames));
+                    } catch (IllegalStateException e) {
+                        // Lane shut down: disposal in progress
+                        LOG.log(Level.FINE, "TM Data Link Processor VC lane not available: " + e.getMessage());
+                    }
+                }
+            }
+        } else {
+            List<AbstractTransferFrame> frames = new ArrayList<>(messages.size());
+            for(RawData rd : messages) {
+                AbstractTransferFrame atf = (AbstractTransferFrame) rd.getData();
+                // Add performance indicator
+                vcFrameInput.incrementAndGet(atf.getVirtualChannelId());
+                frames.add(atf);
+            }
+            processFrames(frames);
+        }
+    }
+
+    /**
+     * Return the lane of the provided virtual channel, creating it if needed. This method is invoked only by the
+     * broker dispatching thread, therefore a lane is never created twice.
+     *
+     * @param vcId the virtual channel ID
+     * @return the lane processing the frames of the virtual channel
+     */
+    private BoundedExecutorService getVcLane(int vcId) {
+        BoundedExecutorService lane = vcLanes.get(vcId);
+        if(lane == null) {
+            lane = new BoundedExecutorService(1, VC_LANE_QUEUE_SIZE, (r) -> {
+                Thread t = new Thread(r, "TM Data Link Processor - VC " + vcId);
+                t.setDaemon(true);
+                return t;
+            });
+            vcLanes.set(vcId, lane);
+        }
+        return lane;
+    }
+
+    /**
+     * Process the frames of a virtual channel in its lane. Any exception is logged here: the lane executor wraps the task
+     * in a future that nobody inspects, so the exception would be otherwise lost.
+     *
+     * @param frames the frames to process
+     */
+    private void processVcFrames(List<AbstractTransferFrame> frames) {
+        try {
+            processFrames(frames);
+        } catch (RuntimeException e) {
+            AbstractTransferFrame first = frames.get(0);
+            LOG.log(Level.SEVERE, "Error while processing " + frames.size() + " transfer frames of spacecraft " + first.getSpacecraftId() + ", virtual channel " + first.getVirtualChannelId() + ": " + e.getMessage(), e);
         }
-        for(RawData rd : messages) {
-            AbstractTransferFrame atf = (AbstractTransferFrame) rd.getData();
-            // If FECF is present and wrong, discard
+    }
+
+    private void processFrames(List<AbstractTransferFrame> frames) {
+        // If FECF is present and wrong, discard
+        List<AbstractTransferFrame> validFrames = new ArrayList<>(frames.size());
+        for(AbstractTransferFrame atf : frames) {
             if(atf.isFecfPresent() && !atf.isValid()) {
                 LOG.log(Level.SEVERE, "Invalid transfer frame (FECF) received for spacecraft " + atf.getSpacecraftId() + ", virtual channel " + atf.getVirtualChannelId());
-                continue;
+            } else {
+                validFrames.add(atf);
             }
-            // Decrypt
-            try {
-                atf = securityManager.decrypt(atf);
-            } catch (ReatmetricException e) {
-                LOG.log(Level.SEVERE, "Cannot decrypt transfer frame: " + e.getMessage(), e);
-                continue;
+        }
+        // Decrypt, as a batch
+        List<AbstractTransferFrame> decryptedFrames = securityManager.decrypt(validFrames, (atf, e) -> LOG.log(Level.SEVERE, "Cannot decrypt transfer frame: " + e.getMessage(), e));
+        // Send to the demultiplexer, one VC lane at a time
+        synchronized (demultiplexerLock) {
+            for(AbstractTransferFrame atf : decryptedFrames) {
+                demultiplexer.accept(atf);
             }
-            // Send to the demultiplexer
-            demultiplexer.accept(atf);
         }
     }
 
     public void dispose() {
         performanceSampler.cancel();
         broker.unsubscribe(this);
+        for(int i = 0; i < MAX_VIRTUAL_CHANNELS; ++i) {
+            BoundedExecutorService lane = vcLanes.get(i);
+            if(lane != null) {
+                lane.shutdownNow();
+            }
+        }
     }
 
     public LinkedHashMap<String, String> renderTmFrame(RawData rawData) {
@@ -76,6 +76,10 @@ public class BoundedExecutorService implements ExecutorService {
         this.exceptionHandler = exceptionHandler;
     }
 
+    public int getQueueSize() {
+        return tasks.size();
+    }
+
     @Override
     public void shutdown() {
         this.objectLock.lock();
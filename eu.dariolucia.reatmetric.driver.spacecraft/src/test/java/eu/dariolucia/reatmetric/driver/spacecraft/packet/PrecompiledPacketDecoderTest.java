@@ -0,0 +1,134 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.packet;
+
+import eu.dariolucia.ccsds.encdec.definition.Definition;
+import eu.dariolucia.ccsds.encdec.definition.PacketDefinition;
+import eu.dariolucia.ccsds.encdec.structure.*;
+import eu.dariolucia.ccsds.encdec.structure.impl.DefaultPacketDecoder;
+import eu.dariolucia.ccsds.encdec.time.IGenerationTimeProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompiledPacketDecoderTest {
+
+    private static final Instant EPOCH = Instant.parse("1958-01-01T00:00:00Z");
+    private static final Instant REFERENCE_TIME = Instant.parse("2024-01-01T00:00:00Z");
+
+    // Generation time derived from the offset only, as done for the packets of the test definitions
+    private static final IGenerationTimeProcessor TIME_PROCESSOR = (parameter, value, absoluteTime, relativeTime, offset) -> offset == null ? null : REFERENCE_TIME.plusMillis(offset);
+
+    private Definition definition;
+    private IPacketDecoder interpretedDecoder;
+    private PrecompiledPacketDecoder precompiledDecoder;
+
+    @BeforeEach
+    void setup() throws IOException {
+        definition = Definition.load(this.getClass().getClassLoader().getResourceAsStream("packet_definitions_decoding.xml"));
+        PacketDefinitionIndexer indexer = new PacketDefinitionIndexer(definition);
+        interpretedDecoder = new DefaultPacketDecoder(indexer, EPOCH);
+        precompiledDecoder = new PrecompiledPacketDecoder(indexer, EPOCH);
+    }
+
+    @Test
+    void testDecodingEquivalence() throws DecodingException {
+        Random random = new Random(42);
+        for(PacketDefinition pd : definition.getPacketDefinitions()) {
+            for(int i = 0; i < 500; ++i) {
+                byte[] packet = new byte[64];
+                random.nextBytes(packet);
+                // Decoding at non-zero offset
+                int offset = i % 3;
+                DecodingResult expected = interpretedDecoder.decode(pd.getId(), packet, offset, packet.length - offset, TIME_PROCESSOR);
+                DecodingResult actual = precompiledDecoder.decode(pd.getId(), packet, offset, packet.length - offset, TIME_PROCESSOR);
+                assertEquivalent(expected, actual);
+                // Without time processor
+                expected = interpretedDecoder.decode(pd.getId(), packet, offset, packet.length - offset, null);
+                actual = precompiledDecoder.decode(pd.getId(), packet, offset, packet.length - offset, null);
+                assertEquivalent(expected, actual);
+            }
+        }
+        // Fixed layouts are compiled, variable layouts are delegated to the generic decoder
+        assertTrue(precompiledDecoder.isPlanAvailable("TM-ABSOLUTE"));
+        assertTrue(precompiledDecoder.isPlanAvailable("TM-RELATIVE"));
+        assertFalse(precompiledDecoder.isPlanAvailable("TM-VARIABLE"));
+    }
+
+    @Test
+    void testShortPacket() throws DecodingException {
+        // The packet does not contain all the parameters: same outcome of the generic decoder
+        byte[] packet = new byte[10];
+        new Random(7).nextBytes(packet);
+        Exception expectedException = null;
+        DecodingResult expected = null;
+        try {
+            expected = interpretedDecoder.decode("TM-ABSOLUTE", packet, 0, packet.length, TIME_PROCESSOR);
+        } catch (Exception e) {
+            expectedException = e;
+        }
+        if(expectedException != null) {
+            assertThrows(expectedException.getClass(), () -> precompiledDecoder.decode("TM-ABSOLUTE", packet, 0, packet.length, TIME_PROCESSOR));
+        } else {
+            assertEquivalent(expected, precompiledDecoder.decode("TM-ABSOLUTE", packet, 0, packet.length, TIME_PROCESSOR));
+        }
+    }
+
+    private static void assertEquivalent(DecodingResult expected, DecodingResult actual) {
+        assertEquals(expected.getDefinition().getId(), actual.getDefinition().getId());
+        List<DecodingResult.Item> expectedItems = expected.getDecodedItems();
+        List<DecodingResult.Item> actualItems = actual.getDecodedItems();
+        assertEquals(expectedItems.size(), actualItems.size());
+        for(int i = 0; i < expectedItems.size(); ++i) {
+            DecodingResult.Parameter e = (DecodingResult.Parameter) expectedItems.get(i);
+            DecodingResult.Parameter a = (DecodingResult.Parameter) actualItems.get(i);
+            assertEquals(e.location, a.location);
+            assertEquals(e.name, a.name);
+            assertEquals(e.parameterItem.getId(), a.parameterItem.getId());
+            assertEquals(e.actualType, a.actualType);
+            assertValueEquals(e.value, a.value, e.name);
+            assertEquals(e.generationTime, a.generationTime, e.name);
+        }
+        List<ParameterValue> expectedParameters = expected.getDecodedParameters();
+        List<ParameterValue> actualParameters = actual.getDecodedParameters();
+        assertEquals(expectedParameters.size(), actualParameters.size());
+        for(int i = 0; i < expectedParameters.size(); ++i) {
+            ParameterValue e = expectedParameters.get(i);
+            ParameterValue a = actualParameters.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getExternalId(), a.getExternalId());
+            assertValueEquals(e.getValue(), a.getValue(), e.getId());
+            assertEquals(e.getGenerationTime(), a.getGenerationTime(), e.getId());
+        }
+    }
+
+    private static void assertValueEquals(Object expected, Object actual, String name) {
+        if(expected instanceof byte[]) {
+            assertArrayEquals((byte[]) expected, (byte[]) actual, name);
+        } else {
+            // Same class, e.g. Long vs Integer
+            assertEquals(expected == null ? null : expected.getClass(), actual == null ? null : actual.getClass(), name);
+            assertEquals(expected, actual, name);
+        }
+    }
+}
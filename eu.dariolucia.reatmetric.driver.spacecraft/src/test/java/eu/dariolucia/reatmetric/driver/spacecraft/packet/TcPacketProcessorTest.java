@@ -0,0 +1,254 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.packet;
+
+import eu.dariolucia.ccsds.encdec.definition.Definition;
+import eu.dariolucia.ccsds.encdec.definition.PacketDefinition;
+import eu.dariolucia.ccsds.encdec.structure.IPacketEncoder;
+import eu.dariolucia.reatmetric.api.activity.ActivityOccurrenceReport;
+import eu.dariolucia.reatmetric.api.activity.ActivityReportState;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.processing.IActivityHandler;
+import eu.dariolucia.reatmetric.api.processing.IProcessingModel;
+import eu.dariolucia.reatmetric.api.processing.input.ActivityProgress;
+import eu.dariolucia.reatmetric.core.api.IRawDataBroker;
+import eu.dariolucia.reatmetric.core.api.IServiceCoreContext;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.AbstractTcTracker;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcUnitTracker;
+import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.TcPacketConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcPacketProcessorTest {
+
+    private static final int VCA_TC_ID = 1;
+    private static final int PACKET_TC_ID = 2;
+    private static final byte[] ENCODED_BODY = new byte[] { 0x01, 0x02, 0x03, 0x04 };
+
+    private final AtomicInteger encodingCounter = new AtomicInteger(0);
+    private final AtomicLong idSequence = new AtomicLong(0);
+    private final BlockingQueue<AbstractTcTracker> encodedTcs = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ActivityProgress> releaseReports = new LinkedBlockingQueue<>();
+    private volatile boolean dispatchFailure = false;
+
+    private TcPacketProcessor processor;
+
+    @AfterEach
+    void tearDown() {
+        if(processor != null) {
+            processor.dispose();
+        }
+    }
+
+    @Test
+    void testCacheHitReturnsIndependentArray() throws Exception {
+        processor = createProcessor(10);
+        byte[] first = ((TcUnitTracker) execute(VCA_TC_ID, Map.of("ARG", 1))).getVcUnit().getData();
+        byte[] second = ((TcUnitTracker) execute(VCA_TC_ID, Map.of("ARG", 1))).getVcUnit().getData();
+        assertEquals(1, encodingCounter.get());
+        assertArrayEquals(ENCODED_BODY, first);
+        assertArrayEquals(ENCODED_BODY, second);
+        assertNotSame(first, second);
+        // Changing the contents of a sent unit does not affect the cache
+        first[0] = 0x7F;
+        second[0] = 0x7F;
+        byte[] third = ((TcUnitTracker) execute(VCA_TC_ID, Map.of("ARG", 1))).getVcUnit().getData();
+        assertEquals(1, encodingCounter.get());
+        assertArrayEquals(ENCODED_BODY, third);
+    }
+
+    @Test
+    void testNonCacheableArgumentsBypassCache() throws Exception {
+        processor = createProcessor(10);
+        execute(PACKET_TC_ID, Map.of("ARG", new byte[] { 0x01 }));
+        execute(PACKET_TC_ID, Map.of("ARG", new byte[] { 0x01 }));
+        assertEquals(2, encodingCounter.get());
+        // Cacheable arguments are instead encoded once
+        execute(PACKET_TC_ID, Map.of("ARG", "value"));
+        execute(PACKET_TC_ID, Map.of("ARG", "value"));
+        assertEquals(3, encodingCounter.get());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() throws Exception {
+        processor = createProcessor(2);
+        execute(PACKET_TC_ID, Map.of("ARG", 1)); // Miss
+        execute(PACKET_TC_ID, Map.of("ARG", 2)); // Miss
+        execute(PACKET_TC_ID, Map.of("ARG", 1)); // Hit, 2 becomes the least recently used
+        assertEquals(2, encodingCounter.get());
+        execute(PACKET_TC_ID, Map.of("ARG", 3)); // Miss, 2 evicted
+        execute(PACKET_TC_ID, Map.of("ARG", 1)); // Hit
+        assertEquals(3, encodingCounter.get());
+        execute(PACKET_TC_ID, Map.of("ARG", 2)); // Miss
+        assertEquals(4, encodingCounter.get());
+    }
+
+    @Test
+    void testCacheDisabled() throws Exception {
+        processor = createProcessor(0);
+        execute(PACKET_TC_ID, Map.of("ARG", 1));
+        execute(PACKET_TC_ID, Map.of("ARG", 1));
+        assertEquals(2, encodingCounter.get());
+    }
+
+    @Test
+    void testDispatchFailureReportedAsFatal() throws Exception {
+        processor = createProcessor(10);
+        dispatchFailure = true;
+        processor.executeActivity(invocation(PACKET_TC_ID, Map.of("ARG", 1)));
+        assertEquals(ActivityReportState.PENDING, nextReleaseReport().getStatus());
+        assertEquals(ActivityReportState.FATAL, nextReleaseReport().getStatus());
+        assertTrue(encodedTcs.isEmpty());
+        // The dispatcher is still operational
+        dispatchFailure = false;
+        assertNotNull(execute(PACKET_TC_ID, Map.of("ARG", 1)));
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------------------------------------------
+
+    private AbstractTcTracker execute(int activityId, Map<String, Object> arguments) throws Exception {
+        processor.executeActivity(invocation(activityId, arguments));
+        assertEquals(ActivityReportState.PENDING, nextReleaseReport().getStatus());
+        AbstractTcTracker tracker = encodedTcs.poll(5, TimeUnit.SECONDS);
+        assertNotNull(tracker, "TC not encoded");
+        return tracker;
+    }
+
+    private ActivityProgress nextReleaseReport() throws InterruptedException {
+        ActivityProgress progress = releaseReports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(progress, "Release report not received");
+        return progress;
+    }
+
+    private IActivityHandler.ActivityInvocation invocation(int activityId, Map<String, Object> arguments) {
+        long occurrenceId = idSequence.incrementAndGet();
+        return new IActivityHandler.ActivityInvocation(new LongUniqueId(occurrenceId), activityId, Instant.now(), SystemEntityPath.fromString("ROOT.SC.TC" + activityId),
+                "TC", arguments, Collections.emptyMap(), "Route", "Source");
+    }
+
+    private TcPacketProcessor createProcessor(int cacheSize) {
+        TcPacketConfiguration tcPacketConfiguration = new TcPacketConfiguration();
+        tcPacketConfiguration.setEncodedTcCacheSize(cacheSize);
+        SpacecraftConfiguration configuration = new SpacecraftConfiguration();
+        configuration.setTcPacketConfiguration(tcPacketConfiguration);
+        Definition definition = new Definition();
+        definition.getPacketDefinitions().add(packetDefinition("TC_VCA", VCA_TC_ID, ""));
+        definition.getPacketDefinitions().add(packetDefinition("TC_PACKET", PACKET_TC_ID, "APID=300.PUSTYPE=8.PUSSUBTYPE=1"));
+        // No TC data link processor: the fake service broker handles directly the TCs, as a PUS 11 service would do
+        return new TcPacketProcessor("Test Driver", Instant.EPOCH, configuration, context(), serviceBroker(), definition, null, Collections.emptyList());
+    }
+
+    private static PacketDefinition packetDefinition(String id, int externalId, String extension) {
+        PacketDefinition pd = new PacketDefinition(id);
+        pd.setExternalId(externalId);
+        pd.setType(Constants.ENCDEC_TC_PACKET_TYPE);
+        pd.setExtension(extension);
+        return pd;
+    }
+
+    private IServiceBroker serviceBroker() {
+        IPacketEncoder encoder = (id, resolver) -> {
+            encodingCounter.incrementAndGet();
+            return ENCODED_BODY.clone();
+        };
+        return fake(IServiceBroker.class, (method, args) -> {
+            switch (method.getName()) {
+                case "locate":
+                    return args[0] == IPacketEncoder.class ? encoder : null;
+                case "informTc":
+                    if(dispatchFailure) {
+                        throw new IllegalStateException("Simulated dispatch failure");
+                    }
+                    if(args[0] == TcPhase.ENCODED) {
+                        encodedTcs.add((AbstractTcTracker) args[2]);
+                    }
+                    return null;
+                case "isDirectlyHandled":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private IServiceCoreContext context() {
+        IRawDataBroker rawDataBroker = fake(IRawDataBroker.class, (method, args) -> method.getName().equals("nextRawDataId") ? new LongUniqueId(idSequence.incrementAndGet()) : null);
+        IProcessingModel processingModel = fake(IProcessingModel.class, (method, args) -> {
+            if(method.getName().equals("reportActivityProgress") && ((ActivityProgress) args[0]).getName().equals(ActivityOccurrenceReport.RELEASE_REPORT_NAME)) {
+                releaseReports.add((ActivityProgress) args[0]);
+            }
+            return null;
+        });
+        return fake(IServiceCoreContext.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getRawDataBroker":
+                    return rawDataBroker;
+                case "getProcessingModel":
+                    return processingModel;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface FakeHandler {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> clazz, FakeHandler handler) {
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Fake " + clazz.getSimpleName();
+                default:
+                    Object result = handler.invoke(method, args == null ? new Object[0] : args);
+                    if(result == null && method.getReturnType() == boolean.class) {
+                        return false;
+                    } else if(result == null && method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                        return 0;
+                    }
+                    return result;
+            }
+        });
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.services.impl;
+
+import eu.dariolucia.ccsds.encdec.definition.PacketDefinition;
+import eu.dariolucia.ccsds.encdec.pus.AckField;
+import eu.dariolucia.ccsds.encdec.pus.TcPusHeader;
+import eu.dariolucia.ccsds.encdec.pus.TmPusHeader;
+import eu.dariolucia.ccsds.encdec.structure.DecodingResult;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.processing.IActivityHandler;
+import eu.dariolucia.reatmetric.api.processing.IProcessingModel;
+import eu.dariolucia.reatmetric.api.rawdata.Quality;
+import eu.dariolucia.reatmetric.api.rawdata.RawData;
+import eu.dariolucia.reatmetric.core.api.IRawDataBroker;
+import eu.dariolucia.reatmetric.core.api.IServiceCoreContext;
+import eu.dariolucia.reatmetric.core.configuration.ServiceCoreConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketInfo;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketTracker;
+import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.PacketErrorControlType;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check that the processing of PUS 1 reports does not wait for the storage of the open verification map, and that
+ * the stored map reflects the latest state.
+ */
+class CommandVerificationServiceTest {
+
+    private static final int SPACECRAFT_ID = 99;
+    private static final int NUM_TCS = 500;
+    private static final int TM_PUS_HEADER_LENGTH = 10;
+
+    private final List<RawData> storedMaps = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Thread> storingThreads = Collections.synchronizedSet(new HashSet<>());
+    private final Map<TcPhase, Integer> informedPhases = new EnumMap<>(TcPhase.class);
+    private final CountDownLatch storageReleased = new CountDownLatch(1);
+    private long rawDataIdSequence = 1000;
+
+    private CommandVerificationService service;
+
+    @AfterEach
+    void tearDown() {
+        storageReleased.countDown();
+        if(service != null) {
+            service.dispose();
+        }
+    }
+
+    @Test
+    void testVerificationDoesNotWaitForMapStorage() throws Exception {
+        service = createService();
+        // The storage of the map is blocked: verification must progress anyway
+        List<TcPacketTracker> tcs = new ArrayList<>();
+        for(int i = 0; i < NUM_TCS; ++i) {
+            TcPacketTracker tc = tc(i);
+            tcs.add(tc);
+            service.onTcUpdate(TcPhase.AVAILABLE_ONBOARD, Instant.now(), tc);
+        }
+        for(TcPacketTracker tc : tcs) {
+            verify(tc, 1);
+            verify(tc, 3);
+            verify(tc, 7);
+        }
+        assertEquals(NUM_TCS, informedPhases.get(TcPhase.STARTED));
+        assertEquals(NUM_TCS, informedPhases.get(TcPhase.COMPLETED));
+        assertFalse(storingThreads.contains(Thread.currentThread()));
+
+        // Release the storage: one change triggered a store for each registration and completion, but the stores are coalesced
+        storageReleased.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while(System.currentTimeMillis() < deadline && (storedMaps.isEmpty() || !lastStoredMap().isEmpty())) {
+            Thread.sleep(10);
+        }
+        assertEquals("", lastStoredMap());
+        assertTrue(storedMaps.size() <= 2, "Stores not coalesced: " + storedMaps.size());
+        assertFalse(storingThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    void testStoredMapReflectsOpenVerifications() throws Exception {
+        storageReleased.countDown();
+        service = createService();
+        TcPacketTracker tc1 = tc(1);
+        TcPacketTracker tc2 = tc(2);
+        service.onTcUpdate(TcPhase.AVAILABLE_ONBOARD, Instant.now(), tc1);
+        service.onTcUpdate(TcPhase.AVAILABLE_ONBOARD, Instant.now(), tc2);
+        verify(tc1, 7);
+        // Only the second TC is still open, waiting for the completion
+        String expected = tcId(tc2) + "=" + Constants.STAGE_SPACECRAFT_COMPLETED + ";2|" + tc2.getRawData().getInternalId().asLong();
+        long deadline = System.currentTimeMillis() + 5000;
+        while(System.currentTimeMillis() < deadline && (storedMaps.isEmpty() || !lastStoredMap().equals(expected))) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, lastStoredMap());
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------------------------------------------
+
+    private CommandVerificationService createService() throws Exception {
+        SpacecraftConfiguration spacecraftConfiguration = new SpacecraftConfiguration();
+        spacecraftConfiguration.setId(SPACECRAFT_ID);
+        CommandVerificationService service = new CommandVerificationService();
+        service.initialise(null, "Test Driver", spacecraftConfiguration, new ServiceCoreConfiguration(), context(), serviceBroker());
+        return service;
+    }
+
+    private TcPacketTracker tc(int occurrenceId) {
+        Instant now = Instant.now();
+        SystemEntityPath path = SystemEntityPath.fromString("ROOT.SC.TC" + occurrenceId);
+        IActivityHandler.ActivityInvocation invocation = new IActivityHandler.ActivityInvocation(new LongUniqueId(occurrenceId), occurrenceId, now, path, "TC", Collections.emptyMap(), Collections.emptyMap(), "Route", "Source");
+        TcPusHeader pusHeader = new TcPusHeader((byte) 2, new AckField(true, true, false, true), (short) 8, (short) 1, null, null);
+        TcPacketInfo info = new TcPacketInfo(300, pusHeader, 0, PacketErrorControlType.NONE);
+        // Sequence count used to make the TC identifier unique
+        byte[] packet = new byte[] { 0x19, 0x2C, (byte) (0xC0 | ((occurrenceId >> 8) & 0x3F)), (byte) occurrenceId, 0x00, 0x03, 0x00, 0x01, 0x02, 0x03 };
+        RawData rd = new RawData(new LongUniqueId(rawDataIdSequence++), now, "TC", Constants.T_TC_PACKET, "Route", String.valueOf(SPACECRAFT_ID), Quality.GOOD, null, packet, now, "Test Driver", info);
+        return new TcPacketTracker(invocation, info, rd, new SpacePacket(packet, true));
+    }
+
+    private static int tcId(TcPacketTracker tc) {
+        return ByteBuffer.wrap(tc.getPacket().getPacket(), 0, 4).getInt();
+    }
+
+    private void verify(TcPacketTracker tc, int subtype) {
+        byte[] packet = new byte[SpacePacket.SP_PRIMARY_HEADER_LENGTH + TM_PUS_HEADER_LENGTH + 4];
+        packet[0] = 0x08;
+        packet[5] = (byte) (packet.length - SpacePacket.SP_PRIMARY_HEADER_LENGTH - 1);
+        ByteBuffer.wrap(packet, SpacePacket.SP_PRIMARY_HEADER_LENGTH + TM_PUS_HEADER_LENGTH, 4).putInt(tcId(tc));
+        Instant now = Instant.now();
+        RawData rd = new RawData(new LongUniqueId(rawDataIdSequence++), now, "TM(1," + subtype + ")", Constants.T_TM_PACKET, "Route", String.valueOf(SPACECRAFT_ID), Quality.GOOD, null, packet, now, "Test Driver", null);
+        service.onTmPacket(rd, new SpacePacket(packet, true), pusHeader(subtype), decoded());
+    }
+
+    private static TmPusHeader pusHeader(int subtype) {
+        return new TmPusHeader((byte) 1, (short) 1, (short) subtype, null, null, Instant.now(), TM_PUS_HEADER_LENGTH);
+    }
+
+    private static DecodingResult decoded() {
+        PacketDefinition definition = new PacketDefinition("TM_1_X");
+        definition.setExternalId(1);
+        return new DecodingResult(definition, Collections.emptyList(), Collections.emptyList());
+    }
+
+    private String lastStoredMap() {
+        synchronized (storedMaps) {
+            return new String(storedMaps.get(storedMaps.size() - 1).getContents(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    private IServiceBroker serviceBroker() {
+        return fake(IServiceBroker.class, (method, args) -> {
+            if(method.getName().equals("informTc")) {
+                informedPhases.merge((TcPhase) args[0], 1, Integer::sum);
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private IServiceCoreContext context() {
+        Thread testThread = Thread.currentThread();
+        IRawDataBroker rawDataBroker = fake(IRawDataBroker.class, (method, args) -> {
+            switch (method.getName()) {
+                case "nextRawDataId":
+                    return new LongUniqueId(System.nanoTime());
+                case "distribute":
+                    storingThreads.add(Thread.currentThread());
+                    // Never block the thread delivering the reports, the check on the storing threads reports the issue
+                    if(Thread.currentThread() != testThread) {
+                        storageReleased.await(10, TimeUnit.SECONDS);
+                    }
+                    storedMaps.addAll((List<RawData>) args[0]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        IProcessingModel processingModel = fake(IProcessingModel.class, (method, args) -> null);
+        return fake(IServiceCoreContext.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getRawDataBroker":
+                    return rawDataBroker;
+                case "getProcessingModel":
+                    return processingModel;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface FakeHandler {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> clazz, FakeHandler handler) {
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Fake " + clazz.getSimpleName();
+                default:
+                    Object result = handler.invoke(method, args == null ? new Object[0] : args);
+                    if(result == null && method.getReturnType() == boolean.class) {
+                        return false;
+                    } else if(result == null && method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                        return 0;
+                    }
+                    return result;
+            }
+        });
+    }
+}
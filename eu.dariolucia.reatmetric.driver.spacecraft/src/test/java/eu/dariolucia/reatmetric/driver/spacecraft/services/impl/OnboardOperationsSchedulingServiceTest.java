@@ -0,0 +1,325 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.services.impl;
+
+import eu.dariolucia.ccsds.encdec.pus.TcPusHeader;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import eu.dariolucia.reatmetric.api.IReatmetricSystem;
+import eu.dariolucia.reatmetric.api.activity.ActivityDescriptor;
+import eu.dariolucia.reatmetric.api.activity.ActivityOccurrenceData;
+import eu.dariolucia.reatmetric.api.activity.IActivityOccurrenceDataArchive;
+import eu.dariolucia.reatmetric.api.activity.IActivityOccurrenceDataProvisionService;
+import eu.dariolucia.reatmetric.api.archive.IArchive;
+import eu.dariolucia.reatmetric.api.common.IUniqueId;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.processing.IActivityHandler;
+import eu.dariolucia.reatmetric.api.processing.IProcessingModel;
+import eu.dariolucia.reatmetric.api.rawdata.IRawDataArchive;
+import eu.dariolucia.reatmetric.api.rawdata.Quality;
+import eu.dariolucia.reatmetric.api.rawdata.RawData;
+import eu.dariolucia.reatmetric.api.rawdata.RawDataFilter;
+import eu.dariolucia.reatmetric.core.api.IRawDataBroker;
+import eu.dariolucia.reatmetric.core.api.IServiceCoreContext;
+import eu.dariolucia.reatmetric.core.configuration.ServiceCoreConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketInfo;
+import eu.dariolucia.reatmetric.driver.spacecraft.activity.TcPacketTracker;
+import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.PacketErrorControlType;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.ServiceBroker;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.TcPhase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check that the onboard schedule model stored as snapshot and delta records is restored as it was stored.
+ */
+class OnboardOperationsSchedulingServiceTest {
+
+    private static final int SPACECRAFT_ID = 99;
+    private static final String TC_ACTIVITY_TYPE = "TC";
+
+    // Fake archive, filled by the raw data broker
+    private final List<RawData> storedRecords = new ArrayList<>();
+    private final Map<Long, RawData> tcRawData = new HashMap<>();
+    private final Map<Long, ActivityOccurrenceData> activityOccurrences = new HashMap<>();
+    private final Map<Long, TcPacketTracker> trackers = new HashMap<>();
+    private long rawDataIdSequence = 1000;
+    private boolean storageFailure = false;
+
+    private ServiceBroker serviceBroker;
+    private final List<OnboardOperationsSchedulingService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        serviceBroker = new ServiceBroker();
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(OnboardOperationsSchedulingService::dispose);
+        serviceBroker.dispose();
+    }
+
+    @Test
+    void testRestoreFromSnapshotAndDeltas() throws Exception {
+        OnboardOperationsSchedulingService service = createService(3);
+        for(long i = 1; i <= 5; ++i) {
+            service.onTcUpdate(TcPhase.ENCODED, Instant.now(), scheduledTc(i));
+        }
+        // First change: snapshot, then 3 deltas, then a new snapshot
+        assertEquals(List.of("S", "D", "D", "D", "S"), recordTypes());
+        assertEquals(5, lastRecordLines().size() - 1);
+        // Update of TC 3 via its 11,4 and removal of TC 2
+        service.onTcUpdate(TcPhase.RELEASED, Instant.now(), subscheduleTc(100, 3));
+        service.onTcUpdate(TcPhase.STARTED, Instant.now(), trackers.get(2L));
+        assertEquals(List.of("S", "D", "D", "D", "S", "D", "D"), recordTypes());
+        assertTrue(lastRecordLines().get(1).startsWith("R|2"));
+
+        Map<Long, String> expected = trackerRecords(service);
+        assertEquals(Set.of(1L, 3L, 4L, 5L), expected.keySet());
+        assertTrue(expected.get(3L).endsWith("|" + Constants.STAGE_GROUND_STATION_UPLINK + "|TRANSMISSION|false"));
+
+        OnboardOperationsSchedulingService restored = createService(3);
+        restored.initialiseModelFrom(archive(), Instant.now().plusSeconds(1));
+        assertEquals(expected, trackerRecords(restored));
+
+        // Changes after a restore are never stored as deltas of a snapshot of the previous run
+        restored.onTcUpdate(TcPhase.STARTED, Instant.now(), trackers.get(4L));
+        assertEquals("S", recordTypes().get(recordTypes().size() - 1));
+        assertEquals(List.of(1L, 3L, 5L), lastRecordLines().stream().skip(1).map(OnboardOperationsSchedulingServiceTest::occurrenceOf).collect(Collectors.toList()));
+
+        OnboardOperationsSchedulingService restoredAgain = createService(3);
+        restoredAgain.initialiseModelFrom(archive(), Instant.now().plusSeconds(1));
+        assertEquals(trackerRecords(restored), trackerRecords(restoredAgain));
+    }
+
+    @Test
+    void testRestoreAfterMissingSnapshot() throws Exception {
+        OnboardOperationsSchedulingService service = createService(2);
+        for(long i = 1; i <= 3; ++i) {
+            service.onTcUpdate(TcPhase.ENCODED, Instant.now(), scheduledTc(i));
+        }
+        assertEquals(List.of("S", "D", "D"), recordTypes());
+        // The snapshot period is reached, but the snapshot cannot be stored
+        storageFailure = true;
+        service.onTcUpdate(TcPhase.ENCODED, Instant.now(), scheduledTc(4));
+        storageFailure = false;
+        assertEquals(List.of("S", "D", "D"), recordTypes());
+        // No snapshot available for this run: the next change must be stored as snapshot, not as delta
+        service.onTcUpdate(TcPhase.ENCODED, Instant.now(), scheduledTc(5));
+        assertEquals(List.of("S", "D", "D", "S"), recordTypes());
+        service.onTcUpdate(TcPhase.STARTED, Instant.now(), trackers.get(1L));
+        assertEquals(List.of("S", "D", "D", "S", "D"), recordTypes());
+
+        Map<Long, String> expected = trackerRecords(service);
+        assertEquals(Set.of(2L, 3L, 4L, 5L), expected.keySet());
+
+        OnboardOperationsSchedulingService restored = createService(2);
+        restored.initialiseModelFrom(archive(), Instant.now().plusSeconds(1));
+        assertEquals(expected, trackerRecords(restored));
+    }
+
+    @Test
+    void testRestoreWithoutRecords() throws Exception {
+        OnboardOperationsSchedulingService restored = createService(2);
+        restored.initialiseModelFrom(archive(), Instant.now());
+        assertTrue(trackerRecords(restored).isEmpty());
+        // First change after an empty restore is a snapshot
+        restored.onTcUpdate(TcPhase.ENCODED, Instant.now(), scheduledTc(1));
+        assertEquals(List.of("S"), recordTypes());
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------------------------------------------
+
+    private OnboardOperationsSchedulingService createService(int snapshotPeriod) throws Exception {
+        File configuration = File.createTempFile("onboard-scheduling-service", ".xml");
+        configuration.deleteOnExit();
+        Files.writeString(configuration.toPath(), "<ns1:onboard-scheduling-service xmlns:ns1=\"http://dariolucia.eu/reatmetric/driver/spacecraft/onboard-scheduling-service\" " +
+                "schedule-activity-path=\"ROOT.SC.SCHEDULE\" snapshot-period=\"" + snapshotPeriod + "\"/>", StandardCharsets.US_ASCII);
+        SpacecraftConfiguration spacecraftConfiguration = new SpacecraftConfiguration();
+        spacecraftConfiguration.setId(SPACECRAFT_ID);
+        OnboardOperationsSchedulingService service = new OnboardOperationsSchedulingService();
+        service.initialise(configuration.getAbsolutePath(), "Test Driver", spacecraftConfiguration, new ServiceCoreConfiguration(), context(), serviceBroker);
+        services.add(service);
+        return service;
+    }
+
+    private TcPacketTracker scheduledTc(long occurrenceId) {
+        return tc(occurrenceId, new TcPusHeader((short) 8, (short) 1), Map.of(Constants.ACTIVITY_PROPERTY_SCHEDULED_TIME, Instant.now().plus(Duration.ofHours(1)).plusSeconds(occurrenceId).toString()));
+    }
+
+    private TcPacketTracker subscheduleTc(long occurrenceId, long linkedOccurrenceId) {
+        return tc(occurrenceId, new TcPusHeader((short) 11, (short) 4), Map.of(Constants.ACTIVITY_PROPERTY_SUBSCHEDULE_TRACKING_ID, String.valueOf(linkedOccurrenceId)));
+    }
+
+    private TcPacketTracker tc(long occurrenceId, TcPusHeader pusHeader, Map<String, String> properties) {
+        Instant now = Instant.now();
+        SystemEntityPath path = SystemEntityPath.fromString("ROOT.SC.TC" + occurrenceId);
+        IActivityHandler.ActivityInvocation invocation = new IActivityHandler.ActivityInvocation(new LongUniqueId(occurrenceId), (int) occurrenceId, now, path, TC_ACTIVITY_TYPE, Collections.emptyMap(), properties, "Route", "Source");
+        TcPacketInfo info = new TcPacketInfo(300, pusHeader, 0, PacketErrorControlType.NONE);
+        byte[] packet = new byte[] { 0x19, 0x2C, (byte) 0xC0, 0x00, 0x00, 0x03, 0x00, 0x01, 0x02, 0x03 };
+        RawData rd = new RawData(new LongUniqueId(rawDataIdSequence++), now, "TC", Constants.T_TC_PACKET, "Route", String.valueOf(SPACECRAFT_ID), Quality.GOOD, null, packet, now, "Test Driver", info);
+        tcRawData.put(rd.getInternalId().asLong(), rd);
+        activityOccurrences.put(occurrenceId, new ActivityOccurrenceData(new LongUniqueId(occurrenceId), now, null, (int) occurrenceId, path.getLastPathElement(), path, TC_ACTIVITY_TYPE, Collections.emptyMap(), properties, Collections.emptyList(), "Route", "Source"));
+        TcPacketTracker tracker = new TcPacketTracker(invocation, info, rd, new SpacePacket(packet, true));
+        trackers.put(occurrenceId, tracker);
+        return tracker;
+    }
+
+    private List<String> recordTypes() {
+        return storedRecords.stream().map(o -> o.getType().equals(Constants.T_SCHEDULE_MODEL_STATE) ? "S" : "D").collect(Collectors.toList());
+    }
+
+    private List<String> lastRecordLines() {
+        return Arrays.asList(new String(storedRecords.get(storedRecords.size() - 1).getContents(), StandardCharsets.US_ASCII).split("\n"));
+    }
+
+    private static long occurrenceOf(String line) {
+        return Long.parseLong(line.split("\\|")[1]);
+    }
+
+    /**
+     * Return the state of the trackers in the model of the service, by activity occurrence ID.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Long, String> trackerRecords(OnboardOperationsSchedulingService service) throws Exception {
+        Field mapField = OnboardOperationsSchedulingService.class.getDeclaredField("linkedActivityOccurrence2tcTracker");
+        mapField.setAccessible(true);
+        Map<IUniqueId, Object> map = (Map<IUniqueId, Object>) mapField.get(service);
+        Map<Long, String> result = new TreeMap<>();
+        for(Map.Entry<IUniqueId, Object> entry : map.entrySet()) {
+            Method toRecord = entry.getValue().getClass().getDeclaredMethod("toRecord");
+            toRecord.setAccessible(true);
+            result.put(entry.getKey().asLong(), (String) toRecord.invoke(entry.getValue()));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IServiceCoreContext context() {
+        IRawDataBroker rawDataBroker = fake(IRawDataBroker.class, (method, args) -> {
+            switch (method.getName()) {
+                case "nextRawDataId":
+                    return new LongUniqueId(rawDataIdSequence++);
+                case "distribute":
+                    if(storageFailure) {
+                        throw new ReatmetricException("Simulated storage failure");
+                    }
+                    storedRecords.addAll((List<RawData>) args[0]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        ActivityDescriptor scheduleActivity = new ActivityDescriptor(SystemEntityPath.fromString("ROOT.SC.SCHEDULE"), 1, "", "Route", TC_ACTIVITY_TYPE, Collections.emptyList(), Collections.emptyList(), Duration.ZERO);
+        IActivityOccurrenceDataProvisionService activityService = fake(IActivityOccurrenceDataProvisionService.class, (method, args) -> method.getName().equals("getDescriptor") ? scheduleActivity : null);
+        IReatmetricSystem system = fake(IReatmetricSystem.class, (method, args) -> method.getName().equals("getActivityOccurrenceDataMonitorService") ? activityService : null);
+        IProcessingModel processingModel = fake(IProcessingModel.class, (method, args) -> null);
+        return fake(IServiceCoreContext.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getRawDataBroker":
+                    return rawDataBroker;
+                case "getServiceFactory":
+                    return system;
+                case "getProcessingModel":
+                    return processingModel;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private IArchive archive() {
+        IRawDataArchive rawDataArchive = fake(IRawDataArchive.class, (method, args) -> {
+            if(!method.getName().equals("retrieve")) {
+                return null;
+            }
+            if(args.length == 1) {
+                return tcRawData.get(((IUniqueId) args[0]).asLong());
+            } else if(args.length == 4) {
+                // Latest record up to the provided time
+                Instant time = (Instant) args[0];
+                RawDataFilter filter = (RawDataFilter) args[3];
+                List<RawData> selected = select(filter, Instant.MIN, time);
+                return selected.isEmpty() ? Collections.emptyList() : List.of(selected.get(selected.size() - 1));
+            } else {
+                return select((RawDataFilter) args[2], (Instant) args[0], (Instant) args[1]);
+            }
+        });
+        IActivityOccurrenceDataArchive activityArchive = fake(IActivityOccurrenceDataArchive.class, (method, args) ->
+                method.getName().equals("retrieve") && args.length == 1 ? activityOccurrences.get(((IUniqueId) args[0]).asLong()) : null);
+        return fake(IArchive.class, (method, args) -> {
+            if(method.getName().equals("getArchive")) {
+                return args[0] == IRawDataArchive.class ? rawDataArchive : activityArchive;
+            }
+            return null;
+        });
+    }
+
+    private List<RawData> select(RawDataFilter filter, Instant from, Instant to) {
+        return storedRecords.stream()
+                .filter(o -> filter.getTypeList().contains(o.getType()))
+                .filter(o -> !o.getGenerationTime().isBefore(from) && !o.getGenerationTime().isAfter(to))
+                .collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface FakeHandler {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> clazz, FakeHandler handler) {
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Fake " + clazz.getSimpleName();
+                default:
+                    Object result = handler.invoke(method, args == null ? new Object[0] : args);
+                    if(result == null && method.getReturnType() == boolean.class) {
+                        return false;
+                    } else if(result == null && method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                        return 0;
+                    }
+                    return result;
+            }
+        });
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.services.impl;
+
+import eu.dariolucia.reatmetric.api.common.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowedLinearRegressionTest {
+
+    // Tolerances: the slope is computed with 9 decimal digits
+    private static final BigDecimal SLOPE_TOLERANCE = new BigDecimal("1E-9");
+    private static final BigDecimal PREDICTION_TOLERANCE = new BigDecimal("1E-6");
+
+    @Test
+    void testExactLine() {
+        BigDecimal m = new BigDecimal("1.000001");
+        BigDecimal q = new BigDecimal("946684800.123456789");
+        WindowedLinearRegression regression = new WindowedLinearRegression(4);
+        for(int i = 0; i < 10; ++i) {
+            BigDecimal x = new BigDecimal("700000000.000000000").add(BigDecimal.valueOf(16L * i));
+            regression.add(x, m.multiply(x).add(q));
+            assertEquals(Math.min(i + 1, 4), regression.size());
+            if(i > 0) {
+                Pair<BigDecimal, BigDecimal> fit = regression.calculate();
+                assertClose(m, fit.getFirst(), SLOPE_TOLERANCE);
+                assertClose(m.multiply(x).add(q), predict(fit, x), PREDICTION_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    void testSlidingWindowAgainstBatchFit() {
+        Random random = new Random(38);
+        for(int windowSize : new int[] { 2, 3, 5, 10 }) {
+            WindowedLinearRegression regression = new WindowedLinearRegression(windowSize);
+            List<Pair<BigDecimal, BigDecimal>> points = new ArrayList<>();
+            // OBT (seconds since the onboard epoch) vs UTC (seconds since 1970), both with nanosecond resolution
+            BigDecimal x = new BigDecimal("700000000.000000000");
+            for(int i = 0; i < 60; ++i) {
+                x = x.add(BigDecimal.valueOf(8 + random.nextInt(16))).add(BigDecimal.valueOf(random.nextInt(1000000000), 9));
+                BigDecimal noise = BigDecimal.valueOf(random.nextInt(2000000) - 1000000, 9);
+                BigDecimal y = x.multiply(new BigDecimal("0.999999987")).add(new BigDecimal("1009843200.5")).add(noise).setScale(9, RoundingMode.HALF_UP);
+                Pair<BigDecimal, BigDecimal> point = Pair.of(x, y);
+                points.add(point);
+                regression.add(point.getFirst(), point.getSecond());
+                List<Pair<BigDecimal, BigDecimal>> window = points.subList(Math.max(0, points.size() - windowSize), points.size());
+                assertEquals(window.size(), regression.size());
+                Pair<BigDecimal, BigDecimal> fit = regression.calculate();
+                if(window.size() < 2) {
+                    assertNull(fit);
+                    continue;
+                }
+                Pair<BigDecimal, BigDecimal> expected = batchFit(window);
+                assertClose(expected.getFirst(), fit.getFirst(), SLOPE_TOLERANCE);
+                for(Pair<BigDecimal, BigDecimal> p : window) {
+                    assertClose(predict(expected, p.getFirst()), predict(fit, p.getFirst()), PREDICTION_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDegenerateCases() {
+        assertThrows(IllegalArgumentException.class, () -> new WindowedLinearRegression(1));
+        WindowedLinearRegression regression = new WindowedLinearRegression(3);
+        assertNull(regression.calculate());
+        regression.add(BigDecimal.TEN, BigDecimal.ONE);
+        assertNull(regression.calculate());
+        // Same x value: no fit
+        regression.add(BigDecimal.TEN, BigDecimal.valueOf(2));
+        assertNull(regression.calculate());
+        // Once the window slides, the fit is available again
+        regression.add(BigDecimal.valueOf(11), BigDecimal.valueOf(3));
+        regression.add(BigDecimal.valueOf(12), BigDecimal.valueOf(4));
+        Pair<BigDecimal, BigDecimal> fit = regression.calculate();
+        assertClose(BigDecimal.ONE, fit.getFirst(), SLOPE_TOLERANCE);
+        assertClose(BigDecimal.valueOf(-8), fit.getSecond(), PREDICTION_TOLERANCE);
+    }
+
+    /**
+     * Reference least squares fit, computed on the points in absolute coordinates with 34 significant digits.
+     */
+    private static Pair<BigDecimal, BigDecimal> batchFit(List<Pair<BigDecimal, BigDecimal>> points) {
+        MathContext mc = MathContext.DECIMAL128;
+        BigDecimal n = BigDecimal.valueOf(points.size());
+        BigDecimal sumx = BigDecimal.ZERO;
+        BigDecimal sumy = BigDecimal.ZERO;
+        for(Pair<BigDecimal, BigDecimal> p : points) {
+            sumx = sumx.add(p.getFirst());
+            sumy = sumy.add(p.getSecond());
+        }
+        BigDecimal xbar = sumx.divide(n, mc);
+        BigDecimal ybar = sumy.divide(n, mc);
+        BigDecimal sxx = BigDecimal.ZERO;
+        BigDecimal sxy = BigDecimal.ZERO;
+        for(Pair<BigDecimal, BigDecimal> p : points) {
+            BigDecimal dx = p.getFirst().subtract(xbar, mc);
+            sxx = sxx.add(dx.multiply(dx, mc), mc);
+            sxy = sxy.add(dx.multiply(p.getSecond().subtract(ybar, mc), mc), mc);
+        }
+        BigDecimal slope = sxy.divide(sxx, mc);
+        return Pair.of(slope, ybar.subtract(slope.multiply(xbar, mc), mc));
+    }
+
+    private static BigDecimal predict(Pair<BigDecimal, BigDecimal> fit, BigDecimal x) {
+        return fit.getFirst().multiply(x).add(fit.getSecond());
+    }
+
+    private static void assertClose(BigDecimal expected, BigDecimal actual, BigDecimal tolerance) {
+        assertNotNull(actual);
+        assertTrue(expected.subtract(actual).abs().compareTo(tolerance) <= 0, "Expected " + expected.toPlainString() + ", got " + actual.toPlainString());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.sle;
+
+import eu.dariolucia.reatmetric.api.common.DebugInformation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SleServiceInstanceStatisticsTest {
+
+    private static final String ELEMENT = "RAF Test";
+    private static final String DATA_UNIT = "Frames";
+
+    @Test
+    void testBucketBoundaries() {
+        // The p50 of a low latency sample and a much higher one is the upper bound of the bucket of the low latency sample
+        assertEquals(0, bucketUpperBoundOf(0));
+        assertEquals(1, bucketUpperBoundOf(1));
+        assertEquals(3, bucketUpperBoundOf(2));
+        assertEquals(3, bucketUpperBoundOf(3));
+        assertEquals(7, bucketUpperBoundOf(4));
+        assertEquals(1023, bucketUpperBoundOf(512));
+        assertEquals(1023, bucketUpperBoundOf(1023));
+        assertEquals(2047, bucketUpperBoundOf(1024));
+        // Latencies above the last bucket are accounted in the last bucket
+        assertEquals((1L << 31) - 1, bucketUpperBoundOf(1L << 30));
+        assertEquals((1L << 31) - 1, bucketUpperBoundOf(1L << 40));
+    }
+
+    @Test
+    void testEmptyHistogram() {
+        SleServiceInstanceStatistics stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        // Data units with unknown latency are counted, but not in the histogram
+        stats.dataUnitTransferred(100, -1);
+        List<DebugInformation> info = stats.currentDebugInfo(l -> {});
+        assertEquals(0L, measure(info, "Latency p50"));
+        assertEquals(0L, measure(info, "Latency p99"));
+        assertEquals(0L, measure(info, "Latency max"));
+        assertEquals(1L, measure(info, "Total frames"));
+    }
+
+    @Test
+    void testSingleSample() {
+        SleServiceInstanceStatistics stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        stats.dataUnitTransferred(100, 100);
+        List<DebugInformation> info = stats.currentDebugInfo(l -> {});
+        // The upper bound of the bucket (127) is capped to the observed maximum
+        assertEquals(100L, measure(info, "Latency p50"));
+        assertEquals(100L, measure(info, "Latency p99"));
+        assertEquals(100L, measure(info, "Latency max"));
+    }
+
+    @Test
+    void testPercentiles() {
+        SleServiceInstanceStatistics stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        for(int i = 0; i < 99; ++i) {
+            stats.dataUnitTransferred(100, 5);
+        }
+        stats.dataUnitTransferred(100, 5000);
+        List<DebugInformation> info = stats.currentDebugInfo(l -> {});
+        assertEquals(7L, measure(info, "Latency p50"));
+        assertEquals(7L, measure(info, "Latency p99"));
+        assertEquals(5000L, measure(info, "Latency max"));
+    }
+
+    @Test
+    void testLateAndDiscardedDataUnits() {
+        SleServiceInstanceStatistics stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        assertNull(find(stats.currentDebugInfo(l -> {}), "Late frames"));
+
+        stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        stats.setLateThreshold(10);
+        stats.dataUnitTransferred(100, 10);
+        stats.dataUnitTransferred(100, 11);
+        stats.dataUnitDiscarded();
+        List<DebugInformation> info = stats.currentDebugInfo(l -> l.add(DebugInformation.of(ELEMENT, "Extra", 1, null, "")));
+        assertEquals(1L, measure(info, "Late frames"));
+        assertEquals(1L, measure(info, "Discarded frames"));
+        assertEquals(2L, measure(info, "Total frames"));
+        assertNotNull(find(info, "Extra"));
+    }
+
+    @Test
+    void testReset() throws InterruptedException {
+        SleServiceInstanceStatistics stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        stats.dataUnitTransferred(100, 50);
+        List<DebugInformation> first = stats.currentDebugInfo(l -> {});
+        assertEquals(50L, measure(first, "Latency max"));
+        // Requests within the minimum sample period get the last computed values
+        stats.dataUnitTransferred(100, 80);
+        assertSame(first, stats.currentDebugInfo(l -> {}));
+
+        // The histogram and the maximum latency are reset at every sample, while the totals are kept
+        Thread.sleep(1100);
+        List<DebugInformation> second = stats.currentDebugInfo(l -> {});
+        assertEquals(80L, measure(second, "Latency max"));
+        assertEquals(80L, measure(second, "Latency p50"));
+        assertEquals(2L, measure(second, "Total frames"));
+        Thread.sleep(1100);
+        List<DebugInformation> third = stats.currentDebugInfo(l -> {});
+        assertEquals(0L, measure(third, "Latency p50"));
+        assertEquals(0L, measure(third, "Latency p99"));
+        assertEquals(0L, measure(third, "Latency max"));
+        assertEquals(0, measure(third, "Frames"));
+        assertEquals(2L, measure(third, "Total frames"));
+    }
+
+    private static long bucketUpperBoundOf(long latency) {
+        SleServiceInstanceStatistics stats = new SleServiceInstanceStatistics(ELEMENT, DATA_UNIT);
+        stats.dataUnitTransferred(100, latency);
+        stats.dataUnitTransferred(100, Long.MAX_VALUE);
+        return (Long) measure(stats.currentDebugInfo(l -> {}), "Latency p50");
+    }
+
+    private static Object measure(List<DebugInformation> info, String name) {
+        DebugInformation di = find(info, name);
+        assertNotNull(di, "Debug information " + name + " not found");
+        return di.getMeasure();
+    }
+
+    private static DebugInformation find(List<DebugInformation> info, String name) {
+        return info.stream().filter(o -> o.getName().equals(name)).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.driver.spacecraft.tmtc;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.*;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpacePacketSlicerTest {
+
+    private static final int SPACECRAFT_ID = 123;
+    private static final int VC_ID = 1;
+    private static final int IDLE_APID = 0x7FF;
+    private static final int NO_PACKET_FHP = 0x7FF;
+    private static final int IDLE_FHP = 0x7FE;
+
+    @Test
+    void testPacketSpanningFrames() {
+        byte[] packet = packet(100, 0, 300, new Random(1));
+        List<TmTransferFrame> frames = tmFrames(List.of(packet), 58);
+        assertTrue(frames.size() >= 6);
+        List<Extracted> out = extractTm(frames, true);
+        assertEquals(List.of(new Extracted(0, packet, true, List.of())), out.subList(0, 1));
+        // Only idle packets follow
+        out.subList(1, out.size()).forEach(o -> assertTrue(new SpacePacket(o.packet, true).isIdle()));
+        assertEquals(extractTm(frames, false), out);
+    }
+
+    @Test
+    void testHeaderSplitAcrossFrames() {
+        Random random = new Random(2);
+        // The second packet starts k bytes before the end of the second frame: its primary header is split across the
+        // frames for k < 6, and the first header pointer of the second frame points to the last bytes of the frame
+        for(int k = 1; k <= 7; ++k) {
+            byte[] first = packet(10, 0, 2 * 58 - k - SpacePacket.SP_PRIMARY_HEADER_LENGTH, random);
+            byte[] second = packet(11, 1, 40, random);
+            byte[] third = packet(12, 2, 20, random);
+            List<TmTransferFrame> frames = tmFrames(List.of(first, second, third), 58);
+            assertEquals(0, frames.get(0).getFirstHeaderPointer());
+            assertEquals(58 - k, frames.get(1).getFirstHeaderPointer(), "k=" + k);
+            List<Extracted> out = extractTm(frames, true);
+            assertEquals(new Extracted(0, first, true, List.of()), out.get(0), "k=" + k);
+            assertEquals(new Extracted(1, second, true, List.of()), out.get(1), "k=" + k);
+            assertEquals(new Extracted(2, third, true, List.of()), out.get(2), "k=" + k);
+            assertEquals(extractTm(frames, false), out, "k=" + k);
+        }
+    }
+
+    @Test
+    void testFirstHeaderPointerAtFrameStart() {
+        Random random = new Random(3);
+        // Packets exactly filling the frames: the first header pointer is always 0
+        List<byte[]> packets = List.of(packet(1, 0, 52, random), packet(2, 1, 52, random), packet(3, 2, 22, random), packet(4, 3, 24, random));
+        List<TmTransferFrame> frames = tmFrames(packets, 58);
+        for(TmTransferFrame f : frames) {
+            assertEquals(0, f.getFirstHeaderPointer());
+        }
+        List<Extracted> out = extractTm(frames, true);
+        assertEquals(new Extracted(0, packets.get(0), true, List.of()), out.get(0));
+        assertEquals(new Extracted(1, packets.get(1), true, List.of()), out.get(1));
+        assertEquals(new Extracted(2, packets.get(2), true, List.of()), out.get(2));
+        assertEquals(new Extracted(2, packets.get(3), true, List.of()), out.get(3));
+        assertEquals(extractTm(frames, false), out);
+    }
+
+    @Test
+    void testInconsistentFirstHeaderPointer() {
+        Random random = new Random(4);
+        // First frame: start of a 100 bytes packet. Second frame: 10 more bytes of it, then a new packet starts
+        byte[] truncated = packet(20, 0, 94, random);
+        byte[] next = packet(21, 1, 30, random);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(truncated, 0, 68);
+        stream.write(next, 0, next.length);
+        byte[] data = stream.toByteArray();
+        List<TmTransferFrame> frames = new ArrayList<>();
+        frames.add(tmFrame(0, 0, Arrays.copyOfRange(data, 0, 58)));
+        frames.add(tmFrame(1, 10, padWithIdle(Arrays.copyOfRange(data, 58, data.length), 58)));
+        List<Extracted> out = extractTm(frames, true);
+        assertEquals(0, out.get(0).firstFrame);
+        assertFalse(out.get(0).quality);
+        assertArrayEquals(Arrays.copyOfRange(truncated, 0, 68), Arrays.copyOfRange(out.get(0).packet, 0, 68));
+        assertEquals(new Extracted(1, next, true, List.of()), out.get(1));
+        assertEquals(extractTm(frames, false), out);
+    }
+
+    @Test
+    void testGapInsidePacket() {
+        byte[] packet = packet(30, 0, 200, new Random(5));
+        List<TmTransferFrame> frames = new ArrayList<>(tmFrames(List.of(packet), 58));
+        // Drop the third frame
+        frames.remove(2);
+        List<Extracted> out = extractTm(frames, true);
+        assertEquals(0, out.get(0).firstFrame);
+        assertFalse(out.get(0).quality);
+        assertEquals(List.of("116:58"), out.get(0).gaps);
+        assertArrayEquals(Arrays.copyOfRange(packet, 0, 116), Arrays.copyOfRange(out.get(0).packet, 0, 116));
+        assertArrayEquals(Arrays.copyOfRange(packet, 174, packet.length), Arrays.copyOfRange(out.get(0).packet, 174, packet.length));
+        assertEquals(extractTm(frames, false), out);
+    }
+
+    @Test
+    void testIdlePacketsAndFrames() {
+        Random random = new Random(6);
+        List<byte[]> packets = List.of(packet(40, 0, 30, random), packet(IDLE_APID, 0, 20, random), packet(41, 1, 30, random));
+        List<TmTransferFrame> frames = new ArrayList<>(tmFrames(packets, 58));
+        // Idle frames in between do not affect the reconstruction
+        frames.add(1, tmFrame(frames.size(), IDLE_FHP, new byte[58]));
+        for(int i = 0; i < frames.size(); ++i) {
+            frames.set(i, renumber(frames.get(i), i));
+        }
+        List<Extracted> out = extractTm(frames, true);
+        // Idle packets are extracted, classification is performed by the data link processor
+        assertArrayEquals(packets.get(0), out.get(0).packet);
+        assertTrue(new SpacePacket(out.get(1).packet, true).isIdle());
+        assertArrayEquals(packets.get(2), out.get(2).packet);
+        assertEquals(extractTm(frames, false), out);
+    }
+
+    @Test
+    void testTmRandomStreamsEquivalence() {
+        for(int seed = 0; seed < 40; ++seed) {
+            Random random = new Random(seed);
+            List<TmTransferFrame> frames = tmFrames(randomPackets(random, 300), 20 + random.nextInt(200));
+            if(seed % 2 == 1) {
+                frames = dropFrames(frames, random);
+            }
+            assertEquals(extractTm(frames, false), extractTm(frames, true), "seed=" + seed);
+        }
+    }
+
+    @Test
+    void testAosRandomStreamsEquivalence() {
+        for(int seed = 0; seed < 40; ++seed) {
+            Random random = new Random(seed);
+            List<AosTransferFrame> frames = aosFrames(randomPackets(random, 300), 20 + random.nextInt(200));
+            if(seed % 2 == 1) {
+                frames = dropFrames(frames, random);
+            }
+            assertEquals(extract(new AosReceiverVirtualChannel(VC_ID, VirtualChannelAccessMode.PACKET, false), frames, f -> f.getVirtualChannelFrameCount()),
+                    extract(new SlicingAosReceiverVirtualChannel(VC_ID, VirtualChannelAccessMode.PACKET, false), frames, f -> f.getVirtualChannelFrameCount()), "seed=" + seed);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------------------------------------------
+
+    private static List<Extracted> extractTm(List<TmTransferFrame> frames, boolean slicing) {
+        AbstractReceiverVirtualChannel<TmTransferFrame> vc = slicing ? new SlicingTmReceiverVirtualChannel(VC_ID, VirtualChannelAccessMode.PACKET, false) : new TmReceiverVirtualChannel(VC_ID, VirtualChannelAccessMode.PACKET, false);
+        return extract(vc, frames, TmTransferFrame::getVirtualChannelFrameCount);
+    }
+
+    private static <T extends AbstractTransferFrame> List<Extracted> extract(AbstractReceiverVirtualChannel<T> vc, List<T> frames, Function<T, Integer> counter) {
+        List<Extracted> out = new ArrayList<>();
+        vc.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                out.add(new Extracted(counter.apply((T) firstFrame), packet.clone(), qualityIndicator, gaps));
+            }
+        });
+        frames.forEach(vc::accept);
+        return out;
+    }
+
+    private static List<byte[]> randomPackets(Random random, int n) {
+        List<byte[]> packets = new ArrayList<>(n);
+        for(int i = 0; i < n; ++i) {
+            int apid = random.nextInt(10) == 0 ? IDLE_APID : random.nextInt(100);
+            packets.add(packet(apid, i, 1 + random.nextInt(random.nextInt(5) == 0 ? 600 : 60), random));
+        }
+        return packets;
+    }
+
+    private static <T> List<T> dropFrames(List<T> frames, Random random) {
+        List<T> result = new ArrayList<>(frames.size());
+        for(T f : frames) {
+            if(random.nextInt(8) != 0) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] packet(int apid, int sequenceCount, int dataLength, Random random) {
+        byte[] packet = new byte[SpacePacket.SP_PRIMARY_HEADER_LENGTH + dataLength];
+        random.nextBytes(packet);
+        packet[0] = (byte) ((apid >> 8) & 0x07);
+        packet[1] = (byte) apid;
+        packet[2] = (byte) (0xC0 | ((sequenceCount >> 8) & 0x3F));
+        packet[3] = (byte) sequenceCount;
+        packet[4] = (byte) ((dataLength - 1) >> 8);
+        packet[5] = (byte) (dataLength - 1);
+        return packet;
+    }
+
+    /**
+     * Append an idle packet, so that the stream ends at the end of a data field.
+     */
+    private static byte[] padWithIdle(byte[] stream, int dataFieldLength) {
+        int remaining = (dataFieldLength - stream.length % dataFieldLength) % dataFieldLength;
+        if(remaining == 0) {
+            return stream;
+        }
+        if(remaining <= SpacePacket.SP_PRIMARY_HEADER_LENGTH) {
+            remaining += dataFieldLength;
+        }
+        byte[] idle = packet(IDLE_APID, 0, remaining - SpacePacket.SP_PRIMARY_HEADER_LENGTH, new Random(0));
+        byte[] result = Arrays.copyOf(stream, stream.length + idle.length);
+        System.arraycopy(idle, 0, result, stream.length, idle.length);
+        return result;
+    }
+
+    /**
+     * Slice the packet stream into data fields, computing the first header pointers.
+     */
+    private static List<Map.Entry<Integer, byte[]>> slice(List<byte[]> packets, int dataFieldLength) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Set<Integer> starts = new HashSet<>();
+        for(byte[] p : packets) {
+            starts.add(bos.size());
+            bos.write(p, 0, p.length);
+        }
+        int unpadded = bos.size();
+        byte[] stream = padWithIdle(bos.toByteArray(), dataFieldLength);
+        if(stream.length > unpadded) {
+            starts.add(unpadded);
+        }
+        List<Map.Entry<Integer, byte[]>> result = new ArrayList<>();
+        for(int pos = 0; pos < stream.length; pos += dataFieldLength) {
+            int fhp = NO_PACKET_FHP;
+            for(int i = pos; i < pos + dataFieldLength; ++i) {
+                if(starts.contains(i)) {
+                    fhp = i - pos;
+                    break;
+                }
+            }
+            result.add(Map.entry(fhp, Arrays.copyOfRange(stream, pos, pos + dataFieldLength)));
+        }
+        return result;
+    }
+
+    private static List<TmTransferFrame> tmFrames(List<byte[]> packets, int dataFieldLength) {
+        List<TmTransferFrame> frames = new ArrayList<>();
+        for(Map.Entry<Integer, byte[]> df : slice(packets, dataFieldLength)) {
+            frames.add(tmFrame(frames.size(), df.getKey(), df.getValue()));
+        }
+        return frames;
+    }
+
+    private static TmTransferFrame tmFrame(int counter, int firstHeaderPointer, byte[] dataField) {
+        byte[] frame = new byte[TmTransferFrame.TM_PRIMARY_HEADER_LENGTH + dataField.length];
+        frame[0] = (byte) ((SPACECRAFT_ID >> 4) & 0x3F);
+        frame[1] = (byte) (((SPACECRAFT_ID & 0x0F) << 4) | (VC_ID << 1));
+        frame[2] = (byte) counter;
+        frame[3] = (byte) counter;
+        // Segment length identifier set to 3, as mandated when the synchronisation flag is 0
+        frame[4] = (byte) (0x18 | ((firstHeaderPointer >> 8) & 0x07));
+        frame[5] = (byte) firstHeaderPointer;
+        System.arraycopy(dataField, 0, frame, TmTransferFrame.TM_PRIMARY_HEADER_LENGTH, dataField.length);
+        return new TmTransferFrame(frame, false);
+    }
+
+    private static TmTransferFrame renumber(TmTransferFrame frame, int counter) {
+        byte[] data = frame.getFrameCopy();
+        data[2] = (byte) counter;
+        data[3] = (byte) counter;
+        return new TmTransferFrame(data, false);
+    }
+
+    private static List<AosTransferFrame> aosFrames(List<byte[]> packets, int packetZoneLength) {
+        List<AosTransferFrame> frames = new ArrayList<>();
+        for(Map.Entry<Integer, byte[]> df : slice(packets, packetZoneLength)) {
+            int counter = frames.size();
+            byte[] dataField = df.getValue();
+            int firstHeaderPointer = df.getKey();
+            byte[] frame = new byte[AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH + 2 + dataField.length];
+            frame[0] = (byte) (0x40 | ((SPACECRAFT_ID >> 2) & 0x3F));
+            frame[1] = (byte) (((SPACECRAFT_ID & 0x03) << 6) | VC_ID);
+            frame[2] = (byte) (counter >> 16);
+            frame[3] = (byte) (counter >> 8);
+            frame[4] = (byte) counter;
+            frame[5] = 0;
+            frame[6] = (byte) ((firstHeaderPointer >> 8) & 0x07);
+            frame[7] = (byte) firstHeaderPointer;
+            System.arraycopy(dataField, 0, frame, AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH + 2, dataField.length);
+            frames.add(new AosTransferFrame(frame, false, 0, AosTransferFrame.UserDataType.M_PDU, false, false));
+        }
+        return frames;
+    }
+
+    private static final class Extracted {
+
+        private final int firstFrame;
+        private final byte[] packet;
+        private final boolean quality;
+        private final List<String> gaps;
+
+        private Extracted(int firstFrame, byte[] packet, boolean quality, List<PacketGap> gaps) {
+            this.firstFrame = firstFrame;
+            this.packet = packet;
+            this.quality = quality;
+            this.gaps = new ArrayList<>();
+            if(gaps != null) {
+                for(PacketGap g : gaps) {
+                    this.gaps.add(g.getIndex() + ":" + g.getLength());
+                    // The content of the gaps is not defined by the library (left over from its staging buffer)
+                    Arrays.fill(packet, g.getIndex(), g.getIndex() + g.getLength(), (byte) 0);
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Extracted extracted = (Extracted) o;
+            return firstFrame == extracted.firstFrame && quality == extracted.quality && Arrays.equals(packet, extracted.packet) && gaps.equals(extracted.gaps);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(firstFrame, quality, gaps, Arrays.hashCode(packet));
+        }
+
+        @Override
+        public String toString() {
+            return "Extracted{firstFrame=" + firstFrame + ", length=" + packet.length + ", hash=" + Arrays.hashCode(packet) + ", quality=" + quality + ", gaps=" + gaps + "}";
+        }
+    }
+}
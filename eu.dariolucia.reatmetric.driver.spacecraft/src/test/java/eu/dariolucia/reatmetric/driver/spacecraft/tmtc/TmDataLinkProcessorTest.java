@@ -0,0 +1,208 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.dariolucia.reatmetric.driver.spacecraft.tmtc;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.rawdata.IRawDataSubscriber;
+import eu.dariolucia.reatmetric.api.rawdata.Quality;
+import eu.dariolucia.reatmetric.api.rawdata.RawData;
+import eu.dariolucia.reatmetric.api.rawdata.RawDataFilter;
+import eu.dariolucia.reatmetric.core.api.IRawDataBroker;
+import eu.dariolucia.reatmetric.core.api.IServiceCoreContext;
+import eu.dariolucia.reatmetric.driver.spacecraft.common.Constants;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.SpacecraftConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.definition.TmDataLinkConfiguration;
+import eu.dariolucia.reatmetric.driver.spacecraft.security.DataLinkSecurityManager;
+import eu.dariolucia.reatmetric.driver.spacecraft.services.IServiceBroker;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TmDataLinkProcessorTest {
+
+    private static final int SPACECRAFT_ID = 123;
+    private static final int DATA_FIELD_LENGTH = 100;
+    private static final int NB_VCS = 4;
+    private static final int NB_FRAMES = 200;
+
+    @Test
+    void testSerialProcessingOrder() throws InterruptedException {
+        testProcessingOrder(false);
+    }
+
+    @Test
+    void testParallelProcessingOrder() throws InterruptedException {
+        testProcessingOrder(true);
+    }
+
+    private void testProcessingOrder(boolean parallel) throws InterruptedException {
+        FakeBroker broker = new FakeBroker();
+        TmDataLinkProcessor processor = createProcessor(broker, parallel);
+        try {
+            // Frames of all VCs interleaved, delivered in batches
+            List<RawData> frames = new ArrayList<>();
+            for (int i = 0; i < NB_FRAMES; ++i) {
+                for (int vc = 0; vc < NB_VCS; ++vc) {
+                    frames.add(frameRawData(vc, i));
+                }
+            }
+            for (int i = 0; i < frames.size(); i += 30) {
+                processor.dataItemsReceived(frames.subList(i, Math.min(frames.size(), i + 30)));
+            }
+            assertTrue(broker.awaitPackets(NB_VCS * NB_FRAMES, 10000), "Packets not distributed in time");
+        } finally {
+            processor.dispose();
+        }
+        // Every VC: all packets, in order
+        Map<Integer, List<Integer>> vc2counters = new TreeMap<>();
+        for (RawData rd : broker.getPackets()) {
+            SpacePacket sp = (SpacePacket) rd.getData();
+            int apid = sp.getApid();
+            assertEquals("PACKET_" + apid, rd.getName());
+            assertEquals(apid, (int) sp.getAnnotationValue(Constants.ANNOTATION_VCID));
+            vc2counters.computeIfAbsent(apid, k -> new ArrayList<>()).add((int) sp.getPacketSequenceCount());
+        }
+        assertEquals(NB_VCS, vc2counters.size());
+        for (List<Integer> counters : vc2counters.values()) {
+            assertEquals(NB_FRAMES, counters.size());
+            for (int i = 0; i < NB_FRAMES; ++i) {
+                assertEquals(i, counters.get(i));
+            }
+        }
+        // Identification and distribution are never performed concurrently
+        assertFalse(broker.isConcurrentDistribution());
+    }
+
+    private static TmDataLinkProcessor createProcessor(FakeBroker broker, boolean parallel) {
+        TmDataLinkConfiguration dataLinkConfiguration = new TmDataLinkConfiguration();
+        dataLinkConfiguration.setParallelVcProcessing(parallel);
+        SpacecraftConfiguration configuration = new SpacecraftConfiguration();
+        configuration.setId(SPACECRAFT_ID);
+        configuration.setTmDataLinkConfigurations(dataLinkConfiguration);
+        IServiceCoreContext context = (IServiceCoreContext) Proxy.newProxyInstance(TmDataLinkProcessorTest.class.getClassLoader(), new Class[] { IServiceCoreContext.class }, (proxy, method, args) -> {
+            if (method.getName().equals("getRawDataBroker")) {
+                return broker;
+            }
+            return null;
+        });
+        IServiceBroker serviceBroker = (IServiceBroker) Proxy.newProxyInstance(TmDataLinkProcessorTest.class.getClassLoader(), new Class[] { IServiceBroker.class }, (proxy, method, args) -> null);
+        TmDataLinkProcessor processor = new TmDataLinkProcessor("Test", configuration, context,
+                packet -> "PACKET_" + new SpacePacket(packet, true).getApid(),
+                (frame, sp) -> Instant.now(),
+                (frame, sp) -> Quality.GOOD,
+                new DataLinkSecurityManager(context, configuration, serviceBroker));
+        processor.initialise();
+        return processor;
+    }
+
+    /**
+     * Build a TM frame of the provided VC, containing exactly one packet, whose APID is the VC ID and whose sequence
+     * count is the frame counter.
+     */
+    private static RawData frameRawData(int vcId, int counter) {
+        byte[] frame = new byte[TmTransferFrame.TM_PRIMARY_HEADER_LENGTH + DATA_FIELD_LENGTH];
+        frame[0] = (byte) ((SPACECRAFT_ID >> 4) & 0x3F);
+        frame[1] = (byte) (((SPACECRAFT_ID & 0x0F) << 4) | (vcId << 1));
+        frame[2] = (byte) counter;
+        frame[3] = (byte) counter;
+        // Segment length identifier set to 3, first header pointer set to 0
+        frame[4] = (byte) 0x18;
+        frame[5] = 0;
+        int dataLength = DATA_FIELD_LENGTH - SpacePacket.SP_PRIMARY_HEADER_LENGTH;
+        int offset = TmTransferFrame.TM_PRIMARY_HEADER_LENGTH;
+        frame[offset] = (byte) ((vcId >> 8) & 0x07);
+        frame[offset + 1] = (byte) vcId;
+        frame[offset + 2] = (byte) (0xC0 | ((counter >> 8) & 0x3F));
+        frame[offset + 3] = (byte) counter;
+        frame[offset + 4] = (byte) ((dataLength - 1) >> 8);
+        frame[offset + 5] = (byte) (dataLength - 1);
+        TmTransferFrame tmFrame = new TmTransferFrame(frame, false);
+        Instant now = Instant.now();
+        RawData rd = new RawData(new LongUniqueId(vcId * 1000L + counter), now, "TM Frame", Constants.T_TM_FRAME, "Test Route", String.valueOf(SPACECRAFT_ID), Quality.GOOD, null, frame, now, "Test", null);
+        rd.setData(tmFrame);
+        return rd;
+    }
+
+    private static class FakeBroker implements IRawDataBroker {
+
+        private final AtomicLong sequencer = new AtomicLong();
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private final List<RawData> packets = new ArrayList<>();
+        private volatile boolean concurrentDistribution = false;
+
+        @Override
+        public void distribute(List<RawData> items, boolean store) {
+            if (inProgress.incrementAndGet() > 1) {
+                concurrentDistribution = true;
+            }
+            // Give the other lanes a chance to overlap
+            Thread.yield();
+            synchronized (this) {
+                for (RawData rd : items) {
+                    if (rd.getType().equals(Constants.T_TM_PACKET)) {
+                        packets.add(rd);
+                    }
+                }
+                notifyAll();
+            }
+            inProgress.decrementAndGet();
+        }
+
+        @Override
+        public void subscribe(IRawDataSubscriber subscriber, Predicate<RawData> preFilter, RawDataFilter filter, Predicate<RawData> postFilter) {
+            // Frames are injected directly
+        }
+
+        @Override
+        public void unsubscribe(IRawDataSubscriber subscriber) {
+            // Nothing to do
+        }
+
+        @Override
+        public LongUniqueId nextRawDataId() {
+            return new LongUniqueId(sequencer.incrementAndGet());
+        }
+
+        public synchronized boolean awaitPackets(int count, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (packets.size() < count) {
+                long toWait = deadline - System.currentTimeMillis();
+                if (toWait <= 0) {
+                    return false;
+                }
+                wait(toWait);
+            }
+            return true;
+        }
+
+        public synchronized List<RawData> getPackets() {
+            return new ArrayList<>(packets);
+        }
+
+        public boolean isConcurrentDistribution() {
+            return concurrentDistribution;
+        }
+    }
+}
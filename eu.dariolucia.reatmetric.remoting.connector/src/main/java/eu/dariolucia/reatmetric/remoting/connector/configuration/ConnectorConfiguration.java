@@ -38,6 +38,9 @@ public class ConnectorConfiguration {
     @XmlAttribute(name = "local-address", required = false)
     private String localAddress = null;
 
+    @XmlAttribute(name = "stream-port", required = false)
+    private int streamPort = 0;
+
     public ConnectorConfiguration() {
     }
 
@@ -84,4 +87,13 @@ public class ConnectorConfiguration {
     public void setLocalAddress(String localAddress) {
         this.localAddress = localAddress;
     }
+
+    public int getStreamPort() {
+        return streamPort;
+    }
+
+    public ConnectorConfiguration setStreamPort(int streamPort) {
+        this.streamPort = streamPort;
+        return this;
+    }
 }
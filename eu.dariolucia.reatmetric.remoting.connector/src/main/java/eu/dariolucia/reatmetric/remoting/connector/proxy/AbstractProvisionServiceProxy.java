@@ -18,7 +18,9 @@ package eu.dariolucia.reatmetric.remoting.connector.proxy;
 
 import eu.dariolucia.reatmetric.api.common.*;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
 
+import java.io.IOException;
 import java.rmi.NoSuchObjectException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -37,15 +39,89 @@ public abstract class AbstractProvisionServiceProxy<T extends AbstractDataItem,
 
     private final Map<U, Remote> subscriber2remote = new ConcurrentHashMap<>();
 
+    private final Map<U, StreamedSubscription<K>> subscriber2stream = new ConcurrentHashMap<>();
+
+    /**
+     * Serialises the subscription changes, which can be requested by the clients or caused by the failure of a streamed
+     * subscription (delivery thread of the streaming connection).
+     */
+    private final Object subscriptionLock = new Object();
+
+    private StreamingClient streamingClient;
+
+    private StreamingProtocol.StreamedService streamedService;
+
     public AbstractProvisionServiceProxy(V delegate) {
         this.delegate = delegate;
     }
 
+    /**
+     * Deliver the updates to the subscribers using the provided streaming connection, instead of RMI callbacks.
+     *
+     * @param client the streaming connection
+     * @param service the service code of this proxy
+     */
+    void useStreaming(StreamingClient client, StreamingProtocol.StreamedService service) {
+        this.streamingClient = client;
+        this.streamedService = service;
+    }
+
     @Override
     public void subscribe(U subscriber, K filter) throws RemoteException {
         if(LOG.isLoggable(Level.FINE)) {
             LOG.fine("Registering subscriber " + subscriber + " to proxy " + getClass().getSimpleName());
         }
+        synchronized (subscriptionLock) {
+            if (streamingClient != null && streamingClient.isConnected() && !subscriber2remote.containsKey(subscriber)) {
+                StreamedSubscription<K> previous = subscriber2stream.get(subscriber);
+                StreamedSubscription<K> subscription = new StreamedSubscription<>(previous != null ? previous.id : streamingClient.nextSubscriptionId(), filter);
+                // Registered before sending the request, so that a failure notified in the meantime finds it
+                subscriber2stream.put(subscriber, subscription);
+                try {
+                    streamingClient.subscribe(subscription.id, streamedService, filter, new StreamingClient.IStreamSink() {
+                        @Override
+                        public void itemsReceived(List<?> items) {
+                            deliver(subscriber, (List<T>) items);
+                        }
+
+                        @Override
+                        public void streamFailed(String reason) {
+                            AbstractProvisionServiceProxy.this.streamFailed(subscriber, subscription.id, reason);
+                        }
+                    });
+                    return;
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Cannot subscribe " + subscriber + " via streaming in proxy " + getClass().getSimpleName() + ", using RMI: " + e.getMessage(), e);
+                }
+            }
+            // Streamed subscription, if any, is no longer valid
+            subscriber2stream.remove(subscriber);
+            subscribeRemote(subscriber, filter);
+        }
+    }
+
+    /**
+     * Called by the delivery thread of the streaming connection, when a streamed subscription is rejected by the server
+     * or the connection is lost: the subscriber is subscribed again via RMI with the last requested filter.
+     */
+    private void streamFailed(U subscriber, int subscriptionId, String reason) {
+        synchronized (subscriptionLock) {
+            StreamedSubscription<K> subscription = subscriber2stream.get(subscriber);
+            if(subscription == null || subscription.id != subscriptionId) {
+                // Unsubscribed or already moved to RMI
+                return;
+            }
+            subscriber2stream.remove(subscriber);
+            LOG.warning("Streamed subscription of " + subscriber + " in proxy " + getClass().getSimpleName() + " failed (" + reason + "), using RMI");
+            try {
+                subscribeRemote(subscriber, subscription.filter);
+            } catch (RemoteException | RuntimeException e) {
+                LOG.log(Level.SEVERE, "Cannot subscribe " + subscriber + " via RMI in proxy " + getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void subscribeRemote(U subscriber, K filter) throws RemoteException {
         Remote activeObject = subscriber2remote.get(subscriber);
         if(activeObject == null) {
             activeObject = ObjectActivationCache.instance().activate(subscriber);
@@ -57,12 +133,32 @@ public abstract class AbstractProvisionServiceProxy<T extends AbstractDataItem,
         delegate.subscribe((U) activeObject, filter);
     }
 
+    private void deliver(U subscriber, List<T> items) {
+        try {
+            subscriber.dataItemsReceived(items);
+        } catch (RemoteException e) {
+            LOG.log(Level.WARNING, "Cannot deliver streamed items to " + subscriber + " in proxy " + getClass().getSimpleName(), e);
+        }
+    }
+
     @Override
     public void unsubscribe(U subscriber) throws RemoteException {
         if(LOG.isLoggable(Level.FINE)) {
             LOG.fine("Unregistering subscriber " + subscriber + " from proxy " + getClass().getSimpleName());
         }
-        Remote activeObject = subscriber2remote.remove(subscriber);
+        Remote activeObject;
+        synchronized (subscriptionLock) {
+            StreamedSubscription<K> subscription = subscriber2stream.remove(subscriber);
+            if (subscription != null) {
+                try {
+                    streamingClient.unsubscribe(subscription.id);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Cannot unsubscribe " + subscriber + " via streaming in proxy " + getClass().getSimpleName() + ": " + e.getMessage(), e);
+                }
+                return;
+            }
+            activeObject = subscriber2remote.remove(subscriber);
+        }
         if(activeObject == null) {
             return;
         }
@@ -96,6 +192,17 @@ public abstract class AbstractProvisionServiceProxy<T extends AbstractDataItem,
     }
 
     public void terminate() {
+        // Unsubscribe all streamed subscriptions
+        synchronized (subscriptionLock) {
+            for (Map.Entry<U, StreamedSubscription<K>> entry : subscriber2stream.entrySet()) {
+                try {
+                    streamingClient.unsubscribe(entry.getValue().id);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Cannot unsubscribe " + entry.getKey() + " via streaming in proxy " + getClass().getSimpleName(), e);
+                }
+            }
+            subscriber2stream.clear();
+        }
         // Unsubscribe all remotes
         for(Map.Entry<U, Remote> entry : subscriber2remote.entrySet()) {
             if(LOG.isLoggable(Level.FINE)) {
@@ -118,4 +225,15 @@ public abstract class AbstractProvisionServiceProxy<T extends AbstractDataItem,
         }
         subscriber2remote.clear();
     }
+
+    private static final class StreamedSubscription<K> {
+
+        private final int id;
+        private final K filter;
+
+        private StreamedSubscription(int id, K filter) {
+            this.id = id;
+            this.filter = filter;
+        }
+    }
 }
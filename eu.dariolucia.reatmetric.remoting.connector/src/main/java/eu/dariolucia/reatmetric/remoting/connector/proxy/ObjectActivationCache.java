@@ -18,6 +18,7 @@
 package eu.dariolucia.reatmetric.remoting.connector.proxy;
 
 import eu.dariolucia.reatmetric.api.common.Pair;
+import eu.dariolucia.reatmetric.api.remoting.CompressingSocketFactory;
 
 import java.rmi.NoSuchObjectException;
 import java.rmi.Remote;
@@ -37,6 +38,8 @@ public final class ObjectActivationCache {
     private static final String JVM_PROPERTY_RMI_EXPORT_PORT_KEY = "reatmetric.remoting.connector.export.port";
     private static final int RMI_EXPORT_PORT_DEFAULT = 0;
 
+    private static final String JVM_PROPERTY_COMPRESSION_THRESHOLD_KEY = "reatmetric.remoting.connector.compression.threshold";
+
     private static final Logger LOG = Logger.getLogger(ObjectActivationCache.class.getName());
 
     private static final ObjectActivationCache INSTANCE = new ObjectActivationCache();
@@ -49,6 +52,8 @@ public final class ObjectActivationCache {
 
     private int exportPort;
 
+    private CompressingSocketFactory socketFactory;
+
     private ObjectActivationCache() {
         String rmiExportPortStr = System.getProperty(JVM_PROPERTY_RMI_EXPORT_PORT_KEY);
         this.exportPort = RMI_EXPORT_PORT_DEFAULT;
@@ -59,6 +64,14 @@ public final class ObjectActivationCache {
         } catch (Exception e) {
             LOG.severe("Cannot initialise RMI connector export port from system property " + JVM_PROPERTY_RMI_EXPORT_PORT_KEY + ": " + rmiExportPortStr + ": " + e.getMessage());
         }
+        String compressionThresholdStr = System.getProperty(JVM_PROPERTY_COMPRESSION_THRESHOLD_KEY);
+        try {
+            if(compressionThresholdStr != null) {
+                this.socketFactory = new CompressingSocketFactory(Integer.parseInt(compressionThresholdStr));
+            }
+        } catch (Exception e) {
+            LOG.severe("Cannot initialise RMI connector compression threshold from system property " + JVM_PROPERTY_COMPRESSION_THRESHOLD_KEY + ": " + compressionThresholdStr + ": " + e.getMessage());
+        }
     }
 
     synchronized Remote activate(Remote o) throws RemoteException {
@@ -66,7 +79,8 @@ public final class ObjectActivationCache {
         Pair<Remote, AtomicInteger> item = cache.get(o);
         if(item == null) {
             // First activation
-            item = Pair.of(UnicastRemoteObject.exportObject(o, this.exportPort), new AtomicInteger(0));
+            Remote exported = socketFactory != null ? UnicastRemoteObject.exportObject(o, this.exportPort, socketFactory, socketFactory) : UnicastRemoteObject.exportObject(o, this.exportPort);
+            item = Pair.of(exported, new AtomicInteger(0));
             LOG.log(Level.INFO, "Object activated: " + item.getFirst());
             cache.put(o, item);
         }
@@ -31,11 +31,13 @@ import eu.dariolucia.reatmetric.api.messages.IOperationalMessageProvisionService
 import eu.dariolucia.reatmetric.api.model.ISystemModelProvisionService;
 import eu.dariolucia.reatmetric.api.parameters.IParameterDataProvisionService;
 import eu.dariolucia.reatmetric.api.rawdata.IRawDataProvisionService;
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
 import eu.dariolucia.reatmetric.api.scheduler.IScheduledActivityDataProvisionService;
 import eu.dariolucia.reatmetric.api.scheduler.IScheduler;
 import eu.dariolucia.reatmetric.api.transport.ITransportConnector;
 import eu.dariolucia.reatmetric.remoting.connector.configuration.ConnectorConfiguration;
 
+import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
@@ -43,10 +45,14 @@ import java.rmi.registry.Registry;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class ReatmetricProxy implements IReatmetricSystem {
 
+    private static final Logger LOG = Logger.getLogger(ReatmetricProxy.class.getName());
+
     private IReatmetricSystem delegate;
     private final ConnectorConfiguration connector;
 
@@ -71,6 +77,8 @@ public class ReatmetricProxy implements IReatmetricSystem {
     private ScheduledActivityDataProvisionServiceProxy scheduledActivityDataProvisionServiceProxy;
     private List<TransportConnectorProxy> transportConnectorProxyList;
 
+    private StreamingClient streamingClient;
+
     @Override
     public void initialise(Consumer<SystemStatus> statusUpdateSubscriber) throws ReatmetricException, RemoteException {
         // Perform look up, assume system is already initialised
@@ -80,6 +88,15 @@ public class ReatmetricProxy implements IReatmetricSystem {
         } catch (NotBoundException e) {
             throw new ReatmetricException(e);
         }
+        if(connector.getStreamPort() > 0) {
+            StreamingClient client = new StreamingClient(connector.getHost(), connector.getStreamPort(), connector.getRemoteName());
+            try {
+                client.connect();
+                this.streamingClient = client;
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Cannot open streaming connection to " + connector.getHost() + ":" + connector.getStreamPort() + ", subscriptions will use RMI: " + e.getMessage(), e);
+            }
+        }
         SystemStatus status = this.delegate.getStatus();
         statusUpdateSubscriber.accept(status);
     }
@@ -146,6 +163,18 @@ public class ReatmetricProxy implements IReatmetricSystem {
             transportConnectorProxyList.forEach(TransportConnectorProxy::terminate);
         }
         transportConnectorProxyList = null;
+
+        if(streamingClient != null) {
+            streamingClient.close();
+        }
+        streamingClient = null;
+    }
+
+    private <P extends AbstractProvisionServiceProxy<?, ?, ?, ?>> P streamed(P proxy, StreamingProtocol.StreamedService service) {
+        if(streamingClient != null) {
+            proxy.useStreaming(streamingClient, service);
+        }
+        return proxy;
     }
 
     @Override
@@ -157,7 +186,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IOperationalMessageProvisionService getOperationalMessageMonitorService() throws ReatmetricException, RemoteException {
         if(operationalMessageProvisionServiceProxy == null) {
-            operationalMessageProvisionServiceProxy = new OperationalMessageProvisionServiceProxy(delegate.getOperationalMessageMonitorService());
+            operationalMessageProvisionServiceProxy = streamed(new OperationalMessageProvisionServiceProxy(delegate.getOperationalMessageMonitorService()), StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES);
         }
         return operationalMessageProvisionServiceProxy;
     }
@@ -173,7 +202,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IAcknowledgedMessageProvisionService getAcknowledgedMessageMonitorService() throws ReatmetricException, RemoteException {
         if(acknowledgedMessageProvisionServiceProxy == null) {
-            acknowledgedMessageProvisionServiceProxy = new AcknowledgedMessageProvisionServiceProxy(delegate.getAcknowledgedMessageMonitorService());
+            acknowledgedMessageProvisionServiceProxy = streamed(new AcknowledgedMessageProvisionServiceProxy(delegate.getAcknowledgedMessageMonitorService()), StreamingProtocol.StreamedService.ACKNOWLEDGED_MESSAGES);
         }
         return acknowledgedMessageProvisionServiceProxy;
     }
@@ -189,7 +218,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IRawDataProvisionService getRawDataMonitorService() throws ReatmetricException, RemoteException {
         if(rawDataProvisionServiceProxy == null) {
-            rawDataProvisionServiceProxy = new RawDataProvisionServiceProxy(delegate.getRawDataMonitorService());
+            rawDataProvisionServiceProxy = streamed(new RawDataProvisionServiceProxy(delegate.getRawDataMonitorService()), StreamingProtocol.StreamedService.RAW_DATA);
         }
         return rawDataProvisionServiceProxy;
     }
@@ -197,7 +226,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IParameterDataProvisionService getParameterDataMonitorService() throws ReatmetricException, RemoteException {
         if(parameterDataProvisionServiceProxy == null) {
-            parameterDataProvisionServiceProxy = new ParameterDataProvisionServiceProxy(delegate.getParameterDataMonitorService());
+            parameterDataProvisionServiceProxy = streamed(new ParameterDataProvisionServiceProxy(delegate.getParameterDataMonitorService()), StreamingProtocol.StreamedService.PARAMETERS);
         }
         return parameterDataProvisionServiceProxy;
     }
@@ -213,7 +242,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IEventDataProvisionService getEventDataMonitorService() throws ReatmetricException, RemoteException {
         if(eventDataProvisionServiceProxy == null) {
-            eventDataProvisionServiceProxy = new EventDataProvisionServiceProxy(delegate.getEventDataMonitorService());
+            eventDataProvisionServiceProxy = streamed(new EventDataProvisionServiceProxy(delegate.getEventDataMonitorService()), StreamingProtocol.StreamedService.EVENTS);
         }
         return eventDataProvisionServiceProxy;
     }
@@ -221,7 +250,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IAlarmParameterDataProvisionService getAlarmParameterDataMonitorService() throws ReatmetricException, RemoteException {
         if(alarmParameterDataProvisionServiceProxy == null) {
-            alarmParameterDataProvisionServiceProxy = new AlarmParameterDataProvisionServiceProxy(delegate.getAlarmParameterDataMonitorService());
+            alarmParameterDataProvisionServiceProxy = streamed(new AlarmParameterDataProvisionServiceProxy(delegate.getAlarmParameterDataMonitorService()), StreamingProtocol.StreamedService.ALARMS);
         }
         return alarmParameterDataProvisionServiceProxy;
     }
@@ -229,7 +258,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IActivityOccurrenceDataProvisionService getActivityOccurrenceDataMonitorService() throws ReatmetricException, RemoteException {
         if(activityOccurrenceDataProvisionServiceProxy == null) {
-            activityOccurrenceDataProvisionServiceProxy = new ActivityOccurrenceDataProvisionServiceProxy(delegate.getActivityOccurrenceDataMonitorService());
+            activityOccurrenceDataProvisionServiceProxy = streamed(new ActivityOccurrenceDataProvisionServiceProxy(delegate.getActivityOccurrenceDataMonitorService()), StreamingProtocol.StreamedService.ACTIVITY_OCCURRENCES);
         }
         return activityOccurrenceDataProvisionServiceProxy;
     }
@@ -253,7 +282,7 @@ public class ReatmetricProxy implements IReatmetricSystem {
     @Override
     public synchronized IScheduledActivityDataProvisionService getScheduledActivityDataMonitorService() throws ReatmetricException, RemoteException {
         if(scheduledActivityDataProvisionServiceProxy == null) {
-            scheduledActivityDataProvisionServiceProxy = new ScheduledActivityDataProvisionServiceProxy(delegate.getScheduledActivityDataMonitorService());
+            scheduledActivityDataProvisionServiceProxy = streamed(new ScheduledActivityDataProvisionServiceProxy(delegate.getScheduledActivityDataMonitorService()), StreamingProtocol.StreamedService.SCHEDULED_ACTIVITIES);
         }
         return scheduledActivityDataProvisionServiceProxy;
     }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.remoting.connector.proxy;
+
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client side of the streaming transport defined by {@link StreamingProtocol}. All the subscriptions of a
+ * {@link ReatmetricProxy} share the same connection: frames are read by a dedicated thread, while decoding and delivery
+ * to the subscribers are performed by a single delivery thread, preserving the order of the updates.
+ *
+ * A subscription rejected by the server, as well as all the subscriptions when the connection is lost, are removed and
+ * notified to their {@link IStreamSink}, so that the owner can serve them in a different way.
+ */
+class StreamingClient {
+
+    private static final Logger LOG = Logger.getLogger(StreamingClient.class.getName());
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private final String host;
+    private final int port;
+    private final String systemName;
+
+    private final AtomicInteger subscriptionSequencer = new AtomicInteger(0);
+    private final Map<Integer, IStreamSink> sinks = new ConcurrentHashMap<>();
+
+    private Socket socket;
+    private DataOutputStream outputStream;
+    private DataInputStream inputStream;
+    private Thread readerThread;
+    private ExecutorService deliveryExecutor;
+    private volatile boolean connected;
+
+    StreamingClient(String host, int port, String systemName) {
+        this.host = host;
+        this.port = port;
+        this.systemName = systemName;
+    }
+
+    synchronized void connect() throws IOException {
+        socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            write(StreamingProtocol.helloFrame(systemName));
+            // Wait for the acknowledgement
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            byte[] frame = readFrame();
+            socket.setSoTimeout(0);
+            if (frame[0] != StreamingProtocol.FRAME_HELLO_ACK) {
+                throw new IOException("Streaming connection to " + host + ":" + port + " rejected: " + StreamingProtocol.decodeString(frame, StreamingProtocol.HEADER_LENGTH, frame.length - StreamingProtocol.HEADER_LENGTH));
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        connected = true;
+        deliveryExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ReatMetric Streaming Client Delivery - " + systemName);
+            t.setDaemon(true);
+            return t;
+        });
+        readerThread = new Thread(this::read, "ReatMetric Streaming Client Reader - " + systemName);
+        readerThread.setDaemon(true);
+        readerThread.start();
+        LOG.info("Streaming connection to " + host + ":" + port + " for system " + systemName + " established");
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Allocate the ID of a new subscription.
+     *
+     * @return the subscription ID
+     */
+    int nextSubscriptionId() {
+        return subscriptionSequencer.incrementAndGet();
+    }
+
+    /**
+     * Open or update a subscription.
+     *
+     * @param subscriptionId the ID of the subscription, as returned by {@link #nextSubscriptionId()}
+     * @param service the service to subscribe to
+     * @param filter the filter, can be null
+     * @param sink the receiver of the items and of the subscription failure, invoked by the delivery thread
+     * @throws IOException if the request cannot be sent
+     */
+    void subscribe(int subscriptionId, StreamingProtocol.StreamedService service, Serializable filter, IStreamSink sink) throws IOException {
+        sinks.put(subscriptionId, sink);
+        try {
+            write(StreamingProtocol.subscribeFrame(subscriptionId, service, filter));
+        } catch (IOException e) {
+            sinks.remove(subscriptionId);
+            throw e;
+        }
+    }
+
+    void unsubscribe(int subscriptionId) throws IOException {
+        if(sinks.remove(subscriptionId) != null) {
+            write(StreamingProtocol.frame(StreamingProtocol.FRAME_UNSUBSCRIBE, subscriptionId, null));
+        }
+    }
+
+    synchronized void close() {
+        if(socket == null) {
+            return;
+        }
+        sinks.clear();
+        shutdown();
+    }
+
+    /**
+     * To be called by the reader thread when the connection is lost: the open subscriptions are notified as failed, after
+     * the delivery of the items already received.
+     */
+    private synchronized void connectionLost(ExecutorService executor, String reason) {
+        if(socket == null) {
+            // Closed on request
+            return;
+        }
+        // Queued after the pending deliveries
+        executor.execute(() -> {
+            for(Integer subscriptionId : new ArrayList<>(sinks.keySet())) {
+                failSubscription(subscriptionId, reason);
+            }
+        });
+        shutdown();
+    }
+
+    private void shutdown() {
+        connected = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        socket = null;
+        if(deliveryExecutor != null) {
+            deliveryExecutor.shutdown();
+            deliveryExecutor = null;
+        }
+    }
+
+    private synchronized void write(ByteBuffer frame) throws IOException {
+        if(socket == null) {
+            throw new IOException("Streaming connection to " + host + ":" + port + " closed");
+        }
+        outputStream.write(frame.array(), frame.position(), frame.remaining());
+        outputStream.flush();
+    }
+
+    /**
+     * Read a frame, excluding the length field.
+     */
+    private byte[] readFrame() throws IOException {
+        int length = inputStream.readInt();
+        if(length < StreamingProtocol.HEADER_LENGTH || length > StreamingProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        inputStream.readFully(frame);
+        return frame;
+    }
+
+    private void read() {
+        ExecutorService executor = deliveryExecutor;
+        try {
+            while (connected) {
+                byte[] frame = readFrame();
+                ByteBuffer header = ByteBuffer.wrap(frame, 0, StreamingProtocol.HEADER_LENGTH);
+                byte type = header.get();
+                int subscriptionId = header.getInt();
+                switch (type) {
+                    case StreamingProtocol.FRAME_DATA:
+                        executor.execute(() -> deliver(subscriptionId, frame));
+                        break;
+                    case StreamingProtocol.FRAME_ERROR: {
+                        String reason = StreamingProtocol.decodeString(frame, StreamingProtocol.HEADER_LENGTH, frame.length - StreamingProtocol.HEADER_LENGTH);
+                        LOG.log(Level.SEVERE, "Streaming subscription " + subscriptionId + " to system " + systemName + " failed: " + reason);
+                        executor.execute(() -> failSubscription(subscriptionId, reason));
+                    }
+                    break;
+                    default:
+                        LOG.log(Level.WARNING, "Unexpected streaming frame type " + type + " from system " + systemName + ", ignored");
+                        break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if(connected) {
+                LOG.log(Level.SEVERE, "Streaming connection to " + host + ":" + port + " for system " + systemName + " lost: " + e.getMessage(), e);
+            }
+            connectionLost(executor, "connection lost: " + e.getMessage());
+        }
+    }
+
+    private void deliver(int subscriptionId, byte[] frame) {
+        IStreamSink sink = sinks.get(subscriptionId);
+        if(sink == null) {
+            // Unsubscribed in the meantime
+            return;
+        }
+        try {
+            List<?> items = (List<?>) StreamingProtocol.deserialize(frame, StreamingProtocol.HEADER_LENGTH, frame.length - StreamingProtocol.HEADER_LENGTH);
+            sink.itemsReceived(items);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Cannot deliver streamed data items of subscription " + subscriptionId + " from system " + systemName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * To be called from the delivery thread.
+     */
+    private void failSubscription(int subscriptionId, String reason) {
+        IStreamSink sink = sinks.remove(subscriptionId);
+        if(sink == null) {
+            // Unsubscribed in the meantime
+            return;
+        }
+        try {
+            sink.streamFailed(reason);
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Cannot notify streaming subscription failure for system " + systemName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Receiver of a streamed subscription.
+     */
+    interface IStreamSink {
+
+        /**
+         * Invoked by the delivery thread with the items received for the subscription.
+         *
+         * @param items the received items
+         */
+        void itemsReceived(List<?> items);
+
+        /**
+         * Invoked by the delivery thread when the subscription is no longer served by the streaming connection, because
+         * the server rejected it or the connection was lost. No further items are delivered to the sink.
+         *
+         * @param reason the reason of the failure
+         */
+        void streamFailed(String reason);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.remoting.connector.proxy;
+
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.messages.IOperationalMessageProvisionService;
+import eu.dariolucia.reatmetric.api.messages.IOperationalMessageSubscriber;
+import eu.dariolucia.reatmetric.api.messages.OperationalMessage;
+import eu.dariolucia.reatmetric.api.messages.OperationalMessageFilter;
+import eu.dariolucia.reatmetric.api.messages.Severity;
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingClientTest {
+
+    private static final String SYSTEM_NAME = "Test System";
+
+    private final BlockingQueue<Object[]> delegateSubscriptions = new LinkedBlockingQueue<>();
+
+    private ServerSocket serverSocket;
+    private Socket serverSide;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private StreamingClient client;
+    private OperationalMessageProvisionServiceProxy proxy;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        client = new StreamingClient("localhost", serverSocket.getLocalPort(), SYSTEM_NAME);
+        ExecutorService connector = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> connection = connector.submit(() -> {
+                client.connect();
+                return null;
+            });
+            serverSide = serverSocket.accept();
+            serverSide.setSoTimeout(5000);
+            out = new DataOutputStream(serverSide.getOutputStream());
+            in = new DataInputStream(serverSide.getInputStream());
+            // Hello
+            Frame hello = readFrame();
+            assertEquals(StreamingProtocol.FRAME_HELLO, hello.type);
+            assertEquals(SYSTEM_NAME, new String(hello.payload, StandardCharsets.UTF_8));
+            send(StreamingProtocol.frame(StreamingProtocol.FRAME_HELLO_ACK, 0, null));
+            connection.get(5, TimeUnit.SECONDS);
+        } finally {
+            connector.shutdown();
+        }
+        assertTrue(client.isConnected());
+        proxy = new OperationalMessageProvisionServiceProxy(fakeDelegate());
+        proxy.useStreaming(client, StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        proxy.terminate();
+        client.close();
+        serverSide.close();
+        serverSocket.close();
+    }
+
+    @Test
+    void testLoopback() throws Exception {
+        BlockingQueue<OperationalMessage> received = new LinkedBlockingQueue<>();
+        IOperationalMessageSubscriber subscriber = received::addAll;
+        // Subscribe
+        proxy.subscribe(subscriber, filter("Source A"));
+        Frame subscribe = readFrame();
+        assertEquals(StreamingProtocol.FRAME_SUBSCRIBE, subscribe.type);
+        assertEquals(StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES.ordinal(), subscribe.payload[0]);
+        OperationalMessageFilter filter = (OperationalMessageFilter) StreamingProtocol.deserialize(subscribe.payload, 1, subscribe.payload.length - 1);
+        assertEquals(Collections.singleton("Source A"), filter.getSourceList());
+        // Filter update: same subscription ID
+        proxy.subscribe(subscriber, filter("Source B"));
+        assertEquals(subscribe.subscriptionId, readFrame().subscriptionId);
+        // Data delivery
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_DATA, subscribe.subscriptionId, StreamingProtocol.serialize(List.of(message(1, "First"), message(2, "Second")))));
+        assertEquals("First", poll(received).getMessage());
+        assertEquals("Second", poll(received).getMessage());
+        // Unsubscribe
+        proxy.unsubscribe(subscriber);
+        Frame unsubscribe = readFrame();
+        assertEquals(StreamingProtocol.FRAME_UNSUBSCRIBE, unsubscribe.type);
+        assertEquals(subscribe.subscriptionId, unsubscribe.subscriptionId);
+        // Items of a closed subscription are discarded
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_DATA, subscribe.subscriptionId, StreamingProtocol.serialize(List.of(message(3, "Late")))));
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        assertTrue(delegateSubscriptions.isEmpty());
+    }
+
+    @Test
+    void testRejectedSubscriptionFallsBackToRmi() throws Exception {
+        BlockingQueue<OperationalMessage> receivedA = new LinkedBlockingQueue<>();
+        IOperationalMessageSubscriber subscriberA = receivedA::addAll;
+        IOperationalMessageSubscriber subscriberB = items -> { };
+        proxy.subscribe(subscriberA, filter("Source A"));
+        int idA = readFrame().subscriptionId;
+        proxy.subscribe(subscriberB, filter("Source B"));
+        int idB = readFrame().subscriptionId;
+        assertNotEquals(idA, idB);
+        // The server rejects the second subscription: the subscriber is moved to RMI with its filter
+        send(StreamingProtocol.errorFrame(idB, "Rejected"));
+        Object[] rmiSubscription = pollSubscription();
+        assertNotSame(subscriberB, rmiSubscription[0]);
+        assertEquals(Collections.singleton("Source B"), ((OperationalMessageFilter) rmiSubscription[1]).getSourceList());
+        // The first subscription is not affected
+        assertTrue(client.isConnected());
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_DATA, idA, StreamingProtocol.serialize(List.of(message(1, "Still streamed")))));
+        assertEquals("Still streamed", poll(receivedA).getMessage());
+        assertTrue(delegateSubscriptions.isEmpty());
+        // A filter update of the rejected subscriber goes to RMI
+        proxy.subscribe(subscriberB, filter("Source C"));
+        assertEquals(Collections.singleton("Source C"), ((OperationalMessageFilter) pollSubscription()[1]).getSourceList());
+    }
+
+    @Test
+    void testConnectionLossFallsBackToRmi() throws Exception {
+        BlockingQueue<OperationalMessage> received = new LinkedBlockingQueue<>();
+        IOperationalMessageSubscriber subscriberA = received::addAll;
+        IOperationalMessageSubscriber subscriberB = items -> { };
+        proxy.subscribe(subscriberA, filter("Source A"));
+        int idA = readFrame().subscriptionId;
+        proxy.subscribe(subscriberB, filter("Source B"));
+        readFrame();
+        // Items received before the connection loss are delivered before the fall back
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_DATA, idA, StreamingProtocol.serialize(List.of(message(1, "Before loss")))));
+        serverSide.close();
+        assertEquals("Before loss", poll(received).getMessage());
+        Object[] first = pollSubscription();
+        Object[] second = pollSubscription();
+        assertEquals(Set.of("Source A", "Source B"), Set.of(sourceOf(first), sourceOf(second)));
+        assertFalse(client.isConnected());
+        // New subscriptions use RMI
+        proxy.subscribe(items -> { }, filter("Source C"));
+        assertEquals("Source C", sourceOf(pollSubscription()));
+    }
+
+    private static String sourceOf(Object[] subscription) {
+        return ((OperationalMessageFilter) subscription[1]).getSourceList().iterator().next();
+    }
+
+    private Object[] pollSubscription() throws InterruptedException {
+        Object[] subscription = delegateSubscriptions.poll(5, TimeUnit.SECONDS);
+        assertNotNull(subscription, "RMI subscription expected");
+        return subscription;
+    }
+
+    private static OperationalMessage poll(BlockingQueue<OperationalMessage> queue) throws InterruptedException {
+        OperationalMessage message = queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message, "Message expected");
+        return message;
+    }
+
+    private static OperationalMessageFilter filter(String source) {
+        return new OperationalMessageFilter(null, null, Collections.singletonList(source), null);
+    }
+
+    private static OperationalMessage message(long id, String text) {
+        return new OperationalMessage(new LongUniqueId(id), Instant.now(), "ID", text, "Source A", Severity.INFO, null, null);
+    }
+
+    private void send(ByteBuffer frame) throws IOException {
+        out.write(frame.array(), frame.position(), frame.remaining());
+        out.flush();
+    }
+
+    private Frame readFrame() throws IOException {
+        int length = in.readInt();
+        byte type = in.readByte();
+        int subscriptionId = in.readInt();
+        byte[] payload = new byte[length - StreamingProtocol.HEADER_LENGTH];
+        in.readFully(payload);
+        return new Frame(type, subscriptionId, payload);
+    }
+
+    private IOperationalMessageProvisionService fakeDelegate() {
+        return (IOperationalMessageProvisionService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IOperationalMessageProvisionService.class }, (p, method, args) -> {
+            switch (method.getName()) {
+                case "subscribe":
+                    delegateSubscriptions.add(args);
+                    return null;
+                case "unsubscribe":
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "equals":
+                    return p == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static final class Frame {
+        private final byte type;
+        private final int subscriptionId;
+        private final byte[] payload;
+
+        private Frame(byte type, int subscriptionId, byte[] payload) {
+            this.type = type;
+            this.subscriptionId = subscriptionId;
+            this.payload = payload;
+        }
+    }
+}
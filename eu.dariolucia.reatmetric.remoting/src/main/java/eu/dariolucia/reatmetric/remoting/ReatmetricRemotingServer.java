@@ -20,7 +20,9 @@ import eu.dariolucia.reatmetric.api.IReatmetricRegister;
 import eu.dariolucia.reatmetric.api.IReatmetricSystem;
 import eu.dariolucia.reatmetric.api.common.SystemStatus;
 import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.remoting.stream.StreamingServer;
 
+import java.io.IOException;
 import java.rmi.AlreadyBoundException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
@@ -41,6 +43,11 @@ public class ReatmetricRemotingServer {
     private static final Logger LOG = Logger.getLogger(ReatmetricRemotingServer.class.getName());
     private static final List<ReatmetricSystemRemoting> REMOTED_SYSTEMS = new CopyOnWriteArrayList<>();
 
+    private static final String JVM_PROPERTY_STREAM_PORT_KEY = "reatmetric.remoting.stream.port";
+    private static final String JVM_PROPERTY_STREAM_MAX_CONTROL_FRAME_KEY = "reatmetric.remoting.stream.max.control.frame";
+
+    private static StreamingServer streamingServer;
+
     public static void main(String[] args) throws RemoteException {
         if(args.length < 1 || args.length > 2) {
             System.err.println("Usage: ReatmetricRemotingServer <port> [system name]");
@@ -56,6 +63,12 @@ public class ReatmetricRemotingServer {
         LOG.info(message);
         Registry registry = LocateRegistry.createRegistry(port);
 
+        String streamPort = System.getProperty(JVM_PROPERTY_STREAM_PORT_KEY);
+        if(streamPort != null) {
+            int maxControlFrame = Integer.parseInt(System.getProperty(JVM_PROPERTY_STREAM_MAX_CONTROL_FRAME_KEY, String.valueOf(StreamingServer.DEFAULT_MAX_CONTROL_FRAME_LENGTH)));
+            streamingServer = new StreamingServer(Integer.parseInt(streamPort), maxControlFrame);
+        }
+
         LOG.info("Loading systems...");
         ServiceLoader<IReatmetricRegister> loader
                 = ServiceLoader.load(IReatmetricRegister.class);
@@ -73,6 +86,9 @@ public class ReatmetricRemotingServer {
                             ReatmetricSystemRemoting remoting = new ReatmetricSystemRemoting(registry, system, cp);
                             remoting.activate();
                             REMOTED_SYSTEMS.add(remoting);
+                            if(streamingServer != null) {
+                                streamingServer.register(system, cp);
+                            }
                             LOG.info("System " + system + " registered");
                         } else {
                             LOG.info("System " + system + " ignored");
@@ -86,6 +102,15 @@ public class ReatmetricRemotingServer {
             }
         }
 
+        if(streamingServer != null) {
+            try {
+                streamingServer.start();
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Cannot start streaming server on port " + streamPort + ": " + e.getMessage(), e);
+                streamingServer = null;
+            }
+        }
+
         Runtime.getRuntime().addShutdownHook(new Thread(ReatmetricRemotingServer::shutdown));
     }
 
@@ -95,6 +120,9 @@ public class ReatmetricRemotingServer {
 
     public static void shutdown() {
         LOG.log(Level.INFO, "Shutting down remote systems");
+        if(streamingServer != null) {
+            streamingServer.stop();
+        }
         for (ReatmetricSystemRemoting remotedSystem : REMOTED_SYSTEMS) {
             try {
                 remotedSystem.deactivate();
@@ -31,10 +31,12 @@ import eu.dariolucia.reatmetric.api.messages.IOperationalMessageProvisionService
 import eu.dariolucia.reatmetric.api.model.ISystemModelProvisionService;
 import eu.dariolucia.reatmetric.api.parameters.IParameterDataProvisionService;
 import eu.dariolucia.reatmetric.api.rawdata.IRawDataProvisionService;
+import eu.dariolucia.reatmetric.api.remoting.CompressingSocketFactory;
+import eu.dariolucia.reatmetric.api.remoting.ConnectionStatistics;
 import eu.dariolucia.reatmetric.api.scheduler.IScheduledActivityDataProvisionService;
 import eu.dariolucia.reatmetric.api.scheduler.IScheduler;
 import eu.dariolucia.reatmetric.api.transport.ITransportConnector;
-import eu.dariolucia.reatmetric.remoting.stubs.TransportConnectorDelegate;
+import eu.dariolucia.reatmetric.remoting.stubs.*;
 
 import java.rmi.*;
 import java.rmi.registry.LocateRegistry;
@@ -57,12 +59,28 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     private static final String JVM_PROPERTY_RMI_EXPORT_PORT_KEY = "reatmetric.remoting.rmi.export.port";
     private static final int RMI_EXPORT_PORT_DEFAULT = 0;
 
+    private static final String JVM_PROPERTY_CALLBACK_WINDOW_KEY = "reatmetric.remoting.callback.window";
+    private static final int CALLBACK_WINDOW_DEFAULT = 0;
+
+    private static final String JVM_PROPERTY_CALLBACK_CONFLATE_KEY = "reatmetric.remoting.callback.conflate";
+
+    private static final String JVM_PROPERTY_CALLBACK_MAX_PENDING_KEY = "reatmetric.remoting.callback.max.pending";
+    private static final int CALLBACK_MAX_PENDING_DEFAULT = 100000;
+
+    private static final String JVM_PROPERTY_COMPRESSION_THRESHOLD_KEY = "reatmetric.remoting.compression.threshold";
+
     private final IReatmetricSystem system;
     private final int port;
     private final String name;
 
     private int exportPort;
 
+    private CallbackPolicy callbackPolicy;
+
+    private CompressingSocketFactory socketFactory;
+
+    private final List<AbstractProvisionServiceDelegate<?, ?, ?, ?>> provisionServiceDelegates = new ArrayList<>();
+
     private final Map<Object, Remote> exportedObjects = new ConcurrentHashMap<>();
 
     private Registry registry;
@@ -111,6 +129,18 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
             LOG.severe("Cannot initialise RMI export port from system property " + JVM_PROPERTY_RMI_EXPORT_PORT_KEY + ": " + rmiExportPortStr + ": " + e.getMessage());
         }
 
+        this.callbackPolicy = new CallbackPolicy(
+                readIntProperty(JVM_PROPERTY_CALLBACK_WINDOW_KEY, CALLBACK_WINDOW_DEFAULT),
+                Boolean.parseBoolean(System.getProperty(JVM_PROPERTY_CALLBACK_CONFLATE_KEY)),
+                readIntProperty(JVM_PROPERTY_CALLBACK_MAX_PENDING_KEY, CALLBACK_MAX_PENDING_DEFAULT));
+        LOG.info("Remote subscriber callback policy: " + this.callbackPolicy);
+
+        int compressionThreshold = readIntProperty(JVM_PROPERTY_COMPRESSION_THRESHOLD_KEY, -1);
+        this.socketFactory = compressionThreshold >= 0 ? new CompressingSocketFactory(compressionThreshold) : null;
+        if(this.socketFactory != null) {
+            LOG.info("Compression of remote invocations enabled for payloads of at least " + compressionThreshold + " bytes");
+        }
+
         if (this.registry == null) {
             if (this.port == 0) {
                 throw new IllegalStateException("Port not specified, cannot create registry");
@@ -120,10 +150,22 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
         } else {
             LOG.info("Activating ReatMetric Remoting on registry " + registry + " with name " + this.name);
         }
-        this.activatedObject = (IReatmetricSystem) UnicastRemoteObject.exportObject(this, this.exportPort);
+        this.activatedObject = (IReatmetricSystem) doExport(this);
         this.registry.bind(this.name, this.activatedObject);
     }
 
+    private static int readIntProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        try {
+            if(value != null) {
+                return Integer.parseInt(value);
+            }
+        } catch (Exception e) {
+            LOG.severe("Cannot initialise value from system property " + key + ": " + value + ": " + e.getMessage());
+        }
+        return defaultValue;
+    }
+
     public synchronized void deactivate() throws RemoteException, NotBoundException {
         if (activatedObject == null) {
             throw new IllegalStateException("Object not bound yet");
@@ -136,13 +178,16 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
             this.activatedObject = null;
         }
         // Deactivate remoted objects
-        if (remoteOperationalMessageProvisionService != null) {
+        for (AbstractProvisionServiceDelegate<?, ?, ?, ?> delegate : provisionServiceDelegates) {
+            delegate.terminate();
             try {
-                UnicastRemoteObject.unexportObject(system.getOperationalMessageMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
+                UnicastRemoteObject.unexportObject(delegate, true);
+            } catch (NoSuchObjectException e) {
                 // Ignore
             }
         }
+        provisionServiceDelegates.clear();
+
         remoteOperationalMessageProvisionService = null;
 
         if (remoteOperationalMessageCollectorService != null) {
@@ -154,13 +199,6 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
         }
         remoteOperationalMessageCollectorService = null;
 
-        if (remoteAcknowledgedMessageProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getAcknowledgedMessageMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteAcknowledgedMessageProvisionService = null;
 
         if (remoteAcknowledgementService != null) {
@@ -172,22 +210,8 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
         }
         remoteAcknowledgementService = null;
 
-        if (remoteRawDataProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getRawDataMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteRawDataProvisionService = null;
 
-        if (remoteParameterDataProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getParameterDataMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteParameterDataProvisionService = null;
 
         if (remoteSystemModelProvisionService != null) {
@@ -199,31 +223,10 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
         }
         remoteSystemModelProvisionService = null;
 
-        if (remoteEventDataProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getEventDataMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteEventDataProvisionService = null;
 
-        if (remoteAlarmParameterDataProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getAlarmParameterDataMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteAlarmParameterDataProvisionService = null;
 
-        if (remoteActivityOccurrenceDataProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getActivityOccurrenceDataMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteActivityOccurrenceDataProvisionService = null;
 
         if (remoteActivityExecutionService != null) {
@@ -244,13 +247,6 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
         }
         remoteScheduler = null;
 
-        if (remoteScheduledActivityDataProvisionService != null) {
-            try {
-                UnicastRemoteObject.unexportObject(system.getScheduledActivityDataMonitorService(), true);
-            } catch (NoSuchObjectException | ReatmetricException e) {
-                // Ignore
-            }
-        }
         remoteScheduledActivityDataProvisionService = null;
 
         if (remoteTransportConnectorList != null) {
@@ -294,19 +290,32 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
         throw new ReatmetricException("Not allowed to be called from remote");
     }
 
+    private Remote doExport(Remote instance) throws RemoteException {
+        if (socketFactory != null) {
+            return UnicastRemoteObject.exportObject(instance, this.exportPort, socketFactory, socketFactory);
+        } else {
+            return UnicastRemoteObject.exportObject(instance, this.exportPort);
+        }
+    }
+
     protected <T extends Remote> Remote exportObject(T instance) throws RemoteException {
         Remote remote = exportedObjects.get(instance);
         if (remote == null) {
-            remote = UnicastRemoteObject.exportObject(instance, this.exportPort);
+            remote = doExport(instance);
             exportedObjects.put(instance, remote);
         }
         return remote;
     }
 
+    private <T extends AbstractProvisionServiceDelegate<?, ?, ?, ?>> T delegate(T delegate) {
+        provisionServiceDelegates.add(delegate);
+        return delegate;
+    }
+
     @Override
     public synchronized IOperationalMessageProvisionService getOperationalMessageMonitorService() throws ReatmetricException, RemoteException {
         if (remoteOperationalMessageProvisionService == null) {
-            remoteOperationalMessageProvisionService = (IOperationalMessageProvisionService) exportObject(system.getOperationalMessageMonitorService());
+            remoteOperationalMessageProvisionService = (IOperationalMessageProvisionService) exportObject(delegate(new OperationalMessageProvisionServiceDelegate(system.getOperationalMessageMonitorService(), callbackPolicy)));
         }
         return remoteOperationalMessageProvisionService;
     }
@@ -322,7 +331,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IAcknowledgedMessageProvisionService getAcknowledgedMessageMonitorService() throws ReatmetricException, RemoteException {
         if (remoteAcknowledgedMessageProvisionService == null) {
-            remoteAcknowledgedMessageProvisionService = (IAcknowledgedMessageProvisionService) exportObject(system.getAcknowledgedMessageMonitorService());
+            remoteAcknowledgedMessageProvisionService = (IAcknowledgedMessageProvisionService) exportObject(delegate(new AcknowledgedMessageProvisionServiceDelegate(system.getAcknowledgedMessageMonitorService(), callbackPolicy)));
         }
         return remoteAcknowledgedMessageProvisionService;
     }
@@ -338,7 +347,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IRawDataProvisionService getRawDataMonitorService() throws ReatmetricException, RemoteException {
         if (remoteRawDataProvisionService == null) {
-            remoteRawDataProvisionService = (IRawDataProvisionService) exportObject(system.getRawDataMonitorService());
+            remoteRawDataProvisionService = (IRawDataProvisionService) exportObject(delegate(new RawDataProvisionServiceDelegate(system.getRawDataMonitorService(), callbackPolicy)));
         }
         return remoteRawDataProvisionService;
     }
@@ -346,7 +355,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IParameterDataProvisionService getParameterDataMonitorService() throws ReatmetricException, RemoteException {
         if (remoteParameterDataProvisionService == null) {
-            remoteParameterDataProvisionService = (IParameterDataProvisionService) exportObject(system.getParameterDataMonitorService());
+            remoteParameterDataProvisionService = (IParameterDataProvisionService) exportObject(delegate(new ParameterDataProvisionServiceDelegate(system.getParameterDataMonitorService(), callbackPolicy)));
         }
         return remoteParameterDataProvisionService;
     }
@@ -362,7 +371,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IEventDataProvisionService getEventDataMonitorService() throws ReatmetricException, RemoteException {
         if (remoteEventDataProvisionService == null) {
-            remoteEventDataProvisionService = (IEventDataProvisionService) exportObject(system.getEventDataMonitorService());
+            remoteEventDataProvisionService = (IEventDataProvisionService) exportObject(delegate(new EventDataProvisionServiceDelegate(system.getEventDataMonitorService(), callbackPolicy)));
         }
         return remoteEventDataProvisionService;
     }
@@ -370,7 +379,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IAlarmParameterDataProvisionService getAlarmParameterDataMonitorService() throws ReatmetricException, RemoteException {
         if (remoteAlarmParameterDataProvisionService == null) {
-            remoteAlarmParameterDataProvisionService = (IAlarmParameterDataProvisionService) exportObject(system.getAlarmParameterDataMonitorService());
+            remoteAlarmParameterDataProvisionService = (IAlarmParameterDataProvisionService) exportObject(delegate(new AlarmParameterDataProvisionServiceDelegate(system.getAlarmParameterDataMonitorService(), callbackPolicy)));
         }
         return remoteAlarmParameterDataProvisionService;
     }
@@ -378,7 +387,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IActivityOccurrenceDataProvisionService getActivityOccurrenceDataMonitorService() throws ReatmetricException, RemoteException {
         if (remoteActivityOccurrenceDataProvisionService == null) {
-            remoteActivityOccurrenceDataProvisionService = (IActivityOccurrenceDataProvisionService) exportObject(system.getActivityOccurrenceDataMonitorService());
+            remoteActivityOccurrenceDataProvisionService = (IActivityOccurrenceDataProvisionService) exportObject(delegate(new ActivityOccurrenceDataProvisionServiceDelegate(system.getActivityOccurrenceDataMonitorService(), callbackPolicy)));
         }
         return remoteActivityOccurrenceDataProvisionService;
     }
@@ -402,7 +411,7 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
     @Override
     public synchronized IScheduledActivityDataProvisionService getScheduledActivityDataMonitorService() throws ReatmetricException, RemoteException {
         if (remoteScheduledActivityDataProvisionService == null) {
-            remoteScheduledActivityDataProvisionService = (IScheduledActivityDataProvisionService) exportObject(system.getScheduledActivityDataMonitorService());
+            remoteScheduledActivityDataProvisionService = (IScheduledActivityDataProvisionService) exportObject(delegate(new ScheduledActivityDataProvisionServiceDelegate(system.getScheduledActivityDataMonitorService(), callbackPolicy)));
         }
         return remoteScheduledActivityDataProvisionService;
     }
@@ -425,7 +434,15 @@ public class ReatmetricSystemRemoting implements IReatmetricSystem {
 
     @Override
     public List<DebugInformation> currentDebugInfo() throws ReatmetricException, RemoteException {
-        return system.currentDebugInfo();
+        List<DebugInformation> info = system.currentDebugInfo();
+        if (socketFactory == null) {
+            return info;
+        }
+        List<DebugInformation> toReturn = new ArrayList<>(info);
+        for (ConnectionStatistics cs : CompressingSocketFactory.getStatistics()) {
+            toReturn.add(DebugInformation.of("Remoting", "Bytes saved " + cs.getConnection(), cs.getBytesSaved(), null, "bytes"));
+        }
+        return toReturn;
     }
 
     public IReatmetricSystem getSystem() {
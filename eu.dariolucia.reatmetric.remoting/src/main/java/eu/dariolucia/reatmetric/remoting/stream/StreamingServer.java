@@ -0,0 +1,221 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.remoting.stream;
+
+import eu.dariolucia.reatmetric.api.IReatmetricSystem;
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server side of the streaming transport defined by {@link StreamingProtocol}: it accepts connections from remote clients
+ * and serves their subscriptions to the data item provision services of the registered systems.
+ *
+ * All the connections are handled by a single thread using a NIO selector. Updates produced by the services are encoded
+ * by the delivering thread and queued to the connection, so that a slow network never blocks the server delivery threads:
+ * if the queue of a connection grows beyond a limit, the connection is closed by the selector thread.
+ */
+public class StreamingServer {
+
+    private static final Logger LOG = Logger.getLogger(StreamingServer.class.getName());
+
+    /**
+     * Default maximum length of the control frames (subscribe, unsubscribe) sent by the clients.
+     */
+    public static final int DEFAULT_MAX_CONTROL_FRAME_LENGTH = 1024 * 1024;
+
+    private final int port;
+    private final int maxControlFrameLength;
+    private final Map<String, IReatmetricSystem> systems = new ConcurrentHashMap<>();
+    private final Queue<StreamingSession> sessionsToClose = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public StreamingServer(int port) {
+        this(port, DEFAULT_MAX_CONTROL_FRAME_LENGTH);
+    }
+
+    /**
+     * Create a streaming server.
+     *
+     * @param port the TCP port to listen to
+     * @param maxControlFrameLength the maximum length of the frames accepted from a client after the hello
+     */
+    public StreamingServer(int port, int maxControlFrameLength) {
+        if(maxControlFrameLength < StreamingProtocol.MAX_HELLO_FRAME_LENGTH || maxControlFrameLength > StreamingProtocol.MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Maximum control frame length must be between " + StreamingProtocol.MAX_HELLO_FRAME_LENGTH + " and " + StreamingProtocol.MAX_FRAME_LENGTH + ", got " + maxControlFrameLength);
+        }
+        this.port = port;
+        this.maxControlFrameLength = maxControlFrameLength;
+    }
+
+    /**
+     * Make the provided system available to the streaming clients with the provided name.
+     *
+     * @param name the name of the system, as requested by the clients
+     * @param system the system
+     */
+    public void register(String name, IReatmetricSystem system) {
+        this.systems.put(name, system);
+    }
+
+    IReatmetricSystem getSystem(String name) {
+        return this.systems.get(name);
+    }
+
+    int getMaxControlFrameLength() {
+        return maxControlFrameLength;
+    }
+
+    /**
+     * The port the server is listening to, useful if the server was created with port 0.
+     *
+     * @return the local port, or -1 if the server is not started
+     */
+    public synchronized int getLocalPort() {
+        return serverChannel != null && serverChannel.isOpen() ? serverChannel.socket().getLocalPort() : -1;
+    }
+
+    public synchronized void start() throws IOException {
+        if(running) {
+            throw new IllegalStateException("Streaming server already started");
+        }
+        LOG.info("Starting ReatMetric streaming server on port " + port);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.running = true;
+        this.selectorThread = new Thread(this::run, "ReatMetric Streaming Server");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    public synchronized void stop() {
+        if(!running) {
+            return;
+        }
+        LOG.info("Stopping ReatMetric streaming server on port " + port);
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while(running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Streaming server selector failure: " + e.getMessage(), e);
+                break;
+            }
+            // Close the sessions that requested so from other threads
+            StreamingSession toClose;
+            while((toClose = sessionsToClose.poll()) != null) {
+                toClose.close();
+            }
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while(it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                if(!key.isValid()) {
+                    continue;
+                }
+                if(key.isAcceptable()) {
+                    accept();
+                } else {
+                    StreamingSession session = (StreamingSession) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            session.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            session.onWritable();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        LOG.log(e instanceof EOFException ? Level.INFO : Level.WARNING, "Closing streaming connection " + session + ": " + e.getMessage());
+                        session.close();
+                    }
+                }
+            }
+        }
+        // Shutdown
+        for(SelectionKey key : selector.keys()) {
+            if(key.attachment() instanceof StreamingSession) {
+                ((StreamingSession) key.attachment()).close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if(channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            StreamingSession session = new StreamingSession(this, channel);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ, session);
+            session.setKey(key);
+            LOG.info("Streaming connection accepted from " + channel.getRemoteAddress());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot accept streaming connection: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Request the selector thread to close the provided session. It can be called by any thread.
+     *
+     * @param session the session to close
+     */
+    void requestClose(StreamingSession session) {
+        sessionsToClose.add(session);
+        wakeup();
+    }
+
+    void wakeup() {
+        Selector s = this.selector;
+        if(s != null) {
+            s.wakeup();
+        }
+    }
+}
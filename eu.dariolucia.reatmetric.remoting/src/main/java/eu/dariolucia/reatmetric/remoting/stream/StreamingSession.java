@@ -0,0 +1,312 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.remoting.stream;
+
+import eu.dariolucia.reatmetric.api.IReatmetricSystem;
+import eu.dariolucia.reatmetric.api.activity.IActivityOccurrenceDataSubscriber;
+import eu.dariolucia.reatmetric.api.alarms.IAlarmParameterDataSubscriber;
+import eu.dariolucia.reatmetric.api.common.AbstractDataItem;
+import eu.dariolucia.reatmetric.api.common.AbstractDataItemFilter;
+import eu.dariolucia.reatmetric.api.common.IDataItemProvisionService;
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.events.IEventDataSubscriber;
+import eu.dariolucia.reatmetric.api.messages.IAcknowledgedMessageSubscriber;
+import eu.dariolucia.reatmetric.api.messages.IOperationalMessageSubscriber;
+import eu.dariolucia.reatmetric.api.parameters.IParameterDataSubscriber;
+import eu.dariolucia.reatmetric.api.rawdata.IRawDataSubscriber;
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
+import eu.dariolucia.reatmetric.api.scheduler.IScheduledActivityDataSubscriber;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection of a streaming client to the {@link StreamingServer}. Reads and writes are performed by the selector
+ * thread, while the data frames are encoded and queued by the threads delivering the data items. The session is always
+ * closed by the selector thread: if a delivering thread detects that the queue limit is exceeded, the session is marked
+ * as overflowed and its closure is requested to the server.
+ */
+final class StreamingSession {
+
+    private static final Logger LOG = Logger.getLogger(StreamingSession.class.getName());
+
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_QUEUED_BYTES = 64L * 1024 * 1024;
+
+    private final StreamingServer server;
+    private final SocketChannel channel;
+    private final String remoteAddress;
+    private SelectionKey key;
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    private final Map<Integer, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    private IReatmetricSystem system;
+    private volatile boolean overflowed;
+    private volatile boolean closed;
+
+    StreamingSession(StreamingServer server, SocketChannel channel) throws IOException {
+        this.server = server;
+        this.channel = channel;
+        this.remoteAddress = String.valueOf(channel.getRemoteAddress());
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * To be called from the selector thread.
+     */
+    void onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if(read < 0) {
+            throw new EOFException("Connection closed by peer");
+        }
+        readBuffer.flip();
+        int required = 0;
+        while(readBuffer.remaining() >= 4) {
+            int length = readBuffer.getInt(readBuffer.position());
+            // Until the hello is accepted, only a small frame is allowed; then only control frames are expected
+            int maxLength = system == null ? StreamingProtocol.MAX_HELLO_FRAME_LENGTH : server.getMaxControlFrameLength();
+            if(length < StreamingProtocol.HEADER_LENGTH || length > maxLength) {
+                throw new IOException("Invalid frame length " + length + ", maximum allowed " + maxLength);
+            }
+            if(readBuffer.remaining() < 4 + length) {
+                required = 4 + length;
+                break;
+            }
+            readBuffer.getInt();
+            byte type = readBuffer.get();
+            int subscriptionId = readBuffer.getInt();
+            byte[] payload = new byte[length - StreamingProtocol.HEADER_LENGTH];
+            readBuffer.get(payload);
+            handleFrame(type, subscriptionId, payload);
+        }
+        readBuffer.compact();
+        if(required > readBuffer.capacity()) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(required);
+            readBuffer.flip();
+            newBuffer.put(readBuffer);
+            readBuffer = newBuffer;
+        }
+    }
+
+    /**
+     * To be called from the selector thread.
+     */
+    void onWritable() throws IOException {
+        ByteBuffer bb;
+        while((bb = writeQueue.peek()) != null) {
+            channel.write(bb);
+            if(bb.hasRemaining()) {
+                // Socket buffer full, wait for the next write readiness
+                return;
+            }
+            writeQueue.poll();
+            queuedBytes.addAndGet(-bb.limit());
+        }
+        key.interestOpsAnd(~SelectionKey.OP_WRITE);
+        // Frames might have been queued in the meantime
+        if(!writeQueue.isEmpty()) {
+            key.interestOpsOr(SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void handleFrame(byte type, int subscriptionId, byte[] payload) throws IOException {
+        if(system == null && type != StreamingProtocol.FRAME_HELLO) {
+            throw new IOException("Unexpected frame type " + type + " before hello");
+        }
+        switch (type) {
+            case StreamingProtocol.FRAME_HELLO: {
+                String systemName = StreamingProtocol.decodeString(payload, 0, payload.length);
+                IReatmetricSystem requested = server.getSystem(systemName);
+                if(requested == null) {
+                    LOG.warning("Streaming connection " + remoteAddress + " requested unknown system " + systemName);
+                    send(StreamingProtocol.errorFrame(0, "System " + systemName + " not available"));
+                } else {
+                    this.system = requested;
+                    send(StreamingProtocol.frame(StreamingProtocol.FRAME_HELLO_ACK, 0, null));
+                }
+            }
+            break;
+            case StreamingProtocol.FRAME_SUBSCRIBE: {
+                try {
+                    StreamingProtocol.StreamedService service = StreamingProtocol.StreamedService.values()[payload[0]];
+                    Object filter = StreamingProtocol.deserialize(payload, 1, payload.length - 1);
+                    Subscription subscription = subscriptions.get(subscriptionId);
+                    if(subscription == null) {
+                        subscription = createSubscription(service, subscriptionId);
+                        subscriptions.put(subscriptionId, subscription);
+                    }
+                    subscription.update(filter);
+                } catch (Exception e) {
+                    // A failed subscription does not affect the others: the client is notified and the connection kept
+                    LOG.log(Level.WARNING, "Cannot subscribe for streaming connection " + remoteAddress + ", subscription " + subscriptionId + ": " + e.getMessage(), e);
+                    cancel(subscriptions.remove(subscriptionId));
+                    send(StreamingProtocol.errorFrame(subscriptionId, e.getMessage()));
+                }
+            }
+            break;
+            case StreamingProtocol.FRAME_UNSUBSCRIBE: {
+                cancel(subscriptions.remove(subscriptionId));
+            }
+            break;
+            default:
+                throw new IOException("Unexpected frame type " + type);
+        }
+    }
+
+    private void cancel(Subscription subscription) {
+        if(subscription == null) {
+            return;
+        }
+        try {
+            subscription.cancel();
+        } catch (RemoteException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot unsubscribe streaming subscription of connection " + remoteAddress + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Subscription createSubscription(StreamingProtocol.StreamedService service, int subscriptionId) throws ReatmetricException, RemoteException {
+        switch (service) {
+            case OPERATIONAL_MESSAGES:
+                return new Subscription<>(system.getOperationalMessageMonitorService(), (IOperationalMessageSubscriber) items -> deliver(subscriptionId, items));
+            case ACKNOWLEDGED_MESSAGES:
+                return new Subscription<>(system.getAcknowledgedMessageMonitorService(), (IAcknowledgedMessageSubscriber) items -> deliver(subscriptionId, items));
+            case RAW_DATA:
+                return new Subscription<>(system.getRawDataMonitorService(), (IRawDataSubscriber) items -> deliver(subscriptionId, items));
+            case PARAMETERS:
+                return new Subscription<>(system.getParameterDataMonitorService(), (IParameterDataSubscriber) items -> deliver(subscriptionId, items));
+            case EVENTS:
+                return new Subscription<>(system.getEventDataMonitorService(), (IEventDataSubscriber) items -> deliver(subscriptionId, items));
+            case ALARMS:
+                return new Subscription<>(system.getAlarmParameterDataMonitorService(), (IAlarmParameterDataSubscriber) items -> deliver(subscriptionId, items));
+            case ACTIVITY_OCCURRENCES:
+                return new Subscription<>(system.getActivityOccurrenceDataMonitorService(), (IActivityOccurrenceDataSubscriber) items -> deliver(subscriptionId, items));
+            case SCHEDULED_ACTIVITIES:
+                return new Subscription<>(system.getScheduledActivityDataMonitorService(), (IScheduledActivityDataSubscriber) items -> deliver(subscriptionId, items));
+            default:
+                throw new IllegalArgumentException("Service " + service + " not supported");
+        }
+    }
+
+    /**
+     * Called by the threads delivering the data items.
+     */
+    private void deliver(int subscriptionId, List<? extends AbstractDataItem> items) {
+        if(closed || overflowed || items.isEmpty()) {
+            return;
+        }
+        try {
+            send(StreamingProtocol.frame(StreamingProtocol.FRAME_DATA, subscriptionId, StreamingProtocol.serialize(new ArrayList<>(items))));
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Cannot encode data items for streaming connection " + remoteAddress + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queue the frame for transmission. It can be called by any thread: it never closes the session directly, since the
+     * caller might be a service delivery thread.
+     */
+    private void send(ByteBuffer frame) {
+        if(closed || overflowed) {
+            return;
+        }
+        if(queuedBytes.addAndGet(frame.limit()) > MAX_QUEUED_BYTES) {
+            overflowed = true;
+            LOG.warning("Streaming connection " + remoteAddress + " cannot keep up with the data rate, closing connection");
+            server.requestClose(this);
+            return;
+        }
+        writeQueue.add(frame);
+        try {
+            key.interestOpsOr(SelectionKey.OP_WRITE);
+            server.wakeup();
+        } catch (RuntimeException e) {
+            // Key cancelled: connection closed or being closed
+            server.requestClose(this);
+        }
+    }
+
+    /**
+     * To be called from the selector thread.
+     */
+    synchronized void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        for(Subscription subscription : subscriptions.values()) {
+            cancel(subscription);
+        }
+        subscriptions.clear();
+        writeQueue.clear();
+        if(key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        LOG.info("Streaming connection " + remoteAddress + " closed");
+    }
+
+    @Override
+    public String toString() {
+        return remoteAddress;
+    }
+
+    private static final class Subscription<T extends AbstractDataItem, K extends AbstractDataItemFilter<T>, U extends IDataItemSubscriber<T>> {
+
+        private final IDataItemProvisionService<U, K, T> service;
+        private final U subscriber;
+
+        private Subscription(IDataItemProvisionService<U, K, T> service, U subscriber) {
+            this.service = service;
+            this.subscriber = subscriber;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void update(Object filter) throws RemoteException {
+            service.subscribe(subscriber, (K) filter);
+        }
+
+        private void cancel() throws RemoteException {
+            service.unsubscribe(subscriber);
+        }
+    }
+}
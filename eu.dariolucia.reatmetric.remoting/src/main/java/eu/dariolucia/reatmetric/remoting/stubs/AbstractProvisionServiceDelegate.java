@@ -0,0 +1,133 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.*;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+
+import java.rmi.RemoteException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server delegate stub of a provision service: each remote subscriber is wrapped by a local {@link BatchingSubscriber},
+ * which is subscribed to the service and delivers the data items to the remote subscriber according to the
+ * {@link CallbackPolicy}.
+ */
+public abstract class AbstractProvisionServiceDelegate<T extends AbstractDataItem, K extends AbstractDataItemFilter<T>, U extends IDataItemSubscriber<T>, V extends IDataItemProvisionService<U, K, T>> implements IDataItemProvisionService<U, K, T> {
+
+    private static final Logger LOG = Logger.getLogger(AbstractProvisionServiceDelegate.class.getName());
+
+    protected final V delegate;
+
+    private final CallbackPolicy policy;
+
+    private final Map<U, LocalSubscriber> remote2local = new ConcurrentHashMap<>();
+
+    public AbstractProvisionServiceDelegate(V delegate, CallbackPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+    }
+
+    @Override
+    public void subscribe(U subscriber, K filter) throws RemoteException {
+        LocalSubscriber local = remote2local.computeIfAbsent(subscriber, LocalSubscriber::new);
+        delegate.subscribe(local.subscriber, filter);
+    }
+
+    @Override
+    public void unsubscribe(U subscriber) throws RemoteException {
+        LocalSubscriber local = remote2local.remove(subscriber);
+        if(local != null) {
+            local.batching.terminate();
+            delegate.unsubscribe(local.subscriber);
+        }
+    }
+
+    @Override
+    public List<T> retrieve(Instant startTime, int numRecords, RetrievalDirection direction, K filter) throws ReatmetricException, RemoteException {
+        return delegate.retrieve(startTime, numRecords, direction, filter);
+    }
+
+    @Override
+    public List<T> retrieve(T startItem, int numRecords, RetrievalDirection direction, K filter) throws ReatmetricException, RemoteException {
+        return delegate.retrieve(startItem, numRecords, direction, filter);
+    }
+
+    @Override
+    public List<T> retrieve(Instant startTime, Instant endTime, K filter) throws ReatmetricException, RemoteException {
+        return delegate.retrieve(startTime, endTime, filter);
+    }
+
+    /**
+     * Unsubscribe all the remote subscribers.
+     */
+    public void terminate() {
+        for(U subscriber : remote2local.keySet()) {
+            try {
+                unsubscribe(subscriber);
+            } catch (RemoteException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Cannot unsubscribe " + subscriber + " in delegate " + getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void remoteFailed(U remote, LocalSubscriber local) {
+        // Remove the registration only if it was not replaced in the meantime
+        if(remote2local.remove(remote, local)) {
+            try {
+                delegate.unsubscribe(local.subscriber);
+            } catch (RemoteException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Cannot unsubscribe " + remote + " in delegate " + getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Adapt the provided subscriber to the type of subscriber required by the service.
+     *
+     * @param subscriber the subscriber
+     * @return the adapted subscriber
+     */
+    protected abstract U toSubscriber(IDataItemSubscriber<T> subscriber);
+
+    /**
+     * Return the function computing the key of the state reported by a data item, used for the conflation of the data
+     * items. If the data items of the service cannot be conflated (the default), this method returns null.
+     *
+     * @return the conflation key function, or null if the data items cannot be conflated
+     */
+    protected Function<T, Object> conflationKey() {
+        return null;
+    }
+
+    private final class LocalSubscriber {
+        private final BatchingSubscriber<T> batching;
+        private final U subscriber;
+
+        private LocalSubscriber(U remote) {
+            this.batching = new BatchingSubscriber<>(remote, policy, conflationKey(), () -> remoteFailed(remote, this));
+            this.subscriber = toSubscriber(batching);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.activity.*;
+
+import java.rmi.RemoteException;
+import java.util.function.Function;
+
+public class ActivityOccurrenceDataProvisionServiceDelegate extends AbstractStateProvisionServiceDelegate<ActivityOccurrenceData, ActivityOccurrenceDataFilter, IActivityOccurrenceDataSubscriber, IActivityOccurrenceDataProvisionService> implements IActivityOccurrenceDataProvisionService {
+
+    public ActivityOccurrenceDataProvisionServiceDelegate(IActivityOccurrenceDataProvisionService delegate, CallbackPolicy policy) {
+        super(delegate, policy);
+    }
+
+    @Override
+    protected IActivityOccurrenceDataSubscriber toSubscriber(IDataItemSubscriber<ActivityOccurrenceData> subscriber) {
+        return subscriber::dataItemsReceived;
+    }
+
+    @Override
+    protected Function<ActivityOccurrenceData, Object> conflationKey() {
+        return ActivityOccurrenceData::getInternalId;
+    }
+
+    @Override
+    public ActivityDescriptor getDescriptor(SystemEntityPath path) throws ReatmetricException, RemoteException {
+        return delegate.getDescriptor(path);
+    }
+
+    @Override
+    public ActivityDescriptor getDescriptor(int externalId) throws ReatmetricException, RemoteException {
+        return delegate.getDescriptor(externalId);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.AbstractDataItem;
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local subscriber, which collects the data items delivered by a provision service and forwards them to a remote
+ * subscriber with a dedicated thread, according to the configured {@link CallbackPolicy}. The delivering thread of the
+ * service is therefore never blocked by the remote invocation.
+ *
+ * @param <T> the type of data item
+ */
+final class BatchingSubscriber<T extends AbstractDataItem> implements IDataItemSubscriber<T> {
+
+    private static final Logger LOG = Logger.getLogger(BatchingSubscriber.class.getName());
+
+    private final IDataItemSubscriber<T> remote;
+    private final CallbackPolicy policy;
+    private final Function<T, Object> conflationKey;
+    private final Runnable onFailure;
+    private final Thread thread;
+
+    // Access protected by this object: if conflationKey is null, the map is not used
+    private final List<T> pendingItems = new ArrayList<>();
+    private final Map<Object, T> pendingStates = new LinkedHashMap<>();
+    private boolean running = true;
+    private boolean overflow = false;
+
+    /**
+     * @param remote the remote subscriber
+     * @param policy the callback policy
+     * @param conflationKey the function computing the conflation key of a data item, or null if the data items cannot be conflated
+     * @param onFailure the action to run if the remote subscriber cannot be notified, or it is too slow
+     */
+    BatchingSubscriber(IDataItemSubscriber<T> remote, CallbackPolicy policy, Function<T, Object> conflationKey, Runnable onFailure) {
+        this.remote = remote;
+        this.policy = policy;
+        this.conflationKey = policy.isConflate() ? conflationKey : null;
+        this.onFailure = onFailure;
+        this.thread = new Thread(this::run, "ReatMetric Remoting - " + remote + " delivery thread");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void dataItemsReceived(List<T> dataItems) {
+        synchronized (this) {
+            if(!running || overflow) {
+                return;
+            }
+            boolean wasEmpty = pendingItems.isEmpty() && pendingStates.isEmpty();
+            if(conflationKey != null) {
+                for(T item : dataItems) {
+                    Object key = conflationKey.apply(item);
+                    // Remove first, so that the iteration order reflects the last update
+                    pendingStates.remove(key);
+                    pendingStates.put(key, item);
+                }
+            } else {
+                pendingItems.addAll(dataItems);
+            }
+            if(pendingItems.size() + pendingStates.size() > policy.getMaxPendingItems()) {
+                overflow = true;
+            }
+            // Wake up the delivery thread only if needed: while aggregating, it waits for the end of the window
+            if(wasEmpty || overflow) {
+                notifyAll();
+            }
+        }
+    }
+
+    void terminate() {
+        synchronized (this) {
+            running = false;
+            pendingItems.clear();
+            pendingStates.clear();
+            notifyAll();
+        }
+    }
+
+    private void run() {
+        while(true) {
+            List<T> toDeliver;
+            synchronized (this) {
+                while(running && !overflow && pendingItems.isEmpty() && pendingStates.isEmpty()) {
+                    if(!waitFor(0)) {
+                        return;
+                    }
+                }
+                if(!running) {
+                    return;
+                }
+                if(!overflow && policy.getWindowMillis() > 0) {
+                    // Aggregate the data items received in the window
+                    long deadline = System.currentTimeMillis() + policy.getWindowMillis();
+                    long now;
+                    while(running && !overflow && (now = System.currentTimeMillis()) < deadline) {
+                        if(!waitFor(deadline - now)) {
+                            return;
+                        }
+                    }
+                    if(!running) {
+                        return;
+                    }
+                }
+                if(overflow) {
+                    break;
+                }
+                toDeliver = new ArrayList<>(pendingItems.size() + pendingStates.size());
+                toDeliver.addAll(pendingItems);
+                toDeliver.addAll(pendingStates.values());
+                pendingItems.clear();
+                pendingStates.clear();
+            }
+            try {
+                remote.dataItemsReceived(toDeliver);
+            } catch (RemoteException | RuntimeException e) {
+                LOG.log(Level.SEVERE, "Remote exception when notifying subscriber " + remote + ", terminating...", e);
+                terminate();
+                onFailure.run();
+                return;
+            }
+        }
+        // Overflow
+        LOG.log(Level.SEVERE, "Subscriber " + remote + " cannot keep up with the data rate (more than " + policy.getMaxPendingItems() + " pending items), terminating...");
+        terminate();
+        onFailure.run();
+    }
+
+    private boolean waitFor(long millis) {
+        try {
+            wait(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+/**
+ * Policy applied to the delivery of the data items to the remote subscribers.
+ */
+public final class CallbackPolicy {
+
+    private final int windowMillis;
+    private final boolean conflate;
+    private final int maxPendingItems;
+
+    /**
+     * Create a callback policy.
+     *
+     * @param windowMillis the time in milliseconds, during which the data items are aggregated before delivery. If 0,
+     *                     the data items are delivered as soon as possible.
+     * @param conflate if true, only the latest value of each data item is delivered, for the services delivering state
+     *                 information (parameters, alarms, activity occurrences, scheduled activities)
+     * @param maxPendingItems the maximum number of data items pending delivery: if exceeded, the remote subscriber is
+     *                        considered too slow and it is unsubscribed
+     */
+    public CallbackPolicy(int windowMillis, boolean conflate, int maxPendingItems) {
+        this.windowMillis = windowMillis;
+        this.conflate = conflate;
+        this.maxPendingItems = maxPendingItems;
+    }
+
+    public int getWindowMillis() {
+        return windowMillis;
+    }
+
+    public boolean isConflate() {
+        return conflate;
+    }
+
+    public int getMaxPendingItems() {
+        return maxPendingItems;
+    }
+
+    @Override
+    public String toString() {
+        return "CallbackPolicy{" +
+                "windowMillis=" + windowMillis +
+                ", conflate=" + conflate +
+                ", maxPendingItems=" + maxPendingItems +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.parameters.*;
+
+import java.rmi.RemoteException;
+import java.util.function.Function;
+
+public class ParameterDataProvisionServiceDelegate extends AbstractStateProvisionServiceDelegate<ParameterData, ParameterDataFilter, IParameterDataSubscriber, IParameterDataProvisionService> implements IParameterDataProvisionService {
+
+    public ParameterDataProvisionServiceDelegate(IParameterDataProvisionService delegate, CallbackPolicy policy) {
+        super(delegate, policy);
+    }
+
+    @Override
+    protected IParameterDataSubscriber toSubscriber(IDataItemSubscriber<ParameterData> subscriber) {
+        return subscriber::dataItemsReceived;
+    }
+
+    @Override
+    protected Function<ParameterData, Object> conflationKey() {
+        return ParameterData::getExternalId;
+    }
+
+    @Override
+    public ParameterDescriptor getDescriptor(SystemEntityPath path) throws ReatmetricException, RemoteException {
+        return delegate.getDescriptor(path);
+    }
+
+    @Override
+    public ParameterDescriptor getDescriptor(int externalId) throws ReatmetricException, RemoteException {
+        return delegate.getDescriptor(externalId);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+import eu.dariolucia.reatmetric.api.common.IUniqueId;
+import eu.dariolucia.reatmetric.api.common.exceptions.ReatmetricException;
+import eu.dariolucia.reatmetric.api.rawdata.*;
+
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+
+public class RawDataProvisionServiceDelegate extends AbstractProvisionServiceDelegate<RawData, RawDataFilter, IRawDataSubscriber, IRawDataProvisionService> implements IRawDataProvisionService {
+
+    public RawDataProvisionServiceDelegate(IRawDataProvisionService delegate, CallbackPolicy policy) {
+        super(delegate, policy);
+    }
+
+    @Override
+    protected IRawDataSubscriber toSubscriber(IDataItemSubscriber<RawData> subscriber) {
+        return subscriber::dataItemsReceived;
+    }
+
+    @Override
+    public RawData getRawDataContents(IUniqueId uniqueId) throws ReatmetricException, RemoteException {
+        return delegate.getRawDataContents(uniqueId);
+    }
+
+    @Override
+    public LinkedHashMap<String, String> getRenderedInformation(RawData rawData) throws ReatmetricException, RemoteException {
+        return delegate.getRenderedInformation(rawData);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *           http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+import eu.dariolucia.reatmetric.api.scheduler.*;
+
+import java.util.function.Function;
+
+public class ScheduledActivityDataProvisionServiceDelegate extends AbstractStateProvisionServiceDelegate<ScheduledActivityData, ScheduledActivityDataFilter, IScheduledActivityDataSubscriber, IScheduledActivityDataProvisionService> implements IScheduledActivityDataProvisionService {
+
+    public ScheduledActivityDataProvisionServiceDelegate(IScheduledActivityDataProvisionService delegate, CallbackPolicy policy) {
+        super(delegate, policy);
+    }
+
+    @Override
+    protected IScheduledActivityDataSubscriber toSubscriber(IDataItemSubscriber<ScheduledActivityData> subscriber) {
+        return subscriber::dataItemsReceived;
+    }
+
+    @Override
+    protected Function<ScheduledActivityData, Object> conflationKey() {
+        return ScheduledActivityData::getInternalId;
+    }
+}
@@ -9,6 +9,7 @@ open module eu.dariolucia.reatmetric.remoting {
 
     exports eu.dariolucia.reatmetric.remoting;
     exports eu.dariolucia.reatmetric.remoting.stubs;
+    exports eu.dariolucia.reatmetric.remoting.stream;
 
     uses eu.dariolucia.reatmetric.api.IReatmetricRegister;
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.remoting.stream;
+
+import eu.dariolucia.reatmetric.api.IReatmetricSystem;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.messages.IOperationalMessageProvisionService;
+import eu.dariolucia.reatmetric.api.messages.IOperationalMessageSubscriber;
+import eu.dariolucia.reatmetric.api.messages.OperationalMessage;
+import eu.dariolucia.reatmetric.api.messages.OperationalMessageFilter;
+import eu.dariolucia.reatmetric.api.messages.Severity;
+import eu.dariolucia.reatmetric.api.remoting.StreamingProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingServerTest {
+
+    private static final String SYSTEM_NAME = "Test System";
+
+    private final BlockingQueue<ServiceCall> serviceCalls = new LinkedBlockingQueue<>();
+
+    private StreamingServer server;
+    private Socket socket;
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StreamingServer(0, 8 * 1024);
+        server.register(SYSTEM_NAME, fakeSystem());
+        server.start();
+        socket = new Socket("localhost", server.getLocalPort());
+        socket.setSoTimeout(5000);
+        out = new DataOutputStream(socket.getOutputStream());
+        in = new DataInputStream(socket.getInputStream());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        socket.close();
+        server.stop();
+    }
+
+    @Test
+    void testLoopback() throws Exception {
+        // Hello
+        send(StreamingProtocol.helloFrame("Unknown System"));
+        assertEquals(StreamingProtocol.FRAME_ERROR, readFrame().type);
+        send(StreamingProtocol.helloFrame(SYSTEM_NAME));
+        assertEquals(StreamingProtocol.FRAME_HELLO_ACK, readFrame().type);
+        // Subscribe
+        OperationalMessageFilter filter = new OperationalMessageFilter(null, null, Collections.singletonList("Source A"), null);
+        send(StreamingProtocol.subscribeFrame(1, StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES, filter));
+        ServiceCall subscribe = nextCall();
+        assertEquals("subscribe", subscribe.method);
+        assertEquals(Collections.singleton("Source A"), subscribe.filter.getSourceList());
+        // Data delivery
+        subscribe.subscriber.dataItemsReceived(Collections.singletonList(message(1, "First")));
+        subscribe.subscriber.dataItemsReceived(Collections.singletonList(message(2, "Second")));
+        assertEquals("First", readData(1).get(0).getMessage());
+        assertEquals("Second", readData(1).get(0).getMessage());
+        // Filter update on the same subscription
+        send(StreamingProtocol.subscribeFrame(1, StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES, new OperationalMessageFilter(null, null, Collections.singletonList("Source B"), null)));
+        ServiceCall update = nextCall();
+        assertEquals("subscribe", update.method);
+        assertSame(subscribe.subscriber, update.subscriber);
+        assertEquals(Collections.singleton("Source B"), update.filter.getSourceList());
+        // Unsubscribe
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_UNSUBSCRIBE, 1, null));
+        ServiceCall unsubscribe = nextCall();
+        assertEquals("unsubscribe", unsubscribe.method);
+        assertSame(subscribe.subscriber, unsubscribe.subscriber);
+        // Connection loss: the remaining subscriptions are removed from the service
+        send(StreamingProtocol.subscribeFrame(2, StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES, null));
+        ServiceCall second = nextCall();
+        assertEquals("subscribe", second.method);
+        socket.close();
+        ServiceCall lost = nextCall();
+        assertEquals("unsubscribe", lost.method);
+        assertSame(second.subscriber, lost.subscriber);
+        assertNull(serviceCalls.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testSubscriptionErrorKeepsConnection() throws Exception {
+        send(StreamingProtocol.helloFrame(SYSTEM_NAME));
+        assertEquals(StreamingProtocol.FRAME_HELLO_ACK, readFrame().type);
+        // The filter cannot be deserialised: the subscription is rejected
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_SUBSCRIBE, 3, new byte[] { (byte) StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES.ordinal(), 1, 2, 3, 4 }));
+        Frame error = readFrame();
+        assertEquals(StreamingProtocol.FRAME_ERROR, error.type);
+        assertEquals(3, error.subscriptionId);
+        // Unknown service code
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_SUBSCRIBE, 4, new byte[] { 100 }));
+        error = readFrame();
+        assertEquals(StreamingProtocol.FRAME_ERROR, error.type);
+        assertEquals(4, error.subscriptionId);
+        // The connection is still usable
+        send(StreamingProtocol.subscribeFrame(5, StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES, null));
+        ServiceCall subscribe = nextCall();
+        subscribe.subscriber.dataItemsReceived(Collections.singletonList(message(1, "Still alive")));
+        assertEquals("Still alive", readData(5).get(0).getMessage());
+    }
+
+    @Test
+    void testOversizedHelloClosesConnection() throws Exception {
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_HELLO, 0, new byte[StreamingProtocol.MAX_HELLO_FRAME_LENGTH]));
+        assertConnectionClosed();
+    }
+
+    @Test
+    void testOversizedControlFrameClosesConnection() throws Exception {
+        send(StreamingProtocol.helloFrame(SYSTEM_NAME));
+        assertEquals(StreamingProtocol.FRAME_HELLO_ACK, readFrame().type);
+        send(StreamingProtocol.subscribeFrame(1, StreamingProtocol.StreamedService.OPERATIONAL_MESSAGES, null));
+        assertEquals("subscribe", nextCall().method);
+        // Above the limit of the server (8 KB)
+        send(StreamingProtocol.frame(StreamingProtocol.FRAME_SUBSCRIBE, 2, new byte[8 * 1024]));
+        assertConnectionClosed();
+        // The subscriptions of the connection are removed
+        assertEquals("unsubscribe", nextCall().method);
+    }
+
+    private void assertConnectionClosed() throws IOException {
+        try {
+            in.readInt();
+            fail("Connection expected to be closed");
+        } catch (EOFException | SocketException e) {
+            // Expected
+        }
+    }
+
+    private ServiceCall nextCall() throws InterruptedException {
+        ServiceCall call = serviceCalls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(call, "Service call expected");
+        return call;
+    }
+
+    private void send(ByteBuffer frame) throws IOException {
+        out.write(frame.array(), frame.position(), frame.remaining());
+        out.flush();
+    }
+
+    private Frame readFrame() throws IOException {
+        int length = in.readInt();
+        byte type = in.readByte();
+        int subscriptionId = in.readInt();
+        byte[] payload = new byte[length - StreamingProtocol.HEADER_LENGTH];
+        in.readFully(payload);
+        return new Frame(type, subscriptionId, payload);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<OperationalMessage> readData(int subscriptionId) throws IOException {
+        Frame frame = readFrame();
+        assertEquals(StreamingProtocol.FRAME_DATA, frame.type);
+        assertEquals(subscriptionId, frame.subscriptionId);
+        return (List<OperationalMessage>) StreamingProtocol.deserialize(frame.payload, 0, frame.payload.length);
+    }
+
+    private static OperationalMessage message(long id, String text) {
+        return new OperationalMessage(new LongUniqueId(id), Instant.now(), "ID", text, "Source A", Severity.INFO, null, null);
+    }
+
+    private IReatmetricSystem fakeSystem() {
+        IOperationalMessageProvisionService service = (IOperationalMessageProvisionService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IOperationalMessageProvisionService.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "subscribe":
+                    serviceCalls.add(new ServiceCall("subscribe", (IOperationalMessageSubscriber) args[0], (OperationalMessageFilter) args[1]));
+                    return null;
+                case "unsubscribe":
+                    serviceCalls.add(new ServiceCall("unsubscribe", (IOperationalMessageSubscriber) args[0], null));
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return (IReatmetricSystem) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IReatmetricSystem.class }, (proxy, method, args) -> {
+            if (method.getName().equals("getOperationalMessageMonitorService")) {
+                return service;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private static final class ServiceCall {
+        private final String method;
+        private final IOperationalMessageSubscriber subscriber;
+        private final OperationalMessageFilter filter;
+
+        private ServiceCall(String method, IOperationalMessageSubscriber subscriber, OperationalMessageFilter filter) {
+            this.method = method;
+            this.subscriber = subscriber;
+            this.filter = filter;
+        }
+    }
+
+    private static final class Frame {
+        private final byte type;
+        private final int subscriptionId;
+        private final byte[] payload;
+
+        private Frame(byte type, int subscriptionId, byte[] payload) {
+            this.type = type;
+            this.subscriptionId = subscriptionId;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.remoting.stubs;
+
+import eu.dariolucia.reatmetric.api.common.IDataItemSubscriber;
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.messages.OperationalMessage;
+import eu.dariolucia.reatmetric.api.messages.Severity;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.RemoteException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingSubscriberTest {
+
+    private final BlockingQueue<List<OperationalMessage>> delivered = new LinkedBlockingQueue<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final CountDownLatch failed = new CountDownLatch(1);
+
+    @Test
+    void testWindowAggregation() throws Exception {
+        BatchingSubscriber<OperationalMessage> subscriber = create(delivered::add, new CallbackPolicy(300, false, 1000));
+        try {
+            subscriber.dataItemsReceived(Arrays.asList(message(1, "A"), message(2, "B")));
+            subscriber.dataItemsReceived(Collections.singletonList(message(3, "A")));
+            subscriber.dataItemsReceived(Collections.singletonList(message(4, "C")));
+            // One delivery with all the items received in the window, in order of reception
+            assertEquals(Arrays.asList(1L, 2L, 3L, 4L), ids(next()));
+            assertNull(delivered.poll(400, TimeUnit.MILLISECONDS));
+            // The next item opens a new window
+            subscriber.dataItemsReceived(Collections.singletonList(message(5, "A")));
+            assertEquals(Collections.singletonList(5L), ids(next()));
+            assertEquals(0, failures.get());
+        } finally {
+            subscriber.terminate();
+        }
+    }
+
+    @Test
+    void testImmediateDelivery() throws Exception {
+        BatchingSubscriber<OperationalMessage> subscriber = create(delivered::add, new CallbackPolicy(0, true, 1000));
+        try {
+            subscriber.dataItemsReceived(Collections.singletonList(message(1, "A")));
+            assertEquals(Collections.singletonList(1L), ids(next()));
+            subscriber.dataItemsReceived(Collections.singletonList(message(2, "A")));
+            assertEquals(Collections.singletonList(2L), ids(next()));
+        } finally {
+            subscriber.terminate();
+        }
+    }
+
+    @Test
+    void testConflationKeepsLastUpdateOrder() throws Exception {
+        BatchingSubscriber<OperationalMessage> subscriber = create(delivered::add, new CallbackPolicy(300, true, 1000));
+        try {
+            subscriber.dataItemsReceived(Arrays.asList(message(1, "A"), message(2, "B"), message(3, "C")));
+            subscriber.dataItemsReceived(Collections.singletonList(message(4, "A")));
+            subscriber.dataItemsReceived(Arrays.asList(message(5, "B"), message(6, "D")));
+            // Only the last item per key, ordered by last update
+            assertEquals(Arrays.asList(3L, 4L, 5L, 6L), ids(next()));
+        } finally {
+            subscriber.terminate();
+        }
+    }
+
+    @Test
+    void testNoConflationIfDisabledByPolicy() throws Exception {
+        BatchingSubscriber<OperationalMessage> subscriber = create(delivered::add, new CallbackPolicy(300, false, 1000));
+        try {
+            subscriber.dataItemsReceived(Arrays.asList(message(1, "A"), message(2, "A"), message(3, "A")));
+            assertEquals(Arrays.asList(1L, 2L, 3L), ids(next()));
+        } finally {
+            subscriber.terminate();
+        }
+    }
+
+    @Test
+    void testOverflowTermination() throws Exception {
+        CountDownLatch inDelivery = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchingSubscriber<OperationalMessage> subscriber = create(items -> {
+            delivered.add(items);
+            inDelivery.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, new CallbackPolicy(0, false, 5));
+        subscriber.dataItemsReceived(Collections.singletonList(message(1, "A")));
+        assertTrue(inDelivery.await(5, TimeUnit.SECONDS));
+        // The remote subscriber is stuck: the pending items exceed the limit
+        for(int i = 2; i < 10; ++i) {
+            subscriber.dataItemsReceived(Collections.singletonList(message(i, "A")));
+        }
+        release.countDown();
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, failures.get());
+        assertEquals(Collections.singletonList(1L), ids(next()));
+        // Nothing else is delivered
+        subscriber.dataItemsReceived(Collections.singletonList(message(10, "A")));
+        assertNull(delivered.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, failures.get());
+    }
+
+    @Test
+    void testRemoteExceptionTermination() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        BatchingSubscriber<OperationalMessage> subscriber = create(items -> {
+            calls.incrementAndGet();
+            throw new RemoteException("Connection refused");
+        }, new CallbackPolicy(0, false, 1000));
+        subscriber.dataItemsReceived(Collections.singletonList(message(1, "A")));
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        // Nothing else is delivered
+        subscriber.dataItemsReceived(Collections.singletonList(message(2, "A")));
+        Thread.sleep(200);
+        assertEquals(1, calls.get());
+        assertEquals(1, failures.get());
+    }
+
+    private BatchingSubscriber<OperationalMessage> create(IDataItemSubscriber<OperationalMessage> remote, CallbackPolicy policy) {
+        return new BatchingSubscriber<>(remote, policy, OperationalMessage::getId, () -> {
+            failures.incrementAndGet();
+            failed.countDown();
+        });
+    }
+
+    private List<OperationalMessage> next() throws InterruptedException {
+        List<OperationalMessage> items = delivered.poll(5, TimeUnit.SECONDS);
+        assertNotNull(items, "Delivery expected");
+        return items;
+    }
+
+    private static List<Long> ids(List<OperationalMessage> items) {
+        return items.stream().map(o -> o.getInternalId().asLong()).collect(Collectors.toList());
+    }
+
+    private static OperationalMessage message(long internalId, String key) {
+        return new OperationalMessage(new LongUniqueId(internalId), Instant.now(), key, "Message " + internalId, "Test", Severity.INFO, null, null);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.scheduler;
+
+import eu.dariolucia.reatmetric.api.common.IUniqueId;
+import eu.dariolucia.reatmetric.api.scheduler.EventBasedSchedulingTrigger;
+import eu.dariolucia.reatmetric.api.scheduler.ScheduledActivityData;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Interval index of the scheduled tasks, organised as a timeline per resource. Each timeline keeps the tasks declaring
+ * the resource sorted by expected start time, together with the multiset of their expected durations: the tasks that
+ * can overlap a given time window [start, end] are the ones starting between (start - longest duration) and end, which
+ * are retrieved with a range query on the timeline.
+ *
+ * Event-based tasks and tasks without resources are not indexed, since they can never be in conflict.
+ *
+ * This class is not thread-safe: it is meant to be used only by the scheduler dispatcher thread.
+ */
+class ResourceTimeline {
+
+    private final Map<String, Timeline> resource2timeline = new HashMap<>();
+    private final Map<IUniqueId, Entry> task2entry = new HashMap<>();
+
+    /**
+     * Add the task to the index, or refresh its position if its expected start time or duration changed.
+     *
+     * @param task the task to index
+     */
+    void update(ScheduledTask task) {
+        ScheduledActivityData data = task.getCurrentData();
+        if(data == null || task.getRequest().getTrigger() instanceof EventBasedSchedulingTrigger || task.getRequest().getResources() == null || task.getRequest().getResources().isEmpty()) {
+            return;
+        }
+        Duration duration = data.getDuration() == null ? Duration.ZERO : data.getDuration();
+        Entry previous = task2entry.get(task.getId());
+        if(previous != null) {
+            if(previous.start.equals(data.getStartTime()) && previous.duration.equals(duration)) {
+                // Nothing changed
+                return;
+            }
+            remove(task);
+        }
+        Entry entry = new Entry(task, data.getStartTime(), duration);
+        task2entry.put(task.getId(), entry);
+        for(String resource : task.getRequest().getResources()) {
+            resource2timeline.computeIfAbsent(resource, k -> new Timeline()).add(entry);
+        }
+    }
+
+    /**
+     * Remove the task from the index, if present.
+     *
+     * @param task the task to remove
+     */
+    void remove(ScheduledTask task) {
+        Entry entry = task2entry.remove(task.getId());
+        if(entry != null) {
+            for(String resource : entry.task.getRequest().getResources()) {
+                Timeline timeline = resource2timeline.get(resource);
+                if(timeline != null) {
+                    timeline.remove(entry);
+                    if(timeline.isEmpty()) {
+                        resource2timeline.remove(resource);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the indexed tasks declaring at least one of the provided resources, whose expected execution window
+     * [start time, end time] intersects the provided window (bounds included). The returned tasks are candidates: the
+     * precise conflict check is left to {@link ScheduledTask#conflictsWith}.
+     *
+     * @param resources the resources
+     * @param start the start of the window
+     * @param end the end of the window
+     * @return the tasks overlapping the window on the provided resources, in no specific order
+     */
+    Set<ScheduledTask> overlapping(Set<String> resources, Instant start, Instant end) {
+        if(resources == null || resources.isEmpty() || task2entry.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<ScheduledTask> toReturn = new LinkedHashSet<>();
+        for(String resource : resources) {
+            Timeline timeline = resource2timeline.get(resource);
+            if(timeline != null) {
+                timeline.collectOverlapping(start, end, toReturn);
+            }
+        }
+        return toReturn;
+    }
+
+    void clear() {
+        resource2timeline.clear();
+        task2entry.clear();
+    }
+
+    private static final class Entry {
+
+        private static final Comparator<Entry> START_TIME_COMPARATOR = Comparator.comparing((Entry o) -> o.start).thenComparingLong(o -> o.sequence);
+
+        private final ScheduledTask task;
+        private final Instant start;
+        private final Duration duration;
+        private final Instant end;
+        private final long sequence;
+
+        private Entry(ScheduledTask task, Instant start, Duration duration) {
+            this.task = task;
+            this.start = start;
+            this.duration = duration;
+            this.end = start.plus(duration);
+            this.sequence = task.getId().asLong();
+        }
+
+        private Entry(Instant start, long sequence) {
+            this.task = null;
+            this.start = start;
+            this.duration = Duration.ZERO;
+            this.end = start;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Timeline {
+
+        private final NavigableSet<Entry> byStartTime = new TreeSet<>(Entry.START_TIME_COMPARATOR);
+        // Multiset of the durations in this timeline, to know the longest one
+        private final NavigableMap<Duration, Integer> durations = new TreeMap<>();
+
+        private void add(Entry entry) {
+            byStartTime.add(entry);
+            durations.merge(entry.duration, 1, Integer::sum);
+        }
+
+        private void remove(Entry entry) {
+            if(byStartTime.remove(entry)) {
+                durations.computeIfPresent(entry.duration, (k, v) -> v == 1 ? null : v - 1);
+            }
+        }
+
+        private boolean isEmpty() {
+            return byStartTime.isEmpty();
+        }
+
+        private void collectOverlapping(Instant start, Instant end, Set<ScheduledTask> toFill) {
+            if(byStartTime.isEmpty()) {
+                return;
+            }
+            // A task starting before (start - longest duration) ends before start
+            Instant earliestStart = start.minus(durations.lastKey());
+            for(Entry e : byStartTime.subSet(new Entry(earliestStart, Long.MIN_VALUE), true, new Entry(end, Long.MAX_VALUE), true)) {
+                if(!e.end.isBefore(start)) {
+                    toFill.add(e.task);
+                }
+            }
+        }
+    }
+}
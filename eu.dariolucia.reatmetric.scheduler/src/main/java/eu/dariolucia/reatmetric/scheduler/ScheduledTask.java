@@ -32,9 +32,6 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,7 +43,7 @@ public class ScheduledTask {
     public static final DateTimeFormatter DATE_TIME_FORMATTER_SECONDS = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.of("UTC"));
 
     private final Scheduler scheduler;
-    private final Timer timer;
+    private final TimingEngine timingEngine;
     private final ExecutorService dispatcher;
     private final IUniqueId taskId;
 
@@ -54,13 +51,13 @@ public class ScheduledTask {
     private ScheduledActivityData currentData;
 
     /**
-     * TimerTask for absolute time scheduling requests
+     * Timed action for absolute time, relative time (with delay) and now scheduling requests
      */
-    private volatile TimerTask timingHandler;
+    private volatile TimingEngine.Handle timingHandler;
     /**
-     * TimerTask activated when the activity has a latest execution time set
+     * Timed action activated when the activity has a latest execution time set
      */
-    private volatile TimerTask latestExecutionTimeHandler;
+    private volatile TimingEngine.Handle latestExecutionTimeHandler;
     /**
      * The activity occurrence ID of the activity once invoked
      */
@@ -74,10 +71,10 @@ public class ScheduledTask {
      */
     private Instant lastEventTriggerInvocation = null;
 
-    public ScheduledTask(Scheduler scheduler, Timer timer, ExecutorService dispatcher, SchedulingRequest request, IUniqueId originalId) {
+    public ScheduledTask(Scheduler scheduler, TimingEngine timingEngine, ExecutorService dispatcher, SchedulingRequest request, IUniqueId originalId) {
         this.scheduler = scheduler;
         this.request = request;
-        this.timer = timer;
+        this.timingEngine = timingEngine;
         this.dispatcher = dispatcher;
         if(originalId != null) {
             this.taskId = originalId;
@@ -86,9 +83,9 @@ public class ScheduledTask {
         }
     }
 
-    public ScheduledTask(Scheduler scheduler, Timer timer, ExecutorService dispatcher, ScheduledActivityData item) {
+    public ScheduledTask(Scheduler scheduler, TimingEngine timingEngine, ExecutorService dispatcher, ScheduledActivityData item) {
         this.scheduler = scheduler;
-        this.timer = timer;
+        this.timingEngine = timingEngine;
         this.dispatcher = dispatcher;
         this.taskId = item.getInternalId();
         this.currentData = item;
@@ -134,46 +131,22 @@ public class ScheduledTask {
             }
             // Depending on the trigger
             if (request.getTrigger() instanceof AbsoluteTimeSchedulingTrigger) {
-                timingHandler = new TimerTask() {
-                    @Override
-                    public void run() {
-                        if(this == timingHandler) {
-                            runTask(false);
-                        }
-                    }
-                };
-                timer.schedule(timingHandler, new Date(((AbsoluteTimeSchedulingTrigger) request.getTrigger()).getReleaseTime().toEpochMilli()));
+                timingHandler = timingEngine.schedule(((AbsoluteTimeSchedulingTrigger) request.getTrigger()).getReleaseTime(), () -> doRunTask(false));
             } else if(request.getTrigger() instanceof RelativeTimeSchedulingTrigger) {
                 // Do nothing unless the task shall actually start: if no ID is in the scheduler map, it can start at the given delay, if set
                 if(scheduler.areAllCompleted(((RelativeTimeSchedulingTrigger) request.getTrigger()).getPredecessors())) {
                     if(((RelativeTimeSchedulingTrigger) request.getTrigger()).getDelayTime() <= 0) {
                         runTask(false);
                     } else {
-                        timingHandler = new TimerTask() {
-                            @Override
-                            public void run() {
-                                if(this == timingHandler) {
-                                    runTask(false);
-                                }
-                            }
-                        };
-                        timer.schedule(timingHandler, ((RelativeTimeSchedulingTrigger) request.getTrigger()).getDelayTime() * 1000);
+                        timingHandler = timingEngine.schedule(((RelativeTimeSchedulingTrigger) request.getTrigger()).getDelayTime() * 1000, () -> doRunTask(false));
                     }
                 }
             } else if(request.getTrigger() instanceof EventBasedSchedulingTrigger) {
                 scheduler.updateEventFilter(((EventBasedSchedulingTrigger) request.getTrigger()).getEvent(), false);
             } else if(request.getTrigger() instanceof NowSchedulingTrigger) {
                 // Like an AbsoluteTimeSchedulingTrigger to be executed now
-                timingHandler = new TimerTask() {
-                    @Override
-                    public void run() {
-                        if(this == timingHandler) {
-                            runTask(false);
-                        }
-                    }
-                };
                 // Execute now
-                timer.schedule(timingHandler, 0L);
+                timingHandler = timingEngine.schedule(0L, () -> doRunTask(false));
             } else {
                 throw new SchedulingException("Cannot update trigger evaluation for scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + ", trigger type " + request.getTrigger() + " not recognised");
             }
@@ -292,86 +265,93 @@ public class ScheduledTask {
         if(request.getTrigger() instanceof EventBasedSchedulingTrigger) {
             throw new IllegalStateException("runTask invoked on an event based task, software bug");
         }
-        dispatcher.submit(() -> {
-            // Guard condition: you can reach this only if SCHEDULED or WAITING. If this happens in a different situation, error
-            if(currentData.getState() != SchedulingState.SCHEDULED && currentData.getState() != SchedulingState.WAITING) {
-                LOG.log(Level.SEVERE, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " with state " + currentData.getState() + " requested to execute, request ignored due to unexpected state transition error.");
-                return;
-            }
-            // Try to run the activity if the scheduler is enabled, if all resources are available and if all constraints are satisfied
-            Instant newStartTime = Instant.now();
-            // First, check the resources
-            if(!scheduler.registerResources(request.getResources())) {
-                // Not all the resources are available: check the conflict strategy ....
-                switch(request.getConflictStrategy()) {
-                    case WAIT: {
-                        //
-                        if(lastPossibleExecution) {
-                            LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, ignoring task (last possible execution attempted).");
-                            // Expired, therefore task ignored and move on ...
-                            this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
-                                    null,
-                                    SchedulingState.IGNORED);
-                            checkForTaskRemoval();
-                        } else {
-                            if(this.currentData != null && this.currentData.getState() != SchedulingState.WAITING) {
-                                LOG.log(Level.INFO, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, entering waiting state.");
-                            }
-                            // Wait for some update in the resource status
-                            this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
-                                    null,
-                                    SchedulingState.WAITING);
-                            startLatestExecutionTimer();
-                            scheduler.notifyTask(this);
-                        }
-                    }
-                    break;
-                    case DO_NOT_START_AND_FORGET: {
-                        LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, ignoring task.");
-                        // Mark as ignored and move on ...
+        dispatcher.submit(() -> doRunTask(lastPossibleExecution));
+    }
+
+    /**
+     * To be called from the dispatcher thread.
+     */
+    private void doRunTask(boolean lastPossibleExecution) {
+        // Guard condition: you can reach this only if SCHEDULED or WAITING. If this happens in a different situation, error
+        if(currentData.getState() != SchedulingState.SCHEDULED && currentData.getState() != SchedulingState.WAITING) {
+            LOG.log(Level.SEVERE, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " with state " + currentData.getState() + " requested to execute, request ignored due to unexpected state transition error.");
+            return;
+        }
+        // Try to run the activity if the scheduler is enabled, if all resources are available and if all constraints are satisfied
+        Instant newStartTime = Instant.now();
+        // First, check the resources
+        if(!scheduler.registerResources(request.getResources())) {
+            // Not all the resources are available: check the conflict strategy ....
+            switch(request.getConflictStrategy()) {
+                case WAIT: {
+                    //
+                    if(lastPossibleExecution) {
+                        LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, ignoring task (last possible execution attempted).");
+                        // Expired, therefore task ignored and move on ...
                         this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
                                 null,
                                 SchedulingState.IGNORED);
                         checkForTaskRemoval();
-                    }
-                    break;
-                    case ABORT_OTHER_AND_START: {
-                        LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, aborting other tasks,");
-                        scheduler.abortConflictingTasksWith(this);
-                        runTask(lastPossibleExecution);
-                    }
-                    break;
-                }
-            } else {
-                this.resourcesAcquired = true;
-                // The resources are available and now assigned to this task - Check scheduler status
-                if(scheduler.isEnabled()) {
-                    // Start the task now
-                    stopLatestExecutionTimer();
-                    try {
-                        LOG.log(Level.INFO, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " dispatched for execution");
-                        this.activityId = this.scheduler.startActivity(this.request.getRequest());
-                        scheduler.registerActivity(this.activityId, this);
-                        this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
-                                this.activityId,
-                                SchedulingState.RUNNING);
-                        scheduler.notifyTask(this);
-                    } catch (ReatmetricException e) {
-                        // Fail and remove
+                    } else {
+                        if(this.currentData != null && this.currentData.getState() != SchedulingState.WAITING) {
+                            LOG.log(Level.INFO, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, entering waiting state.");
+                        }
+                        // Wait for some update in the resource status
                         this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
                                 null,
-                                SchedulingState.FINISHED_FAIL);
-                        checkForTaskRemoval();
+                                SchedulingState.WAITING);
+                        startLatestExecutionTimer();
+                        scheduler.waitForResources(this);
+                        scheduler.notifyTask(this);
                     }
-                } else {
-                    LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " disabled, not executing");
-                    // Release the resources and report the task as DISABLED. This task is dead if not an event-based task.
-                    this.currentData = buildUpdatedSchedulingActivityData(newStartTime, null,
-                            SchedulingState.DISABLED);
+                }
+                break;
+                case DO_NOT_START_AND_FORGET: {
+                    LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, ignoring task.");
+                    // Mark as ignored and move on ...
+                    this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
+                            null,
+                            SchedulingState.IGNORED);
+                    checkForTaskRemoval();
+                }
+                break;
+                case ABORT_OTHER_AND_START: {
+                    LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " requested to execute, resource conflict detected, aborting other tasks,");
+                    scheduler.abortConflictingTasksWith(this);
+                    runTask(lastPossibleExecution);
+                }
+                break;
+            }
+        } else {
+            this.resourcesAcquired = true;
+            scheduler.stopWaitingForResources(this);
+            // The resources are available and now assigned to this task - Check scheduler status
+            if(scheduler.isEnabled()) {
+                // Start the task now
+                stopLatestExecutionTimer();
+                try {
+                    LOG.log(Level.INFO, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " dispatched for execution");
+                    this.activityId = this.scheduler.startActivity(this.request.getRequest());
+                    scheduler.registerActivity(this.activityId, this);
+                    this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
+                            this.activityId,
+                            SchedulingState.RUNNING);
+                    scheduler.notifyTask(this);
+                } catch (ReatmetricException e) {
+                    // Fail and remove
+                    this.currentData = buildUpdatedSchedulingActivityData(newStartTime,
+                            null,
+                            SchedulingState.FINISHED_FAIL);
                     checkForTaskRemoval();
                 }
+            } else {
+                LOG.log(Level.WARNING, "Scheduled task " + getRequest().getRequest().getPath().asString() + "(" + currentData.getExternalId() + ")" + " disabled, not executing");
+                // Release the resources and report the task as DISABLED. This task is dead if not an event-based task.
+                this.currentData = buildUpdatedSchedulingActivityData(newStartTime, null,
+                        SchedulingState.DISABLED);
+                checkForTaskRemoval();
             }
-        });
+        }
     }
 
     private void checkForTaskRemoval() {
@@ -388,15 +368,7 @@ public class ScheduledTask {
 
     private void startLatestExecutionTimer() {
         if(this.latestExecutionTimeHandler == null && this.request.getLatestInvocationTime() != null) {
-            this.latestExecutionTimeHandler = new TimerTask() {
-                @Override
-                public void run() {
-                    if(latestExecutionTimeHandler == this) {
-                        runTask(true);
-                    }
-                }
-            };
-            this.timer.schedule(this.latestExecutionTimeHandler, new Date(this.request.getLatestInvocationTime().toEpochMilli()));
+            this.latestExecutionTimeHandler = this.timingEngine.schedule(this.request.getLatestInvocationTime(), () -> doRunTask(true));
         }
     }
 
@@ -66,10 +66,6 @@ public class Scheduler implements IScheduler, IInternalResolver {
     private final Map<IScheduledActivityDataSubscriber, ScheduledActivityDataFilter> subscriberIndex = new LinkedHashMap<>();
     private final AtomicLong sequencer = new AtomicLong(0);
 
-    /**
-     * A timer that reports events into the eventQueue, based on time-based, absolute constraints.
-     */
-    private final Timer timer = new Timer("Reatmetric Scheduler Timer", true);
     /**
      * The dispatcher thread.
      */
@@ -78,6 +74,10 @@ public class Scheduler implements IScheduler, IInternalResolver {
         t.setDaemon(true);
         return t;
     });
+    /**
+     * The timeline of the time-based constraints of the scheduled tasks, releasing them to the dispatcher thread when due.
+     */
+    private final TimingEngine timingEngine = new TimingEngine("Reatmetric Scheduler Timer", dispatcher);
     /**
      * The notifier thread.
      */
@@ -90,18 +90,59 @@ public class Scheduler implements IScheduler, IInternalResolver {
      * This map allows quick access to the scheduled tasks by ID.
      */
     private final Map<IUniqueId, ScheduledTask> id2scheduledTask = new HashMap<>();
+    /**
+     * This map allows quick access to the scheduled tasks by external ID.
+     */
+    private final Map<String, ScheduledTask> externalId2scheduledTask = new HashMap<>();
+    /**
+     * This map allows quick access to the scheduled tasks loaded by a given source.
+     */
+    private final Map<String, Set<ScheduledTask>> source2scheduledTasks = new HashMap<>();
+    /**
+     * This map allows quick access to the event-based scheduled tasks triggered by a given event.
+     */
+    private final Map<SystemEntityPath, Set<ScheduledTask>> event2scheduledTasks = new HashMap<>();
+    /**
+     * This map allows quick access to the relative-time scheduled tasks waiting for a given predecessor (by external ID).
+     */
+    private final Map<String, Set<ScheduledTask>> predecessor2scheduledTasks = new HashMap<>();
     /**
      * This map allows quick access to the task handling a specific activity occurrence execution.
      */
     private final Map<IUniqueId, ScheduledTask> activityId2scheduledTask = new HashMap<>();
+    /**
+     * Per-resource timeline of the scheduled tasks, used to look up the tasks that can conflict with a request.
+     */
+    private final ResourceTimeline resourceTimeline = new ResourceTimeline();
     /**
      * The set if resources currently taken by running scheduled tasks.
      */
     private final Set<String> currentlyUsedResources = new TreeSet<>();
     /**
-     * For event-based activities.
+     * For each resource, the tasks in WAITING state waiting for it.
+     */
+    private final Map<String, Set<ScheduledTask>> resource2waitingTasks = new HashMap<>();
+    /**
+     * For each task in WAITING state, the sequence number assigned when it started waiting, used to re-evaluate the
+     * waiting tasks in order of arrival when resources are released.
+     */
+    private final Map<ScheduledTask, Long> waitingTask2arrival = new HashMap<>();
+    private long waitingSequencer = 0;
+    /**
+     * When not null, a bulk operation is in progress: the updated states of the scheduled tasks are collected here (last
+     * state per task) and stored/distributed all together at the end of the operation.
+     */
+    private Map<IUniqueId, ScheduledActivityData> pendingBatch = null;
+    /**
+     * When not null, a bulk scheduling operation is in progress: the tasks removed during the operation (replaced tasks
+     * and tasks removed by {@link CreationConflictStrategy#REMOVE_PREVIOUS}) are collected here, in order of removal, so
+     * that they can be restored if the operation is rolled back.
+     */
+    private List<ScheduledTask> bulkRemovedTasks = null;
+    /**
+     * For event-based activities: number of scheduled tasks triggered by each subscribed event.
      */
-    private final List<SystemEntityPath> subscribedEvents = new LinkedList<>();
+    private final Map<SystemEntityPath, Integer> subscribedEvents = new HashMap<>();
     /**
      * Keeps track of the scheduler enablement state
      */
@@ -155,6 +196,7 @@ public class Scheduler implements IScheduler, IInternalResolver {
     @Override
     public void dispose() {
         LOG.info("Disposing scheduler");
+        timingEngine.dispose();
         dispatcher.submit(this::cleanUp);
         dispatcher.shutdown();
         try {
@@ -255,6 +297,7 @@ public class Scheduler implements IScheduler, IInternalResolver {
                             Arrays.asList(SchedulingState.SCHEDULED, SchedulingState.WAITING, SchedulingState.RUNNING), null),
                     Instant.now().minusSeconds(36 * 3600L)); // Start time: 36 hours in the past
 
+            startBatch();
             restoreActivitiesFromList(scheduledItems);
 
             // Now it is the time of the event-based activities, start and end time set to EPOCH
@@ -267,6 +310,8 @@ public class Scheduler implements IScheduler, IInternalResolver {
 
         } catch (ArchiveException | SchedulingException e) {
             LOG.log(Level.SEVERE, "Cannot restore scheduler state from archive: " + e.getMessage(), e);
+        } finally {
+            flushBatch();
         }
     }
 
@@ -338,10 +383,11 @@ public class Scheduler implements IScheduler, IInternalResolver {
                 if(isToBeScheduled(item, now)) {
                     LOG.info("Restoring scheduled activity: " + item);
                     // Create ScheduledTask
-                    ScheduledTask st = new ScheduledTask(this, timer, dispatcher, item);
-                    id2scheduledTask.put(st.getId(), st);
+                    ScheduledTask st = new ScheduledTask(this, timingEngine, dispatcher, item);
+                    indexTask(st);
                     // Prepare execution event depending on trigger (absolute, relative, event)
                     st.armTrigger();
+                    resourceTimeline.update(st);
                 } else {
                     LOG.warning("Scheduled activity not restored (ABORTED): " + item);
                     // ABORTED, it will never start
@@ -412,21 +458,15 @@ public class Scheduler implements IScheduler, IInternalResolver {
             RelativeTimeSchedulingTrigger trigger = (RelativeTimeSchedulingTrigger) item.getTrigger();
             // Check that predecessors are all in the schedule and with right state
             for(String extId : trigger.getPredecessors()) {
-                boolean found = false;
-                for(ScheduledTask st : id2scheduledTask.values()) {
-                    if(Objects.equals(st.getCurrentData().getExternalId(), extId)) {
-                        found = true;
-                        // If the status is SCHEDULED --> OK, else return false
-                        if(st.getCurrentData().getState() != SchedulingState.SCHEDULED) {
-                            return false;
-                        }
-                        break;
-                    }
-                }
-                if(!found) {
+                ScheduledTask st = lookUpScheduledTaskByExternalId(extId);
+                if(st == null) {
                     // Well, in the past or non-existing --> do not schedule
                     return false;
                 }
+                // If the status is SCHEDULED --> OK, else return false
+                if(st.getCurrentData().getState() != SchedulingState.SCHEDULED) {
+                    return false;
+                }
             }
             return true;
         } else {
@@ -509,12 +549,17 @@ public class Scheduler implements IScheduler, IInternalResolver {
 
     void internalScheduleRequest(List<SchedulingRequest> requests, CreationConflictStrategy conflictStrategy) {
         dispatcher.submit(() -> {
-            for(SchedulingRequest request : requests) {
-                try {
-                    scheduleTask(request, conflictStrategy, null);
-                } catch (SchedulingException e) {
-                    LOG.log(Level.WARNING, "Cannot schedule request " + request.getExternalId() + ": " + e.getMessage(), e);
+            startBatch();
+            try {
+                for (SchedulingRequest request : requests) {
+                    try {
+                        scheduleTask(request, conflictStrategy, null);
+                    } catch (SchedulingException e) {
+                        LOG.log(Level.WARNING, "Cannot schedule request " + request.getExternalId() + ": " + e.getMessage(), e);
+                    }
                 }
+            } finally {
+                flushBatch();
             }
         });
     }
@@ -534,24 +579,13 @@ public class Scheduler implements IScheduler, IInternalResolver {
      */
     private ScheduledActivityData scheduleTask(SchedulingRequest request, CreationConflictStrategy conflictStrategy, IUniqueId originalId) throws SchedulingException {
         // Check if an external ID exists already
-        for(ScheduledTask st : id2scheduledTask.values()) {
-            if(Objects.equals(st.getCurrentData().getExternalId(),request.getExternalId())) {
-                throw new SchedulingException("Supplied external ID is already assigned to one scheduled activity: " + request.getExternalId());
-            }
+        if(externalId2scheduledTask.containsKey(request.getExternalId())) {
+            throw new SchedulingException("Supplied external ID is already assigned to one scheduled activity: " + request.getExternalId());
         }
         // Check if the resources are specified correctly (no whitespaces)
-        if(request.getResources() == null) {
-            throw new SchedulingException("Resources cannot be null");
-        }
-        for(String res : request.getResources()) {
-            if(res.isBlank()) {
-                throw new SchedulingException("Resource '" + res + "' is blank");
-            } else if(res.indexOf(' ') != -1) {
-                throw new SchedulingException("Resource '" + res + "' contains whitespaces (forbidden)");
-            }
-        }
-        // Check if the creation conflict strategy allows for the scheduling
-        List<ScheduledTask> conflictingTasks = computeConflicts(Collections.singletonList(request));
+        checkResources(request);
+        // Check if the creation conflict strategy allows for the scheduling: conflicts are irrelevant if the request is added anyway
+        List<ScheduledTask> conflictingTasks = conflictStrategy == CreationConflictStrategy.ADD_ANYWAY ? Collections.emptyList() : computeConflicts(Collections.singletonList(request));
         if (conflictingTasks.isEmpty() || conflictStrategy == CreationConflictStrategy.ADD_ANYWAY) {
             // Add the request as-is
             ScheduledActivityData toReturn = addTask(request, originalId);
@@ -578,6 +612,97 @@ public class Scheduler implements IScheduler, IInternalResolver {
         }
     }
 
+    private void checkResources(SchedulingRequest request) throws SchedulingException {
+        if(request.getResources() == null) {
+            throw new SchedulingException("Resources cannot be null");
+        }
+        for(String res : request.getResources()) {
+            if(res.isBlank()) {
+                throw new SchedulingException("Resource '" + res + "' is blank");
+            } else if(res.indexOf(' ') != -1) {
+                throw new SchedulingException("Resource '" + res + "' contains whitespaces (forbidden)");
+            }
+        }
+    }
+
+    /**
+     * To be called from the dispatcher thread.
+     *
+     * Schedule the provided requests as a single transaction, replacing the provided tasks. The whole set of requests
+     * is validated once (external IDs, resources, conflicts with the tasks not being replaced) before modifying the
+     * schedule. The state changes are then collected and stored in the archive in a single batch, and distributed to
+     * the subscribers with a single notification. If a request is rejected while being added (e.g. due to a conflict
+     * with another request in the same list, with {@link CreationConflictStrategy#ABORT}), the schedule is restored to
+     * its state before the operation.
+     *
+     * @param requests the requests to schedule
+     * @param conflictStrategy the strategy resolution at creation time
+     * @param toReplace the scheduled tasks to remove before adding the new requests
+     * @return the states of the created scheduled tasks
+     * @throws SchedulingException if the validation fails or if the operation is aborted due to {@link CreationConflictStrategy#ABORT}
+     */
+    private List<ScheduledActivityData> scheduleBulk(List<SchedulingRequest> requests, CreationConflictStrategy conflictStrategy, Collection<ScheduledTask> toReplace) throws SchedulingException {
+        // Validate the requests
+        Set<String> toBeAdded = new HashSet<>();
+        for (SchedulingRequest sr : requests) {
+            if (!toBeAdded.add(sr.getExternalId())) {
+                throw new SchedulingException("One supplied external ID is duplicated in the request: " + sr.getExternalId());
+            }
+            ScheduledTask existing = externalId2scheduledTask.get(sr.getExternalId());
+            if (existing != null && !toReplace.contains(existing)) {
+                throw new SchedulingException("Supplied external ID is already assigned to one scheduled activity: " + sr.getExternalId());
+            }
+            checkResources(sr);
+        }
+        if (conflictStrategy == CreationConflictStrategy.ABORT) {
+            List<ScheduledTask> conflictingTasks = computeConflicts(requests);
+            conflictingTasks.removeAll(toReplace);
+            if (!conflictingTasks.isEmpty()) {
+                throw new SchedulingException("Conflict detected with provided scheduling requests: " + conflictingTasks);
+            }
+        }
+        // Apply
+        List<ScheduledActivityData> toReturn = new ArrayList<>(requests.size());
+        startBatch();
+        bulkRemovedTasks = new ArrayList<>();
+        try {
+            for (ScheduledTask st : toReplace) {
+                removeTask(st.getId());
+            }
+            try {
+                for (SchedulingRequest sr : requests) {
+                    ScheduledActivityData data = scheduleTask(sr, conflictStrategy, null);
+                    if (data != null) {
+                        toReturn.add(data);
+                    }
+                }
+            } catch (SchedulingException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Bulk scheduling of " + requests.size() + " requests rejected, restoring previous schedule: " + e.getMessage());
+                List<ScheduledTask> removedTasks = bulkRemovedTasks;
+                bulkRemovedTasks = null;
+                // Remove the added tasks, which were never stored nor distributed. Some of them might have been already
+                // removed by a later request of the same operation.
+                Set<IUniqueId> addedIds = new HashSet<>();
+                for (ScheduledActivityData data : toReturn) {
+                    addedIds.add(data.getInternalId());
+                    removeTask(data.getInternalId());
+                    pendingBatch.remove(data.getInternalId());
+                }
+                // Put back the replaced tasks and the tasks removed due to conflicts, which were present before the operation
+                for (ScheduledTask st : removedTasks) {
+                    if (!addedIds.contains(st.getId())) {
+                        addTask(st.getRequest(), st.getId());
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            bulkRemovedTasks = null;
+            flushBatch();
+        }
+        return toReturn;
+    }
+
     /**
      * To be called in the dispatcher thread.
      *
@@ -594,15 +719,13 @@ public class Scheduler implements IScheduler, IInternalResolver {
                 continue;
             }
             alreadyProcessedTasks.add(toCheck.getId());
-            // Now check
-            for(ScheduledTask task : id2scheduledTask.values()) {
-                if(task.getCurrentData().getState() == SchedulingState.SCHEDULED && task.getCurrentData().getTrigger() instanceof RelativeTimeSchedulingTrigger) {
-                    if(((RelativeTimeSchedulingTrigger) task.getCurrentData().getTrigger()).getPredecessors().contains(toCheck.getCurrentData().getExternalId())) {
-                        // Task potentially affected, start time to be recomputed
-                        boolean updated = task.updateStartTime();
-                        if(updated) {
-                            updatedTasks.add(task);
-                        }
+            // Now check the tasks having this task as predecessor
+            for(ScheduledTask task : predecessor2scheduledTasks.getOrDefault(toCheck.getCurrentData().getExternalId(), Collections.emptySet())) {
+                if(task.getCurrentData().getState() == SchedulingState.SCHEDULED) {
+                    // Task potentially affected, start time to be recomputed
+                    boolean updated = task.updateStartTime();
+                    if(updated) {
+                        updatedTasks.add(task);
                     }
                 }
             }
@@ -611,10 +734,11 @@ public class Scheduler implements IScheduler, IInternalResolver {
 
     private ScheduledActivityData addTask(SchedulingRequest request, IUniqueId originalId) throws SchedulingException {
         // Create ScheduledTask
-        ScheduledTask st = new ScheduledTask(this, timer, dispatcher, request, originalId);
-        id2scheduledTask.put(st.getId(), st);
+        ScheduledTask st = new ScheduledTask(this, timingEngine, dispatcher, request, originalId);
+        indexTask(st);
         // Prepare execution event depending on trigger (absolute, relative, event, now)
         st.armTrigger();
+        resourceTimeline.update(st);
         // Store and distribute
         ScheduledActivityData data = st.getCurrentData();
         storeAndDistribute(data);
@@ -622,10 +746,63 @@ public class Scheduler implements IScheduler, IInternalResolver {
         return data;
     }
 
+    /**
+     * To be called from the dispatcher thread.
+     *
+     * @param st the task to add to the internal maps
+     */
+    private void indexTask(ScheduledTask st) {
+        SchedulingRequest request = st.getRequest();
+        id2scheduledTask.put(st.getId(), st);
+        externalId2scheduledTask.put(request.getExternalId(), st);
+        source2scheduledTasks.computeIfAbsent(request.getSource(), k -> new LinkedHashSet<>()).add(st);
+        if(request.getTrigger() instanceof EventBasedSchedulingTrigger) {
+            event2scheduledTasks.computeIfAbsent(((EventBasedSchedulingTrigger) request.getTrigger()).getEvent(), k -> new LinkedHashSet<>()).add(st);
+        } else if(request.getTrigger() instanceof RelativeTimeSchedulingTrigger) {
+            for(String predecessor : ((RelativeTimeSchedulingTrigger) request.getTrigger()).getPredecessors()) {
+                predecessor2scheduledTasks.computeIfAbsent(predecessor, k -> new LinkedHashSet<>()).add(st);
+            }
+        }
+    }
+
+    /**
+     * To be called from the dispatcher thread.
+     *
+     * @param st the task to remove from the internal maps
+     */
+    private void unindexTask(ScheduledTask st) {
+        SchedulingRequest request = st.getRequest();
+        externalId2scheduledTask.remove(request.getExternalId(), st);
+        removeFromIndex(source2scheduledTasks, request.getSource(), st);
+        if(request.getTrigger() instanceof EventBasedSchedulingTrigger) {
+            removeFromIndex(event2scheduledTasks, ((EventBasedSchedulingTrigger) request.getTrigger()).getEvent(), st);
+        } else if(request.getTrigger() instanceof RelativeTimeSchedulingTrigger) {
+            for(String predecessor : ((RelativeTimeSchedulingTrigger) request.getTrigger()).getPredecessors()) {
+                removeFromIndex(predecessor2scheduledTasks, predecessor, st);
+            }
+        }
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<ScheduledTask>> index, K key, ScheduledTask st) {
+        Set<ScheduledTask> tasks = index.get(key);
+        if(tasks != null) {
+            tasks.remove(st);
+            if(tasks.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
     private void storeAndDistribute(ScheduledActivityData data) {
         if (LOG.isLoggable(Level.FINE)) {
             LOG.fine("Distributing and storing " + data);
         }
+        if (pendingBatch != null) {
+            // Keep only the last state of the task, in order of last update
+            pendingBatch.remove(data.getInternalId());
+            pendingBatch.put(data.getInternalId(), data);
+            return;
+        }
         if (this.archive != null) {
             try {
                 if (data.getState() != SchedulingState.REMOVED) {
@@ -637,13 +814,18 @@ public class Scheduler implements IScheduler, IInternalResolver {
                 LOG.log(Level.SEVERE, "Cannot store scheduled activity data " + data.getInternalId() + " inside the archive: " + e.getMessage(), e);
             }
         }
+        distribute(Collections.singletonList(data));
+    }
+
+    private void distribute(List<ScheduledActivityData> items) {
         for (Map.Entry<IScheduledActivityDataSubscriber, ScheduledActivityDataFilter> entry : subscriberIndex.entrySet()) {
             IScheduledActivityDataSubscriber sub = entry.getKey();
             ScheduledActivityDataFilter filter = entry.getValue();
             notifier.submit(() -> {
-                if (filter == null || filter.test(data)) {
+                List<ScheduledActivityData> toSend = filter == null ? items : items.stream().filter(filter).collect(Collectors.toList());
+                if (!toSend.isEmpty()) {
                     try {
-                        sub.dataItemsReceived(Collections.singletonList(data));
+                        sub.dataItemsReceived(toSend);
                     } catch (RemoteException e) {
                         LOG.log(Level.SEVERE, "Error when notifying activity data subscriber, dropping it", e);
                         unsubscribe(sub);
@@ -653,6 +835,50 @@ public class Scheduler implements IScheduler, IInternalResolver {
         }
     }
 
+    /**
+     * To be called from the dispatcher thread. Start collecting the state updates of the scheduled tasks, until
+     * {@link #flushBatch()} is called. Nested calls are not supported.
+     */
+    private void startBatch() {
+        pendingBatch = new LinkedHashMap<>();
+    }
+
+    /**
+     * To be called from the dispatcher thread. Store in a single batch and distribute with a single notification the
+     * state updates collected since {@link #startBatch()}.
+     */
+    private void flushBatch() {
+        Map<IUniqueId, ScheduledActivityData> batch = pendingBatch;
+        pendingBatch = null;
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        List<ScheduledActivityData> items = new ArrayList<>(batch.values());
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Distributing and storing " + items.size() + " scheduled activity data items");
+        }
+        if (this.archive != null) {
+            List<ScheduledActivityData> toStore = new ArrayList<>(items.size());
+            for (ScheduledActivityData data : items) {
+                if (data.getState() != SchedulingState.REMOVED) {
+                    toStore.add(data);
+                } else {
+                    try {
+                        this.archive.remove(data.getInternalId());
+                    } catch (ArchiveException e) {
+                        LOG.log(Level.SEVERE, "Cannot remove scheduled activity data " + data.getInternalId() + " from the archive: " + e.getMessage(), e);
+                    }
+                }
+            }
+            try {
+                this.archive.store(toStore);
+            } catch (ArchiveException e) {
+                LOG.log(Level.SEVERE, "Cannot store " + toStore.size() + " scheduled activity data items inside the archive: " + e.getMessage(), e);
+            }
+        }
+        distribute(items);
+    }
+
     private void removeTasks(List<ScheduledTask> conflictingTasks) {
         for (ScheduledTask st : conflictingTasks) {
             removeTask(st.getId());
@@ -669,7 +895,9 @@ public class Scheduler implements IScheduler, IInternalResolver {
                 continue;
             }
             Pair<Instant, Duration> timeInfo = computeTimeInformation(false, sr);
-            for (ScheduledTask task : this.id2scheduledTask.values()) {
+            // Only the tasks overlapping the request time window on the request resources can conflict
+            Instant endTime = timeInfo.getFirst().plus(timeInfo.getSecond());
+            for (ScheduledTask task : this.resourceTimeline.overlapping(sr.getResources(), timeInfo.getFirst(), endTime)) {
                 if (task.conflictsWith(sr, timeInfo) && !conflictingIds.contains(task.getCurrentData().getInternalId())) {
                     toReturn.add(task);
                     conflictingIds.add(task.getCurrentData().getInternalId());
@@ -719,43 +947,14 @@ public class Scheduler implements IScheduler, IInternalResolver {
     }
 
     private ScheduledTask lookUpScheduledTaskByExternalId(String externalId) {
-        for (ScheduledTask st : id2scheduledTask.values()) {
-            if (st.getRequest().getExternalId().equals(externalId)) {
-                return st;
-            }
-        }
-        return null;
+        return externalId2scheduledTask.get(externalId);
     }
 
     @Override
     public List<ScheduledActivityData> schedule(List<SchedulingRequest> requests, CreationConflictStrategy conflictStrategy) throws SchedulingException {
         LOG.info("Request to schedule " + requests.size() + " activities received");
         try {
-            return dispatcher.submit(() -> {
-                List<ScheduledActivityData> toReturn = new LinkedList<>();
-                List<ScheduledTask> conflictingTasks = computeConflicts(requests);
-                if (!conflictingTasks.isEmpty() && conflictStrategy == CreationConflictStrategy.ABORT) {
-                    throw new SchedulingException("Conflict detected with provided scheduling requests: " + conflictingTasks);
-                } else {
-                    // Check if an external ID exists already
-                    Set<String> toBeAdded = requests.stream().map(SchedulingRequest::getExternalId).collect(Collectors.toSet());
-                    if(toBeAdded.size() != requests.size()) {
-                        throw new SchedulingException("One supplied external ID is duplicated in the request");
-                    }
-                    for(ScheduledTask st : id2scheduledTask.values()) {
-                        if(toBeAdded.contains(st.getCurrentData().getExternalId())) {
-                            throw new SchedulingException("Supplied external ID is already assigned to one scheduled activity: " + st.getCurrentData().getExternalId());
-                        }
-                    }
-                    for (SchedulingRequest sr : requests) {
-                        ScheduledActivityData data = scheduleTask(sr, conflictStrategy, null);
-                        if (data != null) {
-                            toReturn.add(data);
-                        }
-                    }
-                }
-                return toReturn;
-            }).get();
+            return dispatcher.submit(() -> scheduleBulk(requests, conflictStrategy, Collections.emptyList())).get();
         } catch (InterruptedException | ExecutionException e) {
             LOG.log(Level.SEVERE, "Scheduling request for activities encountered a problem: " + e.getMessage(), e);
             throw new SchedulingException(e);
@@ -834,8 +1033,13 @@ public class Scheduler implements IScheduler, IInternalResolver {
                         toRemove.add(entry.getKey());
                     }
                 }
-                for (IUniqueId id : toRemove) {
-                    removeTask(id);
+                startBatch();
+                try {
+                    for (IUniqueId id : toRemove) {
+                        removeTask(id);
+                    }
+                } finally {
+                    flushBatch();
                 }
             }).get();
         } catch (InterruptedException | ExecutionException e) {
@@ -852,6 +1056,12 @@ public class Scheduler implements IScheduler, IInternalResolver {
         // remove from the current internal set
         ScheduledTask st = id2scheduledTask.remove(scheduledId);
         if (st != null) {
+            unindexTask(st);
+            resourceTimeline.remove(st);
+            stopWaitingForResources(st);
+            if (bulkRemovedTasks != null) {
+                bulkRemovedTasks.add(st);
+            }
             LOG.info(String.format("Removing scheduled task %s (%s)", st.getRequest().getRequest().getPath().asString(), st.getRequest().getExternalId()));
             st.abortTask();
             // Update or remove in the archive
@@ -864,7 +1074,9 @@ public class Scheduler implements IScheduler, IInternalResolver {
 
     private void reEvaluateRelativeTimeTriggers(String externalId) {
         dispatcher.submit(() -> {
-            for(ScheduledTask st :id2scheduledTask.values()) {
+            // Copy the set, since re-arming the trigger can remove tasks
+            List<ScheduledTask> relatedTasks = new ArrayList<>(predecessor2scheduledTasks.getOrDefault(externalId, Collections.emptySet()));
+            for(ScheduledTask st : relatedTasks) {
                 if(st.getCurrentData().getState() == SchedulingState.SCHEDULED && st.isRelatedTo(externalId)) {
                     try {
                         st.armTrigger();
@@ -880,37 +1092,16 @@ public class Scheduler implements IScheduler, IInternalResolver {
     public List<ScheduledActivityData> load(Instant startTime, Instant endTime, List<SchedulingRequest> requests, String source, CreationConflictStrategy conflictStrategy) throws SchedulingException {
         try {
             return dispatcher.submit(() -> {
-                List<ScheduledActivityData> toReturn = new LinkedList<>();
-                // First, retrieve all scheduled activities from startTime to endTime
-                List<ScheduledTask> tasks = retrieveTasksFrom(startTime, endTime);
+                // First, retrieve all scheduled activities of the source from startTime to endTime
+                List<ScheduledTask> tasks = retrieveTasksFrom(source, startTime, endTime);
                 // Now, check if there is one task belonging to source, that is not SCHEDULED. If so, abort with exception.
-                Optional<ScheduledTask> runningTask = tasks.stream().filter(o -> o.getCurrentData().getSource().equals(source)).filter(o -> !o.getCurrentData().getState().equals(SchedulingState.SCHEDULED)).findFirst();
+                Optional<ScheduledTask> runningTask = tasks.stream().filter(o -> !o.getCurrentData().getState().equals(SchedulingState.SCHEDULED)).findFirst();
                 if (runningTask.isPresent()) {
                     throw new SchedulingException("Task " + runningTask.get().getId() + " already in state " + runningTask.get().getCurrentData().getState() + ", cannot replace the schedule period");
                 }
-                // If you are here, there is no scheduled task from the provided source that started, so they can be all removed. Let's check for conflicts.
-                List<ScheduledTask> conflictingTasks = computeConflicts(requests);
-                // Remove the tasks of this source, they will go away
-                conflictingTasks.removeIf(o -> o.getCurrentData().getSource().equals(source));
-                // Final check
-                if (!conflictingTasks.isEmpty() && conflictStrategy == CreationConflictStrategy.ABORT) {
-                    throw new SchedulingException("Conflict detected with provided scheduling requests: " + conflictingTasks);
-                }
-                // OK, at this stage the import can be handled.
-                // Remove the tasks from source
-                for (ScheduledTask st : tasks) {
-                    if (st.getCurrentData().getSource().equals(source)) {
-                        removeTask(st.getId());
-                    }
-                }
-                // Add new tasks
-                for (SchedulingRequest sr : requests) {
-                    ScheduledActivityData data = scheduleTask(sr, conflictStrategy, null);
-                    if (data != null) {
-                        toReturn.add(data);
-                    }
-                }
-                return toReturn;
+                // If you are here, there is no scheduled task from the provided source that started, so they can be all
+                // replaced by the new requests, if these are valid
+                return scheduleBulk(requests, conflictStrategy, tasks);
             }).get();
         } catch (InterruptedException | ExecutionException e) {
             throw new SchedulingException(e);
@@ -974,8 +1165,8 @@ public class Scheduler implements IScheduler, IInternalResolver {
         }
     }
 
-    private List<ScheduledTask> retrieveTasksFrom(Instant startTime, Instant endTime) {
-        return id2scheduledTask.values().stream()
+    private List<ScheduledTask> retrieveTasksFrom(String source, Instant startTime, Instant endTime) {
+        return source2scheduledTasks.getOrDefault(source, Collections.emptySet()).stream()
                 .filter(o -> (o.getCurrentData().getStartTime().isAfter(startTime) || o.getCurrentData().getStartTime().equals(startTime)) &&
                         (o.getCurrentData().getStartTime().isBefore(endTime) || o.getCurrentData().getStartTime().equals(endTime)))
                 .collect(Collectors.toList());
@@ -1042,10 +1233,15 @@ public class Scheduler implements IScheduler, IInternalResolver {
      * To be called from the dispatcher thread.
      */
     void updateEventFilter(SystemEntityPath newEvent, boolean remove) {
+        int previousSize = subscribedEvents.size();
         if (remove) {
-            subscribedEvents.remove(newEvent);
+            subscribedEvents.computeIfPresent(newEvent, (k, v) -> v == 1 ? null : v - 1);
         } else {
-            subscribedEvents.add(newEvent);
+            subscribedEvents.merge(newEvent, 1, Integer::sum);
+        }
+        if (subscribedEvents.size() == previousSize) {
+            // Same set of events, no need to change the subscription
+            return;
         }
         if (subscribedEvents.isEmpty()) {
             currentEventFilter = null;
@@ -1055,7 +1251,7 @@ public class Scheduler implements IScheduler, IInternalResolver {
                 LOG.log(Level.SEVERE, "Remote exception on event service unsubscribe", e);
             }
         } else {
-            currentEventFilter = new EventDataFilter(null, subscribedEvents, null, null, null, null, null);
+            currentEventFilter = new EventDataFilter(null, new ArrayList<>(subscribedEvents.keySet()), null, null, null, null, null);
             try {
                 eventService.subscribe(eventSubscriber, currentEventFilter);
             } catch (RemoteException e) {
@@ -1105,18 +1301,49 @@ public class Scheduler implements IScheduler, IInternalResolver {
      */
     void releaseResources(Set<String> resources) {
         this.currentlyUsedResources.removeAll(resources);
-        // Check waiting tasks
-        for (ScheduledTask st : id2scheduledTask.values()) {
+        // Check the tasks waiting for the released resources, in order of arrival
+        Set<ScheduledTask> waitingTasks = new HashSet<>();
+        for (String resource : resources) {
+            waitingTasks.addAll(resource2waitingTasks.getOrDefault(resource, Collections.emptySet()));
+        }
+        List<ScheduledTask> candidates = new ArrayList<>(waitingTasks);
+        candidates.sort(Comparator.comparingLong(o -> waitingTask2arrival.getOrDefault(o, Long.MAX_VALUE)));
+        for (ScheduledTask st : candidates) {
             if (st.getCurrentData().getState() == SchedulingState.WAITING) {
                 st.evaluateRun();
             }
         }
     }
 
+    /**
+     * To be called from the dispatcher thread.
+     */
+    void waitForResources(ScheduledTask scheduledTask) {
+        // A task re-evaluated while waiting keeps its original arrival
+        waitingTask2arrival.computeIfAbsent(scheduledTask, k -> ++waitingSequencer);
+        for (String resource : scheduledTask.getRequest().getResources()) {
+            resource2waitingTasks.computeIfAbsent(resource, k -> new LinkedHashSet<>()).add(scheduledTask);
+        }
+    }
+
+    /**
+     * To be called from the dispatcher thread.
+     */
+    void stopWaitingForResources(ScheduledTask scheduledTask) {
+        waitingTask2arrival.remove(scheduledTask);
+        for (String resource : scheduledTask.getRequest().getResources()) {
+            removeFromIndex(resource2waitingTasks, resource, scheduledTask);
+        }
+    }
+
     /**
      * To be called from the dispatcher thread.
      */
     void notifyTask(ScheduledTask scheduledTask) {
+        // The start time or the duration of the task might have changed
+        if(id2scheduledTask.containsKey(scheduledTask.getId())) {
+            resourceTimeline.update(scheduledTask);
+        }
         storeAndDistribute(scheduledTask.getCurrentData());
     }
 
@@ -1138,7 +1365,7 @@ public class Scheduler implements IScheduler, IInternalResolver {
      */
     void eventUpdate(List<EventData> dataItems) {
         for (EventData ed : dataItems) {
-            for (ScheduledTask st : id2scheduledTask.values()) {
+            for (ScheduledTask st : event2scheduledTasks.getOrDefault(ed.getPath(), Collections.emptySet())) {
                 st.newEventOccurrence(ed);
             }
         }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.scheduler;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timing engine of the scheduler. All the timed actions of the scheduled tasks (start times, delays, latest execution
+ * times) are kept in a single timeline sorted by due time: a single thread sleeps until the earliest due time, collects
+ * all the actions due at that time and releases them to the dispatcher as a single batch.
+ *
+ * Cancellation only marks the action as cancelled: the check is performed by the dispatcher thread just before running
+ * the action, so that an action cancelled by the dispatcher thread is never executed, even if already released. Cancelled
+ * actions are removed from the timeline when due, or earlier if they become the majority of the timeline.
+ */
+final class TimingEngine {
+
+    private static final Logger LOG = Logger.getLogger(TimingEngine.class.getName());
+
+    private final ExecutorService dispatcher;
+    private final Thread thread;
+
+    // Access protected by this object
+    private final NavigableMap<Long, List<Handle>> timeline = new TreeMap<>();
+    private int size = 0;
+    private int cancelled = 0;
+    private boolean running = true;
+
+    TimingEngine(String name, ExecutorService dispatcher) {
+        this.dispatcher = dispatcher;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Schedule the action at the provided time. The action is executed by the dispatcher thread.
+     *
+     * @param time the due time
+     * @param action the action
+     * @return the handle to cancel the action
+     */
+    Handle schedule(Instant time, Runnable action) {
+        return scheduleAt(time.toEpochMilli(), action);
+    }
+
+    /**
+     * Schedule the action after the provided delay. The action is executed by the dispatcher thread.
+     *
+     * @param delayMillis the delay in milliseconds
+     * @param action the action
+     * @return the handle to cancel the action
+     */
+    Handle schedule(long delayMillis, Runnable action) {
+        return scheduleAt(System.currentTimeMillis() + Math.max(0, delayMillis), action);
+    }
+
+    private synchronized Handle scheduleAt(long dueTime, Runnable action) {
+        Handle handle = new Handle(this, action);
+        timeline.computeIfAbsent(dueTime, k -> new ArrayList<>(1)).add(handle);
+        ++size;
+        // Wake up the thread only if the earliest due time changed
+        if(timeline.firstKey() == dueTime) {
+            notifyAll();
+        }
+        return handle;
+    }
+
+    private synchronized void cancelled(Handle handle) {
+        if(!handle.queued) {
+            // Already released or disposed
+            return;
+        }
+        handle.counted = true;
+        ++cancelled;
+        if(cancelled > 64 && cancelled > size / 2) {
+            // Purge the cancelled actions, including the ones whose cancellation is not counted yet
+            for(Iterator<List<Handle>> it = timeline.values().iterator(); it.hasNext(); ) {
+                List<Handle> handles = it.next();
+                handles.removeIf(this::unqueueIfCancelled);
+                if(handles.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * To be called with the lock held. Mark the handle as no longer in the timeline and update the counters.
+     *
+     * @param handle the handle leaving the timeline
+     */
+    private void unqueue(Handle handle) {
+        handle.queued = false;
+        --size;
+        if(handle.counted) {
+            --cancelled;
+        }
+    }
+
+    private boolean unqueueIfCancelled(Handle handle) {
+        if(handle.isCancelled()) {
+            unqueue(handle);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    void dispose() {
+        synchronized (this) {
+            running = false;
+            timeline.values().forEach(l -> l.forEach(h -> h.queued = false));
+            timeline.clear();
+            size = 0;
+            cancelled = 0;
+            notifyAll();
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while(true) {
+            List<Handle> batch = new ArrayList<>();
+            synchronized (this) {
+                while(running && batch.isEmpty()) {
+                    long now = System.currentTimeMillis();
+                    if(timeline.isEmpty()) {
+                        waitFor(0);
+                    } else if(timeline.firstKey() > now) {
+                        waitFor(timeline.firstKey() - now);
+                    } else {
+                        // Release everything that is due
+                        while(!timeline.isEmpty() && timeline.firstKey() <= now) {
+                            for(Handle h : timeline.pollFirstEntry().getValue()) {
+                                unqueue(h);
+                                if(!h.isCancelled()) {
+                                    batch.add(h);
+                                }
+                            }
+                        }
+                    }
+                }
+                if(!running) {
+                    return;
+                }
+            }
+            try {
+                dispatcher.submit(() -> release(batch));
+            } catch (RejectedExecutionException e) {
+                // Dispatcher shut down
+                return;
+            }
+        }
+    }
+
+    private void waitFor(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * To be called from the dispatcher thread.
+     */
+    private void release(List<Handle> batch) {
+        for(Handle h : batch) {
+            if(!h.isCancelled()) {
+                try {
+                    h.action.run();
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "Error when executing timed action: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle of a scheduled action.
+     */
+    static final class Handle {
+
+        private final TimingEngine engine;
+        private final Runnable action;
+        private volatile boolean cancelled = false;
+        // Access protected by the engine
+        private boolean queued = true;
+        // True if the cancellation is counted by the engine. Access protected by the engine
+        private boolean counted = false;
+
+        private Handle(TimingEngine engine, Runnable action) {
+            this.engine = engine;
+            this.action = action;
+        }
+
+        /**
+         * Cancel the action. If called from the dispatcher thread, the action is guaranteed not to be executed.
+         */
+        void cancel() {
+            if(!cancelled) {
+                cancelled = true;
+                engine.cancelled(this);
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.scheduler;
+
+import eu.dariolucia.reatmetric.api.common.LongUniqueId;
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.processing.input.ActivityRequest;
+import eu.dariolucia.reatmetric.api.scheduler.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceTimelineTest {
+
+    private final Instant baseTime = Instant.parse("2030-01-01T00:00:00Z");
+    private final ResourceTimeline timeline = new ResourceTimeline();
+
+    @Test
+    void testOverlappingOnSharedResources() {
+        ScheduledTask a = task(1, Set.of("RES1"), 0, 10);
+        ScheduledTask b = task(2, Set.of("RES2"), 0, 10);
+        ScheduledTask c = task(3, Set.of("RES1", "RES2"), 20, 10);
+        timeline.update(a);
+        timeline.update(b);
+        timeline.update(c);
+
+        assertEquals(Set.of(a), timeline.overlapping(Set.of("RES1"), time(5), time(15)));
+        assertEquals(Set.of(a, b), timeline.overlapping(Set.of("RES1", "RES2"), time(5), time(15)));
+        assertEquals(Set.of(a, b, c), timeline.overlapping(Set.of("RES1", "RES2"), time(5), time(25)));
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES3"), time(0), time(30)));
+        assertEquals(Collections.emptySet(), timeline.overlapping(Collections.emptySet(), time(0), time(30)));
+    }
+
+    @Test
+    void testWindowBoundsIncluded() {
+        ScheduledTask a = task(1, Set.of("RES1"), 10, 10);
+        timeline.update(a);
+        // Window ending when the task starts, and window starting when the task ends
+        assertEquals(Set.of(a), timeline.overlapping(Set.of("RES1"), time(0), time(10)));
+        assertEquals(Set.of(a), timeline.overlapping(Set.of("RES1"), time(20), time(30)));
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(0), time(9)));
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(21), time(30)));
+    }
+
+    @Test
+    void testLongTaskStartingBeforeWindow() {
+        ScheduledTask longTask = task(1, Set.of("RES1"), 0, 1000);
+        ScheduledTask shortTask = task(2, Set.of("RES1"), 100, 1);
+        timeline.update(longTask);
+        timeline.update(shortTask);
+        assertEquals(Set.of(longTask), timeline.overlapping(Set.of("RES1"), time(500), time(510)));
+        // Once the long task is removed, the longest duration is updated as well
+        timeline.remove(longTask);
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(500), time(510)));
+        assertEquals(Set.of(shortTask), timeline.overlapping(Set.of("RES1"), time(101), time(510)));
+    }
+
+    @Test
+    void testUpdateMovesTask() {
+        ScheduledTask a = task(1, Set.of("RES1"), 0, 10);
+        timeline.update(a);
+        assertEquals(Set.of(a), timeline.overlapping(Set.of("RES1"), time(0), time(5)));
+        // Same task (same ID) with a new expected start time
+        ScheduledTask moved = task(1, Set.of("RES1"), 100, 10);
+        timeline.update(moved);
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(0), time(50)));
+        assertEquals(Set.of(moved), timeline.overlapping(Set.of("RES1"), time(95), time(105)));
+        timeline.remove(moved);
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(0), time(200)));
+    }
+
+    @Test
+    void testEventBasedAndResourceLessTasksNotIndexed() {
+        ScheduledTask eventBased = task(1, Set.of("RES1"), 0, 10, new EventBasedSchedulingTrigger(SystemEntityPath.fromString("ROOT.EVENT"), 0, true));
+        ScheduledTask noResources = task(2, Collections.emptySet(), 0, 10);
+        timeline.update(eventBased);
+        timeline.update(noResources);
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(0), time(10)));
+        // Removing not indexed tasks is harmless
+        timeline.remove(eventBased);
+        timeline.remove(noResources);
+    }
+
+    @Test
+    void testClear() {
+        timeline.update(task(1, Set.of("RES1"), 0, 10));
+        timeline.clear();
+        assertEquals(Collections.emptySet(), timeline.overlapping(Set.of("RES1"), time(0), time(10)));
+    }
+
+    private Instant time(int offsetSeconds) {
+        return baseTime.plusSeconds(offsetSeconds);
+    }
+
+    private ScheduledTask task(long id, Set<String> resources, int startOffsetSeconds, int durationSeconds) {
+        return task(id, resources, startOffsetSeconds, durationSeconds, new AbsoluteTimeSchedulingTrigger(time(startOffsetSeconds)));
+    }
+
+    private ScheduledTask task(long id, Set<String> resources, int startOffsetSeconds, int durationSeconds, AbstractSchedulingTrigger trigger) {
+        ActivityRequest request = new ActivityRequest(1, SystemEntityPath.fromString("ROOT.ACTIVITY"), Collections.emptyList(), Collections.emptyMap(), null, "test");
+        ScheduledActivityData data = new ScheduledActivityData(new LongUniqueId(id), Instant.now(), request, null, resources, "test", "TASK" + id, trigger, null,
+                time(startOffsetSeconds), Duration.ofSeconds(durationSeconds), ConflictStrategy.WAIT, SchedulingState.SCHEDULED, null);
+        // Not armed: scheduler, timing engine and dispatcher are not needed
+        return new ScheduledTask(null, null, null, data);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.scheduler;
+
+import eu.dariolucia.reatmetric.api.model.SystemEntityPath;
+import eu.dariolucia.reatmetric.api.processing.input.ActivityRequest;
+import eu.dariolucia.reatmetric.api.scheduler.*;
+import eu.dariolucia.reatmetric.api.scheduler.exceptions.SchedulingException;
+import eu.dariolucia.reatmetric.api.scheduler.input.SchedulingRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulerTest {
+
+    private final Instant baseTime = Instant.now().plusSeconds(3600);
+
+    private Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // No configuration, archive or processing model: the tasks are far in the future and never run
+        scheduler = new Scheduler(null, null, null, null, null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void testBulkRemovePrevious() throws SchedulingException {
+        scheduler.schedule(request("A", "RES1", 0), CreationConflictStrategy.ABORT);
+        scheduler.schedule(request("B", "RES2", 0), CreationConflictStrategy.ABORT);
+
+        List<ScheduledActivityData> added = scheduler.schedule(Arrays.asList(
+                request("C", "RES1", 10),
+                request("D", "RES3", 0)), CreationConflictStrategy.REMOVE_PREVIOUS);
+
+        assertEquals(2, added.size());
+        assertEquals(Set.of("B", "C", "D"), currentExternalIds());
+    }
+
+    @Test
+    void testBulkRollbackRestoresTasksRemovedByConflicts() throws SchedulingException {
+        ScheduledActivityData a = scheduler.schedule(request("A", "RES1", 0), CreationConflictStrategy.ABORT);
+        ScheduledActivityData b = scheduler.schedule(request("B", "RES2", 0), CreationConflictStrategy.ABORT);
+
+        // C removes A, D removes B, E removes C (added in the same operation), F cannot be handled: everything is rolled back
+        assertThrows(SchedulingException.class, () -> scheduler.schedule(Arrays.asList(
+                request("C", "RES1", 10),
+                request("D", "RES2", 10),
+                request("E", "RES1", 20),
+                new SchedulingRequest(activity(), Collections.singleton("RES4"), "test", "F", new UnknownTrigger(), null, ConflictStrategy.WAIT, Duration.ofMinutes(1))),
+                CreationConflictStrategy.REMOVE_PREVIOUS));
+
+        List<ScheduledActivityData> current = scheduler.getCurrentScheduledActivities();
+        assertEquals(2, current.size());
+        assertEquals(a.getInternalId(), current.get(0).getInternalId());
+        assertEquals("A", current.get(0).getExternalId());
+        assertEquals(SchedulingState.SCHEDULED, current.get(0).getState());
+        assertEquals(b.getInternalId(), current.get(1).getInternalId());
+        assertEquals("B", current.get(1).getExternalId());
+        assertEquals(SchedulingState.SCHEDULED, current.get(1).getState());
+
+        // The restored tasks are indexed again: new conflicting requests are detected
+        assertThrows(SchedulingException.class, () -> scheduler.schedule(request("G", "RES1", 30), CreationConflictStrategy.ABORT));
+        // And the external IDs of the rolled back tasks are free
+        scheduler.schedule(request("C", "RES3", 0), CreationConflictStrategy.ABORT);
+        assertEquals(Set.of("A", "B", "C"), currentExternalIds());
+    }
+
+    @Test
+    void testLoadRollbackRestoresReplacedAndConflictingTasks() throws SchedulingException {
+        ScheduledActivityData a = scheduler.schedule(request("A", "RES1", 0), CreationConflictStrategy.ABORT);
+        ScheduledActivityData b = scheduler.schedule(request("B", "RES2", 0), CreationConflictStrategy.ABORT);
+        ScheduledActivityData x = scheduler.schedule(new SchedulingRequest(activity(), Collections.singleton("RES3"), "other", "X",
+                new AbsoluteTimeSchedulingTrigger(baseTime.plusSeconds(10)), null, ConflictStrategy.WAIT, Duration.ofMinutes(1)), CreationConflictStrategy.ABORT);
+
+        // A and B are replaced by the load, C removes X (other source), F cannot be handled: everything is rolled back
+        assertThrows(SchedulingException.class, () -> scheduler.load(baseTime.minusSeconds(1), baseTime.plusSeconds(5), Arrays.asList(
+                request("C", "RES3", 10),
+                new SchedulingRequest(activity(), Collections.singleton("RES4"), "test", "F", new UnknownTrigger(), null, ConflictStrategy.WAIT, Duration.ofMinutes(1))),
+                "test", CreationConflictStrategy.REMOVE_PREVIOUS));
+
+        List<ScheduledActivityData> current = scheduler.getCurrentScheduledActivities();
+        assertEquals(Set.of(a.getInternalId(), b.getInternalId(), x.getInternalId()), current.stream().map(ScheduledActivityData::getInternalId).collect(Collectors.toSet()));
+        assertEquals(Set.of("A", "B", "X"), currentExternalIds());
+        assertTrue(current.stream().allMatch(o -> o.getState() == SchedulingState.SCHEDULED));
+
+        // The restored tasks are indexed again
+        assertThrows(SchedulingException.class, () -> scheduler.schedule(request("G", "RES3", 20), CreationConflictStrategy.ABORT));
+        assertThrows(SchedulingException.class, () -> scheduler.schedule(request("H", "RES2", 30), CreationConflictStrategy.ABORT));
+    }
+
+    private Set<String> currentExternalIds() throws SchedulingException {
+        return scheduler.getCurrentScheduledActivities().stream().map(ScheduledActivityData::getExternalId).collect(Collectors.toSet());
+    }
+
+    private SchedulingRequest request(String externalId, String resource, int offsetSeconds) {
+        return new SchedulingRequest(activity(), Collections.singleton(resource), "test", externalId,
+                new AbsoluteTimeSchedulingTrigger(baseTime.plusSeconds(offsetSeconds)), null, ConflictStrategy.WAIT, Duration.ofMinutes(1));
+    }
+
+    private static ActivityRequest activity() {
+        return new ActivityRequest(1, SystemEntityPath.fromString("ROOT.ACTIVITY"), Collections.emptyList(), Collections.emptyMap(), null, "test");
+    }
+
+    private static class UnknownTrigger extends AbstractSchedulingTrigger {
+    }
+}
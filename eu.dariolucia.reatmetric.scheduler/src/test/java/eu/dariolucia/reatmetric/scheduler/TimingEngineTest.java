@@ -0,0 +1,153 @@
+/*
+ * Copyright (c)  2020 Dario Lucia (https://www.dariolucia.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.dariolucia.reatmetric.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingEngineTest {
+
+    private ExecutorService dispatcher;
+    private TimingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = Executors.newSingleThreadExecutor();
+        engine = new TimingEngine("Test Timing Engine", dispatcher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.dispose();
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    void testCancelledActionsNotExecuted() throws Exception {
+        AtomicInteger executed = new AtomicInteger(0);
+        CountDownLatch latch = new CountDownLatch(50);
+        List<TimingEngine.Handle> handles = new ArrayList<>();
+        for(int i = 0; i < 100; ++i) {
+            handles.add(engine.schedule(200L, () -> {
+                executed.incrementAndGet();
+                latch.countDown();
+            }));
+        }
+        for(int i = 0; i < 100; i += 2) {
+            handles.get(i).cancel();
+        }
+        assertEquals(100, counter("size"));
+        assertEquals(50, counter("cancelled"));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // Let the dispatcher complete the batch
+        dispatcher.submit(() -> null).get();
+        assertEquals(50, executed.get());
+        assertEquals(0, counter("size"));
+        assertEquals(0, counter("cancelled"));
+        // Cancelling a released action has no effect on the counters
+        handles.get(1).cancel();
+        assertEquals(0, counter("cancelled"));
+    }
+
+    @Test
+    void testPurge() throws Exception {
+        List<TimingEngine.Handle> handles = new ArrayList<>();
+        for(int i = 0; i < 200; ++i) {
+            handles.add(engine.schedule(3600_000L, () -> fail("Not expected")));
+        }
+        // The purge is triggered when more than half of the actions are cancelled
+        for(int i = 0; i < 100; ++i) {
+            handles.get(i).cancel();
+        }
+        assertEquals(200, counter("size"));
+        assertEquals(100, counter("cancelled"));
+        handles.get(100).cancel();
+        assertEquals(99, counter("size"));
+        assertEquals(0, counter("cancelled"));
+    }
+
+    @Test
+    void testPurgeOfActionCancelledConcurrently() throws Exception {
+        List<TimingEngine.Handle> handles = new ArrayList<>();
+        for(int i = 0; i < 200; ++i) {
+            handles.add(engine.schedule(3600_000L, () -> fail("Not expected")));
+        }
+        for(int i = 0; i < 100; ++i) {
+            handles.get(i).cancel();
+        }
+        // Another thread set the cancel flag of this action, but it did not notify the engine yet
+        TimingEngine.Handle racing = handles.get(199);
+        setCancelFlag(racing);
+        // Purge: the racing action is removed as well
+        handles.get(100).cancel();
+        assertEquals(98, counter("size"));
+        assertEquals(0, counter("cancelled"));
+        // The late notification must not be counted, since the action is no longer in the timeline
+        notifyCancelled(racing);
+        assertEquals(98, counter("size"));
+        assertEquals(0, counter("cancelled"));
+    }
+
+    @Test
+    void testReleaseOfActionCancelledConcurrently() throws Exception {
+        AtomicInteger executed = new AtomicInteger(0);
+        CountDownLatch latch = new CountDownLatch(1);
+        TimingEngine.Handle racing = engine.schedule(100L, executed::incrementAndGet);
+        engine.schedule(100L, latch::countDown);
+        // Another thread set the cancel flag of this action, but it did not notify the engine yet
+        setCancelFlag(racing);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, counter("size"));
+        assertEquals(0, counter("cancelled"));
+        notifyCancelled(racing);
+        assertEquals(0, counter("cancelled"));
+        assertEquals(0, executed.get());
+    }
+
+    private int counter(String name) throws Exception {
+        Field field = TimingEngine.class.getDeclaredField(name);
+        field.setAccessible(true);
+        synchronized (engine) {
+            return field.getInt(engine);
+        }
+    }
+
+    private static void setCancelFlag(TimingEngine.Handle handle) throws Exception {
+        Field field = TimingEngine.Handle.class.getDeclaredField("cancelled");
+        field.setAccessible(true);
+        field.setBoolean(handle, true);
+    }
+
+    private void notifyCancelled(TimingEngine.Handle handle) throws Exception {
+        Method method = TimingEngine.class.getDeclaredMethod("cancelled", TimingEngine.Handle.class);
+        method.setAccessible(true);
+        method.invoke(engine, handle);
+    }
+}